@@ -0,0 +1,409 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.manniwood.cl4pg.v1.commands.Command;
+import com.manniwood.cl4pg.v1.commands.Update;
+import com.manniwood.cl4pg.v1.commands.UpdateV;
+import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
+import com.manniwood.cl4pg.v1.exceptions.Cl4pgException;
+
+/**
+ * Runs work on a DataSourceAdapter's own, bounded, pool of threads, and
+ * returns Futures for the results, so that one thread can start several
+ * independent queries at once and then wait for all of them, instead of
+ * waiting for each in turn.
+ *
+ * <p>
+ * Each method call is a separate unit of work: it gets its own PgSession, is
+ * committed if it succeeds and rolled back if it fails, and its session is
+ * closed before its Future completes. A failure shows up as an
+ * ExecutionException, from Future.get(), whose cause is the Cl4pgException
+ * that PgSession threw.
+ *
+ * <p>
+ * At most threads units of work run at once, and at most queueSize more wait
+ * for a thread; once that many are outstanding, the methods here block until
+ * one finishes, so that a flood of requests slows its callers down instead of
+ * piling up without bound. There is little point in more threads than the
+ * DataSourceAdapter has connections to give them.
+ *
+ * <p>
+ * In AsyncThreadMode.VIRTUAL, every unit of work gets a virtual thread of its
+ * own, and threads is instead the number of them allowed to hold a
+ * connection at once; the others wait on a fair Semaphore, which costs a
+ * virtual thread next to nothing, instead of crowding into the connection
+ * pool. queueSize can then be in the thousands. Before Java 24, though, a
+ * unit of work holding a connection also pins a carrier thread; see
+ * AsyncThreadMode.VIRTUAL.
+ *
+ * <p>
+ * Get an instance from DataSourceAdapter.getAsyncSession(); it is shared,
+ * thread-safe, and closed along with the DataSourceAdapter.
+ *
+ * @author mwood
+ *
+ */
+public class AsyncPgSession implements Closeable {
+
+    private final static Logger log = LoggerFactory.getLogger(AsyncPgSession.class);
+
+    private final DataSourceAdapter dataSourceAdapter;
+    private final ExecutorService executor;
+    private final Semaphore outstanding;
+    private final Semaphore connectionPermits;
+    private final AsyncThreadMode threadMode;
+    private final int threads;
+    private final int queueSize;
+
+    public AsyncPgSession(DataSourceAdapter dataSourceAdapter,
+                          int threads,
+                          int queueSize) {
+        this(dataSourceAdapter, threads, queueSize, AsyncThreadMode.PLATFORM);
+    }
+
+    public AsyncPgSession(DataSourceAdapter dataSourceAdapter,
+                          int threads,
+                          int queueSize,
+                          AsyncThreadMode threadMode) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1, not " + threads);
+        }
+        if (queueSize < 0) {
+            throw new IllegalArgumentException("queueSize must not be negative, not " + queueSize);
+        }
+        this.dataSourceAdapter = dataSourceAdapter;
+        this.threads = threads;
+        this.queueSize = queueSize;
+        this.threadMode = threadMode;
+        this.outstanding = new Semaphore(threads + queueSize);
+        this.connectionPermits = threadMode.needsConnectionPermits() ? new Semaphore(threads, true) : null;
+        this.executor = threadMode.newExecutor(threads);
+    }
+
+    /**
+     * Runs work on a PgSession of its own, committing if work returns and
+     * rolling back if it throws. Blocks while threads + queueSize units of
+     * work are already outstanding.
+     *
+     * @param work
+     * @return
+     */
+    public <T> Future<T> submit(final SessionWork<T> work) {
+        try {
+            outstanding.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new Cl4pgException("Interrupted while waiting to submit work", e);
+        }
+        try {
+            return executor.submit(new Callable<T>() {
+                @Override
+                public T call() {
+                    try {
+                        return runWork(work);
+                    } finally {
+                        outstanding.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            // Rejected, because we have been closed
+            outstanding.release();
+            throw e;
+        }
+    }
+
+    private <T> T runWork(SessionWork<T> work) {
+        if (connectionPermits == null) {
+            return runWorkOnSession(work);
+        }
+        try {
+            connectionPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new Cl4pgException("Interrupted while waiting for a connection permit", e);
+        }
+        try {
+            return runWorkOnSession(work);
+        } finally {
+            connectionPermits.release();
+        }
+    }
+
+    private <T> T runWorkOnSession(SessionWork<T> work) {
+        PgSession pgSession = dataSourceAdapter.getSession();
+        try {
+            T result = work.doWork(pgSession);
+            pgSession.commit();
+            return result;
+        } catch (RuntimeException e) {
+            try {
+                pgSession.rollback();
+            } catch (RuntimeException e1) {
+                log.error("Could not roll back after failed async work", e1);
+            }
+            throw e;
+        } finally {
+            pgSession.close();
+        }
+    }
+
+    /**
+     * Runs command, and commits.
+     *
+     * @param command
+     * @return
+     */
+    public Future<Void> run(final Command command) {
+        return submit(new SessionWork<Void>() {
+            @Override
+            public Void doWork(PgSession pgSession) {
+                pgSession.run(command);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous PgSession.qSelect(sql, returnClass, args).
+     */
+    public <R> Future<List<R>> qSelect(final String sql,
+                                       final Class<R> returnClass,
+                                       final Object... args) {
+        return submit(new SessionWork<List<R>>() {
+            @Override
+            public List<R> doWork(PgSession pgSession) {
+                return pgSession.qSelect(sql, returnClass, args);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous PgSession.select(file, returnClass, args).
+     */
+    public <R> Future<List<R>> select(final String file,
+                                      final Class<R> returnClass,
+                                      final Object... args) {
+        return submit(new SessionWork<List<R>>() {
+            @Override
+            public List<R> doWork(PgSession pgSession) {
+                return pgSession.select(file, returnClass, args);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous PgSession.qSelectOne(sql, returnClass, args).
+     */
+    public <R> Future<R> qSelectOne(final String sql,
+                                    final Class<R> returnClass,
+                                    final Object... args) {
+        return submit(new SessionWork<R>() {
+            @Override
+            public R doWork(PgSession pgSession) {
+                return pgSession.qSelectOne(sql, returnClass, args);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous PgSession.selectOne(file, returnClass, args).
+     */
+    public <R> Future<R> selectOne(final String file,
+                                   final Class<R> returnClass,
+                                   final Object... args) {
+        return submit(new SessionWork<R>() {
+            @Override
+            public R doWork(PgSession pgSession) {
+                return pgSession.selectOne(file, returnClass, args);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous PgSession.qSelectScalar(sql, args).
+     */
+    public <R> Future<List<R>> qSelectScalar(final String sql,
+                                             final Object... args) {
+        return submit(new SessionWork<List<R>>() {
+            @Override
+            public List<R> doWork(PgSession pgSession) {
+                return pgSession.qSelectScalar(sql, args);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous PgSession.selectScalar(file, args).
+     */
+    public <R> Future<List<R>> selectScalar(final String file,
+                                            final Object... args) {
+        return submit(new SessionWork<List<R>>() {
+            @Override
+            public List<R> doWork(PgSession pgSession) {
+                return pgSession.selectScalar(file, args);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous PgSession.qSelectOneScalar(sql, args).
+     */
+    public <R> Future<R> qSelectOneScalar(final String sql,
+                                          final Object... args) {
+        return submit(new SessionWork<R>() {
+            @Override
+            public R doWork(PgSession pgSession) {
+                return pgSession.qSelectOneScalar(sql, args);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous PgSession.selectOneScalar(file, args).
+     */
+    public <R> Future<R> selectOneScalar(final String file,
+                                         final Object... args) {
+        return submit(new SessionWork<R>() {
+            @Override
+            public R doWork(PgSession pgSession) {
+                return pgSession.selectOneScalar(file, args);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous PgSession.qInsert(sql, args), committed.
+     */
+    public Future<Void> qInsert(final String sql,
+                                final Object... args) {
+        return submit(new SessionWork<Void>() {
+            @Override
+            public Void doWork(PgSession pgSession) {
+                pgSession.qInsert(sql, args);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous PgSession.insert(file, args), committed.
+     */
+    public Future<Void> insert(final String file,
+                               final Object... args) {
+        return submit(new SessionWork<Void>() {
+            @Override
+            public Void doWork(PgSession pgSession) {
+                pgSession.insert(file, args);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Runs an UpdateV Command with sql and args, and commits; the Future
+     * holds the number of rows updated.
+     */
+    public Future<Integer> qUpdate(final String sql,
+                                   final Object... args) {
+        return submit(new SessionWork<Integer>() {
+            @Override
+            public Integer doWork(PgSession pgSession) {
+                UpdateV update = Update.usingVariadicArgs()
+                        .sql(sql)
+                        .args(args)
+                        .done();
+                pgSession.run(update);
+                return update.getNumberOfRowsAffected();
+            }
+        });
+    }
+
+    /**
+     * Runs an UpdateV Command with the SQL in file (in the classpath) and
+     * args, and commits; the Future holds the number of rows updated.
+     */
+    public Future<Integer> update(final String file,
+                                  final Object... args) {
+        return submit(new SessionWork<Integer>() {
+            @Override
+            public Integer doWork(PgSession pgSession) {
+                UpdateV update = Update.usingVariadicArgs()
+                        .file(file)
+                        .args(args)
+                        .done();
+                pgSession.run(update);
+                return update.getNumberOfRowsAffected();
+            }
+        });
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public AsyncThreadMode getThreadMode() {
+        return threadMode;
+    }
+
+    /**
+     * Number of units of work that have been submitted but have not yet
+     * finished.
+     *
+     * @return
+     */
+    public int getOutstanding() {
+        return threads + queueSize - outstanding.availablePermits();
+    }
+
+    /**
+     * Stops taking new work, and waits for the work already submitted to
+     * finish.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.manniwood.cl4pg.v1.util.Str;
+
+/**
+ * The kind of threads an AsyncPgSession runs work on.
+ *
+ * @author mwood
+ *
+ */
+public enum AsyncThreadMode {
+
+    /**
+     * A fixed pool of AsyncThreads ordinary threads.
+     */
+    PLATFORM {
+        @Override
+        ExecutorService newExecutor(int threads) {
+            return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "cl4pg-async-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+    },
+
+    /**
+     * A new virtual thread for every unit of work, with at most AsyncThreads
+     * of them holding a connection at once; the rest wait, cheaply, for a
+     * connection permit. Needs a Java 21 or later runtime; on earlier
+     * runtimes, PLATFORM is used instead.
+     *
+     * <p>
+     * The PostgreSQL JDBC driver does its socket I/O in synchronized methods,
+     * and before Java 24 (JEP 491) a virtual thread blocked inside a
+     * synchronized method pins the carrier thread under it. So, on Java 21 to
+     * 23, every unit of work holding a connection also holds a carrier for
+     * each query's whole round trip, and AsyncThreads units at or above the
+     * number of carriers can leave none free for any other virtual thread in
+     * the JVM; a warning is logged when AsyncThreads is that high. Only the
+     * cheap waiting for a connection permit avoids pinning.
+     */
+    VIRTUAL {
+        @Override
+        ExecutorService newExecutor(int threads) {
+            if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR == null) {
+                log.warn("Virtual threads need Java 21 or later; running async work on platform threads instead.");
+                return PLATFORM.newExecutor(threads);
+            }
+            int carriers = carrierThreads();
+            if (JAVA_VERSION < UNPINNED_SYNCHRONIZED_VERSION && threads >= carriers) {
+                log.warn("AsyncThreads is {}, but virtual threads only have {} carrier threads. Before Java {}, "
+                         + "the PostgreSQL driver pins a carrier for every query's whole round trip, so {} queries "
+                         + "at once can leave no carrier for any other virtual thread. Lower AsyncThreads, "
+                         + "or run on Java {} or later.",
+                         threads, carriers, UNPINNED_SYNCHRONIZED_VERSION, threads, UNPINNED_SYNCHRONIZED_VERSION);
+            }
+            try {
+                return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Could not create a virtual thread executor", e);
+            }
+        }
+
+        @Override
+        boolean needsConnectionPermits() {
+            return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+        }
+    };
+
+    private final static Logger log = LoggerFactory.getLogger(AsyncThreadMode.class);
+
+    /**
+     * Found by reflection, because this library is still built for Java 7.
+     */
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findNewVirtualThreadPerTaskExecutor();
+
+    /**
+     * The first Java release whose virtual threads do not pin their carriers
+     * while blocked in synchronized methods (JEP 491).
+     */
+    private static final int UNPINNED_SYNCHRONIZED_VERSION = 24;
+
+    private static final int JAVA_VERSION = findJavaVersion();
+
+    private static Method findNewVirtualThreadPerTaskExecutor() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The feature release of this runtime, such as 7 or 21, or 0 if it cannot
+     * be told.
+     *
+     * @return
+     */
+    private static int findJavaVersion() {
+        String version = System.getProperty("java.specification.version");
+        if (Str.isNullOrEmpty(version)) {
+            return 0;
+        }
+        if (version.startsWith("1.")) {
+            version = version.substring(2);
+        }
+        try {
+            return Integer.parseInt(version);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * The number of platform threads virtual threads are scheduled on.
+     *
+     * @return
+     */
+    private static int carrierThreads() {
+        String parallelism = System.getProperty("jdk.virtualThreadScheduler.parallelism");
+        if (!Str.isNullOrEmpty(parallelism)) {
+            try {
+                return Integer.parseInt(parallelism);
+            } catch (NumberFormatException e) {
+                // the JVM ignores it too
+            }
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Whether this runtime has virtual threads.
+     *
+     * @return
+     */
+    public static boolean virtualThreadsAvailable() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Creates the executor that runs an AsyncPgSession's work.
+     *
+     * @param threads
+     * @return
+     */
+    abstract ExecutorService newExecutor(int threads);
+
+    /**
+     * Whether work needs a permit before getting a connection, because the
+     * executor itself does not limit how many units of work run at once.
+     *
+     * @return
+     */
+    boolean needsConnectionPermits() {
+        return false;
+    }
+}
@@ -66,6 +66,31 @@ public final class ConfigDefaults {
     public static final String DEFAULT_SCALAR_RESULT_SET_HANDLER_BUILDER = "com.manniwood.cl4pg.v1.resultsethandlers.GuessScalarResultSetHandlerBuilder";
     public static final String ROW_RESULT_SET_HANDLER_BUILDER_KEY = "RowResultSetHandlerBuilder";
     public static final String DEFAULT_ROW_RESULT_SET_HANDLER_BUILDER = "com.manniwood.cl4pg.v1.resultsethandlers.GuessConstructorResultSetHandlerBuilder";
+    public static final String PARSED_SQL_CACHE_SIZE_KEY = "ParsedSqlCacheSize";
+    public static final int DEFAULT_PARSED_SQL_CACHE_SIZE = 1000;
+    public static final String ROW_MAPPING_PLAN_CACHE_SIZE_KEY = "RowMappingPlanCacheSize";
+    public static final int DEFAULT_ROW_MAPPING_PLAN_CACHE_SIZE = 1000;
+    public static final String STATEMENT_CACHE_SIZE_KEY = "StatementCacheSize";
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 100;
+    public static final String FETCH_SIZE_KEY = "FetchSize";
+    public static final int DEFAULT_FETCH_SIZE = 0;
+    public static final String NOTIFICATION_MAX_POLL_MILLIS_KEY = "NotificationMaxPollMillis";
+    public static final int DEFAULT_NOTIFICATION_MAX_POLL_MILLIS = 100;
+    public static final String NOTIFICATION_IDLE_CHECK_MILLIS_KEY = "NotificationIdleCheckMillis";
+    public static final int DEFAULT_NOTIFICATION_IDLE_CHECK_MILLIS = 30000;
+    public static final String RESULT_CACHE_SIZE_KEY = "ResultCacheSize";
+    public static final int DEFAULT_RESULT_CACHE_SIZE = 0;
+    public static final String RESULT_CACHE_TTL_MILLIS_KEY = "ResultCacheTtlMillis";
+    public static final long DEFAULT_RESULT_CACHE_TTL_MILLIS = 60000;
+    public static final String RESULT_CACHE_CHANNEL_KEY = "ResultCacheChannel";
+    public static final String ASYNC_THREADS_KEY = "AsyncThreads";
+    public static final int DEFAULT_ASYNC_THREADS = 10;
+    public static final String ASYNC_QUEUE_SIZE_KEY = "AsyncQueueSize";
+    public static final int DEFAULT_ASYNC_QUEUE_SIZE = 100;
+    public static final String ASYNC_THREAD_MODE_KEY = "AsyncThreadMode";
+    public static final String DEFAULT_ASYNC_THREAD_MODE = "platform";
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_COPY_BUFFER_SIZE = 65536;
     public static final String AUTO_COMMIT_KEY = "AutoCommit";
     public static final boolean DEFAULT_AUTO_COMMIT = false;
     public static final String BINARY_TRANSFER_KEY = "binaryTransfer";
@@ -158,6 +183,17 @@ public final class ConfigDefaults {
     public static final String POOL_NAME_KEY = "poolName";
     public static final String REGISTER_MBEANS_KEY = "registerMbeans";
 
+    // PgSimpleDataSourceAdapter's built-in connection pool, which also uses
+    // the minumumIdle, maximumPoolSize, connectionTestQuery,
+    // connectionTimeout, idleTimeout, and maxLifetime keys, above
+    public static final String POOLED_KEY = "pooled";
+    public static final boolean DEFAULT_POOLED = false;
+    public static final long DEFAULT_CONNECTION_TIMEOUT = 30000;
+    public static final long DEFAULT_IDLE_TIMEOUT = 600000;
+    public static final long DEFAULT_MAX_LIFETIME = 1800000;
+    public static final String VALIDATION_TIMEOUT_KEY = "validationTimeout";
+    public static final long DEFAULT_VALIDATION_TIMEOUT = 5000;
+
     private ConfigDefaults() {
         // Utility class
     }
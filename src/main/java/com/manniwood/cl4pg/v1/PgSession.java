@@ -30,6 +30,9 @@ import java.util.List;
 
 import com.manniwood.cl4pg.v1.commands.*;
 import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
+import com.manniwood.cl4pg.v1.resultcache.ResultCache;
+import com.manniwood.cl4pg.v1.resultsethandlers.RowCallback;
+import com.manniwood.cl4pg.v1.resultsethandlers.RowCallbackResultSetHandler;
 import com.manniwood.cl4pg.v1.resultsethandlers.RowResultSetHandlerBuilder;
 import com.manniwood.cl4pg.v1.resultsethandlers.ScalarResultSetHandlerBuilder;
 import org.postgresql.PGNotification;
@@ -63,6 +66,12 @@ public class PgSession implements Closeable {
     private final ScalarResultSetHandlerBuilder scalarResultSetHandlerBuilder;
     private final RowResultSetHandlerBuilder rowResultSetHandlerBuilder;
 
+    /**
+     * The server_version_num of the server, once hasUncommittedWrites() has
+     * needed it; 0 until then.
+     */
+    private int serverVersion;
+
     public PgSession(Connection conn,
             DataSourceAdapter dataSourceAdapter,
             SqlCache sqlCache,
@@ -130,6 +139,7 @@ public class PgSession implements Closeable {
 
     private void rollback(Exception e,
                           String sql) {
+        reportSQLException(e);
         try {
             conn.rollback();
         } catch (Exception e1) {
@@ -139,6 +149,40 @@ public class PgSession implements Closeable {
         }
     }
 
+    /**
+     * Statements from the StatementCache run on the physical connection, so
+     * their SQLExceptions never pass through a pool's connection wrapper;
+     * hand the first one in e's causes to the DataSourceAdapter, so that a
+     * pool can still retire a broken connection.
+     *
+     * @param e
+     */
+    private void reportSQLException(Exception e) {
+        Throwable t = e;
+        while (t != null && !(t instanceof SQLException)) {
+            t = t.getCause();
+        }
+        if (t == null) {
+            return;
+        }
+        dataSourceAdapter.checkException(conn, (SQLException) t);
+    }
+
+    /**
+     * Does for a RowIterator what run() does when a Command fails: rolls back,
+     * and turns e into a Cl4pgException (or one of its children) for the
+     * caller to throw.
+     *
+     * @param e
+     * @param sql
+     * @return
+     */
+    Cl4pgException rollbackAndConvert(Exception e,
+                                      String sql) {
+        rollback(e, sql);
+        return createPg4jException(e, sql);
+    }
+
     /**
      * Examine an Exception and use the exceptionConverter to return either a
      * Cl4pgException, or a more specific sub-class of Cl4pgException.
@@ -187,6 +231,18 @@ public class PgSession implements Closeable {
         run(Notify.config().channel(channel).payload(payload).done());
     }
 
+    /**
+     * Convenience method that calls a NotifyAll Command, sending the
+     * notification for each channel and payload pair in one round trip.
+     *
+     * @param channels
+     * @param payloads
+     */
+    public void pgNotifyAll(List<String> channels,
+                            List<String> payloads) {
+        run(NotifyAll.config().notifications(channels, payloads).done());
+    }
+
     /**
      * Convenience method that calls a Listen Command.
      *
@@ -246,6 +302,123 @@ public class PgSession implements Closeable {
                 .done());
     }
 
+    /**
+     * Convenience method that calls a CopyBeansIn Command, copying args into
+     * the database as text-format copy data, one row per bean, with no
+     * intermediate file. Returns the number of rows copied.
+     *
+     * @param args
+     * @param sql
+     *            a copy command, such as "copy users (id, name) from stdin"
+     * @param row
+     *            the bean getters for each column, such as
+     *            "#{getId}, #{getName}"
+     */
+    public <A> long qCopyIn(Iterable<A> args,
+                            String sql,
+                            String row) {
+        return qCopyIn(args, sql, row, CopyFormat.TEXT);
+    }
+
+    /**
+     * Convenience method that calls a CopyBeansIn Command, copying args into
+     * the database as copy data of the given format, which must match the
+     * format in the copy command. Returns the number of rows copied.
+     */
+    public <A> long qCopyIn(Iterable<A> args,
+                            String sql,
+                            String row,
+                            CopyFormat format) {
+        CopyBeansIn<A> copy = CopyBeansIn.<A> config()
+                .sql(sql)
+                .row(row)
+                .args(args)
+                .format(format)
+                .done();
+        run(copy);
+        return copy.getRowCount();
+    }
+
+    /**
+     * Convenience method that calls a CopyBeansIn Command, using a file in
+     * the classpath for the copy command. Returns the number of rows copied.
+     */
+    public <A> long copyIn(Iterable<A> args,
+                           String file,
+                           String row,
+                           CopyFormat format) {
+        CopyBeansIn<A> copy = CopyBeansIn.<A> config()
+                .file(file)
+                .row(row)
+                .args(args)
+                .format(format)
+                .done();
+        run(copy);
+        return copy.getRowCount();
+    }
+
+    /**
+     * Convenience method that calls a CopyBeansOut Command, returning one
+     * bean per row of a binary-format copy command.
+     *
+     * @param sql
+     *            a binary copy command, such as
+     *            "copy (select id, name from users) to stdout binary"
+     * @param row
+     *            the bean setters for each column, such as
+     *            "#{setId}, #{setName}"
+     * @param returnType
+     */
+    public <R> List<R> qCopyOut(String sql,
+                                String row,
+                                Class<R> returnType) {
+        CopyBeansOut<R> copy = CopyBeansOut.<R> config()
+                .sql(sql)
+                .row(row)
+                .returnType(returnType)
+                .done();
+        run(copy);
+        return copy.getList();
+    }
+
+    /**
+     * Convenience method that calls a CopyBeansOut Command, handing one bean
+     * per row of a binary-format copy command to callback as each row
+     * arrives. Returns the number of rows copied.
+     */
+    public <R> long qCopyOutEach(String sql,
+                                 String row,
+                                 Class<R> returnType,
+                                 RowCallback<R> callback) {
+        CopyBeansOut<R> copy = CopyBeansOut.<R> config()
+                .sql(sql)
+                .row(row)
+                .returnType(returnType)
+                .callback(callback)
+                .done();
+        run(copy);
+        return copy.getRowCount();
+    }
+
+    /**
+     * Convenience method that calls a CopyBeansOut Command, using a file in
+     * the classpath for the copy command, handing one bean per row to
+     * callback as each row arrives. Returns the number of rows copied.
+     */
+    public <R> long copyOutEach(String file,
+                                String row,
+                                Class<R> returnType,
+                                RowCallback<R> callback) {
+        CopyBeansOut<R> copy = CopyBeansOut.<R> config()
+                .file(file)
+                .row(row)
+                .returnType(returnType)
+                .callback(callback)
+                .done();
+        run(copy);
+        return copy.getRowCount();
+    }
+
     /**
      * Convenience method that calls a DDL Command.
      *
@@ -287,6 +460,59 @@ public class PgSession implements Closeable {
                 .done());
     }
 
+    /**
+     * Convenience method that calls an Insert Command once for each bean in
+     * args, sending the beans to the server in JDBC batches.
+     */
+    public <A> BatchResult qInsertAll(Iterable<A> args,
+                                      String sql) {
+        return qInsertAll(args, sql, ConfigDefaults.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Convenience method that calls an Insert Command once for each bean in
+     * args, sending the beans to the server in JDBC batches of batchSize
+     * beans.
+     */
+    public <A> BatchResult qInsertAll(Iterable<A> args,
+                                      String sql,
+                                      int batchSize) {
+        InsertB<A> insert = Insert.<A> usingBeanArg()
+                .sql(sql)
+                .args(args)
+                .batchSize(batchSize)
+                .done();
+        run(insert);
+        return insert.getBatchResult();
+    }
+
+    /**
+     * Convenience method that calls an Insert Command, using a file in the
+     * classpath, once for each bean in args, sending the beans to the server
+     * in JDBC batches.
+     */
+    public <A> BatchResult insertAll(Iterable<A> args,
+                                     String file) {
+        return insertAll(args, file, ConfigDefaults.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Convenience method that calls an Insert Command, using a file in the
+     * classpath, once for each bean in args, sending the beans to the server
+     * in JDBC batches of batchSize beans.
+     */
+    public <A> BatchResult insertAll(Iterable<A> args,
+                                     String file,
+                                     int batchSize) {
+        InsertB<A> insert = Insert.<A> usingBeanArg()
+                .file(file)
+                .args(args)
+                .batchSize(batchSize)
+                .done();
+        run(insert);
+        return insert.getBatchResult();
+    }
+
     /**
      * Convenience method that calls an Insert Command using variadic args.
      */
@@ -346,6 +572,80 @@ public class PgSession implements Closeable {
         return handler.getList();
     }
 
+    /**
+     * Convenience method that calls a Select Command using variadic args, which
+     * uses the names of the returned columns to guess the constructor for the
+     * returned beans, and hands each bean to callback as it is read, instead of
+     * returning a list. Returns the number of rows handed to callback.
+     */
+    public <R> long qSelectEach(String sql,
+                                Class<R> returnClass,
+                                RowCallback<R> callback,
+                                Object... args) {
+        return qSelectEach(sql, returnClass, dataSourceAdapter.getFetchSize(), callback, args);
+    }
+
+    /**
+     * Convenience method that calls a Select Command using variadic args, which
+     * uses the names of the returned columns to guess the constructor for the
+     * returned beans, and hands each bean to callback as it is read, instead of
+     * returning a list. Returns the number of rows handed to callback.
+     * Rows are fetched from the server fetchSize rows at a time, using a
+     * cursor.
+     */
+    public <R> long qSelectEach(String sql,
+                                Class<R> returnClass,
+                                int fetchSize,
+                                RowCallback<R> callback,
+                                Object... args) {
+        RowCallbackResultSetHandler<R> handler = new RowCallbackResultSetHandler<R>(rowResultSetHandlerBuilder.build(returnClass), callback);
+        run(Select.<R> usingVariadicArgs()
+                .sql(sql)
+                .args(args)
+                .fetchSize(fetchSize)
+                .resultSetHandler(handler)
+                .done());
+        return handler.getRowCount();
+    }
+
+    /**
+     * Convenience method that calls a Select Command using a bean to populate
+     * the args, which uses the names of the returned columns to guess the
+     * constructor for the returned beans, and hands each bean to callback as it
+     * is read, instead of returning a list. Returns the number of rows handed
+     * to callback.
+     */
+    public <R, A> long qSelectEach(A arg,
+                                   String sql,
+                                   Class<R> returnClass,
+                                   RowCallback<R> callback) {
+        return qSelectEach(arg, sql, returnClass, dataSourceAdapter.getFetchSize(), callback);
+    }
+
+    /**
+     * Convenience method that calls a Select Command using a bean to populate
+     * the args, which uses the names of the returned columns to guess the
+     * constructor for the returned beans, and hands each bean to callback as it
+     * is read, instead of returning a list. Returns the number of rows handed
+     * to callback.
+     * Rows are fetched from the server fetchSize rows at a time, using a
+     * cursor.
+     */
+    public <R, A> long qSelectEach(A arg,
+                                   String sql,
+                                   Class<R> returnClass,
+                                   int fetchSize,
+                                   RowCallback<R> callback) {
+        RowCallbackResultSetHandler<R> handler = new RowCallbackResultSetHandler<R>(rowResultSetHandlerBuilder.build(returnClass), callback);
+        run(Select.<R, A> usingBeanArg()
+                .sql(sql)
+                .arg(arg)
+                .fetchSize(fetchSize)
+                .resultSetHandler(handler)
+                .done());
+        return handler.getRowCount();
+    }
+
     /**
      * Convenience method that calls a Select Command using variadic args, which
      * uses the names of the returned columns to guess the constructor for the
@@ -487,6 +787,82 @@ public class PgSession implements Closeable {
         return handler.getList();
     }
 
+    /**
+     * Convenience method that calls a Select Command using variadic args and a
+     * file in the classpath, which uses the names of the returned columns to
+     * guess the constructor for the returned beans, and hands each bean to
+     * callback as it is read, instead of returning a list. Returns the number
+     * of rows handed to callback.
+     */
+    public <R> long selectEach(String file,
+                               Class<R> returnClass,
+                               RowCallback<R> callback,
+                               Object... args) {
+        return selectEach(file, returnClass, dataSourceAdapter.getFetchSize(), callback, args);
+    }
+
+    /**
+     * Convenience method that calls a Select Command using variadic args and a
+     * file in the classpath, which uses the names of the returned columns to
+     * guess the constructor for the returned beans, and hands each bean to
+     * callback as it is read, instead of returning a list. Returns the number
+     * of rows handed to callback.
+     * Rows are fetched from the server fetchSize rows at a time, using a
+     * cursor.
+     */
+    public <R> long selectEach(String file,
+                               Class<R> returnClass,
+                               int fetchSize,
+                               RowCallback<R> callback,
+                               Object... args) {
+        RowCallbackResultSetHandler<R> handler = new RowCallbackResultSetHandler<R>(rowResultSetHandlerBuilder.build(returnClass), callback);
+        run(Select.<R> usingVariadicArgs()
+                .file(file)
+                .args(args)
+                .fetchSize(fetchSize)
+                .resultSetHandler(handler)
+                .done());
+        return handler.getRowCount();
+    }
+
+    /**
+     * Convenience method that calls a Select Command using a bean to populate
+     * the args and a file in the classpath, which uses the names of the
+     * returned columns to guess the constructor for the returned beans, and
+     * hands each bean to callback as it is read, instead of returning a list.
+     * Returns the number of rows handed to callback.
+     */
+    public <R, A> long selectEach(A arg,
+                                  String file,
+                                  Class<R> returnClass,
+                                  RowCallback<R> callback) {
+        return selectEach(arg, file, returnClass, dataSourceAdapter.getFetchSize(), callback);
+    }
+
+    /**
+     * Convenience method that calls a Select Command using a bean to populate
+     * the args and a file in the classpath, which uses the names of the
+     * returned columns to guess the constructor for the returned beans, and
+     * hands each bean to callback as it is read, instead of returning a list.
+     * Returns the number of rows handed to callback.
+     * Rows are fetched from the server fetchSize rows at a time, using a
+     * cursor.
+     */
+    public <R, A> long selectEach(A arg,
+                                  String file,
+                                  Class<R> returnClass,
+                                  int fetchSize,
+                                  RowCallback<R> callback) {
+        RowCallbackResultSetHandler<R> handler = new RowCallbackResultSetHandler<R>(rowResultSetHandlerBuilder.build(returnClass), callback);
+        run(Select.<R, A> usingBeanArg()
+                .file(file)
+                .arg(arg)
+                .fetchSize(fetchSize)
+                .resultSetHandler(handler)
+                .done());
+        return handler.getRowCount();
+    }
+
     /**
      * Convenience method that calls a Select Command using variadic args and a
      * file in the classpath, which uses the names of the returned columns to
@@ -556,6 +932,123 @@ public class PgSession implements Closeable {
         return list.get(0);
     }
 
+    /**
+     * Like qSelect(sql, returnClass, args), but answered from the
+     * DataSourceAdapter's ResultCache when the same sql, returnClass and args
+     * have been selected before, and the result has not since been
+     * invalidated or expired. tags (comma-separated; typically the names of
+     * the tables the query reads) are what invalidate the result. If the
+     * DataSourceAdapter has no ResultCache, this is just qSelect. The
+     * returned list is shared, and so cannot be modified.
+     *
+     * <p>
+     * A result loaded while this session's transaction has uncommitted writes
+     * could include them, so it is returned but not cached. A result that is
+     * already cached, though, knows nothing about this transaction's writes.
+     */
+    public <R> List<R> qSelectCached(String tags,
+                                     final String sql,
+                                     final Class<R> returnClass,
+                                     final Object... args) {
+        ResultCache resultCache = dataSourceAdapter.getResultCache();
+        if (resultCache == null) {
+            return qSelect(sql, returnClass, args);
+        }
+        return resultCache.get(sql, returnClass, args, tags, new ResultCache.Loader<R>() {
+            @Override
+            public List<R> load() {
+                return qSelect(sql, returnClass, args);
+            }
+
+            @Override
+            public boolean mayCache() {
+                return !hasUncommittedWrites();
+            }
+        });
+    }
+
+    /**
+     * The server_version_num of PostgreSQL 10, the first version with
+     * txid_current_if_assigned().
+     */
+    private static final int TXID_CURRENT_IF_ASSIGNED_VERSION = 100000;
+
+    /**
+     * Whether this session's transaction has written anything that it has not
+     * yet committed: only a transaction that has written has been assigned a
+     * transaction id. Before PostgreSQL 10, that id has to come from
+     * pg_stat_activity, which is read into a snapshot that lasts until the
+     * end of the transaction, so the snapshot is thrown away first; otherwise
+     * a write made after an earlier check would go unseen.
+     *
+     * @return
+     */
+    private boolean hasUncommittedWrites() {
+        boolean autoCommit;
+        try {
+            autoCommit = conn.getAutoCommit();
+        } catch (SQLException e) {
+            throw new Cl4pgSqlException("Could not tell whether the connection is in autocommit mode", e);
+        }
+        if (autoCommit) {
+            return false;
+        }
+        if (serverVersion == 0) {
+            Integer version = qSelectOneScalar("select current_setting('server_version_num')::int");
+            serverVersion = version;
+        }
+        if (serverVersion >= TXID_CURRENT_IF_ASSIGNED_VERSION) {
+            return qSelectOneScalar("select txid_current_if_assigned()") != null;
+        }
+        qDdl("select pg_stat_clear_snapshot()");
+        return qSelectOneScalar("select backend_xid from pg_stat_activity where pid = pg_backend_pid()") != null;
+    }
+
+    /**
+     * Like select(file, returnClass, args), but answered from the
+     * DataSourceAdapter's ResultCache; see qSelectCached().
+     */
+    public <R> List<R> selectCached(String tags,
+                                    String file,
+                                    Class<R> returnClass,
+                                    Object... args) {
+        return qSelectCached(tags, sqlCache.get(file), returnClass, args);
+    }
+
+    /**
+     * Like qSelectScalar(sql, args), but answered from the
+     * DataSourceAdapter's ResultCache; see qSelectCached().
+     */
+    public <R> List<R> qSelectScalarCached(String tags,
+                                           final String sql,
+                                           final Object... args) {
+        ResultCache resultCache = dataSourceAdapter.getResultCache();
+        if (resultCache == null) {
+            return qSelectScalar(sql, args);
+        }
+        return resultCache.get(sql, null, args, tags, new ResultCache.Loader<R>() {
+            @Override
+            public List<R> load() {
+                return qSelectScalar(sql, args);
+            }
+
+            @Override
+            public boolean mayCache() {
+                return !hasUncommittedWrites();
+            }
+        });
+    }
+
+    /**
+     * Like selectScalar(file, args), but answered from the
+     * DataSourceAdapter's ResultCache; see qSelectCached().
+     */
+    public <R> List<R> selectScalarCached(String tags,
+                                          String file,
+                                          Object... args) {
+        return qSelectScalarCached(tags, sqlCache.get(file), args);
+    }
+
     /**
      * Convenience method that calls a StoredProcInOut Command using a single
      * bean argument and a file in the classpath. The names of the getters and
@@ -623,6 +1116,159 @@ public class PgSession implements Closeable {
         return handler.getList();
     }
 
+    /**
+     * Returns a RowIterator that can be used as the ResultSetHandler of a
+     * Select or CallStoredProcRefCursor Command, so that, after the Command
+     * is run, its rows can be read one at a time, using mapper to turn each
+     * row into an object of type R. The RowIterator must be closed.
+     *
+     * @param mapper
+     * @return
+     */
+    public <R> RowIterator<R> rowIterator(ResultSetHandler<R> mapper) {
+        return new RowIterator<R>(this, mapper);
+    }
+
+    /**
+     * Convenience method that calls a Select Command using variadic args, which
+     * uses the names of the returned columns to guess the constructor for the
+     * returned beans, and returns an iterator that reads and maps each row
+     * only when asked for it. The iterator must be closed.
+     */
+    public <R> RowIterator<R> qSelectIterator(String sql,
+                                              Class<R> returnClass,
+                                              Object... args) {
+        RowIterator<R> iterator = rowIterator(rowResultSetHandlerBuilder.build(returnClass));
+        run(Select.<R> usingVariadicArgs()
+                .sql(sql)
+                .args(args)
+                .resultSetHandler(iterator)
+                .done());
+        return iterator;
+    }
+
+    /**
+     * Convenience method that calls a Select Command using a bean to populate
+     * the args, which uses the names of the returned columns to guess the
+     * constructor for the returned beans, and returns an iterator that reads
+     * and maps each row only when asked for it. The iterator must be closed.
+     */
+    public <R, A> RowIterator<R> qSelectIterator(A arg,
+                                                 String sql,
+                                                 Class<R> returnClass) {
+        RowIterator<R> iterator = rowIterator(rowResultSetHandlerBuilder.build(returnClass));
+        run(Select.<R, A> usingBeanArg()
+                .sql(sql)
+                .arg(arg)
+                .resultSetHandler(iterator)
+                .done());
+        return iterator;
+    }
+
+    /**
+     * Convenience method that calls a Select Command using variadic args and a
+     * file in the classpath, which uses the names of the returned columns to
+     * guess the constructor for the returned beans, and returns an iterator
+     * that reads and maps each row only when asked for it. The iterator must
+     * be closed.
+     */
+    public <R> RowIterator<R> selectIterator(String file,
+                                             Class<R> returnClass,
+                                             Object... args) {
+        RowIterator<R> iterator = rowIterator(rowResultSetHandlerBuilder.build(returnClass));
+        run(Select.<R> usingVariadicArgs()
+                .file(file)
+                .args(args)
+                .resultSetHandler(iterator)
+                .done());
+        return iterator;
+    }
+
+    /**
+     * Convenience method that calls a Select Command using a bean to populate
+     * the args and a file in the classpath, which uses the names of the
+     * returned columns to guess the constructor for the returned beans, and
+     * returns an iterator that reads and maps each row only when asked for it.
+     * The iterator must be closed.
+     */
+    public <R, A> RowIterator<R> selectIterator(A arg,
+                                                String file,
+                                                Class<R> returnClass) {
+        RowIterator<R> iterator = rowIterator(rowResultSetHandlerBuilder.build(returnClass));
+        run(Select.<R, A> usingBeanArg()
+                .file(file)
+                .arg(arg)
+                .resultSetHandler(iterator)
+                .done());
+        return iterator;
+    }
+
+    /**
+     * Convenience method that returns a Publisher of the rows of a Select
+     * Command using variadic args, which uses the names of the returned
+     * columns to guess the constructor for the returned beans. The Select is
+     * only run once the Subscriber requests rows, and rows are fetched from a
+     * cursor as they are requested. This PgSession must not be used for
+     * anything else until the Subscriber is done or has cancelled.
+     */
+    public <R> RowPublisher<R> qSelectPublisher(String sql,
+                                                Class<R> returnClass,
+                                                Object... args) {
+        return new RowPublisher<R>(this, rowResultSetHandlerBuilder.build(returnClass), sql, null, args);
+    }
+
+    /**
+     * Convenience method that returns a Publisher of the rows of a Select
+     * Command using variadic args and a file in the classpath, which uses the
+     * names of the returned columns to guess the constructor for the returned
+     * beans. The Select is only run once the Subscriber requests rows, and
+     * rows are fetched from a cursor as they are requested. This PgSession
+     * must not be used for anything else until the Subscriber is done or has
+     * cancelled.
+     */
+    public <R> RowPublisher<R> selectPublisher(String file,
+                                               Class<R> returnClass,
+                                               Object... args) {
+        return new RowPublisher<R>(this, rowResultSetHandlerBuilder.build(returnClass), null, file, args);
+    }
+
+    /**
+     * Convenience method that calls a CallStoredProcRefCursor Command using
+     * variadic args, which uses the names of the returned columns to guess the
+     * constructor for the returned beans, and returns an iterator that reads
+     * and maps each row only when asked for it. The iterator must be closed.
+     */
+    public <R> RowIterator<R> qProcSelectIterator(String sql,
+                                                  Class<R> returnClass,
+                                                  Object... args) {
+        RowIterator<R> iterator = rowIterator(rowResultSetHandlerBuilder.build(returnClass));
+        run(CallStoredProcRefCursor.<R> usingVariadicArgs()
+                .sql(sql)
+                .args(args)
+                .resultSetHandler(iterator)
+                .done());
+        return iterator;
+    }
+
+    /**
+     * Convenience method that calls a CallStoredProcRefCursor Command using an
+     * argument bean to populate the arguments, which uses the names of the
+     * returned columns to guess the constructor for the returned beans, and
+     * returns an iterator that reads and maps each row only when asked for it.
+     * The iterator must be closed.
+     */
+    public <R, A> RowIterator<R> qProcSelectIterator(A arg,
+                                                     String sql,
+                                                     Class<R> returnClass) {
+        RowIterator<R> iterator = rowIterator(rowResultSetHandlerBuilder.build(returnClass));
+        run(CallStoredProcRefCursor.<R, A> usingBeanArg()
+                .sql(sql)
+                .arg(arg)
+                .resultSetHandler(iterator)
+                .done());
+        return iterator;
+    }
+
     /**
      * Convenience method that calls a CallStoredProcRefCursor Command using variadic args, which
      * uses the names of the returned columns to guess the constructor for the
@@ -0,0 +1,194 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1;
+
+import java.io.Closeable;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.manniwood.cl4pg.v1.commands.Command;
+import com.manniwood.cl4pg.v1.exceptions.Cl4pgFailedCleanupException;
+import com.manniwood.cl4pg.v1.resultsethandlers.DeferredResultSetHandler;
+import com.manniwood.cl4pg.v1.resultsethandlers.ResultSetHandler;
+import com.manniwood.cl4pg.v1.typeconverters.TypeConverterStore;
+
+/**
+ * Iterates lazily over the rows of a Select or CallStoredProcRefCursor
+ * command: a row is only read from the ResultSet, and turned into an object
+ * of type R by the wrapped ResultSetHandler, when next() is called. Consumers
+ * that stop early therefore do not pay for the rows they never look at.
+ *
+ * <p>
+ * The command's resources (its statement, and with it, the ResultSet) stay
+ * open until the iterator is exhausted or closed, so always close a
+ * RowIterator, preferably using try-with-resources. If reading a row fails,
+ * the PgSession's connection is rolled back, the iterator is closed, and the
+ * failure is rethrown as a Cl4pgException, just as PgSession.run() would do.
+ *
+ * <p>
+ * The wrapped handler's getList() must return the handler's own, modifiable
+ * list, as all of the ListHandlers that come with Cl4pg do.
+ *
+ * @author mwood
+ *
+ * @param <R>
+ */
+public class RowIterator<R> implements DeferredResultSetHandler<R>, Iterator<R>, Closeable {
+
+    private final PgSession pgSession;
+    private final ResultSetHandler<R> mapper;
+    private ResultSet rs;
+    private Command command;
+    private boolean attached;
+    private boolean rowPending;
+
+    RowIterator(PgSession pgSession,
+                ResultSetHandler<R> mapper) {
+        this.pgSession = pgSession;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public void init(TypeConverterStore converterStore,
+                     ResultSet rs) throws SQLException {
+        mapper.init(converterStore, rs);
+        this.rs = rs;
+    }
+
+    @Override
+    public void attach(Command command) {
+        this.command = command;
+        attached = true;
+    }
+
+    @Override
+    public boolean isAttached() {
+        return attached;
+    }
+
+    /**
+     * Only called by commands that do not support deferred handlers.
+     */
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+        mapper.processRow(rs);
+    }
+
+    /**
+     * Returns an empty list; rows come from next() instead.
+     */
+    @Override
+    public List<R> getList() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (rowPending) {
+            return true;
+        }
+        if (!attached) {
+            return false;
+        }
+        try {
+            rowPending = rs.next();
+        } catch (SQLException e) {
+            throw fail(e);
+        }
+        if (!rowPending) {
+            close();
+        }
+        return rowPending;
+    }
+
+    @Override
+    public R next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        rowPending = false;
+        List<R> rows = mapper.getList();
+        try {
+            mapper.processRow(rs);
+        } catch (SQLException | RuntimeException e) {
+            throw fail(e);
+        }
+        R row = rows.get(rows.size() - 1);
+        rows.clear();
+        return row;
+    }
+
+    /**
+     * Sets how many rows the next trip to the server's cursor fetches. Does
+     * nothing once the iterator is exhausted or closed.
+     *
+     * @param rows
+     */
+    void setFetchSize(int rows) {
+        if (!attached) {
+            return;
+        }
+        try {
+            rs.setFetchSize(rows);
+        } catch (SQLException e) {
+            throw fail(e);
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Rows cannot be removed from a RowIterator.");
+    }
+
+    /**
+     * Releases the command's resources. Safe to call more than once.
+     */
+    @Override
+    public void close() {
+        if (!attached) {
+            return;
+        }
+        attached = false;
+        rowPending = false;
+        try {
+            command.close();
+        } catch (Exception e) {
+            throw new Cl4pgFailedCleanupException("Could not clean up after running the following SQL command; resources may have been left open! SQL command is:\n"
+                                                          + command.getSQL(),
+                                                  e);
+        }
+    }
+
+    private RuntimeException fail(Exception e) {
+        try {
+            return pgSession.rollbackAndConvert(e, command.getSQL());
+        } finally {
+            close();
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.manniwood.cl4pg.v1.commands.Select;
+import com.manniwood.cl4pg.v1.commands.SelectV;
+import com.manniwood.cl4pg.v1.flow.Publisher;
+import com.manniwood.cl4pg.v1.flow.Subscriber;
+import com.manniwood.cl4pg.v1.flow.Subscription;
+import com.manniwood.cl4pg.v1.resultsethandlers.ResultSetHandler;
+
+/**
+ * Publishes the rows of a Select, reading them from a server-side cursor
+ * only as fast as its Subscriber requests them. Nothing is sent to the
+ * server until the first request(); each trip to the cursor then fetches as
+ * many rows as are outstanding (up to maxFetchSize), so a slow Subscriber
+ * holds the rows back in PostgreSQL instead of in a list in memory.
+ *
+ * <p>
+ * A RowPublisher runs its Select on its PgSession's connection, so it takes
+ * one Subscriber only, and the PgSession must not be used for anything else
+ * until the Subscriber has been sent onComplete() or onError(), or has
+ * cancelled. Like any cursor, the rows are read inside a transaction, which
+ * is ended when the rows run out or the subscription is cancelled if the
+ * connection was in autocommit mode, and otherwise left for the caller to
+ * commit or roll back. If reading a row fails, the connection is rolled
+ * back and the Subscriber is sent onError() with the Cl4pgException.
+ *
+ * <p>
+ * Rows are read and sent on whatever thread calls request() (or, while rows
+ * are being sent, on the thread already sending them), unless deliverOn()
+ * names an Executor to read and send them instead, which is the better
+ * choice when request() is called from an event loop that must not block.
+ * Either way, only one thread at a time uses the connection.
+ *
+ * @author mwood
+ *
+ * @param <R>
+ */
+public class RowPublisher<R> implements Publisher<R> {
+
+    private final static Logger log = LoggerFactory.getLogger(RowPublisher.class);
+
+    public static final int DEFAULT_MAX_FETCH_SIZE = 1000;
+
+    private final PgSession pgSession;
+    private final ResultSetHandler<R> mapper;
+    private final String sql;
+    private final String file;
+    private final Object[] args;
+    private final AtomicBoolean subscribed = new AtomicBoolean(false);
+
+    private volatile Executor executor;
+    private volatile int maxFetchSize = DEFAULT_MAX_FETCH_SIZE;
+
+    RowPublisher(PgSession pgSession,
+                 ResultSetHandler<R> mapper,
+                 String sql,
+                 String file,
+                 Object[] args) {
+        this.pgSession = pgSession;
+        this.mapper = mapper;
+        this.sql = sql;
+        this.file = file;
+        this.args = args;
+    }
+
+    /**
+     * Reads and sends rows using executor instead of the thread that calls
+     * request(). Must be called before subscribe().
+     *
+     * @param executor
+     * @return
+     */
+    public RowPublisher<R> deliverOn(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * The most rows to fetch from the cursor in one trip to the server, no
+     * matter how many are requested. Must be called before subscribe().
+     *
+     * @param maxFetchSize
+     * @return
+     */
+    public RowPublisher<R> maxFetchSize(int maxFetchSize) {
+        if (maxFetchSize < 1) {
+            throw new IllegalArgumentException("maxFetchSize must be at least 1, not " + maxFetchSize);
+        }
+        this.maxFetchSize = maxFetchSize;
+        return this;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super R> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber must not be null");
+        }
+        RowSubscription<R> subscription = new RowSubscription<R>(this, subscriber);
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(subscription);
+            subscriber.onError(new IllegalStateException("A RowPublisher can only have one Subscriber."));
+            return;
+        }
+        subscriber.onSubscribe(subscription);
+    }
+
+    private RowIterator<R> runSelect(int fetchSize) {
+        RowIterator<R> iterator = pgSession.rowIterator(mapper);
+        SelectV.Builder<R> builder = Select.<R> usingVariadicArgs();
+        if (sql != null) {
+            builder.sql(sql);
+        } else {
+            builder.file(file);
+        }
+        pgSession.run(builder.args(args)
+                .fetchSize(fetchSize)
+                .resultSetHandler(iterator)
+                .done());
+        return iterator;
+    }
+
+    /**
+     * Sends rows while there is demand for them. Only one thread at a time
+     * runs drain(); a request() or cancel() that arrives while another thread
+     * is draining just bumps the work counter, and the draining thread goes
+     * around again, so that a Subscriber calling request() from onNext()
+     * does not recurse.
+     */
+    private static final class RowSubscription<R> implements Subscription, Runnable {
+
+        private final RowPublisher<R> publisher;
+        private final Subscriber<? super R> subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger workInProgress = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable badRequest;
+
+        /**
+         * Only touched by the draining thread.
+         */
+        private RowIterator<R> iterator;
+        private boolean done;
+
+        private RowSubscription(RowPublisher<R> publisher,
+                                Subscriber<? super R> subscriber) {
+            this.publisher = publisher;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n < 1) {
+                badRequest = new IllegalArgumentException("Must request at least 1 row, not " + n);
+            } else {
+                long current;
+                long next;
+                do {
+                    current = requested.get();
+                    if (current == Long.MAX_VALUE) {
+                        break;
+                    }
+                    next = current + n;
+                    if (next < 0) {
+                        next = Long.MAX_VALUE;
+                    }
+                } while (!requested.compareAndSet(current, next));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (workInProgress.getAndIncrement() != 0) {
+                return;
+            }
+            Executor executor = publisher.executor;
+            if (executor == null) {
+                run();
+            } else {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                drain();
+                missed = workInProgress.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            if (done) {
+                return;
+            }
+            if (cancelled) {
+                finish();
+                return;
+            }
+            if (badRequest != null) {
+                finish();
+                subscriber.onError(badRequest);
+                return;
+            }
+            long wanted = requested.get();
+            long sent = 0;
+            try {
+                while (sent != wanted && !cancelled) {
+                    int fetchSize = (int) Math.min(wanted - sent, publisher.maxFetchSize);
+                    if (iterator == null) {
+                        iterator = publisher.runSelect(fetchSize);
+                    } else {
+                        // Only used the next time the ResultSet runs out
+                        // of fetched rows.
+                        iterator.setFetchSize(fetchSize);
+                    }
+                    if (!iterator.hasNext()) {
+                        done = true;
+                        subscriber.onComplete();
+                        return;
+                    }
+                    R row = iterator.next();
+                    subscriber.onNext(row);
+                    sent++;
+                }
+            } catch (RuntimeException e) {
+                // RowIterator has already rolled back and closed itself if
+                // the failure was in reading a row.
+                finish();
+                subscriber.onError(e);
+                return;
+            }
+            if (cancelled) {
+                finish();
+                return;
+            }
+            if (wanted != Long.MAX_VALUE) {
+                requested.addAndGet(-sent);
+            }
+        }
+
+        private void finish() {
+            done = true;
+            if (iterator == null) {
+                return;
+            }
+            try {
+                iterator.close();
+            } catch (RuntimeException e) {
+                log.error("Could not close RowPublisher's RowIterator", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.commands;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of running a bean-arg Insert or Update Command over a collection
+ * of beans using JDBC batches: the update counts of every batch, and how long
+ * the whole thing took.
+ *
+ * @author mwood
+ *
+ */
+public class BatchResult {
+
+    private final List<int[]> updateCounts;
+    private final long rowCount;
+    private final long rowsAffected;
+    private final long elapsedNanos;
+
+    BatchResult(List<int[]> updateCounts,
+                long rowCount,
+                long rowsAffected,
+                long elapsedNanos) {
+        this.updateCounts = Collections.unmodifiableList(updateCounts);
+        this.rowCount = rowCount;
+        this.rowsAffected = rowsAffected;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * The update counts returned by executeBatch(), one array per batch.
+     *
+     * @return
+     */
+    public List<int[]> getUpdateCounts() {
+        return updateCounts;
+    }
+
+    public int getBatchCount() {
+        return updateCounts.size();
+    }
+
+    /**
+     * Number of beans bound and sent to the server.
+     *
+     * @return
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Sum of all update counts.
+     *
+     * @return
+     */
+    public long getRowsAffected() {
+        return rowsAffected;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Beans bound and sent to the server per second, or 0 if no time elapsed.
+     *
+     * @return
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : rowCount * 1000000000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult [batchCount=" + getBatchCount() + ", rowCount=" + rowCount + ", rowsAffected=" + rowsAffected + ", elapsedNanos="
+               + elapsedNanos + "]";
+    }
+}
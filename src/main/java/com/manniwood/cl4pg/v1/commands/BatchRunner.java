@@ -0,0 +1,103 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.commands;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.manniwood.cl4pg.v1.typeconverters.TypeConverterStore;
+
+/**
+ * Runs the JDBC batches for the bean-arg Insert and Update Commands that are
+ * given a collection of beans.
+ *
+ * @author mwood
+ *
+ */
+final class BatchRunner {
+
+    private BatchRunner() {
+        // static methods only
+    }
+
+    /**
+     * Binds each bean in args to pstmt using getters, adding it to the
+     * current batch, and executes the batch every batchSize beans, and once
+     * more at the end for any remainder.
+     *
+     * @param pstmt
+     * @param args
+     * @param getters
+     * @param batchSize
+     * @param converterStore
+     * @return
+     * @throws SQLException
+     */
+    static <A> BatchResult execute(PreparedStatement pstmt,
+                                   Iterable<A> args,
+                                   List<String> getters,
+                                   int batchSize,
+                                   TypeConverterStore converterStore) throws SQLException {
+        long start = System.nanoTime();
+        List<int[]> updateCounts = new ArrayList<>();
+        long rowCount = 0;
+        long rowsAffected = 0;
+        int pending = 0;
+        for (A arg : args) {
+            if (getters != null && !getters.isEmpty()) {
+                converterStore.setSQLArguments(pstmt, arg, getters);
+            }
+            pstmt.addBatch();
+            rowCount++;
+            pending++;
+            if (pending == batchSize) {
+                rowsAffected += executeBatch(pstmt, updateCounts);
+                pending = 0;
+            }
+        }
+        if (pending > 0) {
+            rowsAffected += executeBatch(pstmt, updateCounts);
+        }
+        return new BatchResult(updateCounts, rowCount, rowsAffected, System.nanoTime() - start);
+    }
+
+    private static long executeBatch(PreparedStatement pstmt,
+                                     List<int[]> updateCounts) throws SQLException {
+        int[] counts = pstmt.executeBatch();
+        updateCounts.add(counts);
+        long affected = 0;
+        for (int count : counts) {
+            // Statement.SUCCESS_NO_INFO is negative; it says nothing about
+            // the number of rows affected.
+            if (count != Statement.SUCCESS_NO_INFO) {
+                affected += count;
+            }
+        }
+        return affected;
+    }
+
+}
@@ -31,10 +31,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
+import com.manniwood.cl4pg.v1.datasourceadapters.StatementCache;
 import com.manniwood.cl4pg.v1.exceptions.Cl4pgConfigException;
 import com.manniwood.cl4pg.v1.sqlparsers.InOutArg;
-import com.manniwood.cl4pg.v1.sqlparsers.SlashParserListener;
-import com.manniwood.cl4pg.v1.sqlparsers.SqlParser;
+import com.manniwood.cl4pg.v1.sqlparsers.ParsedSql;
+import com.manniwood.cl4pg.v1.sqlparsers.ParserListenerKind;
 import com.manniwood.cl4pg.v1.typeconverters.SetterAndTypeConverterAndColNum;
 import com.manniwood.cl4pg.v1.typeconverters.TypeConverterStore;
 import com.manniwood.cl4pg.v1.util.SqlCache;
@@ -56,6 +57,7 @@ public class CallStoredProcInOut<A> implements Command {
     private final String filename;
     private final A arg;
     private CallableStatement cstmt;
+    private StatementCache statementCache;
 
     private CallStoredProcInOut(Builder<A> builder) {
         this.sql = builder.sql;
@@ -73,16 +75,17 @@ public class CallStoredProcInOut<A> implements Command {
                         TypeConverterStore converterStore,
                         SqlCache sqlCache,
                         DataSourceAdapter dataSourceAdapter) throws Exception {
+        ParsedSql parsedSql;
         if (Str.isNullOrEmpty(sql)) {
             sql = sqlCache.get(filename);
+            parsedSql = sqlCache.getParsedSql(filename, ParserListenerKind.SLASH);
+        } else {
+            parsedSql = dataSourceAdapter.getParsedSqlCache().get(sql, ParserListenerKind.SLASH);
         }
 
-        SlashParserListener slashParserListener = new SlashParserListener();
-        SqlParser sqlParser = new SqlParser(slashParserListener);
-        String transformedSql = sqlParser.transform(sql);
-
-        CallableStatement cstmt = connection.prepareCall(transformedSql);
-        List<InOutArg> gettersAndSetters = slashParserListener.getArgs();
+        statementCache = dataSourceAdapter.getStatementCache();
+        cstmt = statementCache.prepareCall(connection, parsedSql.getTransformedSql());
+        List<InOutArg> gettersAndSetters = parsedSql.getInOutArgs();
 
         if (gettersAndSetters != null && !gettersAndSetters.isEmpty()) {
             converterStore.setSQLArguments(cstmt, arg, gettersAndSetters);
@@ -100,7 +103,7 @@ public class CallStoredProcInOut<A> implements Command {
     @Override
     public void close() throws Exception {
         if (cstmt != null) {
-            cstmt.close();
+            statementCache.release(cstmt);
         }
     }
 
@@ -33,11 +33,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
+import com.manniwood.cl4pg.v1.datasourceadapters.StatementCache;
 import com.manniwood.cl4pg.v1.exceptions.Cl4pgConfigException;
 import com.manniwood.cl4pg.v1.exceptions.Cl4pgSyntaxException;
+import com.manniwood.cl4pg.v1.resultsethandlers.DeferredResultSetHandler;
 import com.manniwood.cl4pg.v1.resultsethandlers.ResultSetHandler;
-import com.manniwood.cl4pg.v1.sqlparsers.SpecialFirstArgParserListener;
-import com.manniwood.cl4pg.v1.sqlparsers.SqlParser;
+import com.manniwood.cl4pg.v1.sqlparsers.ParsedSql;
+import com.manniwood.cl4pg.v1.sqlparsers.ParserListenerKind;
 import com.manniwood.cl4pg.v1.typeconverters.TypeConverterStore;
 import com.manniwood.cl4pg.v1.util.Cllctn;
 import com.manniwood.cl4pg.v1.util.SqlCache;
@@ -59,6 +61,7 @@ public class CallStoredProcRefCursorB<R, A> implements Command {
     private final ResultSetHandler<R> resultSetHandler;
     private final A arg;
     private CallableStatement cstmt;
+    private StatementCache statementCache;
 
     private CallStoredProcRefCursorB(Builder<R, A> builder) {
         this.sql = builder.sql;
@@ -77,17 +80,18 @@ public class CallStoredProcRefCursorB<R, A> implements Command {
                         TypeConverterStore converterStore,
                         SqlCache sqlCache,
                         DataSourceAdapter dataSourceAdapter) throws Exception {
+        ParsedSql parsedSql;
         if (Str.isNullOrEmpty(sql)) {
             sql = sqlCache.get(filename);
+            parsedSql = sqlCache.getParsedSql(filename, ParserListenerKind.SPECIAL_FIRST_ARG);
+        } else {
+            parsedSql = dataSourceAdapter.getParsedSqlCache().get(sql, ParserListenerKind.SPECIAL_FIRST_ARG);
         }
 
-        SpecialFirstArgParserListener specialFirstArgParserListener = new SpecialFirstArgParserListener();
-        SqlParser sqlParser = new SqlParser(specialFirstArgParserListener);
-        String transformedSql = sqlParser.transform(sql);
-
-        cstmt = connection.prepareCall(transformedSql);
-        String firstArg = specialFirstArgParserListener.getFirstArg();
-        List<String> getters = specialFirstArgParserListener.getArgs();
+        statementCache = dataSourceAdapter.getStatementCache();
+        cstmt = statementCache.prepareCall(connection, parsedSql.getTransformedSql());
+        String firstArg = parsedSql.getFirstArg();
+        List<String> getters = parsedSql.getArgs();
 
         // The first "getter" needs to be the special keyword "refcursor"
         if (Str.isNullOrEmpty(firstArg)) {
@@ -112,6 +116,11 @@ public class CallStoredProcRefCursorB<R, A> implements Command {
         cstmt.execute();
         ResultSet rs = (ResultSet) cstmt.getObject(1);
         resultSetHandler.init(converterStore, rs);
+        if (resultSetHandler instanceof DeferredResultSetHandler) {
+            // The handler reads the rows, and closes this command, itself.
+            ((DeferredResultSetHandler<R>) resultSetHandler).attach(this);
+            return;
+        }
         while (rs.next()) {
             resultSetHandler.processRow(rs);
         }
@@ -119,8 +128,13 @@ public class CallStoredProcRefCursorB<R, A> implements Command {
 
     @Override
     public void close() throws Exception {
+        if (resultSetHandler instanceof DeferredResultSetHandler
+                && ((DeferredResultSetHandler<R>) resultSetHandler).isAttached()) {
+            // Still being read; the handler will call close() again later.
+            return;
+        }
         if (cstmt != null) {
-            cstmt.close();
+            statementCache.release(cstmt);
         }
     }
 
@@ -27,19 +27,19 @@ import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.Types;
-import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
+import com.manniwood.cl4pg.v1.datasourceadapters.StatementCache;
 import com.manniwood.cl4pg.v1.exceptions.Cl4pgConfigException;
 import com.manniwood.cl4pg.v1.exceptions.Cl4pgSyntaxException;
+import com.manniwood.cl4pg.v1.resultsethandlers.DeferredResultSetHandler;
 import com.manniwood.cl4pg.v1.resultsethandlers.ResultSetHandler;
-import com.manniwood.cl4pg.v1.sqlparsers.SpecialFirstArgParserListener;
-import com.manniwood.cl4pg.v1.sqlparsers.SqlParser;
+import com.manniwood.cl4pg.v1.sqlparsers.ParsedSql;
+import com.manniwood.cl4pg.v1.sqlparsers.ParserListenerKind;
 import com.manniwood.cl4pg.v1.typeconverters.TypeConverterStore;
-import com.manniwood.cl4pg.v1.util.Cllctn;
 import com.manniwood.cl4pg.v1.util.SqlCache;
 import com.manniwood.cl4pg.v1.util.Str;
 
@@ -59,6 +59,7 @@ public class CallStoredProcRefCursorV<R> implements Command {
     private final ResultSetHandler<R> resultSetHandler;
     private final Object[] args;
     private CallableStatement cstmt;
+    private StatementCache statementCache;
 
     private CallStoredProcRefCursorV(Builder<R> builder) {
         this.sql = builder.sql;
@@ -77,17 +78,17 @@ public class CallStoredProcRefCursorV<R> implements Command {
                         TypeConverterStore converterStore,
                         SqlCache sqlCache,
                         DataSourceAdapter dataSourceAdapter) throws Exception {
+        ParsedSql parsedSql;
         if (Str.isNullOrEmpty(sql)) {
             sql = sqlCache.get(filename);
+            parsedSql = sqlCache.getParsedSql(filename, ParserListenerKind.SPECIAL_FIRST_ARG);
+        } else {
+            parsedSql = dataSourceAdapter.getParsedSqlCache().get(sql, ParserListenerKind.SPECIAL_FIRST_ARG);
         }
 
-        SpecialFirstArgParserListener specialFirstArgParserListener = new SpecialFirstArgParserListener();
-        SqlParser sqlParser = new SqlParser(specialFirstArgParserListener);
-        String transformedSql = sqlParser.transform(sql);
-
-        cstmt = connection.prepareCall(transformedSql);
-        String firstArg = specialFirstArgParserListener.getFirstArg();
-        List<String> classNames = specialFirstArgParserListener.getArgs();
+        statementCache = dataSourceAdapter.getStatementCache();
+        cstmt = statementCache.prepareCall(connection, parsedSql.getTransformedSql());
+        String firstArg = parsedSql.getFirstArg();
 
         // The first "getter" needs to be the special keyword "refcursor"
         if (Str.isNullOrEmpty(firstArg)) {
@@ -102,18 +103,19 @@ public class CallStoredProcRefCursorV<R> implements Command {
         // later, it will be cast to a result set.
         cstmt.registerOutParameter(1, Types.OTHER);
 
-        if (!Cllctn.isNullOrEmpty(classNames)) {
-            // Because the first arg is the refcursor arg,
-            // the callable statement arg number we start at is 2, not 1.
-            for (int i = 0; i < classNames.size(); i++) {
-                converterStore.setSQLArgument(cstmt, i + 2, args[i], classNames.get(i));
-            }
-        }
+        // Because the first arg is the refcursor arg,
+        // the callable statement arg number we start at is 2, not 1.
+        converterStore.setSQLArguments(cstmt, parsedSql, args, 2);
 
         log.debug("Final SQL:\n{}", dataSourceAdapter.unwrapPgCallableStatement(cstmt));
         cstmt.execute();
         ResultSet rs = (ResultSet) cstmt.getObject(1);
         resultSetHandler.init(converterStore, rs);
+        if (resultSetHandler instanceof DeferredResultSetHandler) {
+            // The handler reads the rows, and closes this command, itself.
+            ((DeferredResultSetHandler<R>) resultSetHandler).attach(this);
+            return;
+        }
         while (rs.next()) {
             resultSetHandler.processRow(rs);
         }
@@ -121,8 +123,13 @@ public class CallStoredProcRefCursorV<R> implements Command {
 
     @Override
     public void close() throws Exception {
+        if (resultSetHandler instanceof DeferredResultSetHandler
+                && ((DeferredResultSetHandler<R>) resultSetHandler).isAttached()) {
+            // Still being read; the handler will call close() again later.
+            return;
+        }
         if (cstmt != null) {
-            cstmt.close();
+            statementCache.release(cstmt);
         }
     }
 
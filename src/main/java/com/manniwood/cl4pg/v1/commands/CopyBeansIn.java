@@ -0,0 +1,276 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.commands;
+
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.util.List;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.manniwood.cl4pg.v1.ConfigDefaults;
+import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
+import com.manniwood.cl4pg.v1.exceptions.Cl4pgConfigException;
+import com.manniwood.cl4pg.v1.sqlparsers.ParserListenerKind;
+import com.manniwood.cl4pg.v1.typeconverters.BinaryCopyWriter;
+import com.manniwood.cl4pg.v1.typeconverters.TypeConverterStore;
+import com.manniwood.cl4pg.v1.typeconverters.types.BinaryTypeConverter;
+import com.manniwood.cl4pg.v1.typeconverters.types.TypeConverter;
+import com.manniwood.cl4pg.v1.util.SqlCache;
+import com.manniwood.cl4pg.v1.util.Str;
+
+/**
+ * Runs a PgSQL copy command, inputting from a collection of beans instead of
+ * from a file. The row template, such as
+ * <code>#{getId}, #{getName}, #{getEmployeeId}</code>, lists the bean getters
+ * whose values fill each row, in the order of the copy command's columns.
+ * Rows are written as text, CSV or binary, per the CopyFormat, into a buffer
+ * that is sent to the server each time it grows past bufferSize characters
+ * (or bytes, for binary), so only a buffer's worth of rows is ever held in
+ * memory.
+ *
+ * @author mwood
+ *
+ */
+public class CopyBeansIn<A> implements Command {
+
+    private final static Logger log = LoggerFactory.getLogger(CopyBeansIn.class);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private String sql;
+    private final String filename;
+    private final String row;
+    private final Iterable<A> args;
+    private final CopyFormat format;
+    private final int bufferSize;
+    private CopyIn copyIn;
+    private long rowCount;
+    private long byteCount;
+
+    private CopyBeansIn(Builder<A> builder) {
+        this.sql = builder.sql;
+        this.filename = builder.filename;
+        this.row = builder.row;
+        this.args = builder.args;
+        this.format = builder.format;
+        this.bufferSize = builder.bufferSize;
+    }
+
+    @Override
+    public String getSQL() {
+        return sql;
+    }
+
+    @Override
+    public void execute(Connection connection,
+                        TypeConverterStore converterStore,
+                        SqlCache sqlCache,
+                        DataSourceAdapter dataSourceAdapter) throws Exception {
+        if (Str.isNullOrEmpty(sql)) {
+            sql = sqlCache.get(filename);
+        }
+        List<String> getters = dataSourceAdapter.getParsedSqlCache().get(row, ParserListenerKind.BASIC).getArgs();
+        Object[] values = new Object[getters.size()];
+
+        PGConnection pgConn = dataSourceAdapter.unwrapPgConnection(connection);
+        CopyManager copyManager = pgConn.getCopyAPI();
+        log.debug("Copy SQL:\n{}", sql);
+        copyIn = copyManager.copyIn(sql);
+
+        if (format == CopyFormat.BINARY) {
+            writeBinary(converterStore, getters, values);
+        } else {
+            writeText(converterStore, getters, values);
+        }
+        rowCount = copyIn.endCopy();
+    }
+
+    private void writeText(TypeConverterStore converterStore,
+                           List<String> getters,
+                           Object[] values) throws Exception {
+        int numColumns = values.length;
+        StringBuilder sb = new StringBuilder(bufferSize + 1024);
+        for (A arg : args) {
+            converterStore.getBeanValues(arg, getters, values);
+            format.appendRow(sb, values, numColumns);
+            if (sb.length() >= bufferSize) {
+                write(sb);
+            }
+        }
+        write(sb);
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private void writeBinary(TypeConverterStore converterStore,
+                             List<String> getters,
+                             Object[] values) throws Exception {
+        int numColumns = values.length;
+        BinaryCopyWriter writer = new BinaryCopyWriter(copyIn, bufferSize);
+        BinaryTypeConverter[] converters = null;
+        for (A arg : args) {
+            if (converters == null) {
+                converters = binaryConverters(converterStore, arg.getClass(), getters);
+            }
+            converterStore.getBeanValues(arg, getters, values);
+            writer.startRow(numColumns);
+            for (int i = 0; i < numColumns; i++) {
+                writer.writeField(converters[i], values[i]);
+            }
+        }
+        writer.finish();
+        byteCount = writer.getByteCount();
+    }
+
+    private static BinaryTypeConverter<?>[] binaryConverters(TypeConverterStore converterStore,
+                                                             Class<?> beanClass,
+                                                             List<String> getters) {
+        TypeConverter<?>[] converters = converterStore.getBeanConverters(beanClass, getters);
+        BinaryTypeConverter<?>[] binaryConverters = new BinaryTypeConverter<?>[converters.length];
+        for (int i = 0; i < converters.length; i++) {
+            if (!(converters[i] instanceof BinaryTypeConverter)) {
+                throw new Cl4pgConfigException("The type returned by " + beanClass.getName() + "." + getters.get(i)
+                                               + " has no binary copy format; use text or CSV copy format instead.");
+            }
+            binaryConverters[i] = (BinaryTypeConverter<?>) converters[i];
+        }
+        return binaryConverters;
+    }
+
+    private void write(StringBuilder sb) throws Exception {
+        if (sb.length() == 0) {
+            return;
+        }
+        byte[] bytes = sb.toString().getBytes(UTF8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        byteCount += bytes.length;
+        sb.setLength(0);
+    }
+
+    @Override
+    public void close() throws Exception {
+        // If execute() failed part way through, the connection is still in
+        // copy mode, and is unusable until the copy is cancelled.
+        if (copyIn != null && copyIn.isActive()) {
+            copyIn.cancelCopy();
+        }
+    }
+
+    /**
+     * Returns the number of rows copied, as reported by the server.
+     *
+     * @return
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the number of bytes of copy data sent to the server.
+     *
+     * @return
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    public static <P> Builder<P> config() {
+        return new Builder<P>();
+    }
+
+    public static class Builder<A> {
+        private String sql;
+        private String filename;
+        private String row;
+        private Iterable<A> args;
+        private CopyFormat format = CopyFormat.TEXT;
+        private int bufferSize = ConfigDefaults.DEFAULT_COPY_BUFFER_SIZE;
+
+        public Builder() {
+            // null constructor
+        }
+
+        public Builder<A> sql(String sql) {
+            this.sql = sql;
+            return this;
+        }
+
+        public Builder<A> file(String filename) {
+            this.filename = filename;
+            return this;
+        }
+
+        /**
+         * The getters, such as <code>#{getId}, #{getName}</code>, whose
+         * values fill each row, in the order of the copy command's columns.
+         */
+        public Builder<A> row(String row) {
+            this.row = row;
+            return this;
+        }
+
+        public Builder<A> args(Iterable<A> args) {
+            this.args = args;
+            return this;
+        }
+
+        public Builder<A> format(CopyFormat format) {
+            this.format = format;
+            return this;
+        }
+
+        /**
+         * The number of characters (or, for binary, bytes) of row data to
+         * gather before sending them to the server.
+         */
+        public Builder<A> bufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        public CopyBeansIn<A> done() {
+            if (Str.isNullOrEmpty(sql) && Str.isNullOrEmpty(filename)) {
+                throw new Cl4pgConfigException("SQL string or file must be specified.");
+            }
+            if (Str.isNullOrEmpty(row)) {
+                throw new Cl4pgConfigException("Row template must be specified.");
+            }
+            if (args == null) {
+                throw new Cl4pgConfigException("Bean args must be specified.");
+            }
+            if (format == null) {
+                throw new Cl4pgConfigException("Copy format must be specified.");
+            }
+            if (bufferSize < 1) {
+                throw new Cl4pgConfigException("Buffer size must be at least 1.");
+            }
+            return new CopyBeansIn<A>(this);
+        }
+    }
+
+}
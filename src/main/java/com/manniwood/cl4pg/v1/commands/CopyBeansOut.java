@@ -0,0 +1,227 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.commands;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.copy.CopyOut;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
+import com.manniwood.cl4pg.v1.exceptions.Cl4pgConfigException;
+import com.manniwood.cl4pg.v1.exceptions.Cl4pgException;
+import com.manniwood.cl4pg.v1.resultsethandlers.RowCallback;
+import com.manniwood.cl4pg.v1.sqlparsers.ParserListenerKind;
+import com.manniwood.cl4pg.v1.typeconverters.BinaryCopyReader;
+import com.manniwood.cl4pg.v1.typeconverters.SetterHandlesAndTypeConverters;
+import com.manniwood.cl4pg.v1.typeconverters.TypeConverterStore;
+import com.manniwood.cl4pg.v1.typeconverters.types.BinaryTypeConverter;
+import com.manniwood.cl4pg.v1.typeconverters.types.TypeConverter;
+import com.manniwood.cl4pg.v1.util.SqlCache;
+import com.manniwood.cl4pg.v1.util.Str;
+
+/**
+ * Runs a PgSQL copy command, outputting into beans instead of into a file.
+ * The copy command must use the binary format, such as
+ * <code>copy (select id, name from users) to stdout binary</code>, so that
+ * each column can be decoded by its BinaryTypeConverter without any string
+ * parsing. The row template, such as <code>#{setId}, #{setName}</code>, lists
+ * the bean setters for each column, in order. Each bean is built as its row
+ * arrives from the server and is either handed to a RowCallback, keeping
+ * memory use bounded however many rows are copied, or, if there is no
+ * RowCallback, gathered into a list.
+ *
+ * @author mwood
+ *
+ */
+public class CopyBeansOut<R> implements Command {
+
+    private final static Logger log = LoggerFactory.getLogger(CopyBeansOut.class);
+
+    private String sql;
+    private final String filename;
+    private final String row;
+    private final Class<R> returnType;
+    private final RowCallback<R> callback;
+    private final List<R> list;
+    private CopyOut copyOut;
+    private long rowCount;
+
+    private CopyBeansOut(Builder<R> builder) {
+        this.sql = builder.sql;
+        this.filename = builder.filename;
+        this.row = builder.row;
+        this.returnType = builder.returnType;
+        this.callback = builder.callback;
+        this.list = builder.callback == null ? new ArrayList<R>() : null;
+    }
+
+    @Override
+    public String getSQL() {
+        return sql;
+    }
+
+    @Override
+    public void execute(Connection connection,
+                        TypeConverterStore converterStore,
+                        SqlCache sqlCache,
+                        DataSourceAdapter dataSourceAdapter) throws Exception {
+        if (Str.isNullOrEmpty(sql)) {
+            sql = sqlCache.get(filename);
+        }
+        List<String> setters = dataSourceAdapter.getParsedSqlCache().get(row, ParserListenerKind.BASIC).getArgs();
+        SetterHandlesAndTypeConverters shac = converterStore.namedSetterHandles(returnType, setters);
+        checkBinaryConverters(shac, setters);
+
+        PGConnection pgConn = dataSourceAdapter.unwrapPgConnection(connection);
+        CopyManager copyManager = pgConn.getCopyAPI();
+        log.debug("Copy SQL:\n{}", sql);
+        copyOut = copyManager.copyOut(sql);
+        if (copyOut.getFormat() != 1) {
+            throw new Cl4pgConfigException("Copy command must use the binary format.");
+        }
+
+        BinaryCopyReader reader = new BinaryCopyReader(copyOut);
+        int numFields;
+        while ((numFields = reader.nextRow()) != -1) {
+            if (numFields != setters.size()) {
+                throw new Cl4pgException("Copy row has " + numFields + " columns but row template has " + setters.size() + " setters.");
+            }
+            R bean = converterStore.buildBeanUsingSetterHandles(reader, shac);
+            rowCount++;
+            if (callback == null) {
+                list.add(bean);
+            } else {
+                callback.onRow(bean);
+            }
+        }
+    }
+
+    private void checkBinaryConverters(SetterHandlesAndTypeConverters shac,
+                                       List<String> setters) {
+        TypeConverter<?>[] converters = shac.getConverters();
+        for (int i = 0; i < converters.length; i++) {
+            if (!(converters[i] instanceof BinaryTypeConverter)) {
+                throw new Cl4pgConfigException("The type taken by " + returnType.getName() + "." + setters.get(i)
+                                               + " has no binary copy format.");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        // If execute() failed part way through, the connection is still in
+        // copy mode, and is unusable until the copy is cancelled.
+        if (copyOut != null && copyOut.isActive()) {
+            copyOut.cancelCopy();
+        }
+    }
+
+    /**
+     * Returns the beans copied out, or null if they were handed to a
+     * RowCallback instead.
+     *
+     * @return
+     */
+    public List<R> getList() {
+        return list;
+    }
+
+    /**
+     * Returns the number of rows copied out.
+     *
+     * @return
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public static <P> Builder<P> config() {
+        return new Builder<P>();
+    }
+
+    public static class Builder<R> {
+        private String sql;
+        private String filename;
+        private String row;
+        private Class<R> returnType;
+        private RowCallback<R> callback;
+
+        public Builder() {
+            // null constructor
+        }
+
+        public Builder<R> sql(String sql) {
+            this.sql = sql;
+            return this;
+        }
+
+        public Builder<R> file(String filename) {
+            this.filename = filename;
+            return this;
+        }
+
+        /**
+         * The setters, such as <code>#{setId}, #{setName}</code>, for each
+         * column, in order.
+         */
+        public Builder<R> row(String row) {
+            this.row = row;
+            return this;
+        }
+
+        public Builder<R> returnType(Class<R> returnType) {
+            this.returnType = returnType;
+            return this;
+        }
+
+        /**
+         * Hands each bean to callback as soon as it is built, instead of
+         * gathering the beans into a list.
+         */
+        public Builder<R> callback(RowCallback<R> callback) {
+            this.callback = callback;
+            return this;
+        }
+
+        public CopyBeansOut<R> done() {
+            if (Str.isNullOrEmpty(sql) && Str.isNullOrEmpty(filename)) {
+                throw new Cl4pgConfigException("SQL string or file must be specified.");
+            }
+            if (Str.isNullOrEmpty(row)) {
+                throw new Cl4pgConfigException("Row template must be specified.");
+            }
+            if (returnType == null) {
+                throw new Cl4pgConfigException("Return type must be specified.");
+            }
+            return new CopyBeansOut<R>(this);
+        }
+    }
+
+}
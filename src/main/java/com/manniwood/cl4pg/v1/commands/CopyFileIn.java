@@ -23,13 +23,19 @@ THE SOFTWARE.
  */
 package com.manniwood.cl4pg.v1.commands;
 
-import java.io.FileReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.sql.Connection;
+import java.util.zip.GZIPInputStream;
 
 import org.postgresql.PGConnection;
 import org.postgresql.copy.CopyManager;
 
+import com.manniwood.cl4pg.v1.ConfigDefaults;
 import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
 import com.manniwood.cl4pg.v1.exceptions.Cl4pgConfigException;
 import com.manniwood.cl4pg.v1.typeconverters.TypeConverterStore;
@@ -39,6 +45,15 @@ import com.manniwood.cl4pg.v1.util.Str;
 /**
  * Runs a PgSQL copy command, inputting from the specified filename.
  *
+ * <p>
+ * By default, the file's bytes are handed to the server as they are, in
+ * chunks of bufferSize bytes, with no decoding into chars and back again on
+ * our side; so the file should be in UTF-8 (the client encoding that the
+ * PostgreSQL JDBC driver always uses), or the copy command should name the
+ * file's encoding using copy's own encoding option. Setting encoding instead
+ * has the file decoded on our side, which is slower. The file may also be
+ * gzipped.
+ *
  * @author mwood
  *
  */
@@ -47,12 +62,19 @@ public class CopyFileIn implements Command {
     private final String copyFile;
     private final String sql;
     private final String filename;
-    private Reader fileReader = null;
+    private final int bufferSize;
+    private final String encoding;
+    private final boolean gzip;
+    private InputStream inputStream = null;
+    private long rowCount;
 
     private CopyFileIn(Builder builder) {
         this.copyFile = builder.copyFile;
         this.sql = builder.sql;
         this.filename = builder.filename;
+        this.bufferSize = builder.bufferSize;
+        this.encoding = builder.encoding;
+        this.gzip = builder.gzip;
     }
 
     @Override
@@ -68,17 +90,34 @@ public class CopyFileIn implements Command {
         String theSql = sql == null ? sqlCache.get(filename) : sql;
         PGConnection pgConn = dataSourceAdapter.unwrapPgConnection(connection);
         CopyManager copyManager = (pgConn).getCopyAPI();
-        fileReader = new FileReader(copyFile);
-        copyManager.copyIn(theSql, fileReader);
+        inputStream = Files.newInputStream(Paths.get(copyFile));
+        if (gzip) {
+            inputStream = new GZIPInputStream(inputStream, bufferSize);
+        }
+        if (encoding == null) {
+            rowCount = copyManager.copyIn(theSql, inputStream, bufferSize);
+        } else {
+            Reader reader = new InputStreamReader(inputStream, Charset.forName(encoding));
+            rowCount = copyManager.copyIn(theSql, reader, bufferSize);
+        }
     }
 
     @Override
     public void close() throws Exception {
-        if (fileReader != null) {
-            fileReader.close();
+        if (inputStream != null) {
+            inputStream.close();
         }
     }
 
+    /**
+     * Returns the number of rows copied, as reported by the server.
+     *
+     * @return
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
     public static Builder config() {
         return new Builder();
     }
@@ -87,6 +126,9 @@ public class CopyFileIn implements Command {
         private String copyFile;
         private String sql;
         private String filename;
+        private int bufferSize = ConfigDefaults.DEFAULT_COPY_BUFFER_SIZE;
+        private String encoding;
+        private boolean gzip = false;
 
         public Builder() {
             // null constructor
@@ -107,10 +149,42 @@ public class CopyFileIn implements Command {
             return this;
         }
 
+        /**
+         * The number of bytes to read from the file (and send to the server)
+         * at a time.
+         */
+        public Builder bufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * The charset of the copy file, if it is not UTF-8 and the copy
+         * command does not say so itself.
+         */
+        public Builder encoding(String encoding) {
+            this.encoding = encoding;
+            return this;
+        }
+
+        /**
+         * Whether the copy file is gzipped.
+         */
+        public Builder gzip(boolean gzip) {
+            this.gzip = gzip;
+            return this;
+        }
+
         public CopyFileIn done() {
             if (Str.isNullOrEmpty(sql) && Str.isNullOrEmpty(filename)) {
                 throw new Cl4pgConfigException("SQL string or file must be specified.");
             }
+            if (bufferSize < 1) {
+                throw new Cl4pgConfigException("Buffer size must be at least 1.");
+            }
+            if (encoding != null && !Charset.isSupported(encoding)) {
+                throw new Cl4pgConfigException("Unsupported encoding " + encoding + ".");
+            }
             return new CopyFileIn(this);
         }
     }
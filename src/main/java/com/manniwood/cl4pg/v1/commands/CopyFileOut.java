@@ -23,13 +23,20 @@ THE SOFTWARE.
  */
 package com.manniwood.cl4pg.v1.commands;
 
-import java.io.FileWriter;
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.sql.Connection;
+import java.util.zip.GZIPOutputStream;
 
 import org.postgresql.PGConnection;
 import org.postgresql.copy.CopyManager;
 
+import com.manniwood.cl4pg.v1.ConfigDefaults;
 import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
 import com.manniwood.cl4pg.v1.exceptions.Cl4pgConfigException;
 import com.manniwood.cl4pg.v1.typeconverters.TypeConverterStore;
@@ -39,6 +46,15 @@ import com.manniwood.cl4pg.v1.util.Str;
 /**
  * Runs a PgSQL copy command, outputting to the specified filename.
  *
+ * <p>
+ * By default, the bytes from the server are written to the file as they are,
+ * through a buffer of bufferSize bytes, with no decoding into chars and back
+ * again on our side; so the file will be in UTF-8 (the client encoding that
+ * the PostgreSQL JDBC driver always uses), unless the copy command names some
+ * other encoding using copy's own encoding option. Setting encoding instead
+ * has the data re-encoded on our side, which is slower. The file may also be
+ * gzipped.
+ *
  * @author mwood
  *
  */
@@ -47,12 +63,20 @@ public class CopyFileOut implements Command {
     private final String copyFile;
     private final String sql;
     private final String filename;
-    private Writer fileWriter = null;
+    private final int bufferSize;
+    private final String encoding;
+    private final boolean gzip;
+    private OutputStream outputStream = null;
+    private Writer writer = null;
+    private long rowCount;
 
     private CopyFileOut(Builder builder) {
         this.copyFile = builder.copyFile;
         this.sql = builder.sql;
         this.filename = builder.filename;
+        this.bufferSize = builder.bufferSize;
+        this.encoding = builder.encoding;
+        this.gzip = builder.gzip;
     }
 
     @Override
@@ -68,17 +92,40 @@ public class CopyFileOut implements Command {
         String theSql = sql == null ? sqlCache.get(filename) : sql;
         PGConnection pgConn = dataSourceAdapter.unwrapPgConnection(connection);
         CopyManager copyManager = (pgConn).getCopyAPI();
-        fileWriter = new FileWriter(copyFile);
-        copyManager.copyOut(theSql, fileWriter);
+        outputStream = Files.newOutputStream(Paths.get(copyFile));
+        if (gzip) {
+            outputStream = new GZIPOutputStream(outputStream, bufferSize);
+        } else {
+            outputStream = new BufferedOutputStream(outputStream, bufferSize);
+        }
+        if (encoding == null) {
+            rowCount = copyManager.copyOut(theSql, outputStream);
+        } else {
+            writer = new OutputStreamWriter(outputStream, Charset.forName(encoding));
+            rowCount = copyManager.copyOut(theSql, writer);
+        }
     }
 
     @Override
     public void close() throws Exception {
-        if (fileWriter != null) {
-            fileWriter.close();
+        // Closing the writer, if any, flushes it, then closes the stream
+        // beneath it, which, if gzipped, writes the gzip trailer.
+        if (writer != null) {
+            writer.close();
+        } else if (outputStream != null) {
+            outputStream.close();
         }
     }
 
+    /**
+     * Returns the number of rows copied, as reported by the server.
+     *
+     * @return
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
     public static Builder config() {
         return new Builder();
     }
@@ -87,6 +134,9 @@ public class CopyFileOut implements Command {
         private String copyFile;
         private String sql;
         private String filename;
+        private int bufferSize = ConfigDefaults.DEFAULT_COPY_BUFFER_SIZE;
+        private String encoding;
+        private boolean gzip = false;
 
         public Builder() {
             // null constructor
@@ -107,10 +157,41 @@ public class CopyFileOut implements Command {
             return this;
         }
 
+        /**
+         * The number of bytes to buffer before writing to the file.
+         */
+        public Builder bufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * The charset to write the copy file in, if it is not to be UTF-8 and
+         * the copy command does not say so itself.
+         */
+        public Builder encoding(String encoding) {
+            this.encoding = encoding;
+            return this;
+        }
+
+        /**
+         * Whether to gzip the copy file.
+         */
+        public Builder gzip(boolean gzip) {
+            this.gzip = gzip;
+            return this;
+        }
+
         public CopyFileOut done() {
             if (Str.isNullOrEmpty(sql) && Str.isNullOrEmpty(filename)) {
                 throw new Cl4pgConfigException("SQL string or file must be specified.");
             }
+            if (bufferSize < 1) {
+                throw new Cl4pgConfigException("Buffer size must be at least 1.");
+            }
+            if (encoding != null && !Charset.isSupported(encoding)) {
+                throw new Cl4pgConfigException("Unsupported encoding " + encoding + ".");
+            }
             return new CopyFileOut(this);
         }
     }
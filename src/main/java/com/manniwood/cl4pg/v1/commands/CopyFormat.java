@@ -0,0 +1,193 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.commands;
+
+import java.math.BigDecimal;
+
+import com.manniwood.cl4pg.v1.exceptions.Cl4pgException;
+
+/**
+ * The PostgreSQL COPY formats that CopyBeansIn knows how to write. The format
+ * chosen here must match the format named in the copy command itself (the
+ * PostgreSQL default being text).
+ *
+ * @author mwood
+ *
+ */
+public enum CopyFormat {
+
+    /**
+     * Tab-delimited, with nulls written as <code>\N</code> and backslash,
+     * tab, newline and carriage return backslash-escaped.
+     */
+    TEXT {
+        @Override
+        void appendRow(StringBuilder sb,
+                       Object[] values,
+                       int numValues) {
+            for (int i = 0; i < numValues; i++) {
+                if (i > 0) {
+                    sb.append('\t');
+                }
+                Object value = values[i];
+                if (value == null) {
+                    sb.append("\\N");
+                } else if (value instanceof byte[]) {
+                    // bytea hex format, with its backslash escaped
+                    sb.append("\\\\x");
+                    appendHex(sb, (byte[]) value);
+                } else {
+                    String s = toCopyString(value);
+                    for (int j = 0; j < s.length(); j++) {
+                        char c = s.charAt(j);
+                        switch (c) {
+                        case '\\':
+                            sb.append("\\\\");
+                            break;
+                        case '\t':
+                            sb.append("\\t");
+                            break;
+                        case '\n':
+                            sb.append("\\n");
+                            break;
+                        case '\r':
+                            sb.append("\\r");
+                            break;
+                        default:
+                            sb.append(c);
+                        }
+                    }
+                }
+            }
+            sb.append('\n');
+        }
+    },
+
+    /**
+     * Comma-delimited, with nulls written as nothing at all, and any value
+     * that is empty or contains a comma, quote, newline or carriage return
+     * written in double quotes.
+     */
+    CSV {
+        @Override
+        void appendRow(StringBuilder sb,
+                       Object[] values,
+                       int numValues) {
+            for (int i = 0; i < numValues; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                Object value = values[i];
+                if (value == null) {
+                    continue;
+                }
+                if (value instanceof byte[]) {
+                    sb.append("\\x");
+                    appendHex(sb, (byte[]) value);
+                    continue;
+                }
+                String s = toCopyString(value);
+                if (needsQuotes(s)) {
+                    sb.append('"');
+                    for (int j = 0; j < s.length(); j++) {
+                        char c = s.charAt(j);
+                        if (c == '"') {
+                            sb.append('"');
+                        }
+                        sb.append(c);
+                    }
+                    sb.append('"');
+                } else {
+                    sb.append(s);
+                }
+            }
+            sb.append('\n');
+        }
+
+        private boolean needsQuotes(String s) {
+            // An unquoted empty string would be read back as null
+            if (s.isEmpty()) {
+                return true;
+            }
+            for (int j = 0; j < s.length(); j++) {
+                char c = s.charAt(j);
+                if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                    return true;
+                }
+            }
+            // A lone \. would be read as the end of the data
+            return s.equals("\\.");
+        }
+    },
+
+    /**
+     * PostgreSQL's binary format, with each value encoded by its
+     * TypeConverter, which must also be a BinaryTypeConverter. Saves both
+     * sides formatting and parsing strings, but the Java types must match the
+     * column types exactly: an Integer can only be copied into an int column,
+     * a Long into a bigint column, a Timestamp into a timestamp without time
+     * zone column, and so on.
+     */
+    BINARY {
+        @Override
+        void appendRow(StringBuilder sb,
+                       Object[] values,
+                       int numValues) {
+            // CopyBeansIn writes binary rows with a BinaryCopyWriter instead
+            throw new Cl4pgException("Binary copy rows cannot be written as text.");
+        }
+    };
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Appends the first numValues of values to sb as one row of copy data,
+     * including the trailing newline. Only the text-based formats have rows
+     * that can be appended to a StringBuilder.
+     *
+     * @param sb
+     * @param values
+     * @param numValues
+     */
+    abstract void appendRow(StringBuilder sb,
+                            Object[] values,
+                            int numValues);
+
+    private static String toCopyString(Object value) {
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        // The java.sql date and time types, UUID, Boolean and the number
+        // types all have toStrings that PostgreSQL can read back in.
+        return value.toString();
+    }
+
+    private static void appendHex(StringBuilder sb,
+                                  byte[] bytes) {
+        for (byte b : bytes) {
+            sb.append(HEX_DIGITS[(b >> 4) & 0xf]);
+            sb.append(HEX_DIGITS[b & 0xf]);
+        }
+    }
+}
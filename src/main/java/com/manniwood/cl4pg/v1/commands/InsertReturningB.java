@@ -32,10 +32,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
+import com.manniwood.cl4pg.v1.datasourceadapters.StatementCache;
 import com.manniwood.cl4pg.v1.exceptions.Cl4pgConfigException;
 import com.manniwood.cl4pg.v1.resultsethandlers.ResultSetHandler;
-import com.manniwood.cl4pg.v1.sqlparsers.BasicParserListener;
-import com.manniwood.cl4pg.v1.sqlparsers.SqlParser;
+import com.manniwood.cl4pg.v1.sqlparsers.ParsedSql;
+import com.manniwood.cl4pg.v1.sqlparsers.ParserListenerKind;
 import com.manniwood.cl4pg.v1.typeconverters.TypeConverterStore;
 import com.manniwood.cl4pg.v1.util.SqlCache;
 import com.manniwood.cl4pg.v1.util.Str;
@@ -56,6 +57,7 @@ public class InsertReturningB<A, R> implements Command {
     private final ResultSetHandler<R> resultSetHandler;
     private final A arg;
     private PreparedStatement pstmt;
+    private StatementCache statementCache;
 
     private InsertReturningB(Builder<A, R> builder) {
         this.sql = builder.sql;
@@ -74,16 +76,17 @@ public class InsertReturningB<A, R> implements Command {
                         TypeConverterStore converterStore,
                         SqlCache sqlCache,
                         DataSourceAdapter dataSourceAdapter) throws Exception {
+        ParsedSql parsedSql;
         if (Str.isNullOrEmpty(sql)) {
             sql = sqlCache.get(filename);
+            parsedSql = sqlCache.getParsedSql(filename, ParserListenerKind.BASIC);
+        } else {
+            parsedSql = dataSourceAdapter.getParsedSqlCache().get(sql, ParserListenerKind.BASIC);
         }
 
-        BasicParserListener basicParserListener = new BasicParserListener();
-        SqlParser sqlParser = new SqlParser(basicParserListener);
-        String transformedSql = sqlParser.transform(sql);
-
-        PreparedStatement pstmt = connection.prepareStatement(transformedSql);
-        List<String> getters = basicParserListener.getArgs();
+        statementCache = dataSourceAdapter.getStatementCache();
+        pstmt = statementCache.prepareStatement(connection, parsedSql.getTransformedSql());
+        List<String> getters = parsedSql.getArgs();
         if (getters != null && !getters.isEmpty()) {
             converterStore.setSQLArguments(pstmt, arg, getters);
         }
@@ -102,7 +105,7 @@ public class InsertReturningB<A, R> implements Command {
     @Override
     public void close() throws Exception {
         if (pstmt != null) {
-            pstmt.close();
+            statementCache.release(pstmt);
         }
     }
 
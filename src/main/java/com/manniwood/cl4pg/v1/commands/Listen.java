@@ -69,14 +69,16 @@ public class Listen implements Command {
 
         // Ask postgresql to correctly quote this identifier, to make it
         // safe to use in the next sql statement.
-        PreparedStatement pstmt1 = connection.prepareStatement("select quote_ident(?)");
-        pstmt1.setString(1, channel);
-        log.debug("SQL to quote channel name:\n{}", dataSourceAdapter.unwrapPgPreparedStatement(pstmt1));
-        ResultSet rs = pstmt1.executeQuery();
-        if (rs.next()) {
-            channel = rs.getString(1);
-        } else {
-            throw new Cl4pgException("Was not able to quote identifier \"" + channel + "\"");
+        try (PreparedStatement pstmt1 = connection.prepareStatement("select quote_ident(?)")) {
+            pstmt1.setString(1, channel);
+            log.debug("SQL to quote channel name:\n{}", dataSourceAdapter.unwrapPgPreparedStatement(pstmt1));
+            try (ResultSet rs = pstmt1.executeQuery()) {
+                if (rs.next()) {
+                    channel = rs.getString(1);
+                } else {
+                    throw new Cl4pgException("Was not able to quote identifier \"" + channel + "\"");
+                }
+            }
         }
 
         sql = "listen " + channel;
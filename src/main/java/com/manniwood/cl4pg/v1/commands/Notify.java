@@ -98,8 +98,8 @@ public class Notify implements Command {
                         SqlCache sqlCache,
                         DataSourceAdapter dataSourceAdapter) throws Exception {
         pstmt = connection.prepareStatement(sql);
-        converterStore.setSQLArgument(pstmt, 1, channel, String.class.getName());
-        converterStore.setSQLArgument(pstmt, 2, payload, String.class.getName());
+        converterStore.setSQLArgument(pstmt, 1, channel, String.class);
+        converterStore.setSQLArgument(pstmt, 2, payload, String.class);
         log.debug("Final SQL:\n{}", dataSourceAdapter.unwrapPgPreparedStatement(pstmt));
         pstmt.execute();
     }
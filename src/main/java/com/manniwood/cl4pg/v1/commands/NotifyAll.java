@@ -0,0 +1,144 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.commands;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
+import com.manniwood.cl4pg.v1.datasourceadapters.StatementCache;
+import com.manniwood.cl4pg.v1.exceptions.Cl4pgConfigException;
+import com.manniwood.cl4pg.v1.typeconverters.TypeConverterStore;
+import com.manniwood.cl4pg.v1.util.SqlCache;
+import com.manniwood.cl4pg.v1.util.Str;
+
+/**
+ * Runs the PgSQL pg_notify() function once for each of any number of channel
+ * and payload pairs, in one statement and so in one round trip, by passing
+ * the channels and payloads as two arrays and unnesting them. The
+ * notifications are sent in the order they were added (though, as always,
+ * PostgreSQL drops duplicates of a notification sent in the same
+ * transaction).
+ *
+ * @author mwood
+ *
+ */
+public class NotifyAll implements Command {
+    private final static Logger log = LoggerFactory.getLogger(NotifyAll.class);
+
+    private final String sql = "select pg_notify(n.channel, n.payload) from unnest(?::text[], ?::text[]) as n(channel, payload)";
+    private final String[] channels;
+    private final String[] payloads;
+    private PreparedStatement pstmt;
+    private StatementCache statementCache;
+
+    private NotifyAll(Builder builder) {
+        if (builder.channels.isEmpty()) {
+            throw new Cl4pgConfigException("At least one notification must be specified.");
+        }
+        this.channels = builder.channels.toArray(new String[builder.channels.size()]);
+        this.payloads = builder.payloads.toArray(new String[builder.payloads.size()]);
+    }
+
+    public static Builder config() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private final List<String> channels = new ArrayList<>();
+        private final List<String> payloads = new ArrayList<>();
+
+        public Builder() {
+            // null constructor
+        }
+
+        public Builder notification(String channel,
+                                    String payload) {
+            if (Str.isNullOrEmpty(channel)) {
+                throw new Cl4pgConfigException("Channel must be specified.");
+            }
+            channels.add(channel);
+            payloads.add(payload == null ? "" : payload);
+            return this;
+        }
+
+        public Builder notifications(List<String> channels,
+                                     List<String> payloads) {
+            if (channels.size() != payloads.size()) {
+                throw new Cl4pgConfigException("There must be as many payloads as channels.");
+            }
+            for (int i = 0; i < channels.size(); i++) {
+                notification(channels.get(i), payloads.get(i));
+            }
+            return this;
+        }
+
+        public NotifyAll done() {
+            return new NotifyAll(this);
+        }
+    }
+
+    @Override
+    public String getSQL() {
+        return sql;
+    }
+
+    @Override
+    public void execute(Connection connection,
+                        TypeConverterStore converterStore,
+                        SqlCache sqlCache,
+                        DataSourceAdapter dataSourceAdapter) throws Exception {
+        statementCache = dataSourceAdapter.getStatementCache();
+        pstmt = statementCache.prepareStatement(connection, sql);
+        Array channelArray = connection.createArrayOf("text", channels);
+        Array payloadArray = connection.createArrayOf("text", payloads);
+        pstmt.setArray(1, channelArray);
+        pstmt.setArray(2, payloadArray);
+        log.debug("Final SQL:\n{}", dataSourceAdapter.unwrapPgPreparedStatement(pstmt));
+        pstmt.execute();
+    }
+
+    /**
+     * Number of notifications this command sends.
+     *
+     * @return
+     */
+    public int getNotificationCount() {
+        return channels.length;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (pstmt != null) {
+            statementCache.release(pstmt);
+        }
+    }
+
+}
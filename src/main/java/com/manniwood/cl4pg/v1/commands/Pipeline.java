@@ -0,0 +1,354 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.commands;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
+import com.manniwood.cl4pg.v1.datasourceadapters.StatementCache;
+import com.manniwood.cl4pg.v1.exceptions.Cl4pgConfigException;
+import com.manniwood.cl4pg.v1.exceptions.Cl4pgException;
+import com.manniwood.cl4pg.v1.resultsethandlers.DeferredResultSetHandler;
+import com.manniwood.cl4pg.v1.resultsethandlers.ResultSetHandler;
+import com.manniwood.cl4pg.v1.sqlparsers.ParsedSql;
+import com.manniwood.cl4pg.v1.sqlparsers.ParserListenerKind;
+import com.manniwood.cl4pg.v1.typeconverters.TypeConverterStore;
+import com.manniwood.cl4pg.v1.util.SqlCache;
+import com.manniwood.cl4pg.v1.util.Str;
+
+/**
+ * Runs several SQL statements (inserts, updates, deletes, selects, in any
+ * mix) in one round trip to the server, instead of one round trip each.
+ *
+ * <p>
+ * The statements are joined into one multi-statement PreparedStatement, which
+ * the PostgreSQL JDBC driver sends to the server all at once, each statement
+ * with its own arguments, and only then waits for the results, which are
+ * collected in order: the rows of each select go to that select's
+ * ResultSetHandler, and the update count of every statement is kept for
+ * getUpdateCount(). Everything up to the server's reply is one unit of work,
+ * so, even in auto-commit mode, either every statement succeeds or none do.
+ *
+ * <p>
+ * Each statement uses variadic args or a bean arg, just like the Insert,
+ * Update, Delete and Select commands, but must be exactly one SQL statement.
+ * When a statement fails while its arguments are being set, or while its
+ * results are being read, getSQL() names it as statement N of M. But when the
+ * server rejects a statement, the driver throws the server's error without
+ * the results of the statements before it, so there is no telling which
+ * statement failed; getSQL() then says so, and lists every statement to go
+ * with the server's error message. (JDBC batches would report how far they
+ * got, but only run one statement with different arguments, not a mix of
+ * statements.)
+ *
+ * @author mwood
+ *
+ */
+public class Pipeline implements Command {
+
+    private final static Logger log = LoggerFactory.getLogger(Pipeline.class);
+
+    private final List<Step> steps;
+    private final int[] updateCounts;
+    private String sql;
+    private PreparedStatement pstmt;
+
+    /**
+     * Index of the statement whose arguments are being set, or whose results
+     * are being read, or -1 while the server runs the statements.
+     */
+    private int current = -1;
+    private boolean failed;
+    private StatementCache statementCache;
+
+    private Pipeline(Builder builder) {
+        this.steps = new ArrayList<>(builder.steps);
+        this.updateCounts = new int[steps.size()];
+    }
+
+    @Override
+    public String getSQL() {
+        if (failed && current >= 0) {
+            return "-- statement " + (current + 1) + " of " + steps.size() + " failed:\n" + stepSQL(steps.get(current));
+        }
+        if (sql == null) {
+            StringBuilder sb = new StringBuilder();
+            if (failed) {
+                sb.append("-- one of these ").append(steps.size())
+                        .append(" statements failed, but the driver does not say which:\n");
+            }
+            for (int i = 0; i < steps.size(); i++) {
+                sb.append("-- statement ").append(i + 1).append(" of ").append(steps.size()).append('\n');
+                sb.append(stepSQL(steps.get(i))).append('\n');
+            }
+            sql = sb.toString();
+        }
+        return sql;
+    }
+
+    private static String stepSQL(Step step) {
+        return step.sql == null ? step.filename : step.sql;
+    }
+
+    @Override
+    public void execute(Connection connection,
+                        TypeConverterStore converterStore,
+                        SqlCache sqlCache,
+                        DataSourceAdapter dataSourceAdapter) throws Exception {
+        try {
+            List<ParsedSql> parsedSqls = new ArrayList<>(steps.size());
+            StringBuilder transformedSql = new StringBuilder();
+            for (int i = 0; i < steps.size(); i++) {
+                current = i;
+                Step step = steps.get(i);
+                ParsedSql parsedSql;
+                if (Str.isNullOrEmpty(step.sql)) {
+                    step.sql = sqlCache.get(step.filename);
+                    parsedSql = sqlCache.getParsedSql(step.filename, ParserListenerKind.BASIC);
+                } else {
+                    parsedSql = dataSourceAdapter.getParsedSqlCache().get(step.sql, ParserListenerKind.BASIC);
+                }
+                parsedSqls.add(parsedSql);
+                if (transformedSql.length() > 0) {
+                    // On its own line, in case the last line was a -- comment
+                    transformedSql.append("\n;\n");
+                }
+                transformedSql.append(stripTrailingSemicolon(parsedSql.getTransformedSql()));
+            }
+            current = -1;
+            sql = null;
+
+            statementCache = dataSourceAdapter.getStatementCache();
+            pstmt = statementCache.prepareStatement(connection, transformedSql.toString());
+            // Always set, because pstmt may be a cached statement that was last
+            // used with a different fetch size, and the driver cannot use a
+            // cursor for a multi-statement query anyway.
+            pstmt.setFetchSize(0);
+
+            int col = 1;
+            for (int i = 0; i < steps.size(); i++) {
+                current = i;
+                Step step = steps.get(i);
+                ParsedSql parsedSql = parsedSqls.get(i);
+                List<String> args = parsedSql.getArgs();
+                if (step.bean != null) {
+                    converterStore.setSQLArguments(pstmt, step.bean, args, col);
+                } else {
+                    converterStore.setSQLArguments(pstmt, parsedSql, step.args, col);
+                }
+                col += args.size();
+            }
+
+            current = -1;
+            log.debug("Final SQL:\n{}", dataSourceAdapter.unwrapPgPreparedStatement(pstmt));
+            boolean isResultSet = pstmt.execute();
+            for (int i = 0; i < steps.size(); i++) {
+                current = i;
+                ResultSetHandler<?> handler = steps.get(i).resultSetHandler;
+                if (isResultSet) {
+                    updateCounts[i] = -1;
+                    if (handler != null) {
+                        ResultSet rs = pstmt.getResultSet();
+                        handler.init(converterStore, rs);
+                        while (rs.next()) {
+                            handler.processRow(rs);
+                        }
+                    }
+                } else {
+                    updateCounts[i] = pstmt.getUpdateCount();
+                    if (handler != null) {
+                        throw new Cl4pgException("Statement " + (i + 1) + " of the pipeline has a ResultSetHandler but returned no rows.");
+                    }
+                }
+                isResultSet = pstmt.getMoreResults();
+            }
+        } catch (Exception e) {
+            failed = true;
+            sql = null;
+            throw e;
+        }
+    }
+
+    private static String stripTrailingSemicolon(String sql) {
+        int end = sql.length();
+        while (end > 0 && (Character.isWhitespace(sql.charAt(end - 1)) || sql.charAt(end - 1) == ';')) {
+            end--;
+        }
+        return sql.substring(0, end);
+    }
+
+    /**
+     * Number of statements in this pipeline.
+     *
+     * @return
+     */
+    public int getStatementCount() {
+        return steps.size();
+    }
+
+    /**
+     * Rows inserted, updated or deleted by the statement at index (counting
+     * from 0), or -1 if it returned rows, once the pipeline has been run.
+     *
+     * @param index
+     * @return
+     */
+    public int getUpdateCount(int index) {
+        return updateCounts[index];
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (pstmt != null) {
+            statementCache.release(pstmt);
+        }
+    }
+
+    public static Builder config() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private final List<Step> steps = new ArrayList<>();
+
+        public Builder() {
+            // null constructor
+        }
+
+        /**
+         * Adds a statement whose arguments are filled in, in order, by args.
+         */
+        public Builder sql(String sql,
+                           Object... args) {
+            return add(new Step(sql, null, args, null, null));
+        }
+
+        /**
+         * Adds the statement in file (in the classpath) whose arguments are
+         * filled in, in order, by args.
+         */
+        public Builder file(String filename,
+                            Object... args) {
+            return add(new Step(null, filename, args, null, null));
+        }
+
+        /**
+         * Adds a statement whose arguments are filled in by the getters of
+         * bean.
+         */
+        public Builder beanSql(String sql,
+                               Object bean) {
+            return add(new Step(sql, null, null, requireBean(bean), null));
+        }
+
+        /**
+         * Adds the statement in file (in the classpath) whose arguments are
+         * filled in by the getters of bean.
+         */
+        public Builder beanFile(String filename,
+                                Object bean) {
+            return add(new Step(null, filename, null, requireBean(bean), null));
+        }
+
+        /**
+         * Adds a select whose rows go to resultSetHandler, and whose
+         * arguments are filled in, in order, by args.
+         */
+        public Builder select(ResultSetHandler<?> resultSetHandler,
+                              String sql,
+                              Object... args) {
+            return add(new Step(sql, null, args, null, requireHandler(resultSetHandler)));
+        }
+
+        /**
+         * Adds the select in file (in the classpath) whose rows go to
+         * resultSetHandler, and whose arguments are filled in, in order, by
+         * args.
+         */
+        public Builder selectFile(ResultSetHandler<?> resultSetHandler,
+                                  String filename,
+                                  Object... args) {
+            return add(new Step(null, filename, args, null, requireHandler(resultSetHandler)));
+        }
+
+        private Builder add(Step step) {
+            if (Str.isNullOrEmpty(step.sql) && Str.isNullOrEmpty(step.filename)) {
+                throw new Cl4pgConfigException("SQL string or file must be specified.");
+            }
+            steps.add(step);
+            return this;
+        }
+
+        private static Object requireBean(Object bean) {
+            if (bean == null) {
+                throw new Cl4pgConfigException("Bean arg must be specified.");
+            }
+            return bean;
+        }
+
+        private static ResultSetHandler<?> requireHandler(ResultSetHandler<?> resultSetHandler) {
+            if (resultSetHandler == null) {
+                throw new Cl4pgConfigException("ResultSetHandler must be specified.");
+            }
+            if (resultSetHandler instanceof DeferredResultSetHandler) {
+                throw new Cl4pgConfigException("A pipeline reads every row before it returns, so it cannot use a DeferredResultSetHandler.");
+            }
+            return resultSetHandler;
+        }
+
+        public Pipeline done() {
+            if (steps.isEmpty()) {
+                throw new Cl4pgConfigException("At least one statement must be specified.");
+            }
+            return new Pipeline(this);
+        }
+    }
+
+    private static final class Step {
+        private String sql;
+        private final String filename;
+        private final Object[] args;
+        private final Object bean;
+        private final ResultSetHandler<?> resultSetHandler;
+
+        private Step(String sql,
+                     String filename,
+                     Object[] args,
+                     Object bean,
+                     ResultSetHandler<?> resultSetHandler) {
+            this.sql = sql;
+            this.filename = filename;
+            this.args = args;
+            this.bean = bean;
+            this.resultSetHandler = resultSetHandler;
+        }
+    }
+}
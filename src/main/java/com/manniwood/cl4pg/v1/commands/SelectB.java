@@ -32,10 +32,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
+import com.manniwood.cl4pg.v1.datasourceadapters.StatementCache;
 import com.manniwood.cl4pg.v1.exceptions.Cl4pgConfigException;
+import com.manniwood.cl4pg.v1.resultsethandlers.DeferredResultSetHandler;
 import com.manniwood.cl4pg.v1.resultsethandlers.ResultSetHandler;
-import com.manniwood.cl4pg.v1.sqlparsers.BasicParserListener;
-import com.manniwood.cl4pg.v1.sqlparsers.SqlParser;
+import com.manniwood.cl4pg.v1.sqlparsers.ParsedSql;
+import com.manniwood.cl4pg.v1.sqlparsers.ParserListenerKind;
 import com.manniwood.cl4pg.v1.typeconverters.TypeConverterStore;
 import com.manniwood.cl4pg.v1.util.SqlCache;
 import com.manniwood.cl4pg.v1.util.Str;
@@ -55,12 +57,16 @@ public class SelectB<R, A> implements Command {
     private final String filename;
     private final ResultSetHandler<R> resultSetHandler;
     private final A arg;
+    private final Integer fetchSize;
     private PreparedStatement pstmt;
+    private StatementCache statementCache;
+    private Connection autoCommitConnection;
 
     private SelectB(Builder<R, A> builder) {
         this.sql = builder.sql;
         this.filename = builder.filename;
         this.resultSetHandler = builder.resultSetHandler;
+        this.fetchSize = builder.fetchSize;
         this.arg = builder.arg;
     }
 
@@ -74,24 +80,41 @@ public class SelectB<R, A> implements Command {
                         TypeConverterStore converterStore,
                         SqlCache sqlCache,
                         DataSourceAdapter dataSourceAdapter) throws Exception {
+        ParsedSql parsedSql;
         if (Str.isNullOrEmpty(sql)) {
             sql = sqlCache.get(filename);
+            parsedSql = sqlCache.getParsedSql(filename, ParserListenerKind.BASIC);
+        } else {
+            parsedSql = dataSourceAdapter.getParsedSqlCache().get(sql, ParserListenerKind.BASIC);
         }
 
-        BasicParserListener basicParserListener = new BasicParserListener();
-        SqlParser sqlParser = new SqlParser(basicParserListener);
-        String transformedSql = sqlParser.transform(sql);
-
-        PreparedStatement pstmt = connection.prepareStatement(transformedSql);
-        List<String> getters = basicParserListener.getArgs();
+        statementCache = dataSourceAdapter.getStatementCache();
+        pstmt = statementCache.prepareStatement(connection, parsedSql.getTransformedSql());
+        List<String> getters = parsedSql.getArgs();
         if (getters != null && !getters.isEmpty()) {
             converterStore.setSQLArguments(pstmt, arg, getters);
         }
 
+        int rowsPerFetch = fetchSize == null ? dataSourceAdapter.getFetchSize() : fetchSize;
+        // Always set, because pstmt may be a cached statement that was
+        // last used with a different fetch size.
+        pstmt.setFetchSize(rowsPerFetch);
+        if (rowsPerFetch > 0 && connection.getAutoCommit()) {
+            // PgJDBC only fetches using a cursor inside a transaction, so
+            // turn autocommit off until we are done with the result set.
+            connection.setAutoCommit(false);
+            autoCommitConnection = connection;
+        }
+
         log.debug("Final SQL:\n{}", dataSourceAdapter.unwrapPgPreparedStatement(pstmt));
         ResultSet rs = pstmt.executeQuery();
 
         resultSetHandler.init(converterStore, rs);
+        if (resultSetHandler instanceof DeferredResultSetHandler) {
+            // The handler reads the rows, and closes this command, itself.
+            ((DeferredResultSetHandler<R>) resultSetHandler).attach(this);
+            return;
+        }
         while (rs.next()) {
             resultSetHandler.processRow(rs);
         }
@@ -99,8 +122,17 @@ public class SelectB<R, A> implements Command {
 
     @Override
     public void close() throws Exception {
+        if (resultSetHandler instanceof DeferredResultSetHandler
+                && ((DeferredResultSetHandler<R>) resultSetHandler).isAttached()) {
+            // Still being read; the handler will call close() again later.
+            return;
+        }
         if (pstmt != null) {
-            pstmt.close();
+            statementCache.release(pstmt);
+        }
+        if (autoCommitConnection != null) {
+            // Turning autocommit back on also ends the cursor's transaction.
+            autoCommitConnection.setAutoCommit(true);
         }
     }
 
@@ -112,6 +144,7 @@ public class SelectB<R, A> implements Command {
         private String sql;
         private String filename;
         private ResultSetHandler<R> resultSetHandler;
+        private Integer fetchSize;
         private A arg;
 
         public Builder() {
@@ -133,6 +166,16 @@ public class SelectB<R, A> implements Command {
             return this;
         }
 
+        /**
+         * Number of rows to fetch from the server at a time, using a cursor,
+         * instead of fetching all rows at once. Defaults to the
+         * DataSourceAdapter's FetchSize; 0 fetches all rows at once.
+         */
+        public Builder<R, A> fetchSize(int fetchSize) {
+            this.fetchSize = fetchSize;
+            return this;
+        }
+
         public Builder<R, A> arg(A arg) {
             this.arg = arg;
             return this;
@@ -145,6 +188,9 @@ public class SelectB<R, A> implements Command {
             if (resultSetHandler == null) {
                 throw new Cl4pgConfigException("A result set handler must be specified.");
             }
+            if (fetchSize != null && fetchSize < 0) {
+                throw new Cl4pgConfigException("Fetch size must not be negative.");
+            }
             return new SelectB<R, A>(this);
         }
     }
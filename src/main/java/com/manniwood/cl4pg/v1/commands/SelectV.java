@@ -26,18 +26,18 @@ package com.manniwood.cl4pg.v1.commands;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
+import com.manniwood.cl4pg.v1.datasourceadapters.StatementCache;
 import com.manniwood.cl4pg.v1.exceptions.Cl4pgConfigException;
+import com.manniwood.cl4pg.v1.resultsethandlers.DeferredResultSetHandler;
 import com.manniwood.cl4pg.v1.resultsethandlers.ResultSetHandler;
-import com.manniwood.cl4pg.v1.sqlparsers.BasicParserListener;
-import com.manniwood.cl4pg.v1.sqlparsers.SqlParser;
+import com.manniwood.cl4pg.v1.sqlparsers.ParsedSql;
+import com.manniwood.cl4pg.v1.sqlparsers.ParserListenerKind;
 import com.manniwood.cl4pg.v1.typeconverters.TypeConverterStore;
-import com.manniwood.cl4pg.v1.util.Cllctn;
 import com.manniwood.cl4pg.v1.util.SqlCache;
 import com.manniwood.cl4pg.v1.util.Str;
 
@@ -56,12 +56,16 @@ public class SelectV<R> implements Command {
     private final String filename;
     private final ResultSetHandler<R> resultSetHandler;
     private final Object[] args;
+    private final Integer fetchSize;
     private PreparedStatement pstmt;
+    private StatementCache statementCache;
+    private Connection autoCommitConnection;
 
     private SelectV(Builder<R> builder) {
         this.sql = builder.sql;
         this.filename = builder.filename;
         this.resultSetHandler = builder.resultSetHandler;
+        this.fetchSize = builder.fetchSize;
         this.args = builder.args;
     }
 
@@ -75,27 +79,39 @@ public class SelectV<R> implements Command {
                         TypeConverterStore converterStore,
                         SqlCache sqlCache,
                         DataSourceAdapter dataSourceAdapter) throws Exception {
+        ParsedSql parsedSql;
         if (Str.isNullOrEmpty(sql)) {
             sql = sqlCache.get(filename);
+            parsedSql = sqlCache.getParsedSql(filename, ParserListenerKind.BASIC);
+        } else {
+            parsedSql = dataSourceAdapter.getParsedSqlCache().get(sql, ParserListenerKind.BASIC);
         }
 
-        BasicParserListener basicParserListener = new BasicParserListener();
-        SqlParser sqlParser = new SqlParser(basicParserListener);
-        String transformedSql = sqlParser.transform(sql);
+        statementCache = dataSourceAdapter.getStatementCache();
+        pstmt = statementCache.prepareStatement(connection, parsedSql.getTransformedSql());
 
-        PreparedStatement pstmt = connection.prepareStatement(transformedSql);
-        List<String> classNames = basicParserListener.getArgs();
+        converterStore.setSQLArguments(pstmt, parsedSql, args, 1);
 
-        if (!Cllctn.isNullOrEmpty(classNames)) {
-            for (int i = 0; i < classNames.size(); i++) {
-                converterStore.setSQLArgument(pstmt, i + 1, args[i], classNames.get(i));
-            }
+        int rowsPerFetch = fetchSize == null ? dataSourceAdapter.getFetchSize() : fetchSize;
+        // Always set, because pstmt may be a cached statement that was
+        // last used with a different fetch size.
+        pstmt.setFetchSize(rowsPerFetch);
+        if (rowsPerFetch > 0 && connection.getAutoCommit()) {
+            // PgJDBC only fetches using a cursor inside a transaction, so
+            // turn autocommit off until we are done with the result set.
+            connection.setAutoCommit(false);
+            autoCommitConnection = connection;
         }
 
         log.debug("Final SQL:\n{}", dataSourceAdapter.unwrapPgPreparedStatement(pstmt));
         ResultSet rs = pstmt.executeQuery();
 
         resultSetHandler.init(converterStore, rs);
+        if (resultSetHandler instanceof DeferredResultSetHandler) {
+            // The handler reads the rows, and closes this command, itself.
+            ((DeferredResultSetHandler<R>) resultSetHandler).attach(this);
+            return;
+        }
         while (rs.next()) {
             resultSetHandler.processRow(rs);
         }
@@ -103,8 +119,17 @@ public class SelectV<R> implements Command {
 
     @Override
     public void close() throws Exception {
+        if (resultSetHandler instanceof DeferredResultSetHandler
+                && ((DeferredResultSetHandler<R>) resultSetHandler).isAttached()) {
+            // Still being read; the handler will call close() again later.
+            return;
+        }
         if (pstmt != null) {
-            pstmt.close();
+            statementCache.release(pstmt);
+        }
+        if (autoCommitConnection != null) {
+            // Turning autocommit back on also ends the cursor's transaction.
+            autoCommitConnection.setAutoCommit(true);
         }
     }
 
@@ -116,6 +141,7 @@ public class SelectV<R> implements Command {
         private String sql;
         private String filename;
         private ResultSetHandler<R> resultSetHandler;
+        private Integer fetchSize;
         private Object[] args;
 
         public Builder() {
@@ -137,6 +163,16 @@ public class SelectV<R> implements Command {
             return this;
         }
 
+        /**
+         * Number of rows to fetch from the server at a time, using a cursor,
+         * instead of fetching all rows at once. Defaults to the
+         * DataSourceAdapter's FetchSize; 0 fetches all rows at once.
+         */
+        public Builder<R> fetchSize(int fetchSize) {
+            this.fetchSize = fetchSize;
+            return this;
+        }
+
         public Builder<R> args(Object... args) {
             this.args = args;
             return this;
@@ -149,6 +185,9 @@ public class SelectV<R> implements Command {
             if (resultSetHandler == null) {
                 throw new Cl4pgConfigException("A result set handler must be specified.");
             }
+            if (fetchSize != null && fetchSize < 0) {
+                throw new Cl4pgConfigException("Fetch size must not be negative.");
+            }
             return new SelectV<R>(this);
         }
     }
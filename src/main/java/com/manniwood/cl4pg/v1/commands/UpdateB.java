@@ -30,10 +30,12 @@ import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.manniwood.cl4pg.v1.ConfigDefaults;
 import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
+import com.manniwood.cl4pg.v1.datasourceadapters.StatementCache;
 import com.manniwood.cl4pg.v1.exceptions.Cl4pgConfigException;
-import com.manniwood.cl4pg.v1.sqlparsers.BasicParserListener;
-import com.manniwood.cl4pg.v1.sqlparsers.SqlParser;
+import com.manniwood.cl4pg.v1.sqlparsers.ParsedSql;
+import com.manniwood.cl4pg.v1.sqlparsers.ParserListenerKind;
 import com.manniwood.cl4pg.v1.typeconverters.TypeConverterStore;
 import com.manniwood.cl4pg.v1.util.SqlCache;
 import com.manniwood.cl4pg.v1.util.Str;
@@ -52,13 +54,19 @@ public class UpdateB<A> implements Command {
     private String sql;
     private final String filename;
     private final A arg;
+    private final Iterable<A> args;
+    private final int batchSize;
+    private BatchResult batchResult;
     private PreparedStatement pstmt;
+    private StatementCache statementCache;
     private int numberOfRowsAffected;
 
     private UpdateB(Builder<A> builder) {
         this.sql = builder.sql;
         this.filename = builder.filename;
         this.arg = builder.arg;
+        this.args = builder.args;
+        this.batchSize = builder.batchSize;
     }
 
     @Override
@@ -71,16 +79,23 @@ public class UpdateB<A> implements Command {
                         TypeConverterStore converterStore,
                         SqlCache sqlCache,
                         DataSourceAdapter dataSourceAdapter) throws Exception {
+        ParsedSql parsedSql;
         if (Str.isNullOrEmpty(sql)) {
             sql = sqlCache.get(filename);
+            parsedSql = sqlCache.getParsedSql(filename, ParserListenerKind.BASIC);
+        } else {
+            parsedSql = dataSourceAdapter.getParsedSqlCache().get(sql, ParserListenerKind.BASIC);
         }
 
-        BasicParserListener basicParserListener = new BasicParserListener();
-        SqlParser sqlParser = new SqlParser(basicParserListener);
-        String transformedSql = sqlParser.transform(sql);
-
-        PreparedStatement pstmt = connection.prepareStatement(transformedSql);
-        List<String> getters = basicParserListener.getArgs();
+        statementCache = dataSourceAdapter.getStatementCache();
+        pstmt = statementCache.prepareStatement(connection, parsedSql.getTransformedSql());
+        List<String> getters = parsedSql.getArgs();
+        if (args != null) {
+            log.debug("Batch SQL:\n{}", parsedSql.getTransformedSql());
+            batchResult = BatchRunner.execute(pstmt, args, getters, batchSize, converterStore);
+            numberOfRowsAffected = (int) batchResult.getRowsAffected();
+            return;
+        }
         if (getters != null && !getters.isEmpty()) {
             converterStore.setSQLArguments(pstmt, arg, getters);
         }
@@ -92,7 +107,7 @@ public class UpdateB<A> implements Command {
     @Override
     public void close() throws Exception {
         if (pstmt != null) {
-            pstmt.close();
+            statementCache.release(pstmt);
         }
     }
 
@@ -100,6 +115,16 @@ public class UpdateB<A> implements Command {
         return numberOfRowsAffected;
     }
 
+    /**
+     * Returns the update counts and timings of the batches run, or null if the
+     * command was run with a single bean arg.
+     *
+     * @return
+     */
+    public BatchResult getBatchResult() {
+        return batchResult;
+    }
+
     public static <P> Builder<P> config() {
         return new Builder<P>();
     }
@@ -108,6 +133,8 @@ public class UpdateB<A> implements Command {
         private String sql;
         private String filename;
         private A arg;
+        private Iterable<A> args;
+        private int batchSize = ConfigDefaults.DEFAULT_BATCH_SIZE;
 
         public Builder() {
             // null constructor
@@ -128,10 +155,31 @@ public class UpdateB<A> implements Command {
             return this;
         }
 
+        /**
+         * Runs the command once for each bean in args, sending the beans to
+         * the server in JDBC batches of batchSize beans, instead of one at a
+         * time.
+         */
+        public Builder<A> args(Iterable<A> args) {
+            this.args = args;
+            return this;
+        }
+
+        public Builder<A> batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
         public UpdateB<A> done() {
             if (Str.isNullOrEmpty(sql) && Str.isNullOrEmpty(filename)) {
                 throw new Cl4pgConfigException("SQL string or file must be specified.");
             }
+            if (arg != null && args != null) {
+                throw new Cl4pgConfigException("Specify either a single bean arg or a collection of bean args, not both.");
+            }
+            if (batchSize < 1) {
+                throw new Cl4pgConfigException("Batch size must be at least 1.");
+            }
             return new UpdateB<A>(this);
         }
     }
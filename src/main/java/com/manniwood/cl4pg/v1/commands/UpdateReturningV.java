@@ -26,18 +26,17 @@ package com.manniwood.cl4pg.v1.commands;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
+import com.manniwood.cl4pg.v1.datasourceadapters.StatementCache;
 import com.manniwood.cl4pg.v1.exceptions.Cl4pgConfigException;
 import com.manniwood.cl4pg.v1.resultsethandlers.ResultSetHandler;
-import com.manniwood.cl4pg.v1.sqlparsers.BasicParserListener;
-import com.manniwood.cl4pg.v1.sqlparsers.SqlParser;
+import com.manniwood.cl4pg.v1.sqlparsers.ParsedSql;
+import com.manniwood.cl4pg.v1.sqlparsers.ParserListenerKind;
 import com.manniwood.cl4pg.v1.typeconverters.TypeConverterStore;
-import com.manniwood.cl4pg.v1.util.Cllctn;
 import com.manniwood.cl4pg.v1.util.SqlCache;
 import com.manniwood.cl4pg.v1.util.Str;
 
@@ -57,6 +56,7 @@ public class UpdateReturningV<R> implements Command {
     private final ResultSetHandler<R> resultSetHandler;
     private final Object[] args;
     private PreparedStatement pstmt;
+    private StatementCache statementCache;
     private int numberOfRowsAffected;
 
     private UpdateReturningV(Builder<R> builder) {
@@ -76,22 +76,18 @@ public class UpdateReturningV<R> implements Command {
                         TypeConverterStore converterStore,
                         SqlCache sqlCache,
                         DataSourceAdapter dataSourceAdapter) throws Exception {
+        ParsedSql parsedSql;
         if (Str.isNullOrEmpty(sql)) {
             sql = sqlCache.get(filename);
+            parsedSql = sqlCache.getParsedSql(filename, ParserListenerKind.BASIC);
+        } else {
+            parsedSql = dataSourceAdapter.getParsedSqlCache().get(sql, ParserListenerKind.BASIC);
         }
 
-        BasicParserListener basicParserListener = new BasicParserListener();
-        SqlParser sqlParser = new SqlParser(basicParserListener);
-        String transformedSql = sqlParser.transform(sql);
+        statementCache = dataSourceAdapter.getStatementCache();
+        pstmt = statementCache.prepareStatement(connection, parsedSql.getTransformedSql());
 
-        PreparedStatement pstmt = connection.prepareStatement(transformedSql);
-        List<String> classNames = basicParserListener.getArgs();
-
-        if (!Cllctn.isNullOrEmpty(classNames)) {
-            for (int i = 0; i < classNames.size(); i++) {
-                converterStore.setSQLArgument(pstmt, i + 1, args[i], classNames.get(i));
-            }
-        }
+        converterStore.setSQLArguments(pstmt, parsedSql, args, 1);
 
         log.debug("Final SQL:\n{}", dataSourceAdapter.unwrapPgPreparedStatement(pstmt));
         boolean hasResult = pstmt.execute();
@@ -109,7 +105,7 @@ public class UpdateReturningV<R> implements Command {
     @Override
     public void close() throws Exception {
         if (pstmt != null) {
-            pstmt.close();
+            statementCache.release(pstmt);
         }
     }
 
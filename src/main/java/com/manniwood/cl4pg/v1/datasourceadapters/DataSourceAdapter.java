@@ -29,9 +29,13 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
+import com.manniwood.cl4pg.v1.AsyncPgSession;
 import com.manniwood.cl4pg.v1.PgSession;
+import com.manniwood.cl4pg.v1.notifications.NotificationDispatcher;
+import com.manniwood.cl4pg.v1.resultcache.ResultCache;
 import com.manniwood.cl4pg.v1.resultsethandlers.RowResultSetHandlerBuilder;
 import com.manniwood.cl4pg.v1.resultsethandlers.ScalarResultSetHandlerBuilder;
+import com.manniwood.cl4pg.v1.sqlparsers.ParsedSqlCache;
 import com.manniwood.cl4pg.v1.util.SqlCache;
 import org.postgresql.PGConnection;
 import org.postgresql.PGStatement;
@@ -82,6 +86,48 @@ public interface DataSourceAdapter extends Closeable {
      */
     SqlCache getSqlCache();
 
+    /**
+     * Get the ParsedSqlCache used by this DataSourceAdapter
+     * @return
+     */
+    ParsedSqlCache getParsedSqlCache();
+
+    /**
+     * Get the StatementCache used by this DataSourceAdapter
+     * @return
+     */
+    StatementCache getStatementCache();
+
+    /**
+     * Get the default number of rows that Select commands fetch from the
+     * server at a time; 0 means all rows at once.
+     * @return
+     */
+    int getFetchSize();
+
+    /**
+     * Get the NotificationDispatcher for this DataSourceAdapter, creating it,
+     * and so taking one connection for its own use, on first call.
+     * @return
+     */
+    NotificationDispatcher getNotificationDispatcher();
+
+    /**
+     * Get the ResultCache shared by the cached select methods of this
+     * DataSourceAdapter's sessions, or null if ResultCacheSize is 0. If
+     * ResultCacheChannel is set, the first call also starts the
+     * NotificationDispatcher listening for invalidations on that channel.
+     * @return
+     */
+    ResultCache getResultCache();
+
+    /**
+     * Get the AsyncPgSession that runs work for this DataSourceAdapter on
+     * AsyncThreads threads of its own, creating it on first call.
+     * @return
+     */
+    AsyncPgSession getAsyncSession();
+
     /**
      * Get the ScalarResultSetHandlerBuilder used by this DataSourceAdapter
      * @return
@@ -103,6 +149,41 @@ public interface DataSourceAdapter extends Closeable {
      */
     PGConnection unwrapPgConnection(Connection conn) throws SQLException;
 
+    /**
+     * Returns the physical connection to PostgreSQL underlying this
+     * Connection. For pooling DataSources, the physical connection outlives
+     * the Connection handed out by getConnection().
+     *
+     * @param conn
+     * @return
+     * @throws SQLException
+     */
+    Connection unwrapPhysicalConnection(Connection conn) throws SQLException;
+
+    /**
+     * Lets the DataSource know that statements have been run directly on this
+     * Connection's physical connection, so that a pooling DataSource still
+     * rolls back any uncommitted work when the Connection is returned to the
+     * pool. Non-pooling DataSources can do nothing.
+     *
+     * @param conn
+     * @throws SQLException
+     */
+    void markConnectionDirty(Connection conn) throws SQLException;
+
+    /**
+     * Lets the DataSource see an SQLException thrown by a statement that was
+     * run directly on this Connection's physical connection, so that a
+     * pooling DataSource can evict the Connection if e says it is broken
+     * (SQLState class 08, for instance). Non-pooling DataSources can do
+     * nothing.
+     *
+     * @param conn
+     * @param e
+     */
+    void checkException(Connection conn,
+                        SQLException e);
+
     /**
      * Returns the underlying PGStatement wrapped by this PreparedStatement.
      *
@@ -30,11 +30,15 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.Properties;
+import java.util.concurrent.locks.ReentrantLock;
 
+import com.manniwood.cl4pg.v1.AsyncPgSession;
+import com.manniwood.cl4pg.v1.AsyncThreadMode;
 import com.manniwood.cl4pg.v1.ConfigDefaults;
 import com.manniwood.cl4pg.v1.PgSession;
 import com.manniwood.cl4pg.v1.resultsethandlers.RowResultSetHandlerBuilder;
 import com.manniwood.cl4pg.v1.resultsethandlers.ScalarResultSetHandlerBuilder;
+import com.manniwood.cl4pg.v1.sqlparsers.ParsedSqlCache;
 import com.manniwood.cl4pg.v1.util.*;
 import org.postgresql.PGConnection;
 import org.postgresql.PGStatement;
@@ -44,6 +48,8 @@ import org.slf4j.LoggerFactory;
 import com.manniwood.cl4pg.v1.exceptionconverters.ExceptionConverter;
 import com.manniwood.cl4pg.v1.exceptions.Cl4pgConfFileException;
 import com.manniwood.cl4pg.v1.exceptions.Cl4pgFailedConnectionException;
+import com.manniwood.cl4pg.v1.notifications.NotificationDispatcher;
+import com.manniwood.cl4pg.v1.resultcache.ResultCache;
 import com.manniwood.cl4pg.v1.typeconverters.TypeConverterStore;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
@@ -68,6 +74,26 @@ public class HikariCpDataSourceAdapter implements DataSourceAdapter {
     private static final Logger log = LoggerFactory.getLogger(HikariCpDataSourceAdapter.class);
 
     private final SqlCache sqlCache = new SqlCache();
+    private final ParsedSqlCache parsedSqlCache;
+    private final StatementCache statementCache;
+    private final int fetchSize;
+    private final int notificationMaxPollMillis;
+    private final int notificationIdleCheckMillis;
+    /**
+     * Guards the lazily-created members below. A ReentrantLock rather than
+     * synchronized, so that a virtual thread waiting for it does not pin its
+     * carrier thread.
+     */
+    private final ReentrantLock lazyInitLock = new ReentrantLock();
+    private volatile NotificationDispatcher notificationDispatcher;
+    private final int resultCacheSize;
+    private final long resultCacheTtlMillis;
+    private final String resultCacheChannel;
+    private volatile ResultCache resultCache;
+    private final int asyncThreads;
+    private final int asyncQueueSize;
+    private final AsyncThreadMode asyncThreadMode;
+    private volatile AsyncPgSession asyncSession;
     private final ScalarResultSetHandlerBuilder scalarResultSetHandlerBuilder;
     private final RowResultSetHandlerBuilder rowResultSetHandlerBuilder;
 
@@ -85,6 +111,7 @@ public class HikariCpDataSourceAdapter implements DataSourceAdapter {
     public Connection getConnection() {
         Connection conn = null;
         try {
+            statementCache.prune();
             conn = ds.getConnection();
             // HikariCP should have done this for us: conn.setTransactionIsolation(transactionIsolationLevel);
             // HikariCP should have done this for us: conn.setAutoCommit(autoCommit);
@@ -105,14 +132,43 @@ public class HikariCpDataSourceAdapter implements DataSourceAdapter {
         return proxy.<PGConnection> unwrap(PGConnection.class);
     }
 
+    @Override
+    public Connection unwrapPhysicalConnection(Connection conn) throws SQLException {
+        ConnectionProxy proxy = (ConnectionProxy) conn;
+        return proxy.<Connection> unwrap(Connection.class);
+    }
+
+    @Override
+    public void markConnectionDirty(Connection conn) throws SQLException {
+        ConnectionProxy proxy = (ConnectionProxy) conn;
+        proxy.markCommitStateDirty();
+    }
+
+    @Override
+    public void checkException(Connection conn,
+                               SQLException e) {
+        ConnectionProxy proxy = (ConnectionProxy) conn;
+        // Marks the pool entry for eviction if e's SQLState is one that
+        // HikariCP considers fatal.
+        proxy.checkException(e);
+    }
+
     @Override
     public PGStatement unwrapPgPreparedStatement(PreparedStatement pstmt) throws SQLException {
+        if (pstmt instanceof PGStatement) {
+            // came straight from the physical connection, via the StatementCache
+            return (PGStatement) pstmt;
+        }
         PreparedStatementProxy proxy = (PreparedStatementProxy) pstmt;
         return proxy.<PGStatement> unwrap(PGStatement.class);
     }
 
     @Override
     public PGStatement unwrapPgCallableStatement(CallableStatement cstmt) throws SQLException {
+        if (cstmt instanceof PGStatement) {
+            // came straight from the physical connection, via the StatementCache
+            return (PGStatement) cstmt;
+        }
         CallableStatementProxy proxy = (CallableStatementProxy) cstmt;
         return proxy.<PGStatement> unwrap(PGStatement.class);
     }
@@ -217,6 +273,121 @@ public class HikariCpDataSourceAdapter implements DataSourceAdapter {
             return this;
         }
 
+        public Builder parsedSqlCacheSize(int parsedSqlCacheSize) {
+            props.setProperty(ConfigDefaults.PARSED_SQL_CACHE_SIZE_KEY, String.valueOf(parsedSqlCacheSize));
+            return this;
+        }
+
+        public Builder parsedSqlCacheSize(String parsedSqlCacheSize) {
+            props.setProperty(ConfigDefaults.PARSED_SQL_CACHE_SIZE_KEY, parsedSqlCacheSize);
+            return this;
+        }
+
+        public Builder rowMappingPlanCacheSize(int rowMappingPlanCacheSize) {
+            props.setProperty(ConfigDefaults.ROW_MAPPING_PLAN_CACHE_SIZE_KEY, String.valueOf(rowMappingPlanCacheSize));
+            return this;
+        }
+
+        public Builder rowMappingPlanCacheSize(String rowMappingPlanCacheSize) {
+            props.setProperty(ConfigDefaults.ROW_MAPPING_PLAN_CACHE_SIZE_KEY, rowMappingPlanCacheSize);
+            return this;
+        }
+
+        public Builder fetchSize(int fetchSize) {
+            props.setProperty(ConfigDefaults.FETCH_SIZE_KEY, String.valueOf(fetchSize));
+            return this;
+        }
+
+        public Builder fetchSize(String fetchSize) {
+            props.setProperty(ConfigDefaults.FETCH_SIZE_KEY, fetchSize);
+            return this;
+        }
+
+        public Builder notificationMaxPollMillis(int notificationMaxPollMillis) {
+            props.setProperty(ConfigDefaults.NOTIFICATION_MAX_POLL_MILLIS_KEY, String.valueOf(notificationMaxPollMillis));
+            return this;
+        }
+
+        public Builder notificationMaxPollMillis(String notificationMaxPollMillis) {
+            props.setProperty(ConfigDefaults.NOTIFICATION_MAX_POLL_MILLIS_KEY, notificationMaxPollMillis);
+            return this;
+        }
+
+        public Builder notificationIdleCheckMillis(int notificationIdleCheckMillis) {
+            props.setProperty(ConfigDefaults.NOTIFICATION_IDLE_CHECK_MILLIS_KEY, String.valueOf(notificationIdleCheckMillis));
+            return this;
+        }
+
+        public Builder notificationIdleCheckMillis(String notificationIdleCheckMillis) {
+            props.setProperty(ConfigDefaults.NOTIFICATION_IDLE_CHECK_MILLIS_KEY, notificationIdleCheckMillis);
+            return this;
+        }
+
+        public Builder resultCacheSize(int resultCacheSize) {
+            props.setProperty(ConfigDefaults.RESULT_CACHE_SIZE_KEY, String.valueOf(resultCacheSize));
+            return this;
+        }
+
+        public Builder resultCacheSize(String resultCacheSize) {
+            props.setProperty(ConfigDefaults.RESULT_CACHE_SIZE_KEY, resultCacheSize);
+            return this;
+        }
+
+        public Builder resultCacheTtlMillis(long resultCacheTtlMillis) {
+            props.setProperty(ConfigDefaults.RESULT_CACHE_TTL_MILLIS_KEY, String.valueOf(resultCacheTtlMillis));
+            return this;
+        }
+
+        public Builder resultCacheTtlMillis(String resultCacheTtlMillis) {
+            props.setProperty(ConfigDefaults.RESULT_CACHE_TTL_MILLIS_KEY, resultCacheTtlMillis);
+            return this;
+        }
+
+        public Builder resultCacheChannel(String resultCacheChannel) {
+            props.setProperty(ConfigDefaults.RESULT_CACHE_CHANNEL_KEY, resultCacheChannel);
+            return this;
+        }
+
+        public Builder asyncThreads(int asyncThreads) {
+            props.setProperty(ConfigDefaults.ASYNC_THREADS_KEY, String.valueOf(asyncThreads));
+            return this;
+        }
+
+        public Builder asyncThreads(String asyncThreads) {
+            props.setProperty(ConfigDefaults.ASYNC_THREADS_KEY, asyncThreads);
+            return this;
+        }
+
+        public Builder asyncQueueSize(int asyncQueueSize) {
+            props.setProperty(ConfigDefaults.ASYNC_QUEUE_SIZE_KEY, String.valueOf(asyncQueueSize));
+            return this;
+        }
+
+        public Builder asyncQueueSize(String asyncQueueSize) {
+            props.setProperty(ConfigDefaults.ASYNC_QUEUE_SIZE_KEY, asyncQueueSize);
+            return this;
+        }
+
+        public Builder asyncThreadMode(AsyncThreadMode asyncThreadMode) {
+            props.setProperty(ConfigDefaults.ASYNC_THREAD_MODE_KEY, asyncThreadMode.name());
+            return this;
+        }
+
+        public Builder asyncThreadMode(String asyncThreadMode) {
+            props.setProperty(ConfigDefaults.ASYNC_THREAD_MODE_KEY, asyncThreadMode);
+            return this;
+        }
+
+        public Builder statementCacheSize(int statementCacheSize) {
+            props.setProperty(ConfigDefaults.STATEMENT_CACHE_SIZE_KEY, String.valueOf(statementCacheSize));
+            return this;
+        }
+
+        public Builder statementCacheSize(String statementCacheSize) {
+            props.setProperty(ConfigDefaults.STATEMENT_CACHE_SIZE_KEY, statementCacheSize);
+            return this;
+        }
+
 
         public Builder hostname(String hostname) {
             props.setProperty(ConfigDefaults.HOSTNAME_KEY, hostname);
@@ -690,6 +861,17 @@ public class HikariCpDataSourceAdapter implements DataSourceAdapter {
         ds = null;
         scalarResultSetHandlerBuilder = null;
         rowResultSetHandlerBuilder = null;
+        parsedSqlCache = null;
+        statementCache = null;
+        fetchSize = 0;
+        notificationMaxPollMillis = 0;
+        notificationIdleCheckMillis = 0;
+        resultCacheSize = 0;
+        resultCacheTtlMillis = 0;
+        resultCacheChannel = null;
+        asyncThreads = 0;
+        asyncQueueSize = 0;
+        asyncThreadMode = null;
     }
 
     private HikariCpDataSourceAdapter(Builder builder) {
@@ -778,15 +960,71 @@ public class HikariCpDataSourceAdapter implements DataSourceAdapter {
         config.setDataSourceProperties(connProps);
 
         exceptionConverter = builder.exceptionConverter;
-        converterStore = new TypeConverterStore(builder.typeConverterConfFiles);
+        String rowMappingPlanCacheSize = connProps.getProperty(ConfigDefaults.ROW_MAPPING_PLAN_CACHE_SIZE_KEY);
+        converterStore = new TypeConverterStore(builder.typeConverterConfFiles,
+                Str.isNullOrEmpty(rowMappingPlanCacheSize)
+                        ? ConfigDefaults.DEFAULT_ROW_MAPPING_PLAN_CACHE_SIZE
+                        : Integer.parseInt(rowMappingPlanCacheSize));
         scalarResultSetHandlerBuilder = builder.scalarResultSetHandlerBuilder;
         rowResultSetHandlerBuilder = builder.rowResultSetHandlerBuilder;
 
+        String parsedSqlCacheSize = connProps.getProperty(ConfigDefaults.PARSED_SQL_CACHE_SIZE_KEY);
+        parsedSqlCache = new ParsedSqlCache(Str.isNullOrEmpty(parsedSqlCacheSize)
+                ? ConfigDefaults.DEFAULT_PARSED_SQL_CACHE_SIZE
+                : Integer.parseInt(parsedSqlCacheSize));
+
+        String statementCacheSize = connProps.getProperty(ConfigDefaults.STATEMENT_CACHE_SIZE_KEY);
+        statementCache = new StatementCache(Str.isNullOrEmpty(statementCacheSize)
+                ? ConfigDefaults.DEFAULT_STATEMENT_CACHE_SIZE
+                : Integer.parseInt(statementCacheSize),
+                this);
+
+        String fetchSizeStr = connProps.getProperty(ConfigDefaults.FETCH_SIZE_KEY);
+        fetchSize = Str.isNullOrEmpty(fetchSizeStr)
+                ? ConfigDefaults.DEFAULT_FETCH_SIZE
+                : Integer.parseInt(fetchSizeStr);
+
+        String notificationMaxPollMillisStr = connProps.getProperty(ConfigDefaults.NOTIFICATION_MAX_POLL_MILLIS_KEY);
+        notificationMaxPollMillis = Str.isNullOrEmpty(notificationMaxPollMillisStr)
+                ? ConfigDefaults.DEFAULT_NOTIFICATION_MAX_POLL_MILLIS
+                : Integer.parseInt(notificationMaxPollMillisStr);
+
+        String notificationIdleCheckMillisStr = connProps.getProperty(ConfigDefaults.NOTIFICATION_IDLE_CHECK_MILLIS_KEY);
+        notificationIdleCheckMillis = Str.isNullOrEmpty(notificationIdleCheckMillisStr)
+                ? ConfigDefaults.DEFAULT_NOTIFICATION_IDLE_CHECK_MILLIS
+                : Integer.parseInt(notificationIdleCheckMillisStr);
+
+        String resultCacheSizeStr = connProps.getProperty(ConfigDefaults.RESULT_CACHE_SIZE_KEY);
+        resultCacheSize = Str.isNullOrEmpty(resultCacheSizeStr)
+                ? ConfigDefaults.DEFAULT_RESULT_CACHE_SIZE
+                : Integer.parseInt(resultCacheSizeStr);
+        String resultCacheTtlMillisStr = connProps.getProperty(ConfigDefaults.RESULT_CACHE_TTL_MILLIS_KEY);
+        resultCacheTtlMillis = Str.isNullOrEmpty(resultCacheTtlMillisStr)
+                ? ConfigDefaults.DEFAULT_RESULT_CACHE_TTL_MILLIS
+                : Long.parseLong(resultCacheTtlMillisStr);
+        String resultCacheChannelStr = connProps.getProperty(ConfigDefaults.RESULT_CACHE_CHANNEL_KEY);
+        resultCacheChannel = Str.isNullOrEmpty(resultCacheChannelStr) ? null : resultCacheChannelStr;
+
+        String asyncThreadsStr = connProps.getProperty(ConfigDefaults.ASYNC_THREADS_KEY);
+        asyncThreads = Str.isNullOrEmpty(asyncThreadsStr)
+                ? ConfigDefaults.DEFAULT_ASYNC_THREADS
+                : Integer.parseInt(asyncThreadsStr);
+        String asyncQueueSizeStr = connProps.getProperty(ConfigDefaults.ASYNC_QUEUE_SIZE_KEY);
+        asyncQueueSize = Str.isNullOrEmpty(asyncQueueSizeStr)
+                ? ConfigDefaults.DEFAULT_ASYNC_QUEUE_SIZE
+                : Integer.parseInt(asyncQueueSizeStr);
+        String asyncThreadModeStr = connProps.getProperty(ConfigDefaults.ASYNC_THREAD_MODE_KEY);
+        asyncThreadMode = AsyncThreadMode.valueOf((Str.isNullOrEmpty(asyncThreadModeStr)
+                ? ConfigDefaults.DEFAULT_ASYNC_THREAD_MODE
+                : asyncThreadModeStr).trim().toUpperCase());
+
         ds = new HikariDataSource(config);
     }
 
     @Override
     public void close() {
+        closeAsyncSession();
+        closeNotificationDispatcher();
         ds.close();
     }
 
@@ -800,6 +1038,103 @@ public class HikariCpDataSourceAdapter implements DataSourceAdapter {
         return sqlCache;
     }
 
+    @Override
+    public ParsedSqlCache getParsedSqlCache() {
+        return parsedSqlCache;
+    }
+
+    @Override
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    @Override
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    private void closeNotificationDispatcher() {
+        lazyInitLock.lock();
+        try {
+            if (notificationDispatcher != null) {
+                notificationDispatcher.close();
+                notificationDispatcher = null;
+            }
+        } finally {
+            lazyInitLock.unlock();
+        }
+    }
+
+    @Override
+    public NotificationDispatcher getNotificationDispatcher() {
+        NotificationDispatcher dispatcher = notificationDispatcher;
+        if (dispatcher != null) {
+            return dispatcher;
+        }
+        lazyInitLock.lock();
+        try {
+            if (notificationDispatcher == null) {
+                notificationDispatcher = new NotificationDispatcher(this, notificationMaxPollMillis, notificationIdleCheckMillis);
+            }
+            return notificationDispatcher;
+        } finally {
+            lazyInitLock.unlock();
+        }
+    }
+
+    @Override
+    public ResultCache getResultCache() {
+        if (resultCacheSize == 0) {
+            return null;
+        }
+        ResultCache cache = resultCache;
+        if (cache != null) {
+            return cache;
+        }
+        lazyInitLock.lock();
+        try {
+            if (resultCache == null) {
+                cache = new ResultCache(resultCacheSize, resultCacheTtlMillis);
+                if (resultCacheChannel != null) {
+                    cache.listenForInvalidations(getNotificationDispatcher(), resultCacheChannel);
+                }
+                resultCache = cache;
+            }
+            return resultCache;
+        } finally {
+            lazyInitLock.unlock();
+        }
+    }
+
+    @Override
+    public AsyncPgSession getAsyncSession() {
+        AsyncPgSession session = asyncSession;
+        if (session != null) {
+            return session;
+        }
+        lazyInitLock.lock();
+        try {
+            if (asyncSession == null) {
+                asyncSession = new AsyncPgSession(this, asyncThreads, asyncQueueSize, asyncThreadMode);
+            }
+            return asyncSession;
+        } finally {
+            lazyInitLock.unlock();
+        }
+    }
+
+    private void closeAsyncSession() {
+        lazyInitLock.lock();
+        try {
+            if (asyncSession != null) {
+                asyncSession.close();
+                asyncSession = null;
+            }
+        } finally {
+            lazyInitLock.unlock();
+        }
+    }
+
     @Override
     public ScalarResultSetHandlerBuilder getScalarResultSetHandlerBuilder() {
         return scalarResultSetHandlerBuilder;
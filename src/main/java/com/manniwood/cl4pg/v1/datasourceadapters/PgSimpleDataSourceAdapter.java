@@ -23,13 +23,18 @@ THE SOFTWARE.
  */
 package com.manniwood.cl4pg.v1.datasourceadapters;
 
+import com.manniwood.cl4pg.v1.AsyncPgSession;
+import com.manniwood.cl4pg.v1.AsyncThreadMode;
 import com.manniwood.cl4pg.v1.ConfigDefaults;
 import com.manniwood.cl4pg.v1.PgSession;
 import com.manniwood.cl4pg.v1.exceptionconverters.ExceptionConverter;
 import com.manniwood.cl4pg.v1.exceptions.Cl4pgConfFileException;
 import com.manniwood.cl4pg.v1.exceptions.Cl4pgFailedConnectionException;
+import com.manniwood.cl4pg.v1.notifications.NotificationDispatcher;
+import com.manniwood.cl4pg.v1.resultcache.ResultCache;
 import com.manniwood.cl4pg.v1.resultsethandlers.RowResultSetHandlerBuilder;
 import com.manniwood.cl4pg.v1.resultsethandlers.ScalarResultSetHandlerBuilder;
+import com.manniwood.cl4pg.v1.sqlparsers.ParsedSqlCache;
 import com.manniwood.cl4pg.v1.typeconverters.TypeConverterStore;
 import com.manniwood.cl4pg.v1.util.PropsUtil;
 import com.manniwood.cl4pg.v1.util.ReflectionUtil;
@@ -50,6 +55,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.Properties;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * PGSimpleDataSource implementation of DataSourceAdapter, with
@@ -57,6 +63,10 @@ import java.util.Properties;
  * configures itself from cl4pg/PgSimpleDataSourceAdapter.properties found in
  * the classpath. Use this DataSource if you need each call to getConnection()
  * to return a brand new connection to PostgreSQL.
+ * <p>
+ * Alternatively, set pooled=true to have connections lent out by a small
+ * built-in SimpleConnectionPool, for when HikariCP is not available; closing
+ * a PgSession then returns its connection to the pool.
  *
  * @author mwood
  *
@@ -68,6 +78,26 @@ public class PgSimpleDataSourceAdapter implements DataSourceAdapter {
     private final static Logger log = LoggerFactory.getLogger(PgSimpleDataSourceAdapter.class);
 
     private final SqlCache sqlCache = new SqlCache();
+    private final ParsedSqlCache parsedSqlCache;
+    private final StatementCache statementCache;
+    private final int fetchSize;
+    private final int notificationMaxPollMillis;
+    private final int notificationIdleCheckMillis;
+    /**
+     * Guards the lazily-created members below. A ReentrantLock rather than
+     * synchronized, so that a virtual thread waiting for it does not pin its
+     * carrier thread.
+     */
+    private final ReentrantLock lazyInitLock = new ReentrantLock();
+    private volatile NotificationDispatcher notificationDispatcher;
+    private final int resultCacheSize;
+    private final long resultCacheTtlMillis;
+    private final String resultCacheChannel;
+    private volatile ResultCache resultCache;
+    private final int asyncThreads;
+    private final int asyncQueueSize;
+    private final AsyncThreadMode asyncThreadMode;
+    private volatile AsyncPgSession asyncSession;
     private final ScalarResultSetHandlerBuilder scalarResultSetHandlerBuilder;
     private final RowResultSetHandlerBuilder rowResultSetHandlerBuilder;
     private final ExceptionConverter exceptionConverter;
@@ -76,6 +106,7 @@ public class PgSimpleDataSourceAdapter implements DataSourceAdapter {
     private final Properties connProps;
     private final Driver driver;
     private final String url;
+    private final SimpleConnectionPool pool;
 
     @Override
     public PgSession getSession() {
@@ -86,15 +117,21 @@ public class PgSimpleDataSourceAdapter implements DataSourceAdapter {
     public Connection getConnection() {
         Connection conn = null;
         try {
-            conn = driver.connect(url, connProps);
-            // XXX: why do we have to set this here? Doesn't connect, above, use the connProps?
-            conn.setAutoCommit(Boolean.parseBoolean(connProps.getProperty(ConfigDefaults.AUTO_COMMIT_KEY)));
+            statementCache.prune();
+            conn = pool == null ? connect() : pool.getConnection();
         } catch (SQLException e) {
             throw new Cl4pgFailedConnectionException("Could not get connection.", e);
         }
         return conn;
     }
 
+    private Connection connect() throws SQLException {
+        Connection conn = driver.connect(url, connProps);
+        // XXX: why do we have to set this here? Doesn't connect, above, use the connProps?
+        conn.setAutoCommit(Boolean.parseBoolean(connProps.getProperty(ConfigDefaults.AUTO_COMMIT_KEY)));
+        return conn;
+    }
+
     @Override
     public ExceptionConverter getExceptionConverter() {
         return exceptionConverter;
@@ -102,7 +139,36 @@ public class PgSimpleDataSourceAdapter implements DataSourceAdapter {
 
     @Override
     public PGConnection unwrapPgConnection(Connection conn) throws SQLException {
-        return (PGConnection) conn;
+        if (conn instanceof PGConnection) {
+            return (PGConnection) conn;
+        }
+        // pooled
+        return conn.unwrap(PGConnection.class);
+    }
+
+    @Override
+    public Connection unwrapPhysicalConnection(Connection conn) throws SQLException {
+        if (conn instanceof PGConnection) {
+            return conn;
+        }
+        // pooled
+        return conn.unwrap(Connection.class);
+    }
+
+    @Override
+    public void markConnectionDirty(Connection conn) throws SQLException {
+        // no-op: the pool, if any, checks the physical connection itself for
+        // open transactions when the connection is returned
+    }
+
+    @Override
+    public void checkException(Connection conn,
+                               SQLException e) {
+        // Without a pool, a broken connection is simply closed along with its
+        // PgSession
+        if (pool != null) {
+            pool.checkException(conn, e);
+        }
     }
 
     @Override
@@ -215,6 +281,196 @@ public class PgSimpleDataSourceAdapter implements DataSourceAdapter {
             return this;
         }
 
+        public Builder parsedSqlCacheSize(int parsedSqlCacheSize) {
+            props.setProperty(ConfigDefaults.PARSED_SQL_CACHE_SIZE_KEY, String.valueOf(parsedSqlCacheSize));
+            return this;
+        }
+
+        public Builder parsedSqlCacheSize(String parsedSqlCacheSize) {
+            props.setProperty(ConfigDefaults.PARSED_SQL_CACHE_SIZE_KEY, parsedSqlCacheSize);
+            return this;
+        }
+
+        public Builder rowMappingPlanCacheSize(int rowMappingPlanCacheSize) {
+            props.setProperty(ConfigDefaults.ROW_MAPPING_PLAN_CACHE_SIZE_KEY, String.valueOf(rowMappingPlanCacheSize));
+            return this;
+        }
+
+        public Builder rowMappingPlanCacheSize(String rowMappingPlanCacheSize) {
+            props.setProperty(ConfigDefaults.ROW_MAPPING_PLAN_CACHE_SIZE_KEY, rowMappingPlanCacheSize);
+            return this;
+        }
+
+        public Builder fetchSize(int fetchSize) {
+            props.setProperty(ConfigDefaults.FETCH_SIZE_KEY, String.valueOf(fetchSize));
+            return this;
+        }
+
+        public Builder fetchSize(String fetchSize) {
+            props.setProperty(ConfigDefaults.FETCH_SIZE_KEY, fetchSize);
+            return this;
+        }
+
+        public Builder notificationMaxPollMillis(int notificationMaxPollMillis) {
+            props.setProperty(ConfigDefaults.NOTIFICATION_MAX_POLL_MILLIS_KEY, String.valueOf(notificationMaxPollMillis));
+            return this;
+        }
+
+        public Builder notificationMaxPollMillis(String notificationMaxPollMillis) {
+            props.setProperty(ConfigDefaults.NOTIFICATION_MAX_POLL_MILLIS_KEY, notificationMaxPollMillis);
+            return this;
+        }
+
+        public Builder notificationIdleCheckMillis(int notificationIdleCheckMillis) {
+            props.setProperty(ConfigDefaults.NOTIFICATION_IDLE_CHECK_MILLIS_KEY, String.valueOf(notificationIdleCheckMillis));
+            return this;
+        }
+
+        public Builder notificationIdleCheckMillis(String notificationIdleCheckMillis) {
+            props.setProperty(ConfigDefaults.NOTIFICATION_IDLE_CHECK_MILLIS_KEY, notificationIdleCheckMillis);
+            return this;
+        }
+
+        public Builder resultCacheSize(int resultCacheSize) {
+            props.setProperty(ConfigDefaults.RESULT_CACHE_SIZE_KEY, String.valueOf(resultCacheSize));
+            return this;
+        }
+
+        public Builder resultCacheSize(String resultCacheSize) {
+            props.setProperty(ConfigDefaults.RESULT_CACHE_SIZE_KEY, resultCacheSize);
+            return this;
+        }
+
+        public Builder resultCacheTtlMillis(long resultCacheTtlMillis) {
+            props.setProperty(ConfigDefaults.RESULT_CACHE_TTL_MILLIS_KEY, String.valueOf(resultCacheTtlMillis));
+            return this;
+        }
+
+        public Builder resultCacheTtlMillis(String resultCacheTtlMillis) {
+            props.setProperty(ConfigDefaults.RESULT_CACHE_TTL_MILLIS_KEY, resultCacheTtlMillis);
+            return this;
+        }
+
+        public Builder resultCacheChannel(String resultCacheChannel) {
+            props.setProperty(ConfigDefaults.RESULT_CACHE_CHANNEL_KEY, resultCacheChannel);
+            return this;
+        }
+
+        public Builder asyncThreads(int asyncThreads) {
+            props.setProperty(ConfigDefaults.ASYNC_THREADS_KEY, String.valueOf(asyncThreads));
+            return this;
+        }
+
+        public Builder asyncThreads(String asyncThreads) {
+            props.setProperty(ConfigDefaults.ASYNC_THREADS_KEY, asyncThreads);
+            return this;
+        }
+
+        public Builder asyncQueueSize(int asyncQueueSize) {
+            props.setProperty(ConfigDefaults.ASYNC_QUEUE_SIZE_KEY, String.valueOf(asyncQueueSize));
+            return this;
+        }
+
+        public Builder asyncQueueSize(String asyncQueueSize) {
+            props.setProperty(ConfigDefaults.ASYNC_QUEUE_SIZE_KEY, asyncQueueSize);
+            return this;
+        }
+
+        public Builder asyncThreadMode(AsyncThreadMode asyncThreadMode) {
+            props.setProperty(ConfigDefaults.ASYNC_THREAD_MODE_KEY, asyncThreadMode.name());
+            return this;
+        }
+
+        public Builder asyncThreadMode(String asyncThreadMode) {
+            props.setProperty(ConfigDefaults.ASYNC_THREAD_MODE_KEY, asyncThreadMode);
+            return this;
+        }
+
+        public Builder statementCacheSize(int statementCacheSize) {
+            props.setProperty(ConfigDefaults.STATEMENT_CACHE_SIZE_KEY, String.valueOf(statementCacheSize));
+            return this;
+        }
+
+        public Builder statementCacheSize(String statementCacheSize) {
+            props.setProperty(ConfigDefaults.STATEMENT_CACHE_SIZE_KEY, statementCacheSize);
+            return this;
+        }
+
+        public Builder pooled(boolean pooled) {
+            props.setProperty(ConfigDefaults.POOLED_KEY, String.valueOf(pooled));
+            return this;
+        }
+
+        public Builder pooled(String pooled) {
+            props.setProperty(ConfigDefaults.POOLED_KEY, pooled);
+            return this;
+        }
+
+        public Builder initialConnections(int initialConnections) {
+            props.setProperty(ConfigDefaults.MINUMUM_IDLE_KEY, String.valueOf(initialConnections));
+            return this;
+        }
+
+        public Builder initialConnections(String initialConnections) {
+            props.setProperty(ConfigDefaults.MINUMUM_IDLE_KEY, initialConnections);
+            return this;
+        }
+
+        public Builder maxConnections(int maxConnections) {
+            props.setProperty(ConfigDefaults.MAXIMUM_POOL_SIZE_KEY, String.valueOf(maxConnections));
+            return this;
+        }
+
+        public Builder maxConnections(String maxConnections) {
+            props.setProperty(ConfigDefaults.MAXIMUM_POOL_SIZE_KEY, maxConnections);
+            return this;
+        }
+
+        public Builder connectionTimeout(long connectionTimeout) {
+            props.setProperty(ConfigDefaults.CONNECTION_TIMEOUT_KEY, String.valueOf(connectionTimeout));
+            return this;
+        }
+
+        public Builder connectionTimeout(String connectionTimeout) {
+            props.setProperty(ConfigDefaults.CONNECTION_TIMEOUT_KEY, connectionTimeout);
+            return this;
+        }
+
+        public Builder idleTimeout(long idleTimeout) {
+            props.setProperty(ConfigDefaults.IDLE_TIMEOUT_KEY, String.valueOf(idleTimeout));
+            return this;
+        }
+
+        public Builder idleTimeout(String idleTimeout) {
+            props.setProperty(ConfigDefaults.IDLE_TIMEOUT_KEY, idleTimeout);
+            return this;
+        }
+
+        public Builder maxLifetime(long maxLifetime) {
+            props.setProperty(ConfigDefaults.MAX_LIFETIME_KEY, String.valueOf(maxLifetime));
+            return this;
+        }
+
+        public Builder maxLifetime(String maxLifetime) {
+            props.setProperty(ConfigDefaults.MAX_LIFETIME_KEY, maxLifetime);
+            return this;
+        }
+
+        public Builder validationTimeout(long validationTimeout) {
+            props.setProperty(ConfigDefaults.VALIDATION_TIMEOUT_KEY, String.valueOf(validationTimeout));
+            return this;
+        }
+
+        public Builder validationTimeout(String validationTimeout) {
+            props.setProperty(ConfigDefaults.VALIDATION_TIMEOUT_KEY, validationTimeout);
+            return this;
+        }
+
+        public Builder connectionTestQuery(String connectionTestQuery) {
+            props.setProperty(ConfigDefaults.CONNECTION_TEST_QUERY_KEY, connectionTestQuery);
+            return this;
+        }
+
         public Builder hostname(String hostname) {
             props.setProperty(ConfigDefaults.HOSTNAME_KEY, hostname);
             return this;
@@ -581,6 +837,18 @@ public class PgSimpleDataSourceAdapter implements DataSourceAdapter {
         driver = null;
         scalarResultSetHandlerBuilder = null;
         rowResultSetHandlerBuilder = null;
+        parsedSqlCache = null;
+        statementCache = null;
+        fetchSize = 0;
+        notificationMaxPollMillis = 0;
+        notificationIdleCheckMillis = 0;
+        resultCacheSize = 0;
+        resultCacheTtlMillis = 0;
+        resultCacheChannel = null;
+        asyncThreads = 0;
+        asyncQueueSize = 0;
+        asyncThreadMode = null;
+        pool = null;
     }
 
     private PgSimpleDataSourceAdapter(Builder builder) {
@@ -594,14 +862,113 @@ public class PgSimpleDataSourceAdapter implements DataSourceAdapter {
                 + connProps.getProperty(ConfigDefaults.DATABASE_KEY);
 
         exceptionConverter = builder.exceptionConverter;
-        converterStore = new TypeConverterStore(builder.typeConverterConfFiles);
+        String rowMappingPlanCacheSize = connProps.getProperty(ConfigDefaults.ROW_MAPPING_PLAN_CACHE_SIZE_KEY);
+        converterStore = new TypeConverterStore(builder.typeConverterConfFiles,
+                Str.isNullOrEmpty(rowMappingPlanCacheSize)
+                        ? ConfigDefaults.DEFAULT_ROW_MAPPING_PLAN_CACHE_SIZE
+                        : Integer.parseInt(rowMappingPlanCacheSize));
         scalarResultSetHandlerBuilder = builder.scalarResultSetHandlerBuilder;
         rowResultSetHandlerBuilder = builder.rowResultSetHandlerBuilder;
+
+        String parsedSqlCacheSize = connProps.getProperty(ConfigDefaults.PARSED_SQL_CACHE_SIZE_KEY);
+        parsedSqlCache = new ParsedSqlCache(Str.isNullOrEmpty(parsedSqlCacheSize)
+                ? ConfigDefaults.DEFAULT_PARSED_SQL_CACHE_SIZE
+                : Integer.parseInt(parsedSqlCacheSize));
+
+        String statementCacheSize = connProps.getProperty(ConfigDefaults.STATEMENT_CACHE_SIZE_KEY);
+        statementCache = new StatementCache(Str.isNullOrEmpty(statementCacheSize)
+                ? ConfigDefaults.DEFAULT_STATEMENT_CACHE_SIZE
+                : Integer.parseInt(statementCacheSize),
+                this);
+
+        String fetchSizeStr = connProps.getProperty(ConfigDefaults.FETCH_SIZE_KEY);
+        fetchSize = Str.isNullOrEmpty(fetchSizeStr)
+                ? ConfigDefaults.DEFAULT_FETCH_SIZE
+                : Integer.parseInt(fetchSizeStr);
+
+        String notificationMaxPollMillisStr = connProps.getProperty(ConfigDefaults.NOTIFICATION_MAX_POLL_MILLIS_KEY);
+        notificationMaxPollMillis = Str.isNullOrEmpty(notificationMaxPollMillisStr)
+                ? ConfigDefaults.DEFAULT_NOTIFICATION_MAX_POLL_MILLIS
+                : Integer.parseInt(notificationMaxPollMillisStr);
+
+        String notificationIdleCheckMillisStr = connProps.getProperty(ConfigDefaults.NOTIFICATION_IDLE_CHECK_MILLIS_KEY);
+        notificationIdleCheckMillis = Str.isNullOrEmpty(notificationIdleCheckMillisStr)
+                ? ConfigDefaults.DEFAULT_NOTIFICATION_IDLE_CHECK_MILLIS
+                : Integer.parseInt(notificationIdleCheckMillisStr);
+
+        String resultCacheSizeStr = connProps.getProperty(ConfigDefaults.RESULT_CACHE_SIZE_KEY);
+        resultCacheSize = Str.isNullOrEmpty(resultCacheSizeStr)
+                ? ConfigDefaults.DEFAULT_RESULT_CACHE_SIZE
+                : Integer.parseInt(resultCacheSizeStr);
+        String resultCacheTtlMillisStr = connProps.getProperty(ConfigDefaults.RESULT_CACHE_TTL_MILLIS_KEY);
+        resultCacheTtlMillis = Str.isNullOrEmpty(resultCacheTtlMillisStr)
+                ? ConfigDefaults.DEFAULT_RESULT_CACHE_TTL_MILLIS
+                : Long.parseLong(resultCacheTtlMillisStr);
+        String resultCacheChannelStr = connProps.getProperty(ConfigDefaults.RESULT_CACHE_CHANNEL_KEY);
+        resultCacheChannel = Str.isNullOrEmpty(resultCacheChannelStr) ? null : resultCacheChannelStr;
+
+        String asyncThreadsStr = connProps.getProperty(ConfigDefaults.ASYNC_THREADS_KEY);
+        asyncThreads = Str.isNullOrEmpty(asyncThreadsStr)
+                ? ConfigDefaults.DEFAULT_ASYNC_THREADS
+                : Integer.parseInt(asyncThreadsStr);
+        String asyncQueueSizeStr = connProps.getProperty(ConfigDefaults.ASYNC_QUEUE_SIZE_KEY);
+        asyncQueueSize = Str.isNullOrEmpty(asyncQueueSizeStr)
+                ? ConfigDefaults.DEFAULT_ASYNC_QUEUE_SIZE
+                : Integer.parseInt(asyncQueueSizeStr);
+        String asyncThreadModeStr = connProps.getProperty(ConfigDefaults.ASYNC_THREAD_MODE_KEY);
+        asyncThreadMode = AsyncThreadMode.valueOf((Str.isNullOrEmpty(asyncThreadModeStr)
+                ? ConfigDefaults.DEFAULT_ASYNC_THREAD_MODE
+                : asyncThreadModeStr).trim().toUpperCase());
+
+        String pooled = connProps.getProperty(ConfigDefaults.POOLED_KEY);
+        if (Str.isNullOrEmpty(pooled) ? ConfigDefaults.DEFAULT_POOLED : Boolean.parseBoolean(pooled)) {
+            pool = createPool();
+        } else {
+            pool = null;
+        }
+    }
+
+    private SimpleConnectionPool createPool() {
+        String minimumIdle = connProps.getProperty(ConfigDefaults.MINUMUM_IDLE_KEY);
+        String maximumPoolSize = connProps.getProperty(ConfigDefaults.MAXIMUM_POOL_SIZE_KEY);
+        String connectionTimeout = connProps.getProperty(ConfigDefaults.CONNECTION_TIMEOUT_KEY);
+        String idleTimeout = connProps.getProperty(ConfigDefaults.IDLE_TIMEOUT_KEY);
+        String maxLifetime = connProps.getProperty(ConfigDefaults.MAX_LIFETIME_KEY);
+        String validationTimeout = connProps.getProperty(ConfigDefaults.VALIDATION_TIMEOUT_KEY);
+        String connectionTestQuery = connProps.getProperty(ConfigDefaults.CONNECTION_TEST_QUERY_KEY);
+        return new SimpleConnectionPool(new SimpleConnectionPool.ConnectionFactory() {
+                                            @Override
+                                            public Connection connect() throws SQLException {
+                                                return PgSimpleDataSourceAdapter.this.connect();
+                                            }
+                                        },
+                                        Str.isNullOrEmpty(minimumIdle) ? ConfigDefaults.DEFAULT_MINIMUM_IDLE : Integer.parseInt(minimumIdle),
+                                        Str.isNullOrEmpty(maximumPoolSize) ? ConfigDefaults.DEFAULT_MAXIMUM_POOL_SIZE : Integer.parseInt(maximumPoolSize),
+                                        Str.isNullOrEmpty(connectionTimeout) ? ConfigDefaults.DEFAULT_CONNECTION_TIMEOUT : Long.parseLong(connectionTimeout),
+                                        Str.isNullOrEmpty(idleTimeout) ? ConfigDefaults.DEFAULT_IDLE_TIMEOUT : Long.parseLong(idleTimeout),
+                                        Str.isNullOrEmpty(maxLifetime) ? ConfigDefaults.DEFAULT_MAX_LIFETIME : Long.parseLong(maxLifetime),
+                                        Str.isNullOrEmpty(validationTimeout) ? ConfigDefaults.DEFAULT_VALIDATION_TIMEOUT : Long.parseLong(validationTimeout),
+                                        Str.isNullOrEmpty(connectionTestQuery) ? null : connectionTestQuery,
+                                        Boolean.parseBoolean(connProps.getProperty(ConfigDefaults.AUTO_COMMIT_KEY)));
     }
 
     @Override
     public void close() {
-        // no-op
+        closeAsyncSession();
+        closeNotificationDispatcher();
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    /**
+     * Returns this adapter's connection pool, or null if this adapter was not
+     * configured to pool connections.
+     *
+     * @return
+     */
+    public SimpleConnectionPool getConnectionPool() {
+        return pool;
     }
 
     @Override
@@ -614,6 +981,103 @@ public class PgSimpleDataSourceAdapter implements DataSourceAdapter {
         return sqlCache;
     }
 
+    @Override
+    public ParsedSqlCache getParsedSqlCache() {
+        return parsedSqlCache;
+    }
+
+    @Override
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    @Override
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    private void closeNotificationDispatcher() {
+        lazyInitLock.lock();
+        try {
+            if (notificationDispatcher != null) {
+                notificationDispatcher.close();
+                notificationDispatcher = null;
+            }
+        } finally {
+            lazyInitLock.unlock();
+        }
+    }
+
+    @Override
+    public NotificationDispatcher getNotificationDispatcher() {
+        NotificationDispatcher dispatcher = notificationDispatcher;
+        if (dispatcher != null) {
+            return dispatcher;
+        }
+        lazyInitLock.lock();
+        try {
+            if (notificationDispatcher == null) {
+                notificationDispatcher = new NotificationDispatcher(this, notificationMaxPollMillis, notificationIdleCheckMillis);
+            }
+            return notificationDispatcher;
+        } finally {
+            lazyInitLock.unlock();
+        }
+    }
+
+    @Override
+    public ResultCache getResultCache() {
+        if (resultCacheSize == 0) {
+            return null;
+        }
+        ResultCache cache = resultCache;
+        if (cache != null) {
+            return cache;
+        }
+        lazyInitLock.lock();
+        try {
+            if (resultCache == null) {
+                cache = new ResultCache(resultCacheSize, resultCacheTtlMillis);
+                if (resultCacheChannel != null) {
+                    cache.listenForInvalidations(getNotificationDispatcher(), resultCacheChannel);
+                }
+                resultCache = cache;
+            }
+            return resultCache;
+        } finally {
+            lazyInitLock.unlock();
+        }
+    }
+
+    @Override
+    public AsyncPgSession getAsyncSession() {
+        AsyncPgSession session = asyncSession;
+        if (session != null) {
+            return session;
+        }
+        lazyInitLock.lock();
+        try {
+            if (asyncSession == null) {
+                asyncSession = new AsyncPgSession(this, asyncThreads, asyncQueueSize, asyncThreadMode);
+            }
+            return asyncSession;
+        } finally {
+            lazyInitLock.unlock();
+        }
+    }
+
+    private void closeAsyncSession() {
+        lazyInitLock.lock();
+        try {
+            if (asyncSession != null) {
+                asyncSession.close();
+                asyncSession = null;
+            }
+        } finally {
+            lazyInitLock.unlock();
+        }
+    }
+
     @Override
     public ScalarResultSetHandlerBuilder getScalarResultSetHandlerBuilder() {
         return scalarResultSetHandlerBuilder;
@@ -0,0 +1,487 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.datasourceadapters;
+
+import java.io.Closeable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.postgresql.core.BaseConnection;
+import org.postgresql.core.ProtocolConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.manniwood.cl4pg.v1.util.LatencyHistogram;
+
+/**
+ * A small connection pool for PgSimpleDataSourceAdapter, for when HikariCP is
+ * not available.
+ *
+ * <p>
+ * At most maximumPoolSize connections are lent out at once; a fair Semaphore
+ * hands out the right to borrow in the order threads asked for it. Idle
+ * connections sit in a lock-free deque, most recently returned first, so
+ * that the warmest connections get re-used and the coldest ones age out.
+ * Closing a borrowed Connection returns it to the pool, rolling back any
+ * transaction left open, unless it has thrown an SQLException saying the
+ * connection is broken (SQLState class 08), in which case it is closed
+ * instead.
+ *
+ * <p>
+ * A housekeeping thread closes connections that have sat idle for longer
+ * than idleTimeout (down to minimumIdle connections) or that have outlived
+ * maxLifetime, and opens connections to keep minimumIdle on hand. A
+ * connection that has been idle for more than a moment is validated before
+ * it is lent out.
+ *
+ * @author mwood
+ *
+ */
+public class SimpleConnectionPool implements Closeable {
+
+    private final static Logger log = LoggerFactory.getLogger(SimpleConnectionPool.class);
+
+    /**
+     * Connections returned to the pool less than this long ago are lent out
+     * again without being validated.
+     */
+    private static final long VALIDATION_BYPASS_MILLIS = 500;
+
+    private static final long HOUSEKEEPING_PERIOD_MILLIS = 30000;
+
+    /**
+     * Opens new physical connections for the pool.
+     */
+    interface ConnectionFactory {
+        Connection connect() throws SQLException;
+    }
+
+    private final ConnectionFactory connectionFactory;
+    private final int minimumIdle;
+    private final int maximumPoolSize;
+    private final long connectionTimeout;
+    private final long idleTimeout;
+    private final long maxLifetime;
+    private final long validationTimeout;
+    private final String connectionTestQuery;
+    private final boolean autoCommit;
+
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledConnection> idleConnections = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idle = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger total = new AtomicInteger();
+    private final LatencyHistogram borrowLatency = new LatencyHistogram();
+    private final ScheduledExecutorService housekeeper;
+
+    private volatile boolean closed = false;
+
+    SimpleConnectionPool(ConnectionFactory connectionFactory,
+                         int minimumIdle,
+                         int maximumPoolSize,
+                         long connectionTimeout,
+                         long idleTimeout,
+                         long maxLifetime,
+                         long validationTimeout,
+                         String connectionTestQuery,
+                         boolean autoCommit) {
+        if (maximumPoolSize < 1) {
+            throw new IllegalArgumentException("maximumPoolSize must be at least 1, not " + maximumPoolSize);
+        }
+        this.connectionFactory = connectionFactory;
+        this.minimumIdle = Math.max(0, Math.min(minimumIdle, maximumPoolSize));
+        this.maximumPoolSize = maximumPoolSize;
+        this.connectionTimeout = connectionTimeout;
+        this.idleTimeout = idleTimeout;
+        this.maxLifetime = maxLifetime;
+        this.validationTimeout = validationTimeout;
+        this.connectionTestQuery = connectionTestQuery;
+        this.autoCommit = autoCommit;
+        this.permits = new Semaphore(maximumPoolSize, true);
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "cl4pg-pool-housekeeper");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        housekeeper.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                housekeep();
+            }
+        }, 0, HOUSEKEEPING_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool, waiting up to connectionTimeout
+     * milliseconds for one to become available. Closing the returned
+     * Connection gives it back to the pool.
+     *
+     * @return
+     * @throws SQLException
+     */
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        if (closed) {
+            throw new SQLException("Connection pool has been closed.");
+        }
+        try {
+            if (!permits.tryAcquire(connectionTimeout, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("Timed out after " + connectionTimeout + " ms waiting for one of " + maximumPoolSize + " pooled connections.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled connection.", e);
+        }
+        try {
+            PooledConnection pooledConnection;
+            while ((pooledConnection = idleConnections.pollFirst()) != null) {
+                idle.decrementAndGet();
+                if (isUsable(pooledConnection)) {
+                    break;
+                }
+                retire(pooledConnection);
+            }
+            if (pooledConnection == null) {
+                pooledConnection = open();
+            }
+            active.incrementAndGet();
+            borrowLatency.record(System.nanoTime() - start);
+            return (Connection) Proxy.newProxyInstance(SimpleConnectionPool.class.getClassLoader(),
+                                                       new Class<?>[] { Connection.class },
+                                                       new PooledConnectionHandler(pooledConnection));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        total.incrementAndGet();
+        try {
+            return new PooledConnection(connectionFactory.connect());
+        } catch (SQLException | RuntimeException e) {
+            total.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private boolean isUsable(PooledConnection pooledConnection) {
+        long now = System.currentTimeMillis();
+        if (isExpired(pooledConnection, now)) {
+            return false;
+        }
+        if (now - pooledConnection.lastReturnedAt < VALIDATION_BYPASS_MILLIS) {
+            return true;
+        }
+        Connection conn = pooledConnection.physical;
+        try {
+            if (connectionTestQuery == null) {
+                return conn.isValid((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(validationTimeout)));
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.setQueryTimeout((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(validationTimeout)));
+                stmt.execute(connectionTestQuery);
+            }
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+            }
+            return true;
+        } catch (SQLException e) {
+            log.debug("Pooled connection failed validation; discarding it", e);
+            return false;
+        }
+    }
+
+    private boolean isExpired(PooledConnection pooledConnection,
+                              long now) {
+        return maxLifetime > 0 && now - pooledConnection.createdAt > maxLifetime;
+    }
+
+    private void giveBack(PooledConnection pooledConnection) {
+        active.decrementAndGet();
+        if (pooledConnection.broken) {
+            log.debug("Pooled connection is broken; discarding it");
+            retire(pooledConnection);
+            permits.release();
+            return;
+        }
+        try {
+            reset(pooledConnection.physical);
+        } catch (SQLException e) {
+            log.debug("Could not reset pooled connection; discarding it", e);
+            retire(pooledConnection);
+            permits.release();
+            return;
+        }
+        if (closed || isExpired(pooledConnection, System.currentTimeMillis())) {
+            retire(pooledConnection);
+        } else {
+            pooledConnection.lastReturnedAt = System.currentTimeMillis();
+            idleConnections.offerFirst(pooledConnection);
+            idle.incrementAndGet();
+        }
+        permits.release();
+    }
+
+    /**
+     * Puts a returned connection back the way it was when it was first
+     * opened, so the next borrower doesn't inherit an open transaction.
+     */
+    private void reset(Connection conn) throws SQLException {
+        if (conn.isClosed()) {
+            throw new SQLException("Connection was closed while it was lent out.");
+        }
+        BaseConnection baseConnection = conn.unwrap(BaseConnection.class);
+        if (baseConnection.getTransactionState() != ProtocolConnection.TRANSACTION_IDLE) {
+            conn.rollback();
+        }
+        if (conn.getAutoCommit() != autoCommit) {
+            conn.setAutoCommit(autoCommit);
+        }
+        conn.clearWarnings();
+    }
+
+    /**
+     * Marks conn, a Connection borrowed from this pool, as broken if e says it
+     * is, so that it is closed instead of being lent out again when it is
+     * returned. Needed for statements run directly on the physical
+     * connection, whose SQLExceptions never pass through conn.
+     *
+     * @param conn
+     * @param e
+     */
+    void checkException(Connection conn,
+                        SQLException e) {
+        if (!isBroken(e) || !Proxy.isProxyClass(conn.getClass())) {
+            return;
+        }
+        InvocationHandler handler = Proxy.getInvocationHandler(conn);
+        if (handler instanceof PooledConnectionHandler) {
+            ((PooledConnectionHandler) handler).pooledConnection.broken = true;
+        }
+    }
+
+    private static boolean isBroken(SQLException e) {
+        String sqlState = e.getSQLState();
+        return sqlState != null && sqlState.startsWith("08");
+    }
+
+    private void retire(PooledConnection pooledConnection) {
+        total.decrementAndGet();
+        try {
+            pooledConnection.physical.close();
+        } catch (SQLException e) {
+            log.debug("Could not close retired pooled connection", e);
+        }
+    }
+
+    private void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+            Iterator<PooledConnection> it = idleConnections.descendingIterator();
+            while (it.hasNext()) {
+                PooledConnection pooledConnection = it.next();
+                boolean idleTooLong = idleTimeout > 0 && now - pooledConnection.lastReturnedAt > idleTimeout && total.get() > minimumIdle;
+                if ((idleTooLong || isExpired(pooledConnection, now)) && idleConnections.removeFirstOccurrence(pooledConnection)) {
+                    idle.decrementAndGet();
+                    retire(pooledConnection);
+                }
+            }
+            while (!closed && total.get() < minimumIdle) {
+                PooledConnection pooledConnection = open();
+                idleConnections.offerLast(pooledConnection);
+                idle.incrementAndGet();
+            }
+        } catch (SQLException | RuntimeException e) {
+            log.warn("Connection pool housekeeping failed", e);
+        }
+    }
+
+    /**
+     * Stops lending out connections and closes all idle ones. Connections
+     * currently lent out are closed when they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooledConnection;
+        while ((pooledConnection = idleConnections.pollFirst()) != null) {
+            idle.decrementAndGet();
+            retire(pooledConnection);
+        }
+    }
+
+    /**
+     * Number of connections currently lent out.
+     *
+     * @return
+     */
+    public int getActiveConnections() {
+        return active.get();
+    }
+
+    /**
+     * Number of connections sitting idle in the pool.
+     *
+     * @return
+     */
+    public int getIdleConnections() {
+        return idle.get();
+    }
+
+    /**
+     * Number of physical connections open, whether lent out or idle.
+     *
+     * @return
+     */
+    public int getTotalConnections() {
+        return total.get();
+    }
+
+    /**
+     * Approximate number of threads waiting for a connection.
+     *
+     * @return
+     */
+    public int getWaitingThreads() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * How long calls to getConnection() have taken, including any wait for a
+     * connection to become available and any validation or connecting.
+     *
+     * @return
+     */
+    public LatencyHistogram getBorrowLatency() {
+        return borrowLatency;
+    }
+
+    public int getMinimumIdle() {
+        return minimumIdle;
+    }
+
+    public int getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    @Override
+    public String toString() {
+        return "SimpleConnectionPool [active=" + active + ", idle=" + idle + ", total=" + total + ", waiting=" + getWaitingThreads() + ", borrowLatency="
+               + borrowLatency + "]";
+    }
+
+    private static class PooledConnection {
+        private final Connection physical;
+        private final long createdAt;
+        private volatile long lastReturnedAt;
+        private volatile boolean broken;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.createdAt = System.currentTimeMillis();
+            this.lastReturnedAt = createdAt;
+        }
+    }
+
+    /**
+     * Hands every Connection method through to the physical connection,
+     * except close(), which returns the physical connection to the pool,
+     * noting along the way any SQLException that says it is broken.
+     */
+    private class PooledConnectionHandler implements InvocationHandler {
+        private final PooledConnection pooledConnection;
+        private final AtomicBoolean returned = new AtomicBoolean(false);
+
+        private PooledConnectionHandler(PooledConnection pooledConnection) {
+            this.pooledConnection = pooledConnection;
+        }
+
+        @Override
+        public Object invoke(Object proxy,
+                             Method method,
+                             Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+            case "close":
+                if (returned.compareAndSet(false, true)) {
+                    giveBack(pooledConnection);
+                }
+                return null;
+            case "isClosed":
+                return returned.get() || pooledConnection.physical.isClosed();
+            case "unwrap":
+                if (((Class<?>) args[0]).isInstance(pooledConnection.physical)) {
+                    return pooledConnection.physical;
+                }
+                break;
+            case "isWrapperFor":
+                if (((Class<?>) args[0]).isInstance(pooledConnection.physical)) {
+                    return true;
+                }
+                break;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "Pooled " + pooledConnection.physical;
+            default:
+                break;
+            }
+            if (returned.get()) {
+                throw new SQLException("Connection has already been returned to the pool.");
+            }
+            try {
+                return method.invoke(pooledConnection.physical, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException && isBroken((SQLException) cause)) {
+                    pooledConnection.broken = true;
+                }
+                throw cause;
+            }
+        }
+    }
+}
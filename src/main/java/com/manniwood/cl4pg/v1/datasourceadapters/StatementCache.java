@@ -0,0 +1,375 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.datasourceadapters;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.postgresql.PGStatement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps PreparedStatements and CallableStatements open on each physical
+ * connection so that Commands running the same SQL over and over re-use the
+ * same statement. PgJDBC only switches a statement over to a named
+ * server-side prepared statement after it has been executed prepareThreshold
+ * times; statements that are closed after every use never get there, so
+ * every execution re-sends a Parse message. Statements kept here do get
+ * there, after which each execution is just Bind/Execute. Thread-safe.
+ *
+ * <p>
+ * Statements are cached per physical connection, not per pooled connection
+ * wrapper, because the wrapper only lives as long as one PgSession, whereas
+ * the physical connection may live for the life of the pool. Each physical
+ * connection keeps at most maxSize PreparedStatements and maxSize
+ * CallableStatements; the least recently used statement is closed to make
+ * room for a new one. A maxSize of 0 turns caching off. Because the
+ * statements bypass the pool's wrapper, so do their SQLExceptions; PgSession
+ * passes them to DataSourceAdapter.checkException() so that a pool can still
+ * evict a connection that has failed.
+ *
+ * <p>
+ * Commands borrow a statement with prepareStatement() or prepareCall(), and
+ * must hand it back with release() when they are closed. A borrowed
+ * statement is taken out of the cache until it is released, so two Commands
+ * running the same SQL at the same time on the same connection never share a
+ * statement.
+ *
+ * @author mwood
+ *
+ */
+public class StatementCache {
+
+    private final static Logger log = LoggerFactory.getLogger(StatementCache.class);
+
+    private final int maxSize;
+    private final DataSourceAdapter dataSourceAdapter;
+
+    private final ConcurrentMap<Connection, ConnectionStatements> connections = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong serverPrepares = new AtomicLong();
+
+    public StatementCache(int maxSize,
+                          DataSourceAdapter dataSourceAdapter) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must not be negative, not " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.dataSourceAdapter = dataSourceAdapter;
+    }
+
+    /**
+     * Borrows a PreparedStatement for sql on conn's physical connection,
+     * preparing a new one only if none is cached.
+     *
+     * @param conn
+     * @param sql
+     * @return
+     * @throws SQLException
+     */
+    public PreparedStatement prepareStatement(Connection conn,
+                                              String sql) throws SQLException {
+        if (maxSize == 0) {
+            return conn.prepareStatement(sql);
+        }
+        return borrow(conn, sql, false);
+    }
+
+    /**
+     * Borrows a CallableStatement for sql on conn's physical connection,
+     * preparing a new one only if none is cached.
+     *
+     * @param conn
+     * @param sql
+     * @return
+     * @throws SQLException
+     */
+    public CallableStatement prepareCall(Connection conn,
+                                         String sql) throws SQLException {
+        if (maxSize == 0) {
+            return conn.prepareCall(sql);
+        }
+        return (CallableStatement) borrow(conn, sql, true);
+    }
+
+    private PreparedStatement borrow(Connection conn,
+                                     String sql,
+                                     boolean call) throws SQLException {
+        Connection physicalConn = dataSourceAdapter.unwrapPhysicalConnection(conn);
+        // We are about to run SQL behind the back of any pool wrapper, so
+        // let the pool know it needs to roll back uncommitted work.
+        dataSourceAdapter.markConnectionDirty(conn);
+
+        ConnectionStatements statements = connections.get(physicalConn);
+        if (statements == null) {
+            statements = new ConnectionStatements();
+            ConnectionStatements existing = connections.putIfAbsent(physicalConn, statements);
+            if (existing != null) {
+                statements = existing;
+            }
+        }
+
+        CachedStatement cached = statements.take(sql, call);
+        if (cached == null) {
+            misses.incrementAndGet();
+            PreparedStatement stmt = call ? physicalConn.prepareCall(sql) : physicalConn.prepareStatement(sql);
+            cached = new CachedStatement(sql, call, stmt);
+        } else {
+            hits.incrementAndGet();
+        }
+        cached.uses++;
+        if (cached.uses == cached.prepareThreshold) {
+            serverPrepares.incrementAndGet();
+        }
+        statements.lend(cached);
+        return cached.stmt;
+    }
+
+    /**
+     * Hands a statement borrowed from this cache back to the cache, or closes
+     * it if it cannot be cached.
+     *
+     * @param stmt
+     * @throws SQLException
+     */
+    public void release(PreparedStatement stmt) throws SQLException {
+        if (maxSize == 0) {
+            stmt.close();
+            return;
+        }
+        ConnectionStatements statements = connections.get(stmt.getConnection());
+        CachedStatement cached = statements == null ? null : statements.giveBack(stmt);
+        if (cached == null) {
+            stmt.close();
+            return;
+        }
+        try {
+            ResultSet rs = stmt.getResultSet();
+            if (rs != null) {
+                rs.close();
+            }
+            stmt.clearParameters();
+            // A batch left behind by a failed executeBatch() must not be
+            // run by the statement's next user.
+            stmt.clearBatch();
+        } catch (SQLException e) {
+            // Probably a broken connection; don't keep the statement around.
+            log.debug("Could not reset statement for re-use; closing it instead", e);
+            stmt.close();
+            return;
+        }
+        statements.put(cached);
+    }
+
+    /**
+     * Forgets the statements of any physical connection that has been closed.
+     * DataSourceAdapters call this as they hand out connections, so that
+     * connections retired by a pool do not stay reachable from here.
+     */
+    public void prune() {
+        Iterator<Map.Entry<Connection, ConnectionStatements>> it = connections.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Connection, ConnectionStatements> entry = it.next();
+            boolean closed;
+            try {
+                closed = entry.getKey().isClosed();
+            } catch (SQLException e) {
+                closed = true;
+            }
+            if (closed) {
+                log.debug("Dropping cached statements of closed connection {}", entry.getKey());
+                it.remove();
+            }
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Number of borrows that found an already-prepared statement.
+     *
+     * @return
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Number of borrows that had to prepare a new statement.
+     *
+     * @return
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Number of statements closed to keep a connection's cache within
+     * maxSize.
+     *
+     * @return
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Number of statements that have been used often enough for PgJDBC to
+     * prepare them on the server (see PGStatement.getPrepareThreshold()).
+     *
+     * @return
+     */
+    public long getServerPrepares() {
+        return serverPrepares.get();
+    }
+
+    /**
+     * Number of physical connections that currently have cached statements.
+     *
+     * @return
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    @Override
+    public String toString() {
+        return "StatementCache [maxSize=" + maxSize + ", connections=" + connections.size() + ", hits=" + hits + ", misses=" + misses + ", evictions="
+               + evictions + ", serverPrepares=" + serverPrepares + "]";
+    }
+
+    private static class CachedStatement {
+        private final String sql;
+        private final boolean call;
+        private final PreparedStatement stmt;
+        private final int prepareThreshold;
+        private int uses = 0;
+
+        private CachedStatement(String sql,
+                                boolean call,
+                                PreparedStatement stmt) throws SQLException {
+            this.sql = sql;
+            this.call = call;
+            this.stmt = stmt;
+            this.prepareThreshold = stmt.unwrap(PGStatement.class).getPrepareThreshold();
+        }
+    }
+
+    /**
+     * The statements of one physical connection: the idle ones, in LRU order,
+     * and the ones currently lent out to Commands. Every borrow and release
+     * takes the lock, which, unlike a monitor, lets a waiting virtual thread
+     * unmount.
+     */
+    private class ConnectionStatements {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<String, CachedStatement> idleStatements = new Lru();
+        private final Map<String, CachedStatement> idleCalls = new Lru();
+        private final Map<PreparedStatement, CachedStatement> lent = new IdentityHashMap<>();
+
+        private CachedStatement take(String sql,
+                                     boolean call) {
+            lock.lock();
+            try {
+                return call ? idleCalls.remove(sql) : idleStatements.remove(sql);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void lend(CachedStatement cached) {
+            lock.lock();
+            try {
+                lent.put(cached.stmt, cached);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private CachedStatement giveBack(PreparedStatement stmt) {
+            lock.lock();
+            try {
+                return lent.remove(stmt);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void put(CachedStatement cached) throws SQLException {
+            CachedStatement displaced;
+            lock.lock();
+            try {
+                Map<String, CachedStatement> idle = cached.call ? idleCalls : idleStatements;
+                displaced = idle.put(cached.sql, cached);
+            } finally {
+                lock.unlock();
+            }
+            if (displaced != null) {
+                // Two Commands borrowed the same SQL at once; keep the
+                // statement just released and close the other.
+                displaced.stmt.close();
+            }
+        }
+    }
+
+    private class Lru extends LinkedHashMap<String, CachedStatement> {
+        private static final long serialVersionUID = 1L;
+
+        private Lru() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+            if (size() <= maxSize) {
+                return false;
+            }
+            remove(eldest.getKey());
+            evictions.incrementAndGet();
+            try {
+                eldest.getValue().stmt.close();
+            } catch (SQLException e) {
+                log.warn("Could not close evicted statement:\n" + eldest.getKey(), e);
+            }
+            return false;
+        }
+    }
+}
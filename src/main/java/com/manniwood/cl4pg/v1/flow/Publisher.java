@@ -0,0 +1,47 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.flow;
+
+/**
+ * A source of items that sends them to a Subscriber only as fast as the
+ * Subscriber asks for them. Has the same methods as
+ * java.util.concurrent.Flow.Publisher (and org.reactivestreams.Publisher),
+ * which Cl4pg cannot use directly while it still runs on Java 7, so adapting
+ * one to the other takes only a few lines.
+ *
+ * @author mwood
+ *
+ * @param <T>
+ */
+public interface Publisher<T> {
+
+    /**
+     * Adds the given Subscriber, which will be sent onSubscribe() and then,
+     * once it requests them, items. If the subscription cannot be made, the
+     * Subscriber is sent onError() instead.
+     *
+     * @param subscriber
+     */
+    void subscribe(Subscriber<? super T> subscriber);
+}
@@ -0,0 +1,64 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.flow;
+
+/**
+ * Receives items from a Publisher. Nothing but onSubscribe() is sent until
+ * the Subscriber calls request() on the Subscription it was given. Has the
+ * same methods as java.util.concurrent.Flow.Subscriber.
+ *
+ * @author mwood
+ *
+ * @param <T>
+ */
+public interface Subscriber<T> {
+
+    /**
+     * Called once, before any other method.
+     *
+     * @param subscription
+     */
+    void onSubscribe(Subscription subscription);
+
+    /**
+     * Called once for each item, never more times than have been requested.
+     *
+     * @param item
+     */
+    void onNext(T item);
+
+    /**
+     * Called at most once, when the Publisher fails; nothing is sent after
+     * it.
+     *
+     * @param throwable
+     */
+    void onError(Throwable throwable);
+
+    /**
+     * Called at most once, when the Publisher has no more items; nothing is
+     * sent after it.
+     */
+    void onComplete();
+}
@@ -0,0 +1,49 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.flow;
+
+/**
+ * Links a Publisher to one Subscriber. Has the same methods as
+ * java.util.concurrent.Flow.Subscription.
+ *
+ * @author mwood
+ *
+ */
+public interface Subscription {
+
+    /**
+     * Asks for up to n more items. Requests add up; requesting
+     * Long.MAX_VALUE asks for every remaining item. An n of less than 1 makes
+     * the Publisher send onError() with an IllegalArgumentException.
+     *
+     * @param n
+     */
+    void request(long n);
+
+    /**
+     * Asks the Publisher to stop sending items and release its resources.
+     * Items already on their way may still arrive.
+     */
+    void cancel();
+}
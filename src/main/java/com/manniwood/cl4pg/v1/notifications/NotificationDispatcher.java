@@ -0,0 +1,372 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.notifications;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.manniwood.cl4pg.v1.ConfigDefaults;
+import com.manniwood.cl4pg.v1.commands.Command;
+import com.manniwood.cl4pg.v1.commands.Listen;
+import com.manniwood.cl4pg.v1.commands.Unlisten;
+import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
+
+/**
+ * Owns one long-lived connection that listens on every channel that has
+ * registered NotificationListeners, and hands each notification that arrives
+ * to those listeners, in order, on a single delivery thread.
+ *
+ * <p>
+ * Unlike PgSession.getNotifications(), which has to run a dummy query to get
+ * notifications back from the server, the dispatcher's connection is kept in
+ * auto-commit mode and otherwise idle, so the notifications that the server
+ * pushes to it can be read straight from its socket with no round trip. The
+ * PostgreSQL JDBC driver cannot block waiting for them, so the dispatcher
+ * checks the socket every millisecond while notifications are arriving,
+ * backing off to every maxPollMillis while they are not; an idle dispatcher
+ * sends nothing over the network.
+ *
+ * <p>
+ * Reading notifications never touches the network, so a connection that has
+ * died without being closed (timed out by a NAT or firewall, say, or left
+ * behind by a failover) would otherwise look like one that simply has no
+ * notifications. So once the connection has gone idleCheckMillis without
+ * hearing from the server, the dispatcher runs <code>select 1</code> on it,
+ * aborting the connection if that has not come back within idleCheckMillis.
+ * If the connection is lost, the dispatcher gets another one and listens
+ * again on every channel, though notifications sent in between are lost.
+ * Listeners should return quickly, because a slow listener holds up every
+ * other listener.
+ *
+ * @author mwood
+ *
+ */
+public class NotificationDispatcher implements Closeable {
+
+    private final static Logger log = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+    private static final long MIN_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final DataSourceAdapter dataSourceAdapter;
+    private final long maxPollNanos;
+    private final long idleCheckNanos;
+    private final ConcurrentMap<String, List<NotificationListener>> listeners = new ConcurrentHashMap<>();
+
+    /**
+     * Channels whose listeners have been added or removed since the
+     * dispatcher thread last looked, and which it may need to listen or
+     * unlisten on.
+     */
+    private final Queue<String> changedChannels = new ConcurrentLinkedQueue<>();
+    private final ExecutorService deliveryExecutor;
+
+    /**
+     * Aborts the connection if a liveness check hangs; null if idle checks
+     * are turned off.
+     */
+    private final ScheduledExecutorService watchdog;
+    private final Thread thread;
+    private volatile boolean closed = false;
+
+    // Only used by the dispatcher thread
+    private Connection conn;
+    private boolean originalAutoCommit;
+    private long lastHeardNanos;
+    private final Set<String> listening = new HashSet<>();
+
+    public NotificationDispatcher(DataSourceAdapter dataSourceAdapter,
+                                  int maxPollMillis) {
+        this(dataSourceAdapter, maxPollMillis, ConfigDefaults.DEFAULT_NOTIFICATION_IDLE_CHECK_MILLIS);
+    }
+
+    /**
+     * @param dataSourceAdapter
+     * @param maxPollMillis
+     * @param idleCheckMillis
+     *            how long the connection can go without hearing from the
+     *            server before it is checked; 0 turns the check off
+     */
+    public NotificationDispatcher(DataSourceAdapter dataSourceAdapter,
+                                  int maxPollMillis,
+                                  int idleCheckMillis) {
+        if (idleCheckMillis < 0) {
+            throw new IllegalArgumentException("idleCheckMillis must not be negative, not " + idleCheckMillis);
+        }
+        this.dataSourceAdapter = dataSourceAdapter;
+        this.maxPollNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(maxPollMillis), MIN_POLL_NANOS);
+        this.idleCheckNanos = TimeUnit.MILLISECONDS.toNanos(idleCheckMillis);
+        watchdog = idleCheckMillis == 0 ? null : Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "cl4pg-notification-watchdog");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        deliveryExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "cl4pg-notification-delivery");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatch();
+            }
+        }, "cl4pg-notification-dispatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Tells listener about every notification on channel, listening on
+     * channel if this is its first listener.
+     *
+     * @param channel
+     * @param listener
+     */
+    public void addListener(String channel,
+                            NotificationListener listener) {
+        List<NotificationListener> channelListeners = listeners.get(channel);
+        if (channelListeners == null) {
+            List<NotificationListener> newListeners = new CopyOnWriteArrayList<>();
+            channelListeners = listeners.putIfAbsent(channel, newListeners);
+            if (channelListeners == null) {
+                channelListeners = newListeners;
+            }
+        }
+        channelListeners.add(listener);
+        channelChanged(channel);
+    }
+
+    /**
+     * Stops telling listener about notifications on channel, unlistening on
+     * channel if this was its last listener.
+     *
+     * @param channel
+     * @param listener
+     */
+    public void removeListener(String channel,
+                               NotificationListener listener) {
+        List<NotificationListener> channelListeners = listeners.get(channel);
+        if (channelListeners != null) {
+            channelListeners.remove(listener);
+        }
+        channelChanged(channel);
+    }
+
+    private void channelChanged(String channel) {
+        changedChannels.add(channel);
+        // Wake the dispatcher thread, so that it listens right away
+        LockSupport.unpark(thread);
+    }
+
+    private void dispatch() {
+        long pollNanos = MIN_POLL_NANOS;
+        while (!closed) {
+            try {
+                if (conn == null) {
+                    connect();
+                }
+                updateListening();
+                PGNotification[] notifications = dataSourceAdapter.unwrapPgConnection(conn).getNotifications();
+                if (notifications != null) {
+                    deliver(notifications);
+                    lastHeardNanos = System.nanoTime();
+                    pollNanos = MIN_POLL_NANOS;
+                    continue;
+                }
+                if (idleCheckNanos > 0 && System.nanoTime() - lastHeardNanos >= idleCheckNanos) {
+                    checkAlive();
+                    lastHeardNanos = System.nanoTime();
+                    // Anything that arrived along with the answer is
+                    // waiting to be read
+                    continue;
+                }
+                LockSupport.parkNanos(this, pollNanos);
+                pollNanos = Math.min(pollNanos * 2, maxPollNanos);
+            } catch (Exception e) {
+                if (closed) {
+                    break;
+                }
+                log.error("Notification dispatcher lost its connection; will try to get another", e);
+                closeConnection();
+                LockSupport.parkNanos(this, maxPollNanos);
+            }
+        }
+        closeConnection();
+    }
+
+    private void connect() throws SQLException {
+        conn = dataSourceAdapter.getConnection();
+        originalAutoCommit = conn.getAutoCommit();
+        // Notifications are only read while the connection is outside of a
+        // transaction, and listen takes effect straight away.
+        conn.setAutoCommit(true);
+        lastHeardNanos = System.nanoTime();
+        listening.clear();
+        changedChannels.addAll(listeners.keySet());
+    }
+
+    private void updateListening() throws Exception {
+        String channel;
+        while ((channel = changedChannels.poll()) != null) {
+            List<NotificationListener> channelListeners = listeners.get(channel);
+            boolean wanted = channelListeners != null && !channelListeners.isEmpty();
+            if (wanted && !listening.contains(channel)) {
+                run(new Listen(channel));
+                listening.add(channel);
+            } else if (!wanted && listening.contains(channel)) {
+                run(new Unlisten(channel));
+                listening.remove(channel);
+            }
+        }
+    }
+
+    private void run(Command command) throws Exception {
+        try {
+            command.execute(conn, dataSourceAdapter.getTypeConverterStore(), dataSourceAdapter.getSqlCache(), dataSourceAdapter);
+        } finally {
+            command.close();
+        }
+    }
+
+    /**
+     * Runs a trivial query, aborting the connection (so that the query fails
+     * instead of waiting for TCP to give up) if it takes longer than
+     * idleCheckNanos.
+     *
+     * @throws SQLException
+     */
+    private void checkAlive() throws SQLException {
+        final Connection physicalConn = dataSourceAdapter.unwrapPhysicalConnection(conn);
+        ScheduledFuture<?> abort = watchdog.schedule(new Runnable() {
+            @Override
+            public void run() {
+                log.warn("Notification connection did not answer a liveness check; aborting it");
+                try {
+                    physicalConn.abort(new Executor() {
+                        @Override
+                        public void execute(Runnable command) {
+                            command.run();
+                        }
+                    });
+                } catch (SQLException e) {
+                    log.debug("Could not abort notification connection", e);
+                }
+            }
+        }, idleCheckNanos, TimeUnit.NANOSECONDS);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("select 1");
+        } finally {
+            abort.cancel(false);
+        }
+    }
+
+    private void deliver(PGNotification[] notifications) {
+        for (final PGNotification notification : notifications) {
+            List<NotificationListener> channelListeners = listeners.get(notification.getName());
+            if (channelListeners == null) {
+                continue;
+            }
+            for (final NotificationListener listener : channelListeners) {
+                deliveryExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            listener.onNotification(notification);
+                        } catch (RuntimeException e) {
+                            log.error("Notification listener failed on notification from channel " + notification.getName(), e);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    private void closeConnection() {
+        if (conn == null) {
+            return;
+        }
+        try {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("unlisten *");
+            }
+            conn.setAutoCommit(originalAutoCommit);
+        } catch (SQLException e) {
+            log.debug("Could not reset notification connection before closing it", e);
+        }
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            log.error("Could not close notification connection. Possible leaked resource!", e);
+        }
+        conn = null;
+    }
+
+    /**
+     * Stops dispatching, waits for the dispatcher thread to let go of its
+     * connection, and lets any notifications already being delivered finish.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        deliveryExecutor.shutdown();
+        if (watchdog != null) {
+            watchdog.shutdownNow();
+        }
+    }
+}
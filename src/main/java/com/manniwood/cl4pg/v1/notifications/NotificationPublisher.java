@@ -0,0 +1,415 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.notifications;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.manniwood.cl4pg.v1.PgSession;
+import com.manniwood.cl4pg.v1.commands.NotifyAll;
+import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
+import com.manniwood.cl4pg.v1.exceptions.Cl4pgConfigException;
+import com.manniwood.cl4pg.v1.exceptions.Cl4pgException;
+import com.manniwood.cl4pg.v1.util.Str;
+
+/**
+ * Collects notifications published from any number of threads and sends
+ * them in batches, each batch being one NotifyAll command, and so one round
+ * trip, committed on a session of the publisher's own. A batch is sent as
+ * soon as maxBatchSize notifications are waiting, or maxDelayMillis after the
+ * last batch, whichever comes first.
+ *
+ * <p>
+ * If deduplicateWindowMillis is set, a notification that is identical (same
+ * channel, same payload) to one published less than that long ago is dropped,
+ * whether or not the earlier one has been sent yet. This suits cache
+ * invalidation, where saying the same thing twice in quick succession is no
+ * more useful than saying it once. (PostgreSQL already folds identical
+ * notifications sent in one transaction, so only a window longer than a
+ * batch makes a difference to listeners.)
+ *
+ * <p>
+ * Notifications are sent on a single background thread, in the order they
+ * were published. A batch that fails to send is logged and dropped.
+ *
+ * @author mwood
+ *
+ */
+public class NotificationPublisher implements Closeable {
+
+    private final static Logger log = LoggerFactory.getLogger(NotificationPublisher.class);
+
+    private final DataSourceAdapter dataSourceAdapter;
+    private final int maxBatchSize;
+    private final long deduplicateWindowNanos;
+    private final ScheduledExecutorService executor;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Guarded by lock
+    private List<Pending> pending = new ArrayList<>();
+
+    /**
+     * When each notification in the deduplication window was published, in
+     * the order they were published, so that the oldest come first.
+     */
+    private final Map<Pending, Long> recentlyPublished = new LinkedHashMap<>();
+    private boolean flushQueued = false;
+    private boolean closed = false;
+
+    // Only used by the executor thread
+    private PgSession pgSession;
+
+    private final AtomicLong publishedCount = new AtomicLong();
+    private final AtomicLong deduplicatedCount = new AtomicLong();
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private NotificationPublisher(Builder builder) {
+        dataSourceAdapter = builder.dataSourceAdapter;
+        maxBatchSize = builder.maxBatchSize;
+        deduplicateWindowNanos = TimeUnit.MILLISECONDS.toNanos(builder.deduplicateWindowMillis);
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "cl4pg-notification-publisher");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                send();
+            }
+        }, builder.maxDelayMillis, builder.maxDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues a notification on channel, with payload, to be sent with the
+     * next batch.
+     *
+     * @param channel
+     * @param payload
+     */
+    public void publish(String channel,
+                        String payload) {
+        if (Str.isNullOrEmpty(channel)) {
+            throw new IllegalArgumentException("Channel must be specified.");
+        }
+        Pending notification = new Pending(channel, payload == null ? "" : payload);
+        boolean queueFlush = false;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("NotificationPublisher is closed.");
+            }
+            publishedCount.incrementAndGet();
+            if (deduplicateWindowNanos > 0) {
+                long now = System.nanoTime();
+                forgetPublishedBefore(now - deduplicateWindowNanos);
+                if (recentlyPublished.containsKey(notification)) {
+                    deduplicatedCount.incrementAndGet();
+                    return;
+                }
+                recentlyPublished.put(notification, now);
+            }
+            pending.add(notification);
+            if (pending.size() >= maxBatchSize && !flushQueued) {
+                flushQueued = true;
+                queueFlush = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (queueFlush) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    send();
+                }
+            });
+        }
+    }
+
+    /**
+     * Drops notifications published before cutoff from the deduplication
+     * window. Must be called holding lock.
+     *
+     * @param cutoff
+     */
+    private void forgetPublishedBefore(long cutoff) {
+        Iterator<Long> it = recentlyPublished.values().iterator();
+        while (it.hasNext() && it.next() - cutoff <= 0) {
+            it.remove();
+        }
+    }
+
+    /**
+     * Sends every notification published so far, returning once they have
+     * been sent (or have failed to send).
+     */
+    public void flush() {
+        try {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    send();
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new Cl4pgException("Interrupted while flushing notifications", e);
+        } catch (ExecutionException e) {
+            throw new Cl4pgException("Could not flush notifications", e.getCause());
+        }
+    }
+
+    private void send() {
+        List<Pending> batch;
+        lock.lock();
+        try {
+            flushQueued = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+        NotifyAll.Builder builder = NotifyAll.config();
+        for (Pending notification : batch) {
+            builder.notification(notification.channel, notification.payload);
+        }
+        try {
+            if (pgSession == null) {
+                pgSession = dataSourceAdapter.getSession();
+            }
+            pgSession.run(builder.done());
+            pgSession.commit();
+            sentCount.addAndGet(batch.size());
+            batchCount.incrementAndGet();
+        } catch (RuntimeException e) {
+            failedCount.addAndGet(batch.size());
+            log.error("Could not send batch of " + batch.size() + " notifications; dropping them", e);
+            closeSession();
+        }
+    }
+
+    private void closeSession() {
+        if (pgSession == null) {
+            return;
+        }
+        try {
+            pgSession.close();
+        } catch (RuntimeException e) {
+            log.error("Could not close notification publisher's session. Possible leaked resource!", e);
+        }
+        pgSession = null;
+    }
+
+    /**
+     * Number of notifications passed to publish().
+     *
+     * @return
+     */
+    public long getPublishedCount() {
+        return publishedCount.get();
+    }
+
+    /**
+     * Number of notifications dropped because an identical one was published
+     * within the deduplication window.
+     *
+     * @return
+     */
+    public long getDeduplicatedCount() {
+        return deduplicatedCount.get();
+    }
+
+    /**
+     * Number of notifications sent.
+     *
+     * @return
+     */
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    /**
+     * Number of batches (and so round trips) it took to send getSentCount()
+     * notifications.
+     *
+     * @return
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * Number of notifications dropped because their batch failed to send.
+     *
+     * @return
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Sends any notifications still waiting, then lets go of the publisher's
+     * session and thread.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                send();
+                closeSession();
+            }
+        });
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static Builder config() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private DataSourceAdapter dataSourceAdapter;
+        private int maxBatchSize = 1000;
+        private long maxDelayMillis = 10;
+        private long deduplicateWindowMillis = 0;
+
+        public Builder() {
+            // null constructor
+        }
+
+        public Builder dataSourceAdapter(DataSourceAdapter dataSourceAdapter) {
+            this.dataSourceAdapter = dataSourceAdapter;
+            return this;
+        }
+
+        /**
+         * Send a batch as soon as this many notifications are waiting.
+         * Defaults to 1000.
+         */
+        public Builder maxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * Send whatever notifications are waiting this long after the last
+         * batch. Defaults to 10.
+         */
+        public Builder maxDelayMillis(long maxDelayMillis) {
+            this.maxDelayMillis = maxDelayMillis;
+            return this;
+        }
+
+        /**
+         * Drop notifications identical to ones published less than this long
+         * ago, even if those have already been sent. Defaults to 0, which
+         * drops nothing.
+         */
+        public Builder deduplicateWindowMillis(long deduplicateWindowMillis) {
+            this.deduplicateWindowMillis = deduplicateWindowMillis;
+            return this;
+        }
+
+        public NotificationPublisher done() {
+            if (dataSourceAdapter == null) {
+                throw new Cl4pgConfigException("DataSourceAdapter must be specified.");
+            }
+            if (maxBatchSize < 1) {
+                throw new Cl4pgConfigException("Max batch size must be at least 1.");
+            }
+            if (maxDelayMillis < 1) {
+                throw new Cl4pgConfigException("Max delay must be at least 1 millisecond.");
+            }
+            if (deduplicateWindowMillis < 0) {
+                throw new Cl4pgConfigException("Deduplicate window must not be negative.");
+            }
+            return new NotificationPublisher(this);
+        }
+    }
+
+    private static final class Pending {
+        private final String channel;
+        private final String payload;
+
+        private Pending(String channel,
+                        String payload) {
+            this.channel = channel;
+            this.payload = payload;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * channel.hashCode() + payload.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Pending)) {
+                return false;
+            }
+            Pending other = (Pending) obj;
+            return channel.equals(other.channel) && payload.equals(other.payload);
+        }
+    }
+}
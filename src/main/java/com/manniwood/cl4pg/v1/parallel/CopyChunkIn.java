@@ -0,0 +1,90 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.parallel;
+
+import java.sql.Connection;
+
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
+import com.manniwood.cl4pg.v1.typeconverters.TypeConverterStore;
+import com.manniwood.cl4pg.v1.util.SqlCache;
+
+/**
+ * Copies one chunk of whole rows of copy data, already read from a file, into
+ * PostgreSQL.
+ *
+ * @author mwood
+ *
+ */
+class CopyChunkIn implements ChunkCommand {
+
+    private final String sql;
+    private final byte[] data;
+    private final int length;
+    private CopyIn copyIn;
+    private long rowCount;
+
+    CopyChunkIn(String sql,
+                byte[] data,
+                int length) {
+        this.sql = sql;
+        this.data = data;
+        this.length = length;
+    }
+
+    @Override
+    public String getSQL() {
+        return sql;
+    }
+
+    @Override
+    public void execute(Connection connection,
+                        TypeConverterStore converterStore,
+                        SqlCache sqlCache,
+                        DataSourceAdapter dataSourceAdapter) throws Exception {
+        CopyManager copyManager = dataSourceAdapter.unwrapPgConnection(connection).getCopyAPI();
+        copyIn = copyManager.copyIn(sql);
+        copyIn.writeToCopy(data, 0, length);
+        rowCount = copyIn.endCopy();
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (copyIn != null && copyIn.isActive()) {
+            copyIn.cancelCopy();
+        }
+    }
+
+    @Override
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public long getByteCount() {
+        return length;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.parallel;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.util.zip.GZIPOutputStream;
+
+import org.postgresql.copy.CopyManager;
+import org.postgresql.copy.CopyOut;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.manniwood.cl4pg.v1.commands.Command;
+import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
+import com.manniwood.cl4pg.v1.typeconverters.TypeConverterStore;
+import com.manniwood.cl4pg.v1.util.SqlCache;
+
+/**
+ * Copies one partition of a ParallelCopyOut, using the CopyOut API, either to
+ * a file of its own or, in blocks of whole rows, to an OutputStream shared
+ * with the other partitions.
+ *
+ * @author mwood
+ *
+ */
+class CopyOutPartition implements Command {
+
+    private final static Logger log = LoggerFactory.getLogger(CopyOutPartition.class);
+
+    private final int partition;
+    private final String sql;
+    private final String outFile;
+    private final boolean gzip;
+    private final OutputStream mergedOutput;
+    private final int bufferSize;
+    private final CopyProgressListener progressListener;
+    private final long progressInterval;
+    private OutputStream outputStream;
+    private CopyOut copyOut;
+    private long rowCount;
+    private long byteCount;
+
+    CopyOutPartition(int partition,
+                     String sql,
+                     String outFile,
+                     boolean gzip,
+                     OutputStream mergedOutput,
+                     int bufferSize,
+                     CopyProgressListener progressListener,
+                     long progressInterval) {
+        this.partition = partition;
+        this.sql = sql;
+        this.outFile = outFile;
+        this.gzip = gzip;
+        this.mergedOutput = mergedOutput;
+        this.bufferSize = bufferSize;
+        this.progressListener = progressListener;
+        this.progressInterval = progressInterval;
+    }
+
+    @Override
+    public String getSQL() {
+        return sql;
+    }
+
+    @Override
+    public void execute(Connection connection,
+                        TypeConverterStore converterStore,
+                        SqlCache sqlCache,
+                        DataSourceAdapter dataSourceAdapter) throws Exception {
+        ByteArrayOutputStream block = null;
+        if (mergedOutput == null) {
+            outputStream = Files.newOutputStream(Paths.get(outFile));
+            if (gzip) {
+                outputStream = new GZIPOutputStream(outputStream, bufferSize);
+            } else {
+                outputStream = new BufferedOutputStream(outputStream, bufferSize);
+            }
+        } else {
+            block = new ByteArrayOutputStream(bufferSize);
+        }
+
+        CopyManager copyManager = dataSourceAdapter.unwrapPgConnection(connection).getCopyAPI();
+        log.debug("Copy SQL for partition {}:\n{}", partition, sql);
+        copyOut = copyManager.copyOut(sql);
+        byte[] chunk;
+        long chunkCount = 0;
+        // For text and CSV, the server sends one row per chunk
+        while ((chunk = copyOut.readFromCopy()) != null) {
+            byteCount += chunk.length;
+            if (block == null) {
+                outputStream.write(chunk);
+            } else {
+                block.write(chunk);
+                if (block.size() >= bufferSize) {
+                    writeBlock(block);
+                }
+            }
+            chunkCount++;
+            if (progressListener != null && chunkCount % progressInterval == 0) {
+                progressListener.onProgress(partition, chunkCount, byteCount);
+            }
+        }
+        if (block != null) {
+            writeBlock(block);
+        }
+        rowCount = copyOut.getHandledRowCount();
+        if (progressListener != null) {
+            progressListener.onProgress(partition, rowCount, byteCount);
+        }
+    }
+
+    private void writeBlock(ByteArrayOutputStream block) throws Exception {
+        if (block.size() == 0) {
+            return;
+        }
+        synchronized (mergedOutput) {
+            block.writeTo(mergedOutput);
+        }
+        block.reset();
+    }
+
+    @Override
+    public void close() throws Exception {
+        try {
+            if (copyOut != null && copyOut.isActive()) {
+                copyOut.cancelCopy();
+            }
+        } finally {
+            if (outputStream != null) {
+                outputStream.close();
+            }
+        }
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getByteCount() {
+        return byteCount;
+    }
+}
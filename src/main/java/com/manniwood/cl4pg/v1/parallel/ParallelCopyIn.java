@@ -0,0 +1,434 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.parallel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.manniwood.cl4pg.v1.ConfigDefaults;
+import com.manniwood.cl4pg.v1.PgSession;
+import com.manniwood.cl4pg.v1.commands.CopyBeansIn;
+import com.manniwood.cl4pg.v1.commands.CopyFormat;
+import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
+import com.manniwood.cl4pg.v1.exceptions.Cl4pgConfigException;
+import com.manniwood.cl4pg.v1.exceptions.Cl4pgException;
+import com.manniwood.cl4pg.v1.util.Str;
+
+/**
+ * Copies data into PostgreSQL over several connections at once, by splitting
+ * it into chunks of chunkRows rows and running a copy command for each chunk
+ * on whichever of parallelism connections is free. The data is either a copy
+ * file, split at newlines (so it must be in text format, or in CSV format
+ * without quoted newlines, and in UTF-8), or beans, copied as by
+ * CopyBeansIn.
+ *
+ * <p>
+ * The same copy command is run for every chunk, so it must not use the
+ * header option: the server would skip the first row of every chunk, not
+ * just of the file. Strip the header line from a file before copying it in
+ * parallel.
+ *
+ * <p>
+ * Each chunk is committed on its own, so a chunk that fails is rolled back
+ * without affecting the others. Rather than throwing, run() reports the fate
+ * of every chunk, so that the chunks that were rolled back can be found and
+ * loaded again. At most twice parallelism chunks are held in memory at once.
+ *
+ * @author mwood
+ *
+ */
+public class ParallelCopyIn<A> {
+
+    private final static Logger log = LoggerFactory.getLogger(ParallelCopyIn.class);
+
+    private static final Pattern HEADER_OPTION = Pattern.compile("\\bheader\\b", Pattern.CASE_INSENSITIVE);
+
+    private final DataSourceAdapter dataSourceAdapter;
+    private final String sql;
+    private final String filename;
+    private final String inFile;
+    private final boolean gzip;
+    private final Iterable<A> args;
+    private final String row;
+    private final CopyFormat format;
+    private final int parallelism;
+    private final int chunkRows;
+    private final int bufferSize;
+    private final CopyProgressListener progressListener;
+
+    private ParallelCopyIn(Builder<A> builder) {
+        this.dataSourceAdapter = builder.dataSourceAdapter;
+        this.sql = builder.sql;
+        this.filename = builder.filename;
+        this.inFile = builder.inFile;
+        this.gzip = builder.gzip;
+        this.args = builder.args;
+        this.row = builder.row;
+        this.format = builder.format;
+        this.parallelism = builder.parallelism;
+        this.chunkRows = builder.chunkRows;
+        this.bufferSize = builder.bufferSize;
+        this.progressListener = builder.progressListener;
+    }
+
+    /**
+     * Runs the copy, returning the results of each chunk, in order. Chunks
+     * whose results are not successful were rolled back.
+     *
+     * @return
+     */
+    public List<PartitionResult> run() {
+        String theSql = Str.isNullOrEmpty(sql) ? dataSourceAdapter.getSqlCache().get(filename) : sql;
+        rejectHeader(theSql);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        Semaphore inFlight = new Semaphore(parallelism * 2);
+        List<Future<PartitionResult>> futures = new ArrayList<>();
+        try {
+            Exception readFailure = null;
+            try {
+                if (inFile != null) {
+                    submitFileChunks(theSql, executor, inFlight, futures);
+                } else {
+                    submitBeanChunks(theSql, executor, inFlight, futures);
+                }
+            } catch (IOException | RuntimeException e) {
+                readFailure = e;
+            }
+            List<PartitionResult> results = new ArrayList<>();
+            for (Future<PartitionResult> future : futures) {
+                results.add(future.get());
+            }
+            if (readFailure != null) {
+                throw new Cl4pgException("Could not read all of the data to copy; the " + results.size()
+                                         + " chunks read before the failure were still copied", readFailure);
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new Cl4pgException("Interrupted while waiting for parallel copy", e);
+        } catch (ExecutionException e) {
+            throw new Cl4pgException("Parallel copy failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void submitFileChunks(String theSql,
+                                  ExecutorService executor,
+                                  Semaphore inFlight,
+                                  List<Future<PartitionResult>> futures) throws IOException, InterruptedException {
+        InputStream in = Files.newInputStream(Paths.get(inFile));
+        if (gzip) {
+            in = new GZIPInputStream(in, bufferSize);
+        }
+        try {
+            byte[] buf = new byte[bufferSize];
+            ByteArrayOutputStream chunk = new ByteArrayOutputStream(bufferSize);
+            long firstLine = 1;
+            int chunkLines = 0;
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                int start = 0;
+                for (int i = 0; i < n; i++) {
+                    if (buf[i] == '\n' && ++chunkLines == chunkRows) {
+                        chunk.write(buf, start, i + 1 - start);
+                        start = i + 1;
+                        submit(executor, inFlight, futures, "lines " + firstLine + "-" + (firstLine + chunkLines - 1),
+                               new CopyChunkIn(theSql, chunk.toByteArray(), chunk.size()));
+                        firstLine += chunkLines;
+                        chunkLines = 0;
+                        chunk.reset();
+                    }
+                }
+                chunk.write(buf, start, n - start);
+            }
+            if (chunk.size() > 0) {
+                submit(executor, inFlight, futures, "lines " + firstLine + "-" + (firstLine + chunkLines - 1),
+                       new CopyChunkIn(theSql, chunk.toByteArray(), chunk.size()));
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void submitBeanChunks(String theSql,
+                                  ExecutorService executor,
+                                  Semaphore inFlight,
+                                  List<Future<PartitionResult>> futures) throws InterruptedException {
+        long firstBean = 1;
+        List<A> chunk = new ArrayList<>();
+        for (A arg : args) {
+            chunk.add(arg);
+            if (chunk.size() == chunkRows) {
+                submitBeanChunk(theSql, executor, inFlight, futures, firstBean, chunk);
+                firstBean += chunk.size();
+                chunk = new ArrayList<>();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            submitBeanChunk(theSql, executor, inFlight, futures, firstBean, chunk);
+        }
+    }
+
+    private void submitBeanChunk(String theSql,
+                                 ExecutorService executor,
+                                 Semaphore inFlight,
+                                 List<Future<PartitionResult>> futures,
+                                 long firstBean,
+                                 List<A> chunk) throws InterruptedException {
+        CopyBeansIn<A> copyBeansIn = CopyBeansIn.<A> config()
+                .sql(theSql)
+                .row(row)
+                .args(chunk)
+                .format(format)
+                .bufferSize(bufferSize)
+                .done();
+        submit(executor, inFlight, futures, "beans " + firstBean + "-" + (firstBean + chunk.size() - 1),
+               new CopyBeansChunkIn<A>(copyBeansIn));
+    }
+
+    private void submit(ExecutorService executor,
+                        final Semaphore inFlight,
+                        List<Future<PartitionResult>> futures,
+                        final String description,
+                        final ChunkCommand command) throws InterruptedException {
+        final int chunkIndex = futures.size();
+        inFlight.acquire();
+        futures.add(executor.submit(new Callable<PartitionResult>() {
+            @Override
+            public PartitionResult call() {
+                try {
+                    return copyChunk(chunkIndex, description, command);
+                } finally {
+                    inFlight.release();
+                }
+            }
+        }));
+    }
+
+    private PartitionResult copyChunk(int chunkIndex,
+                                      String description,
+                                      ChunkCommand command) {
+        Exception exception = null;
+        long start = System.nanoTime();
+        PgSession session = null;
+        try {
+            session = dataSourceAdapter.getSession();
+            // run() and commit() both roll back if they fail
+            session.run(command);
+            session.commit();
+        } catch (Exception e) {
+            exception = e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+        PartitionResult result = new PartitionResult(chunkIndex,
+                                                     description,
+                                                     exception == null ? command.getRowCount() : 0,
+                                                     command.getByteCount(),
+                                                     System.nanoTime() - start,
+                                                     exception);
+        if (exception == null) {
+            log.debug("Copied in chunk {} ({}): {} rows, {} rows/s", chunkIndex, description, result.getRowCount(), (long) result.getRowsPerSecond());
+        } else {
+            log.debug("Rolled back chunk {} ({})", chunkIndex, description, exception);
+        }
+        if (progressListener != null) {
+            progressListener.onProgress(chunkIndex, result.getRowCount(), result.getByteCount());
+        }
+        return result;
+    }
+
+    /**
+     * Throws a Cl4pgConfigException if copySql uses the header option.
+     *
+     * @param copySql
+     */
+    private static void rejectHeader(String copySql) {
+        if (HEADER_OPTION.matcher(copySql).find()) {
+            throw new Cl4pgConfigException("A copy command with a header cannot be run in chunks; the first row of every chunk would be skipped:\n"
+                                           + copySql);
+        }
+    }
+
+    public static <P> Builder<P> config() {
+        return new Builder<P>();
+    }
+
+    public static class Builder<A> {
+        private DataSourceAdapter dataSourceAdapter;
+        private String sql;
+        private String filename;
+        private String inFile;
+        private boolean gzip = false;
+        private Iterable<A> args;
+        private String row;
+        private CopyFormat format = CopyFormat.TEXT;
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        private int chunkRows = 100000;
+        private int bufferSize = ConfigDefaults.DEFAULT_COPY_BUFFER_SIZE;
+        private CopyProgressListener progressListener;
+
+        public Builder() {
+            // null constructor
+        }
+
+        public Builder<A> dataSourceAdapter(DataSourceAdapter dataSourceAdapter) {
+            this.dataSourceAdapter = dataSourceAdapter;
+            return this;
+        }
+
+        /**
+         * The copy command, such as "copy users from stdin", run for each
+         * chunk. Must not use the header option.
+         */
+        public Builder<A> sql(String sql) {
+            this.sql = sql;
+            return this;
+        }
+
+        public Builder<A> file(String filename) {
+            this.filename = filename;
+            return this;
+        }
+
+        /**
+         * Copies from the copy file inFile.
+         */
+        public Builder<A> inFile(String inFile) {
+            this.inFile = inFile;
+            return this;
+        }
+
+        /**
+         * Whether inFile is gzipped.
+         */
+        public Builder<A> gzip(boolean gzip) {
+            this.gzip = gzip;
+            return this;
+        }
+
+        /**
+         * Copies from args, as CopyBeansIn would.
+         */
+        public Builder<A> args(Iterable<A> args) {
+            this.args = args;
+            return this;
+        }
+
+        /**
+         * The getters for each column of args, as for CopyBeansIn.
+         */
+        public Builder<A> row(String row) {
+            this.row = row;
+            return this;
+        }
+
+        public Builder<A> format(CopyFormat format) {
+            this.format = format;
+            return this;
+        }
+
+        /**
+         * The number of connections copying at once; the number of
+         * processors by default.
+         */
+        public Builder<A> parallelism(int parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * The number of rows in each chunk, and so in each transaction.
+         */
+        public Builder<A> chunkRows(int chunkRows) {
+            this.chunkRows = chunkRows;
+            return this;
+        }
+
+        public Builder<A> bufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * Told about each chunk as it is committed or rolled back.
+         */
+        public Builder<A> progressListener(CopyProgressListener progressListener) {
+            this.progressListener = progressListener;
+            return this;
+        }
+
+        public ParallelCopyIn<A> done() {
+            if (dataSourceAdapter == null) {
+                throw new Cl4pgConfigException("DataSourceAdapter must be specified.");
+            }
+            if (Str.isNullOrEmpty(sql) && Str.isNullOrEmpty(filename)) {
+                throw new Cl4pgConfigException("SQL string or file must be specified.");
+            }
+            if (!Str.isNullOrEmpty(sql)) {
+                // SQL from a file is checked once run() has read it
+                rejectHeader(sql);
+            }
+            if ((inFile == null) == (args == null)) {
+                throw new Cl4pgConfigException("Specify exactly one of an in file or bean args.");
+            }
+            if (args != null && Str.isNullOrEmpty(row)) {
+                throw new Cl4pgConfigException("Row template must be specified.");
+            }
+            if (format == null) {
+                throw new Cl4pgConfigException("Copy format must be specified.");
+            }
+            if (parallelism < 1) {
+                throw new Cl4pgConfigException("Parallelism must be at least 1.");
+            }
+            if (chunkRows < 1) {
+                throw new Cl4pgConfigException("Chunk rows must be at least 1.");
+            }
+            if (bufferSize < 1) {
+                throw new Cl4pgConfigException("Buffer size must be at least 1.");
+            }
+            return new ParallelCopyIn<A>(this);
+        }
+    }
+
+}
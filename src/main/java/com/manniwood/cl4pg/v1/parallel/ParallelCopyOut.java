@@ -0,0 +1,474 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.parallel;
+
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.manniwood.cl4pg.v1.ConfigDefaults;
+import com.manniwood.cl4pg.v1.PgSession;
+import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
+import com.manniwood.cl4pg.v1.exceptions.Cl4pgConfigException;
+import com.manniwood.cl4pg.v1.exceptions.Cl4pgException;
+import com.manniwood.cl4pg.v1.util.Str;
+
+/**
+ * Copies a table out of PostgreSQL over several connections at once, each
+ * running its own copy command on one partition of the table, so that the
+ * export is not limited to what a single backend can do. Partitions are
+ * either ranges of an integer key column, split evenly between the key's
+ * minimum and maximum, or ranges of the table's physical pages (ctids).
+ *
+ * <p>
+ * Page ranges only pay off on PostgreSQL 14 or later, which can scan just
+ * the pages between two ctids. Older servers read the whole table for every
+ * partition, doing partitions times the I/O of a single copy, so against
+ * them (which gets a warning logged), use a key range instead.
+ *
+ * <p>
+ * By default, all partitions see the same snapshot of the database, exported
+ * using pg_export_snapshot() from one extra connection that stays open until
+ * the copy is done; this needs AutoCommit to be off, which is the default.
+ * So the DataSourceAdapter must be able to hand out partitions + 1
+ * connections at once. Because other connections cannot see temporary
+ * tables, the table must be a regular table.
+ *
+ * <p>
+ * Each partition is written either to its own file, named by formatting
+ * outFilePattern with the partition's index, or, in blocks of whole rows, to
+ * one OutputStream shared by all partitions, in which case rows from
+ * different partitions are interleaved, and neither the binary copy format,
+ * whose data has a header, nor the header option, which would put a header
+ * line at the start of every partition, can be used.
+ *
+ * <p>
+ * The table, column and option names are put into the SQL as-is.
+ *
+ * @author mwood
+ *
+ */
+public class ParallelCopyOut {
+
+    private final static Logger log = LoggerFactory.getLogger(ParallelCopyOut.class);
+
+    /**
+     * The server_version_num of PostgreSQL 14, the first version that can
+     * scan a range of ctids without reading the whole table.
+     */
+    private static final int TID_RANGE_SCAN_VERSION = 140000;
+
+    private static final Pattern HEADER_OPTION = Pattern.compile("\\bheader\\b", Pattern.CASE_INSENSITIVE);
+
+    private final DataSourceAdapter dataSourceAdapter;
+    private final String table;
+    private final String columns;
+    private final String keyColumn;
+    private final boolean ctidRange;
+    private final int partitions;
+    private final boolean exportSnapshot;
+    private final String options;
+    private final String outFilePattern;
+    private final boolean gzip;
+    private final OutputStream mergedOutput;
+    private final int bufferSize;
+    private final CopyProgressListener progressListener;
+    private final long progressInterval;
+
+    private ParallelCopyOut(Builder builder) {
+        this.dataSourceAdapter = builder.dataSourceAdapter;
+        this.table = builder.table;
+        this.columns = builder.columns;
+        this.keyColumn = builder.keyColumn;
+        this.ctidRange = builder.ctidRange;
+        this.partitions = builder.partitions;
+        this.exportSnapshot = builder.exportSnapshot;
+        this.options = builder.options;
+        this.outFilePattern = builder.outFilePattern;
+        this.gzip = builder.gzip;
+        this.mergedOutput = builder.mergedOutput;
+        this.bufferSize = builder.bufferSize;
+        this.progressListener = builder.progressListener;
+        this.progressInterval = builder.progressInterval;
+    }
+
+    /**
+     * Runs the copy, returning the results of each partition, in order.
+     * Throws a Cl4pgException if any partition fails; the other partitions
+     * are still run to the end, and their files are left in place.
+     *
+     * @return
+     */
+    public List<PartitionResult> run() {
+        PgSession coordinator = dataSourceAdapter.getSession();
+        ExecutorService executor = null;
+        try {
+            String snapshot = null;
+            if (exportSnapshot) {
+                coordinator.qDdl("set transaction isolation level repeatable read");
+                snapshot = coordinator.qSelectOneScalar("select pg_export_snapshot()");
+            }
+            List<String> whereClauses = ctidRange ? ctidWhereClauses(coordinator) : keyWhereClauses(coordinator);
+
+            executor = Executors.newFixedThreadPool(whereClauses.size());
+            List<Future<PartitionResult>> futures = new ArrayList<>();
+            for (int i = 0; i < whereClauses.size(); i++) {
+                final int partition = i;
+                final String whereClause = whereClauses.get(i);
+                final String theSnapshot = snapshot;
+                futures.add(executor.submit(new Callable<PartitionResult>() {
+                    @Override
+                    public PartitionResult call() {
+                        return copyPartition(partition, whereClause, theSnapshot);
+                    }
+                }));
+            }
+            List<PartitionResult> results = new ArrayList<>();
+            for (Future<PartitionResult> future : futures) {
+                results.add(future.get());
+            }
+            // Done with the snapshot
+            coordinator.rollback();
+
+            throwIfAnyFailed(results);
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new Cl4pgException("Interrupted while waiting for parallel copy of " + table, e);
+        } catch (ExecutionException e) {
+            throw new Cl4pgException("Parallel copy of " + table + " failed", e.getCause());
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            coordinator.close();
+        }
+    }
+
+    private PartitionResult copyPartition(int partition,
+                                          String whereClause,
+                                          String snapshot) {
+        String sql = "copy (select " + columns + " from " + table + whereClause + ") to stdout " + options;
+        String outFile = outFilePattern == null ? null : String.format(outFilePattern, partition);
+        CopyOutPartition command = new CopyOutPartition(partition,
+                                                        sql,
+                                                        outFile,
+                                                        gzip,
+                                                        mergedOutput,
+                                                        bufferSize,
+                                                        progressListener,
+                                                        progressInterval);
+        Exception exception = null;
+        long start = System.nanoTime();
+        PgSession session = null;
+        try {
+            session = dataSourceAdapter.getSession();
+            if (snapshot != null) {
+                session.qDdl("set transaction isolation level repeatable read");
+                session.qDdl("set transaction snapshot '" + snapshot + "'");
+            }
+            session.run(command);
+            session.rollback();
+        } catch (Exception e) {
+            exception = e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+        PartitionResult result = new PartitionResult(partition,
+                                                     whereClause,
+                                                     command.getRowCount(),
+                                                     command.getByteCount(),
+                                                     System.nanoTime() - start,
+                                                     exception);
+        log.debug("Copied out partition {}: {} rows, {} bytes, {} rows/s", partition, result.getRowCount(), result.getByteCount(),
+                  (long) result.getRowsPerSecond());
+        return result;
+    }
+
+    /**
+     * Splits the range from the key column's minimum to its maximum into
+     * even parts. The first partition also gets any rows with a null key.
+     */
+    private List<String> keyWhereClauses(PgSession coordinator) {
+        Long min = coordinator.qSelectOneScalar("select min(" + keyColumn + ")::bigint from " + table);
+        Long max = coordinator.qSelectOneScalar("select max(" + keyColumn + ")::bigint from " + table);
+        List<String> whereClauses = new ArrayList<>();
+        if (min == null) {
+            whereClauses.add("");
+            return whereClauses;
+        }
+        BigInteger bigMax = BigInteger.valueOf(max);
+        BigInteger span = bigMax.subtract(BigInteger.valueOf(min)).add(BigInteger.ONE);
+        BigInteger n = BigInteger.valueOf(partitions);
+        BigInteger step = span.add(n).subtract(BigInteger.ONE).divide(n);
+        BigInteger lo = BigInteger.valueOf(min);
+        for (int i = 0; lo.compareTo(bigMax) <= 0; i++) {
+            BigInteger hi = lo.add(step);
+            boolean first = i == 0;
+            boolean last = hi.compareTo(bigMax) > 0;
+            if (first && last) {
+                whereClauses.add("");
+            } else if (first) {
+                whereClauses.add(" where " + keyColumn + " < " + hi + " or " + keyColumn + " is null");
+            } else if (last) {
+                whereClauses.add(" where " + keyColumn + " >= " + lo);
+            } else {
+                whereClauses.add(" where " + keyColumn + " >= " + lo + " and " + keyColumn + " < " + hi);
+            }
+            lo = hi;
+        }
+        return whereClauses;
+    }
+
+    /**
+     * Splits the table's pages into even parts. The last partition also gets
+     * any pages added since the table's size was looked up.
+     */
+    private List<String> ctidWhereClauses(PgSession coordinator) {
+        Integer serverVersion = coordinator.qSelectOneScalar("select current_setting('server_version_num')::int");
+        if (serverVersion < TID_RANGE_SCAN_VERSION) {
+            log.warn("PostgreSQL {} has no TID range scans, so each of the {} partitions of {} will read the whole table; use a key range instead",
+                     serverVersion, partitions, table);
+        }
+        Long pages = coordinator.qSelectOneScalar("select pg_relation_size('" + table + "') / current_setting('block_size')::bigint");
+        List<String> whereClauses = new ArrayList<>();
+        long step = (pages + partitions - 1) / partitions;
+        if (step == 0) {
+            whereClauses.add("");
+            return whereClauses;
+        }
+        for (long lo = 0; lo < pages; lo += step) {
+            long hi = lo + step;
+            boolean first = lo == 0;
+            boolean last = hi >= pages;
+            if (first && last) {
+                whereClauses.add("");
+            } else if (first) {
+                whereClauses.add(" where ctid < '(" + hi + ",0)'::tid");
+            } else if (last) {
+                whereClauses.add(" where ctid >= '(" + lo + ",0)'::tid");
+            } else {
+                whereClauses.add(" where ctid >= '(" + lo + ",0)'::tid and ctid < '(" + hi + ",0)'::tid");
+            }
+        }
+        return whereClauses;
+    }
+
+    private void throwIfAnyFailed(List<PartitionResult> results) {
+        Cl4pgException failure = null;
+        for (PartitionResult result : results) {
+            if (result.isSuccess()) {
+                continue;
+            }
+            if (failure == null) {
+                failure = new Cl4pgException("Parallel copy of " + table + " failed for partition " + result.getPartition() + " ("
+                                             + result.getDescription() + ")", result.getException());
+            } else {
+                failure.addSuppressed(result.getException());
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    public static Builder config() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private DataSourceAdapter dataSourceAdapter;
+        private String table;
+        private String columns = "*";
+        private String keyColumn;
+        private boolean ctidRange = false;
+        private int partitions = Runtime.getRuntime().availableProcessors();
+        private boolean exportSnapshot = true;
+        private String options = "";
+        private String outFilePattern;
+        private boolean gzip = false;
+        private OutputStream mergedOutput;
+        private int bufferSize = ConfigDefaults.DEFAULT_COPY_BUFFER_SIZE;
+        private CopyProgressListener progressListener;
+        private long progressInterval = 100000;
+
+        public Builder() {
+            // null constructor
+        }
+
+        public Builder dataSourceAdapter(DataSourceAdapter dataSourceAdapter) {
+            this.dataSourceAdapter = dataSourceAdapter;
+            return this;
+        }
+
+        public Builder table(String table) {
+            this.table = table;
+            return this;
+        }
+
+        /**
+         * The columns to copy, such as "id, name"; all columns by default.
+         */
+        public Builder columns(String columns) {
+            this.columns = columns;
+            return this;
+        }
+
+        /**
+         * Partitions the table by ranges of keyColumn, which must be an
+         * integer type.
+         */
+        public Builder keyRange(String keyColumn) {
+            this.keyColumn = keyColumn;
+            return this;
+        }
+
+        /**
+         * Partitions the table by ranges of its pages. Needs PostgreSQL 14 or
+         * later; on older servers, every partition reads the whole table.
+         */
+        public Builder ctidRange() {
+            this.ctidRange = true;
+            return this;
+        }
+
+        /**
+         * The number of partitions, and so of connections copying at once;
+         * the number of processors by default.
+         */
+        public Builder partitions(int partitions) {
+            this.partitions = partitions;
+            return this;
+        }
+
+        /**
+         * Whether all partitions see the same snapshot of the database;
+         * true by default.
+         */
+        public Builder exportSnapshot(boolean exportSnapshot) {
+            this.exportSnapshot = exportSnapshot;
+            return this;
+        }
+
+        /**
+         * Copy options to follow "to stdout", such as "csv".
+         */
+        public Builder options(String options) {
+            this.options = options;
+            return this;
+        }
+
+        /**
+         * Writes each partition to its own file, named by formatting
+         * outFilePattern, such as "/tmp/users.%d.copy", with the partition's
+         * index.
+         */
+        public Builder outFilePattern(String outFilePattern) {
+            this.outFilePattern = outFilePattern;
+            return this;
+        }
+
+        /**
+         * Whether to gzip each partition's file.
+         */
+        public Builder gzip(boolean gzip) {
+            this.gzip = gzip;
+            return this;
+        }
+
+        /**
+         * Writes all partitions to mergedOutput, which the caller remains
+         * responsible for closing.
+         */
+        public Builder mergedOutput(OutputStream mergedOutput) {
+            this.mergedOutput = mergedOutput;
+            return this;
+        }
+
+        /**
+         * The number of bytes each partition buffers before writing.
+         */
+        public Builder bufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * Told how far each partition has got every progressInterval rows.
+         */
+        public Builder progressListener(CopyProgressListener progressListener) {
+            this.progressListener = progressListener;
+            return this;
+        }
+
+        public Builder progressInterval(long progressInterval) {
+            this.progressInterval = progressInterval;
+            return this;
+        }
+
+        public ParallelCopyOut done() {
+            if (dataSourceAdapter == null) {
+                throw new Cl4pgConfigException("DataSourceAdapter must be specified.");
+            }
+            if (Str.isNullOrEmpty(table)) {
+                throw new Cl4pgConfigException("Table must be specified.");
+            }
+            if (Str.isNullOrEmpty(keyColumn) == !ctidRange) {
+                throw new Cl4pgConfigException("Specify exactly one of a key range or a ctid range.");
+            }
+            if (partitions < 1) {
+                throw new Cl4pgConfigException("Partitions must be at least 1.");
+            }
+            if ((outFilePattern == null) == (mergedOutput == null)) {
+                throw new Cl4pgConfigException("Specify exactly one of an out file pattern or a merged output stream.");
+            }
+            if (mergedOutput != null && options.toLowerCase().contains("binary")) {
+                throw new Cl4pgConfigException("Binary copy output cannot be merged into one stream.");
+            }
+            if (mergedOutput != null && HEADER_OPTION.matcher(options).find()) {
+                throw new Cl4pgConfigException("Copy output with a header cannot be merged into one stream; every partition would write one.");
+            }
+            if (bufferSize < 1) {
+                throw new Cl4pgConfigException("Buffer size must be at least 1.");
+            }
+            if (progressInterval < 1) {
+                throw new Cl4pgConfigException("Progress interval must be at least 1.");
+            }
+            return new ParallelCopyOut(this);
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.parallel;
+
+/**
+ * What happened to one partition of a parallel copy: which rows it covered,
+ * how many rows and bytes it copied, how long it took, and, if it failed,
+ * why.
+ *
+ * @author mwood
+ *
+ */
+public class PartitionResult {
+
+    private final int partition;
+    private final String description;
+    private final long rowCount;
+    private final long byteCount;
+    private final long elapsedNanos;
+    private final Exception exception;
+
+    PartitionResult(int partition,
+                    String description,
+                    long rowCount,
+                    long byteCount,
+                    long elapsedNanos,
+                    Exception exception) {
+        this.partition = partition;
+        this.description = description;
+        this.rowCount = rowCount;
+        this.byteCount = byteCount;
+        this.elapsedNanos = elapsedNanos;
+        this.exception = exception;
+    }
+
+    /**
+     * The partition's index, starting at 0.
+     *
+     * @return
+     */
+    public int getPartition() {
+        return partition;
+    }
+
+    /**
+     * The rows the partition covered, such as a where clause or a file name
+     * and line range.
+     *
+     * @return
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rowCount * 1000000000.0 / elapsedNanos;
+    }
+
+    public double getBytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : byteCount * 1000000000.0 / elapsedNanos;
+    }
+
+    /**
+     * The exception that made the partition fail, or null if it succeeded.
+     *
+     * @return
+     */
+    public Exception getException() {
+        return exception;
+    }
+
+    public boolean isSuccess() {
+        return exception == null;
+    }
+
+    @Override
+    public String toString() {
+        return "PartitionResult [partition=" + partition + ", description=" + description + ", rowCount=" + rowCount + ", byteCount=" + byteCount
+               + ", elapsedNanos=" + elapsedNanos + ", exception=" + exception + "]";
+    }
+}
@@ -0,0 +1,424 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.resultcache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.manniwood.cl4pg.v1.notifications.NotificationDispatcher;
+import com.manniwood.cl4pg.v1.notifications.NotificationListener;
+import com.manniwood.cl4pg.v1.util.BoundedConcurrentMap;
+import com.manniwood.cl4pg.v1.util.Str;
+
+/**
+ * Caches the results of select statements, keyed by SQL, bound args and
+ * result class, so that re-running the same query with the same args against
+ * rarely-changing tables does not go back to the database. Thread-safe, and
+ * meant to be shared by every session of a DataSourceAdapter.
+ *
+ * <p>
+ * Each entry is tagged, typically with the names of the tables its query
+ * read. Entries are thrown away when their tags are invalidated, when they
+ * are older than ttlMillis (if ttlMillis is greater than 0), or, once the
+ * cache holds maxSize entries, arbitrarily, to make room for new ones (it
+ * is a BoundedConcurrentMap).
+ *
+ * <p>
+ * Tags can be invalidated directly, or by notifications: after
+ * listenForInvalidations(), a notification on the given channel invalidates
+ * the tag named by its payload, or every entry if the payload is empty. A
+ * trigger on each cached table that runs
+ * <code>pg_notify('channel', TG_TABLE_NAME)</code> keeps the cache current.
+ * Notifications sent while the NotificationDispatcher is reconnecting are
+ * lost, so a TTL is a good safety net.
+ *
+ * <p>
+ * Cached results are shared, so they are returned as unmodifiable lists, and
+ * the beans in them should not be changed. A Loader says whether what it
+ * loaded may be cached: rows read by a session whose transaction has
+ * uncommitted writes could include those writes, and must not be shared with
+ * other sessions. Even so, a cached result knows nothing about the current
+ * transaction's writes, so do not use it to read back data that the
+ * transaction has just changed.
+ *
+ * @author mwood
+ *
+ */
+public class ResultCache {
+
+    private final static Logger log = LoggerFactory.getLogger(ResultCache.class);
+
+    /**
+     * Loads the rows for a cache miss.
+     *
+     * @author mwood
+     *
+     * @param <R>
+     */
+    public interface Loader<R> {
+        List<R> load();
+
+        /**
+         * Whether the rows load() just returned may be shared with other
+         * sessions; false if they could include uncommitted writes.
+         *
+         * @return
+         */
+        boolean mayCache();
+    }
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final BoundedConcurrentMap<Key, Entry> cache;
+
+    /**
+     * Bumped by every invalidation, so that a result loaded while an
+     * invalidation was going on is not put in the cache after the
+     * invalidation has already swept it.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong uncacheable = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong totalHitAgeNanos = new AtomicLong();
+    private final AtomicLong maxHitAgeNanos = new AtomicLong();
+
+    public ResultCache(int maxSize,
+                       long ttlMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1, not " + maxSize);
+        }
+        if (ttlMillis < 0) {
+            throw new IllegalArgumentException("ttlMillis must not be negative, not " + ttlMillis);
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.cache = new BoundedConcurrentMap<Key, Entry>(maxSize);
+    }
+
+    /**
+     * Returns the cached rows for sql, returnClass and args, calling loader
+     * and caching what it returns, tagged with tags, if they are not already
+     * cached.
+     *
+     * @param sql
+     *            the SQL (not the file name) of the query
+     * @param returnClass
+     *            the bean class for the rows, or null for scalar rows
+     * @param args
+     *            the args bound to the query
+     * @param tags
+     *            comma-separated tags for the result, such as the tables the
+     *            query reads
+     * @param loader
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <R> List<R> get(String sql,
+                           Class<?> returnClass,
+                           Object[] args,
+                           String tags,
+                           Loader<R> loader) {
+        Key key = new Key(sql, returnClass, args);
+        Entry entry = cache.get(key);
+        long now = System.nanoTime();
+        if (entry != null) {
+            long age = now - entry.loadedNanos;
+            if (ttlNanos == 0 || age < ttlNanos) {
+                hits.incrementAndGet();
+                recordHitAge(age);
+                return (List<R>) entry.rows;
+            }
+            if (cache.remove(key, entry)) {
+                expirations.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        long loadGeneration = generation.get();
+        List<R> rows = Collections.unmodifiableList(new ArrayList<>(loader.load()));
+        if (!loader.mayCache()) {
+            uncacheable.incrementAndGet();
+            return rows;
+        }
+        entry = new Entry(rows, now, parseTags(tags));
+        cache.put(key, entry);
+        if (generation.get() != loadGeneration) {
+            // Whatever was invalidated while we were loading may be in rows
+            cache.remove(key, entry);
+        }
+        return rows;
+    }
+
+    private void recordHitAge(long age) {
+        totalHitAgeNanos.addAndGet(age);
+        long max;
+        while (age > (max = maxHitAgeNanos.get())) {
+            if (maxHitAgeNanos.compareAndSet(max, age)) {
+                return;
+            }
+        }
+    }
+
+    private static Set<String> parseTags(String tags) {
+        if (Str.isNullOrEmpty(tags)) {
+            return Collections.emptySet();
+        }
+        Set<String> set = new HashSet<>();
+        for (String tag : tags.split(",")) {
+            tag = tag.trim();
+            if (!tag.isEmpty()) {
+                set.add(tag);
+            }
+        }
+        return set;
+    }
+
+    /**
+     * Throws away every cached result tagged with tag.
+     *
+     * @param tag
+     */
+    public void invalidate(String tag) {
+        generation.incrementAndGet();
+        int removed = 0;
+        for (Map.Entry<Key, Entry> e : cache.entrySet()) {
+            if (e.getValue().tags.contains(tag) && cache.remove(e.getKey(), e.getValue())) {
+                removed++;
+            }
+        }
+        invalidations.addAndGet(removed);
+        log.debug("Invalidated {} cached results tagged {}", removed, tag);
+    }
+
+    /**
+     * Throws away every cached result.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        int removed = cache.clear();
+        invalidations.addAndGet(removed);
+        log.debug("Invalidated all {} cached results", removed);
+    }
+
+    /**
+     * Invalidates the tag named by the payload of every notification on
+     * channel (or everything, for an empty payload) from now on.
+     *
+     * @param dispatcher
+     * @param channel
+     */
+    public void listenForInvalidations(NotificationDispatcher dispatcher,
+                                       String channel) {
+        dispatcher.addListener(channel, new NotificationListener() {
+            @Override
+            public void onNotification(PGNotification notification) {
+                String tag = notification.getParameter();
+                if (Str.isNullOrEmpty(tag)) {
+                    invalidateAll();
+                } else {
+                    invalidate(tag);
+                }
+            }
+        });
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getTtlMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(ttlNanos);
+    }
+
+    /**
+     * Number of results currently in the cache.
+     *
+     * @return
+     */
+    public int getSize() {
+        return cache.size();
+    }
+
+    /**
+     * Number of calls to get() answered from the cache.
+     *
+     * @return
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Number of calls to get() that had to run the query.
+     *
+     * @return
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Number of calls to get() whose rows were not cached, because they could
+     * have included uncommitted writes.
+     *
+     * @return
+     */
+    public long getUncacheable() {
+        return uncacheable.get();
+    }
+
+    /**
+     * Fraction of calls to get() answered from the cache, or 0 if there have
+     * been none.
+     *
+     * @return
+     */
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Number of results thrown away to keep the cache within maxSize.
+     *
+     * @return
+     */
+    public long getEvictions() {
+        return cache.getEvictions();
+    }
+
+    /**
+     * Number of results thrown away for being older than ttlMillis.
+     *
+     * @return
+     */
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    /**
+     * Number of results thrown away because their tags were invalidated.
+     *
+     * @return
+     */
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    /**
+     * Average age, at the time they were returned, of the results returned
+     * from the cache: how stale, on average, a hit is.
+     *
+     * @return
+     */
+    public long getMeanHitAgeMillis() {
+        long h = hits.get();
+        return h == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalHitAgeNanos.get() / h);
+    }
+
+    /**
+     * Age of the oldest result ever returned from the cache.
+     *
+     * @return
+     */
+    public long getMaxHitAgeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxHitAgeNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return "ResultCache [maxSize=" + maxSize + ", size=" + cache.size() + ", hits=" + hits + ", misses=" + misses + ", uncacheable=" + uncacheable + ", evictions="
+               + cache.getEvictions() + ", expirations=" + expirations + ", invalidations=" + invalidations + "]";
+    }
+
+    private static final class Key {
+        private final String sql;
+        private final Class<?> returnClass;
+        private final Object[] args;
+        private final int hashCode;
+
+        private Key(String sql,
+                    Class<?> returnClass,
+                    Object[] args) {
+            this.sql = sql;
+            this.returnClass = returnClass;
+            // Copied, so that the caller re-using its args array cannot change
+            // the key
+            this.args = args == null ? new Object[0] : args.clone();
+            int h = sql.hashCode();
+            h = 31 * h + (returnClass == null ? 0 : returnClass.hashCode());
+            h = 31 * h + Arrays.deepHashCode(this.args);
+            this.hashCode = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hashCode == other.hashCode
+                   && sql.equals(other.sql)
+                   && returnClass == other.returnClass
+                   && Arrays.deepEquals(args, other.args);
+        }
+    }
+
+    private static final class Entry {
+        private final List<?> rows;
+        private final long loadedNanos;
+        private final Set<String> tags;
+
+        private Entry(List<?> rows,
+                      long loadedNanos,
+                      Set<String> tags) {
+            this.rows = rows;
+            this.loadedNanos = loadedNanos;
+            this.tags = tags;
+        }
+    }
+}
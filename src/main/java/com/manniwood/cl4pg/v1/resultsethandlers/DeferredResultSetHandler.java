@@ -0,0 +1,57 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.resultsethandlers;
+
+import com.manniwood.cl4pg.v1.commands.Command;
+
+/**
+ * A ResultSetHandler that reads the rows itself, after the Command that
+ * produced the ResultSet has returned, instead of having the Command call
+ * processRow() for every row. Commands that support this (Select and
+ * CallStoredProcRefCursor) call attach() right after init(), skip their own
+ * row loop, and leave their resources open until the handler is detached.
+ *
+ * @author mwood
+ *
+ * @param <R>
+ */
+public interface DeferredResultSetHandler<R> extends ResultSetHandler<R> {
+
+    /**
+     * Called by command once the ResultSet passed to init() is ready to be
+     * read. From then on, the handler is responsible for calling
+     * command.close() once it no longer needs the ResultSet.
+     *
+     * @param command
+     */
+    void attach(Command command);
+
+    /**
+     * Whether the handler still needs the ResultSet, in which case the
+     * command's close() must leave the command's resources open.
+     *
+     * @return
+     */
+    boolean isAttached();
+}
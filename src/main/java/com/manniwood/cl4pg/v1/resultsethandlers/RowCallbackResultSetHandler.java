@@ -0,0 +1,94 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.resultsethandlers;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+import com.manniwood.cl4pg.v1.typeconverters.TypeConverterStore;
+
+/**
+ * Streams rows to a RowCallback instead of collecting them in a list. Each
+ * row is turned into an object of type R by a wrapped ResultSetHandler (so
+ * any of the ListHandlers, or whatever the RowResultSetHandlerBuilder of the
+ * DataSourceAdapter builds, can be used to do the mapping), handed to the
+ * callback, and then removed from the wrapped handler's list, so memory use
+ * stays flat no matter how many rows the result set has.
+ *
+ * <p>
+ * The wrapped handler's getList() must return the handler's own, modifiable
+ * list, as all of the ListHandlers that come with Cl4pg do.
+ *
+ * @author mwood
+ *
+ * @param <R>
+ */
+public class RowCallbackResultSetHandler<R> implements ResultSetHandler<R> {
+
+    private final ResultSetHandler<R> mapper;
+    private final RowCallback<R> callback;
+    private long rowCount;
+
+    public RowCallbackResultSetHandler(ResultSetHandler<R> mapper,
+            RowCallback<R> callback) {
+        this.mapper = mapper;
+        this.callback = callback;
+    }
+
+    @Override
+    public void init(TypeConverterStore converterStore,
+                     ResultSet rs) throws SQLException {
+        mapper.init(converterStore, rs);
+    }
+
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+        mapper.processRow(rs);
+        List<R> rows = mapper.getList();
+        for (R row : rows) {
+            callback.onRow(row);
+            rowCount++;
+        }
+        rows.clear();
+    }
+
+    /**
+     * Always returns an empty list, because rows go to the callback instead.
+     */
+    @Override
+    public List<R> getList() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Number of rows handed to the callback so far.
+     *
+     * @return
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+}
@@ -1,5 +1,7 @@
 package com.manniwood.cl4pg.v1.sqlparsers;
 
+import java.util.Objects;
+
 /**
  * Holds getter/setter names of bean properties that correspond to IN, OUT, and
  * INOUT arguments used by a stored procedure. When we call a stored procedure
@@ -39,6 +41,24 @@ public class InOutArg {
         return setter;
     }
 
+    @Override
+    public int hashCode() {
+        return Objects.hash(getter, setter);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final InOutArg other = (InOutArg) obj;
+        return Objects.equals(getter, other.getter)
+                && Objects.equals(setter, other.setter);
+    }
+
     @Override
     public String toString() {
         return "InOutArg [getter=" + getter + ", setter=" + setter + "]";
@@ -0,0 +1,183 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.sqlparsers;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.manniwood.cl4pg.v1.typeconverters.ResolvedArgTypes;
+import com.manniwood.cl4pg.v1.typeconverters.TypeConverterStore;
+
+/**
+ * The result of running a Cl4pg SQL template through a SqlParser: the JDBC
+ * SQL string with every <code>#{blah}</code> replaced by <code>?</code>, plus
+ * whatever the ParserListener extracted from the template. The parse results
+ * never change; the only other state is the ResolvedArgTypes, worked out from
+ * the args the first time they are bound and memoized in a volatile field.
+ * Resolving them twice is harmless, so instances are safe to cache and to
+ * share between threads.
+ *
+ * @author mwood
+ *
+ */
+public class ParsedSql {
+
+    private final ParserListenerKind kind;
+    private final String transformedSql;
+    private final List<String> args;
+    private final List<InOutArg> inOutArgs;
+    private final String firstArg;
+
+    /**
+     * Set lazily, because whether args are class names or getters depends on
+     * the Command that runs the template, not on the parse.
+     */
+    private volatile ResolvedArgTypes resolvedArgTypes;
+
+    private ParsedSql(ParserListenerKind kind,
+                      String transformedSql,
+                      List<String> args,
+                      List<InOutArg> inOutArgs,
+                      String firstArg) {
+        this.kind = kind;
+        this.transformedSql = transformedSql;
+        this.args = args == null ? null : Collections.unmodifiableList(args);
+        this.inOutArgs = inOutArgs == null ? null : Collections.unmodifiableList(inOutArgs);
+        this.firstArg = firstArg;
+    }
+
+    /**
+     * Parses a Cl4pg SQL template using the ParserListener corresponding to
+     * kind.
+     *
+     * @param sql
+     * @param kind
+     * @return
+     */
+    public static ParsedSql parse(String sql,
+                                  ParserListenerKind kind) {
+        switch (kind) {
+        case BASIC:
+            BasicParserListener basicParserListener = new BasicParserListener();
+            String basicSql = new SqlParser(basicParserListener).transform(sql);
+            return new ParsedSql(kind, basicSql, basicParserListener.getArgs(), null, null);
+        case SLASH:
+            SlashParserListener slashParserListener = new SlashParserListener();
+            String slashSql = new SqlParser(slashParserListener).transform(sql);
+            return new ParsedSql(kind, slashSql, null, slashParserListener.getArgs(), null);
+        case SPECIAL_FIRST_ARG:
+            SpecialFirstArgParserListener specialFirstArgParserListener = new SpecialFirstArgParserListener();
+            String specialSql = new SqlParser(specialFirstArgParserListener).transform(sql);
+            return new ParsedSql(kind,
+                                 specialSql,
+                                 specialFirstArgParserListener.getArgs(),
+                                 null,
+                                 specialFirstArgParserListener.getFirstArg());
+        default:
+            throw new IllegalArgumentException("Unknown ParserListenerKind " + kind);
+        }
+    }
+
+    public ParserListenerKind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the question-mark-using SQL string for use in a
+     * PreparedStatement.
+     *
+     * @return
+     */
+    public String getTransformedSql() {
+        return transformedSql;
+    }
+
+    /**
+     * Returns the getters or class names found by a BASIC or SPECIAL_FIRST_ARG
+     * parse (for SPECIAL_FIRST_ARG, excluding the first arg), or null for a
+     * SLASH parse.
+     *
+     * @return
+     */
+    public List<String> getArgs() {
+        return args;
+    }
+
+    /**
+     * Returns the InOutArgs found by a SLASH parse, or null for any other kind
+     * of parse.
+     *
+     * @return
+     */
+    public List<InOutArg> getInOutArgs() {
+        return inOutArgs;
+    }
+
+    /**
+     * Returns the first arg found by a SPECIAL_FIRST_ARG parse, or null for
+     * any other kind of parse.
+     *
+     * @return
+     */
+    public String getFirstArg() {
+        return firstArg;
+    }
+
+    /**
+     * Returns the class names in args, as resolved by converterStore,
+     * resolving them only if they have not already been resolved by the same
+     * TypeConverterStore.
+     *
+     * @param converterStore
+     * @return
+     */
+    public ResolvedArgTypes resolveArgTypes(TypeConverterStore converterStore) {
+        ResolvedArgTypes resolved = resolvedArgTypes;
+        if (resolved == null || !resolved.isFrom(converterStore)) {
+            resolved = converterStore.resolveArgTypes(args);
+            setResolvedArgTypes(resolved);
+        }
+        return resolved;
+    }
+
+    /**
+     * Returns the class names in args, as last resolved by a
+     * TypeConverterStore, or null if they have not been resolved yet.
+     *
+     * @return
+     */
+    public ResolvedArgTypes getResolvedArgTypes() {
+        return resolvedArgTypes;
+    }
+
+    void setResolvedArgTypes(ResolvedArgTypes resolvedArgTypes) {
+        this.resolvedArgTypes = resolvedArgTypes;
+    }
+
+    @Override
+    public String toString() {
+        return "ParsedSql [kind=" + kind + ", transformedSql=" + transformedSql + ", args=" + args + ", inOutArgs=" + inOutArgs + ", firstArg="
+               + firstArg + "]";
+    }
+}
@@ -0,0 +1,164 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.sqlparsers;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.manniwood.cl4pg.v1.util.BoundedConcurrentMap;
+
+/**
+ * Caches ParsedSqls keyed by Cl4pg SQL template and ParserListenerKind, so
+ * that running the same template over and over only parses it once.
+ * Thread-safe.
+ *
+ * <p>
+ * The cache is bounded: once it holds maxSize entries of one
+ * ParserListenerKind, an arbitrary entry of that kind is evicted to make room
+ * for each new one. For the typical application, with a fixed set of
+ * templates that all fit in the cache, nothing ever gets evicted anyway.
+ *
+ * @author mwood
+ *
+ */
+public class ParsedSqlCache {
+
+    private final int maxSize;
+
+    /**
+     * One map per ParserListenerKind, indexed by ordinal, so that lookups do
+     * not need to allocate a compound key.
+     */
+    private final BoundedConcurrentMap<String, ParsedSql>[] caches;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public ParsedSqlCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1, not " + maxSize);
+        }
+        this.maxSize = maxSize;
+        ParserListenerKind[] kinds = ParserListenerKind.values();
+        caches = new BoundedConcurrentMap[kinds.length];
+        for (int i = 0; i < kinds.length; i++) {
+            caches[i] = new BoundedConcurrentMap<String, ParsedSql>(maxSize);
+        }
+    }
+
+    /**
+     * Returns the ParsedSql for sql and kind, parsing sql only if it is not
+     * already cached.
+     *
+     * @param sql
+     * @param kind
+     * @return
+     */
+    public ParsedSql get(String sql,
+                         ParserListenerKind kind) {
+        BoundedConcurrentMap<String, ParsedSql> cache = caches[kind.ordinal()];
+        ParsedSql parsedSql = cache.get(sql);
+        if (parsedSql != null) {
+            hits.incrementAndGet();
+            return parsedSql;
+        }
+        misses.incrementAndGet();
+        parsedSql = ParsedSql.parse(sql, kind);
+        ParsedSql existing = cache.putIfAbsent(sql, parsedSql);
+        if (existing != null) {
+            // Another thread parsed the same template at the same time
+            return existing;
+        }
+        return parsedSql;
+    }
+
+    /**
+     * Removes every entry from the cache. Does not reset the hit and miss
+     * counts.
+     */
+    public void clear() {
+        for (BoundedConcurrentMap<String, ParsedSql> cache : caches) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * The most ParsedSqls kept for each ParserListenerKind.
+     *
+     * @return
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Number of ParsedSqls currently in the cache.
+     *
+     * @return
+     */
+    public int getSize() {
+        int size = 0;
+        for (BoundedConcurrentMap<String, ParsedSql> cache : caches) {
+            size += cache.size();
+        }
+        return size;
+    }
+
+    /**
+     * Number of calls to get() that found an already-parsed template.
+     *
+     * @return
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Number of calls to get() that had to parse the template.
+     *
+     * @return
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Number of ParsedSqls evicted to keep the cache within maxSize.
+     *
+     * @return
+     */
+    public long getEvictions() {
+        long evictions = 0;
+        for (BoundedConcurrentMap<String, ParsedSql> cache : caches) {
+            evictions += cache.getEvictions();
+        }
+        return evictions;
+    }
+
+    @Override
+    public String toString() {
+        return "ParsedSqlCache [maxSize=" + maxSize + ", size=" + getSize() + ", hits=" + hits + ", misses=" + misses + ", evictions="
+               + getEvictions() + "]";
+    }
+}
@@ -0,0 +1,53 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.sqlparsers;
+
+/**
+ * The kinds of ParserListener that Cl4pg's own Commands use to parse Cl4pg SQL
+ * templates. The same template parsed by two different kinds of listener
+ * yields two different ParsedSqls, so the kind forms part of the key when
+ * ParsedSqls are cached.
+ *
+ * @author mwood
+ *
+ */
+public enum ParserListenerKind {
+    /**
+     * Parsed using a BasicParserListener: every <code>#{blah}</code> is a
+     * getter or a class name.
+     */
+    BASIC,
+
+    /**
+     * Parsed using a SlashParserListener: every <code>#{blah}</code> is a
+     * getFoo/setFoo InOutArg.
+     */
+    SLASH,
+
+    /**
+     * Parsed using a SpecialFirstArgParserListener: the first
+     * <code>#{blah}</code> is kept apart from the rest.
+     */
+    SPECIAL_FIRST_ARG
+}
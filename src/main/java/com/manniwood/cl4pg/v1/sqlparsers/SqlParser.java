@@ -23,6 +23,7 @@ THE SOFTWARE.
  */
 package com.manniwood.cl4pg.v1.sqlparsers;
 
+import com.manniwood.cl4pg.v1.exceptions.Cl4pgSyntaxException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -70,7 +71,9 @@ public class SqlParser {
      * <code>#{blah}</code> with <code>?</code>, and calling the
      * ParserListener's arg() method each time a <code>#{blah}</code> is
      * encountered.
-     * 
+     * <p>
+     * Throws a Cl4pgSyntaxException if a <code>#{</code> is never closed.
+     *
      * @param sql
      * @return
      */
@@ -101,18 +104,20 @@ public class SqlParser {
                            char[] chrs,
                            int chrsLen,
                            int i) {
+        // i points at the opening brace; the hash is just before it
+        int start = i - 1;
         StringBuilder arg = new StringBuilder();
+        i++;
         while (i < chrsLen && chrs[i] != '}') {
+            arg.append(chrs[i]);
             i++;
-            if (chrs[i] != '}') {
-                arg.append(chrs[i]);
-            }
         }
-        if (chrs[i] == '}') {
-            log.debug("adding arg: {}", arg.toString());
-            String replacer = parserListener.arg(arg.toString());
-            sqlSb.append(replacer);
+        if (i >= chrsLen) {
+            throw new Cl4pgSyntaxException("Unterminated #{ at character " + start + " of Cl4pg SQL template:\n" + new String(chrs));
         }
+        log.debug("adding arg: {}", arg.toString());
+        String replacer = parserListener.arg(arg.toString());
+        sqlSb.append(replacer);
         return i;
     }
 }
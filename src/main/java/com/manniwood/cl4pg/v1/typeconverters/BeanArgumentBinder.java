@@ -0,0 +1,226 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.typeconverters;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import com.manniwood.cl4pg.v1.exceptions.Cl4pgReflectionException;
+import com.manniwood.cl4pg.v1.sqlparsers.InOutArg;
+import com.manniwood.cl4pg.v1.typeconverters.types.TypeConverter;
+
+/**
+ * The compiled form of a list of getters (and, for CallableStatements,
+ * setters) on a bean class: for each question mark argument, in order, a
+ * MethodHandle to the bean's getter and the TypeConverter for the getter's
+ * return type, plus, for OUT parameters, the TypeConverter for the bean
+ * setter's parameter type. Worked out once per bean class and argument list by
+ * TypeConverterStore, so that binding a bean's values to a statement does no
+ * reflective lookups.
+ *
+ * @author mwood
+ *
+ */
+final class BeanArgumentBinder {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    /**
+     * Handles of type (Object)Object; an entry is null where a
+     * CallableStatement argument has no getter.
+     */
+    private final MethodHandle[] getters;
+    private final TypeConverter<?>[] converters;
+
+    /**
+     * Which CallableStatement arguments are OUT parameters, and their
+     * TypeConverters. Both null for PreparedStatement binders.
+     */
+    private final boolean[] outParams;
+    private final TypeConverter<?>[] outConverters;
+
+    private BeanArgumentBinder(MethodHandle[] getters,
+                               TypeConverter<?>[] converters,
+                               boolean[] outParams,
+                               TypeConverter<?>[] outConverters) {
+        this.getters = getters;
+        this.converters = converters;
+        this.outParams = outParams;
+        this.outConverters = outConverters;
+    }
+
+    /**
+     * Compiles the getters, in order, of beanClass.
+     *
+     * @param beanClass
+     * @param getterNames
+     * @param typeConverters
+     * @return
+     */
+    static BeanArgumentBinder forGetters(Class<?> beanClass,
+                                         List<String> getterNames,
+                                         Map<Class<?>, TypeConverter<?>> typeConverters) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        int numArgs = getterNames.size();
+        MethodHandle[] getters = new MethodHandle[numArgs];
+        TypeConverter<?>[] converters = new TypeConverter<?>[numArgs];
+        try {
+            for (int i = 0; i < numArgs; i++) {
+                Method m = beanClass.getMethod(getterNames.get(i));
+                getters[i] = lookup.unreflect(m).asType(GETTER_TYPE);
+                converters[i] = typeConverters.get(m.getReturnType());
+            }
+        } catch (NoSuchMethodException | SecurityException | IllegalAccessException e) {
+            throw new Cl4pgReflectionException(e);
+        }
+        return new BeanArgumentBinder(getters, converters, null, null);
+    }
+
+    /**
+     * Compiles the getters and setters, in order, of beanClass.
+     *
+     * @param beanClass
+     * @param args
+     * @param typeConverters
+     * @return
+     */
+    static BeanArgumentBinder forInOutArgs(Class<?> beanClass,
+                                           List<InOutArg> args,
+                                           Map<Class<?>, TypeConverter<?>> typeConverters) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        int numArgs = args.size();
+        MethodHandle[] getters = new MethodHandle[numArgs];
+        TypeConverter<?>[] converters = new TypeConverter<?>[numArgs];
+        boolean[] outParams = new boolean[numArgs];
+        TypeConverter<?>[] outConverters = new TypeConverter<?>[numArgs];
+        Method[] methods = beanClass.getMethods();
+        try {
+            for (int i = 0; i < numArgs; i++) {
+                InOutArg arg = args.get(i);
+                String getter = arg.getGetter();
+                if (getter != null && !getter.isEmpty()) {
+                    Method m = beanClass.getMethod(getter);
+                    getters[i] = lookup.unreflect(m).asType(GETTER_TYPE);
+                    converters[i] = typeConverters.get(m.getReturnType());
+                }
+                String setter = arg.getSetter();
+                if (setter != null && !setter.isEmpty()) {
+                    Method setMethod = null;
+                    for (Method m : methods) {
+                        if (m.getName().equals(setter)) {
+                            setMethod = m;
+                        }
+                    }
+                    if (setMethod == null) {
+                        throw new NoSuchMethodException(beanClass.getName() + "." + setter);
+                    }
+                    outParams[i] = true;
+                    outConverters[i] = typeConverters.get(setMethod.getParameterTypes()[0]);
+                }
+            }
+        } catch (NoSuchMethodException | SecurityException | IllegalAccessException e) {
+            throw new Cl4pgReflectionException(e);
+        }
+        return new BeanArgumentBinder(getters, converters, outParams, outConverters);
+    }
+
+    /**
+     * Sets pstmt's question mark arguments, starting at startCol, from bean p.
+     *
+     * @param pstmt
+     * @param p
+     * @param startCol
+     * @throws SQLException
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    void bind(PreparedStatement pstmt,
+              Object p,
+              int startCol) throws SQLException {
+        for (int i = 0; i < getters.length; i++) {
+            ((TypeConverter) converters[i]).setItem(pstmt, startCol + i, invokeGetter(getters[i], p));
+        }
+    }
+
+    /**
+     * Sets cstmt's IN arguments from bean p, and registers its OUT arguments.
+     *
+     * @param cstmt
+     * @param p
+     * @throws SQLException
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    void bind(CallableStatement cstmt,
+              Object p) throws SQLException {
+        for (int i = 0; i < getters.length; i++) {
+            // JDBC cols start at 1, not zero
+            int col = i + 1;
+            if (getters[i] != null) {
+                ((TypeConverter) converters[i]).setItem(cstmt, col, invokeGetter(getters[i], p));
+            }
+            if (outParams[i]) {
+                outConverters[i].registerOutParameter(cstmt, col);
+            }
+        }
+    }
+
+    /**
+     * Fills values with the results of calling each getter, in order, on bean
+     * p, for callers that need the values themselves instead of having them
+     * bound to a statement.
+     *
+     * @param p
+     * @param values
+     */
+    void getValues(Object p,
+                   Object[] values) {
+        for (int i = 0; i < getters.length; i++) {
+            values[i] = invokeGetter(getters[i], p);
+        }
+    }
+
+    /**
+     * Returns a copy of the TypeConverters for the getters' return types.
+     *
+     * @return
+     */
+    TypeConverter<?>[] getConverters() {
+        return converters.clone();
+    }
+
+    private static Object invokeGetter(MethodHandle getter,
+                                       Object p) {
+        try {
+            return (Object) getter.invokeExact(p);
+        } catch (Throwable e) {
+            throw new Cl4pgReflectionException(e);
+        }
+    }
+}
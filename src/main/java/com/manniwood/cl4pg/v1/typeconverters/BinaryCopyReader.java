@@ -0,0 +1,189 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.typeconverters;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.postgresql.copy.CopyOut;
+
+import com.manniwood.cl4pg.v1.exceptions.Cl4pgException;
+import com.manniwood.cl4pg.v1.typeconverters.types.BinaryTypeConverter;
+
+/**
+ * Reads PostgreSQL binary COPY data (the PGCOPY format) from a CopyOut, one
+ * row at a time, decoding each field with a BinaryTypeConverter. Only the
+ * data received from the server but not yet decoded is held in memory.
+ *
+ * @author mwood
+ *
+ */
+public class BinaryCopyReader {
+
+    private final CopyOut copyOut;
+    private ByteBuffer buf = ByteBuffer.allocate(0);
+    private boolean headerRead = false;
+    private boolean done = false;
+
+    /**
+     * The number, counting from 1, of the last field read or skipped in the
+     * current row.
+     */
+    private int column;
+
+    public BinaryCopyReader(CopyOut copyOut) {
+        this.copyOut = copyOut;
+    }
+
+    /**
+     * Moves to the next row, returning its number of fields, or -1 if there
+     * are no more rows.
+     *
+     * @return
+     * @throws SQLException
+     */
+    public int nextRow() throws SQLException {
+        if (done) {
+            return -1;
+        }
+        if (!headerRead) {
+            readHeader();
+        }
+        if (!fill(2)) {
+            done = true;
+            return -1;
+        }
+        int numFields = buf.getShort();
+        column = 0;
+        if (numFields == -1) {
+            done = true;
+            // Drain the copy, so that the connection is ready for its next
+            // command.
+            while (copyOut.readFromCopy() != null) {
+                // nothing to do
+            }
+        }
+        return numFields;
+    }
+
+    /**
+     * Reads the next field of the current row, or null if it is SQL null.
+     * converter is only shown the field's own bytes, and must use all of
+     * them; a converter that wants more or fewer bytes than the field has is
+     * decoding some other type, so a Cl4pgException is thrown instead of a
+     * wrong value.
+     *
+     * @param converter
+     * @return
+     * @throws SQLException
+     */
+    public <T> T readField(BinaryTypeConverter<T> converter) throws SQLException {
+        require(4);
+        column++;
+        int length = buf.getInt();
+        if (length == -1) {
+            return null;
+        }
+        require(length);
+        ByteBuffer field = buf.slice();
+        field.limit(length);
+        buf.position(buf.position() + length);
+        T t;
+        try {
+            t = converter.readBinary(field, length);
+        } catch (Cl4pgException e) {
+            throw new Cl4pgException("Could not read column " + column + " of the copy data: " + e.getMessage(), e);
+        } catch (BufferUnderflowException e) {
+            throw new Cl4pgException("Column " + column + " of the copy data is " + length + " bytes long, but "
+                                     + converter.getClass().getSimpleName() + " wanted more; does the column's type match?", e);
+        }
+        if (field.hasRemaining()) {
+            throw new Cl4pgException("Column " + column + " of the copy data is " + length + " bytes long, but "
+                                     + converter.getClass().getSimpleName() + " only used " + field.position()
+                                     + " of them; does the column's type match?");
+        }
+        return t;
+    }
+
+    /**
+     * Skips the next field of the current row.
+     *
+     * @throws SQLException
+     */
+    public void skipField() throws SQLException {
+        require(4);
+        column++;
+        int length = buf.getInt();
+        if (length > 0) {
+            require(length);
+            buf.position(buf.position() + length);
+        }
+    }
+
+    private void readHeader() throws SQLException {
+        require(BinaryCopyWriter.SIGNATURE.length + 8);
+        byte[] signature = new byte[BinaryCopyWriter.SIGNATURE.length];
+        buf.get(signature);
+        if (!Arrays.equals(signature, BinaryCopyWriter.SIGNATURE)) {
+            throw new Cl4pgException("Copy data is not in binary format.");
+        }
+        buf.getInt(); // flags
+        int extensionLength = buf.getInt();
+        require(extensionLength);
+        buf.position(buf.position() + extensionLength);
+        headerRead = true;
+    }
+
+    private void require(int n) throws SQLException {
+        if (!fill(n)) {
+            throw new Cl4pgException("Binary copy data ended part way through a row.");
+        }
+    }
+
+    /**
+     * Reads from the server until at least n bytes are buffered, returning
+     * false if the copy data ends first.
+     */
+    private boolean fill(int n) throws SQLException {
+        while (buf.remaining() < n) {
+            byte[] chunk = copyOut.readFromCopy();
+            if (chunk == null) {
+                return false;
+            }
+            if (!buf.hasRemaining()) {
+                // The usual case: the server sends one row per chunk.
+                buf = ByteBuffer.wrap(chunk);
+            } else {
+                ByteBuffer joined = ByteBuffer.allocate(buf.remaining() + chunk.length);
+                joined.put(buf);
+                joined.put(chunk);
+                joined.flip();
+                buf = joined;
+            }
+        }
+        return true;
+    }
+}
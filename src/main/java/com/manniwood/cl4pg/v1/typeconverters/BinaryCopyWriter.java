@@ -0,0 +1,134 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.typeconverters;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+
+import org.postgresql.copy.CopyIn;
+
+import com.manniwood.cl4pg.v1.typeconverters.types.BinaryTypeConverter;
+
+/**
+ * Writes PostgreSQL binary COPY data (the PGCOPY format) to a CopyIn,
+ * encoding each field with a BinaryTypeConverter straight into a buffer that
+ * is sent to the server whenever it fills. A buffer too small for a single
+ * field is grown to fit.
+ *
+ * @author mwood
+ *
+ */
+public class BinaryCopyWriter {
+
+    static final byte[] SIGNATURE = { 'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0 };
+
+    private final CopyIn copyIn;
+    private ByteBuffer buf;
+    private long byteCount;
+
+    /**
+     * Starts the copy data with the PGCOPY header.
+     *
+     * @param copyIn
+     * @param bufferSize
+     */
+    public BinaryCopyWriter(CopyIn copyIn,
+                            int bufferSize) {
+        this.copyIn = copyIn;
+        buf = ByteBuffer.allocate(Math.max(bufferSize, SIGNATURE.length + 8));
+        buf.put(SIGNATURE);
+        // flags, then the length of the header extension area
+        buf.putInt(0);
+        buf.putInt(0);
+    }
+
+    public void startRow(int numFields) throws SQLException {
+        if (buf.remaining() < 2) {
+            flush();
+        }
+        buf.putShort((short) numFields);
+    }
+
+    /**
+     * Writes one field: a length word, then t as encoded by converter, or a
+     * length word of -1 if t is null.
+     *
+     * @param converter
+     * @param t
+     * @throws SQLException
+     */
+    public <T> void writeField(BinaryTypeConverter<T> converter,
+                               T t) throws SQLException {
+        while (true) {
+            int start = buf.position();
+            try {
+                if (t == null) {
+                    buf.putInt(-1);
+                } else {
+                    buf.putInt(0);
+                    converter.writeBinary(buf, t);
+                    buf.putInt(start, buf.position() - start - 4);
+                }
+                return;
+            } catch (BufferOverflowException e) {
+                buf.position(start);
+                if (start == 0) {
+                    // even an empty buffer is too small for this field
+                    buf = ByteBuffer.allocate(buf.capacity() * 2);
+                } else {
+                    flush();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the end-of-data trailer and sends whatever is left in the
+     * buffer. The caller still needs to end the copy itself.
+     *
+     * @throws SQLException
+     */
+    public void finish() throws SQLException {
+        startRow(-1);
+        flush();
+    }
+
+    /**
+     * Returns the number of bytes sent to the server so far.
+     *
+     * @return
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    private void flush() throws SQLException {
+        if (buf.position() > 0) {
+            copyIn.writeToCopy(buf.array(), 0, buf.position());
+            byteCount += buf.position();
+            buf.clear();
+        }
+    }
+}
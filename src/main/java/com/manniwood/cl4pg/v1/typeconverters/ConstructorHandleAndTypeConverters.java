@@ -0,0 +1,64 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.typeconverters;
+
+import java.lang.invoke.MethodHandle;
+
+import com.manniwood.cl4pg.v1.typeconverters.types.TypeConverter;
+
+/**
+ * The MethodHandle equivalent of ConstructorAndTypeConverters: a handle to a
+ * bean's constructor, pre-adapted to take its arguments as an Object[] and
+ * return an Object, so that it can be called with invokeExact() for every
+ * row, plus the TypeConverters, in order, for the constructor's arguments.
+ *
+ * @author mwood
+ *
+ */
+public class ConstructorHandleAndTypeConverters {
+
+    private final MethodHandle constructor;
+    private final TypeConverter<?>[] typeConverters;
+
+    public ConstructorHandleAndTypeConverters(MethodHandle constructor,
+            TypeConverter<?>[] typeConverters) {
+        super();
+        this.constructor = constructor;
+        this.typeConverters = typeConverters;
+    }
+
+    /**
+     * Returns a handle of type (Object[])Object to the bean's constructor.
+     *
+     * @return
+     */
+    public MethodHandle getConstructor() {
+        return constructor;
+    }
+
+    public TypeConverter<?>[] getConverters() {
+        return typeConverters;
+    }
+
+}
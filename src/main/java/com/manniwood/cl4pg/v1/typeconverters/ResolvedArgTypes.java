@@ -0,0 +1,70 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.typeconverters;
+
+import com.manniwood.cl4pg.v1.typeconverters.types.TypeConverter;
+
+/**
+ * The class names from a template's <code>#{java.lang.Integer}</code>-style
+ * arguments, resolved by a TypeConverterStore into classes and TypeConverters.
+ * Attached to the template's ParsedSql the first time the template's variadic
+ * arguments are bound, so that later binds skip Class.forName() and the
+ * converter lookup.
+ *
+ * @author mwood
+ *
+ */
+public class ResolvedArgTypes {
+
+    private final TypeConverterStore converterStore;
+    private final Class<?>[] classes;
+    private final TypeConverter<?>[] converters;
+
+    ResolvedArgTypes(TypeConverterStore converterStore,
+                     Class<?>[] classes,
+                     TypeConverter<?>[] converters) {
+        this.converterStore = converterStore;
+        this.classes = classes;
+        this.converters = converters;
+    }
+
+    /**
+     * Whether these were resolved by converterStore, and so are still good to
+     * use with it.
+     *
+     * @param converterStore
+     * @return
+     */
+    public boolean isFrom(TypeConverterStore converterStore) {
+        return this.converterStore == converterStore;
+    }
+
+    Class<?>[] getClasses() {
+        return classes;
+    }
+
+    TypeConverter<?>[] getConverters() {
+        return converters;
+    }
+}
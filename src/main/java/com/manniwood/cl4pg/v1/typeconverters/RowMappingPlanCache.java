@@ -0,0 +1,252 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.typeconverters;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.manniwood.cl4pg.v1.util.BoundedConcurrentMap;
+
+/**
+ * Caches the row-mapping plans (setters, constructors, and TypeConverters)
+ * that TypeConverterStore works out from a result set's metadata, keyed by the
+ * bean class, the kind of plan, and the result set's shape: its column labels
+ * and column class names. Running the same query over and over therefore only
+ * does the Class.forName(), ColumnLabelConverter, and getMethod() work once;
+ * subsequent runs just fingerprint the metadata and look up the plan.
+ * Thread-safe.
+ *
+ * <p>
+ * The cache is a BoundedConcurrentMap: once it holds maxSize entries, an
+ * arbitrary entry is evicted to make room for each new one. A maxSize of 0
+ * turns caching off.
+ *
+ * @author mwood
+ *
+ */
+public class RowMappingPlanCache {
+
+    /**
+     * The different plans TypeConverterStore can work out from the same result
+     * set shape and bean class.
+     */
+    enum PlanKind {
+        GUESS_SETTERS,
+        SPECIFY_SETTERS,
+        GUESS_CONSTRUCTOR,
+        SPECIFY_CONSTRUCTOR,
+        GUESS_SETTER_HANDLES,
+        GUESS_CONSTRUCTOR_HANDLE
+    }
+
+    /**
+     * Fingerprint of a bean class, plan kind, and result set shape.
+     */
+    static final class Key {
+        private final Class<?> returnType;
+        private final PlanKind kind;
+        private final String[] labels;
+        private final String[] classNames;
+        private final int hash;
+
+        Key(Class<?> returnType,
+            PlanKind kind,
+            String[] labels,
+            String[] classNames) {
+            this.returnType = returnType;
+            this.kind = kind;
+            this.labels = labels;
+            this.classNames = classNames;
+            int h = returnType.hashCode();
+            h = 31 * h + kind.hashCode();
+            h = 31 * h + Arrays.hashCode(labels);
+            h = 31 * h + Arrays.hashCode(classNames);
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash
+                   && returnType == other.returnType
+                   && kind == other.kind
+                   && Arrays.equals(labels, other.labels)
+                   && Arrays.equals(classNames, other.classNames);
+        }
+    }
+
+    private final int maxSize;
+    private final BoundedConcurrentMap<Key, Object> cache;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public RowMappingPlanCache(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must be at least 0, not " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.cache = new BoundedConcurrentMap<Key, Object>(maxSize);
+    }
+
+    /**
+     * Fingerprints the result set shape described by md, or returns null if
+     * caching is turned off.
+     *
+     * @param kind
+     * @param returnType
+     * @param md
+     * @return
+     * @throws SQLException
+     */
+    Key keyFor(PlanKind kind,
+               Class<?> returnType,
+               ResultSetMetaData md) throws SQLException {
+        if (maxSize == 0) {
+            return null;
+        }
+        int numCols = md.getColumnCount();
+        String[] labels = new String[numCols];
+        String[] classNames = new String[numCols];
+        for (int i = 0; i < numCols; i++) {
+            // JDBC cols start at 1, not zero
+            labels[i] = md.getColumnLabel(i + 1);
+            classNames[i] = md.getColumnClassName(i + 1);
+        }
+        return new Key(returnType, kind, labels, classNames);
+    }
+
+    /**
+     * Returns the cached plan for key, or null if there is none (or if key is
+     * null because caching is turned off).
+     *
+     * @param key
+     * @return
+     */
+    Object get(Key key) {
+        if (key == null) {
+            return null;
+        }
+        Object plan = cache.get(key);
+        if (plan != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return plan;
+    }
+
+    /**
+     * Caches plan under key, unless key is null because caching is turned off.
+     *
+     * @param key
+     * @param plan
+     */
+    void put(Key key,
+             Object plan) {
+        if (key == null) {
+            return;
+        }
+        cache.putIfAbsent(key, plan);
+    }
+
+    /**
+     * Removes every entry from the cache. Does not reset the hit and miss
+     * counts.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Number of plans currently in the cache.
+     *
+     * @return
+     */
+    public int getSize() {
+        return cache.size();
+    }
+
+    /**
+     * Number of lookups that found an already-worked-out plan.
+     *
+     * @return
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Number of lookups that had to work out the plan from the result set
+     * metadata.
+     *
+     * @return
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Number of plans evicted to keep the cache within maxSize.
+     *
+     * @return
+     */
+    public long getEvictions() {
+        return cache.getEvictions();
+    }
+
+    /**
+     * Hits divided by total lookups, or 0 if there have been no lookups.
+     *
+     * @return
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return "RowMappingPlanCache [maxSize=" + maxSize + ", size=" + cache.size() + ", hits=" + hits + ", misses=" + misses + ", evictions="
+               + cache.getEvictions() + "]";
+    }
+}
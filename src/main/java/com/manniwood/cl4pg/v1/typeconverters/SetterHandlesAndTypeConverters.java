@@ -0,0 +1,78 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.typeconverters;
+
+import java.lang.invoke.MethodHandle;
+
+import com.manniwood.cl4pg.v1.typeconverters.types.TypeConverter;
+
+/**
+ * The MethodHandle equivalent of a list of SetterAndTypeConverters: a handle
+ * to a bean's null constructor, plus, for each result set column, in order, a
+ * handle to the bean's setter for that column and the TypeConverter for that
+ * column. The handles are pre-adapted to take and return plain Objects, so
+ * that they can be called with invokeExact() for every row.
+ *
+ * @author mwood
+ *
+ */
+public class SetterHandlesAndTypeConverters {
+
+    private final MethodHandle constructor;
+    private final MethodHandle[] setters;
+    private final TypeConverter<?>[] typeConverters;
+
+    public SetterHandlesAndTypeConverters(MethodHandle constructor,
+            MethodHandle[] setters,
+            TypeConverter<?>[] typeConverters) {
+        super();
+        this.constructor = constructor;
+        this.setters = setters;
+        this.typeConverters = typeConverters;
+    }
+
+    /**
+     * Returns a handle of type ()Object to the bean's null constructor.
+     *
+     * @return
+     */
+    public MethodHandle getConstructor() {
+        return constructor;
+    }
+
+    /**
+     * Returns handles of type (Object, Object)void to the bean's setters, one
+     * per result set column.
+     *
+     * @return
+     */
+    public MethodHandle[] getSetters() {
+        return setters;
+    }
+
+    public TypeConverter<?>[] getConverters() {
+        return typeConverters;
+    }
+
+}
@@ -25,6 +25,9 @@ package com.manniwood.cl4pg.v1.typeconverters;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -34,10 +37,13 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,6 +52,8 @@ import com.manniwood.cl4pg.v1.ConfigDefaults;
 import com.manniwood.cl4pg.v1.exceptions.Cl4pgConfFileException;
 import com.manniwood.cl4pg.v1.exceptions.Cl4pgReflectionException;
 import com.manniwood.cl4pg.v1.sqlparsers.InOutArg;
+import com.manniwood.cl4pg.v1.sqlparsers.ParsedSql;
+import com.manniwood.cl4pg.v1.typeconverters.types.BinaryTypeConverter;
 import com.manniwood.cl4pg.v1.typeconverters.types.TypeConverter;
 import com.manniwood.cl4pg.v1.util.ColumnLabelConverter;
 import com.manniwood.cl4pg.v1.util.ResourceUtil;
@@ -65,7 +73,28 @@ public class TypeConverterStore {
 
     private final Map<Class<?>, TypeConverter<?>> typeConverters;
 
+    private final RowMappingPlanCache rowMappingPlanCache;
+
+    /**
+     * Compiled BeanArgumentBinders, per bean class, keyed by the list of
+     * getters (or InOutArgs) they were compiled from. ClassValue keeps the
+     * cache from pinning bean classes (and their class loaders) in memory.
+     */
+    private final ClassValue<ConcurrentMap<List<?>, BeanArgumentBinder>> argumentBinders = new ClassValue<ConcurrentMap<List<?>, BeanArgumentBinder>>() {
+        @Override
+        protected ConcurrentMap<List<?>, BeanArgumentBinder> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<List<?>, BeanArgumentBinder>();
+        }
+    };
+
     public TypeConverterStore(String typeConverterConfFiles) {
+        this(typeConverterConfFiles, ConfigDefaults.DEFAULT_ROW_MAPPING_PLAN_CACHE_SIZE);
+    }
+
+    public TypeConverterStore(String typeConverterConfFiles,
+            int rowMappingPlanCacheSize) {
+        rowMappingPlanCache = new RowMappingPlanCache(rowMappingPlanCacheSize);
+
         // The builtin type typeConverters conf file is either the only
         // type typeConverters file in the list, or the first typeConverters
         // file
@@ -191,25 +220,52 @@ public class TypeConverterStore {
      * @param startCol
      * @throws SQLException
      */
-    @SuppressWarnings("unchecked")
     public <P> void setSQLArguments(PreparedStatement pstmt,
                                     P p,
                                     List<String> getters,
                                     int startCol) throws SQLException {
-        int i = startCol;
-        Class<?> tclass = p.getClass();
-        try {
-            for (String getter : getters) {
-                Method m = tclass.getMethod(getter);
-                Object o = m.invoke(p);
-                Class<?> returnClass = m.getReturnType();
-                TypeConverter<P> converter = (TypeConverter<P>) typeConverters.get(returnClass);
-                converter.setItem(pstmt, i, (P) o);
-                i++;
-            }
-        } catch (NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-            throw new Cl4pgReflectionException(e);
+        binderFor(p.getClass(), getters).bind(pstmt, p, startCol);
+    }
+
+    /**
+     * Calls the getters of bean p, in the order listed in the getters
+     * argument, putting the results into values, which must be at least as
+     * long as getters. Uses the same compiled getters as setSQLArguments(), so
+     * is useful for Commands, such as CopyBeansIn, that send bean values to
+     * the server some other way than as PreparedStatement arguments.
+     *
+     * @param p
+     * @param getters
+     * @param values
+     */
+    public <P> void getBeanValues(P p,
+                                  List<String> getters,
+                                  Object[] values) {
+        binderFor(p.getClass(), getters).getValues(p, values);
+    }
+
+    /**
+     * Returns the TypeConverters for the return types of beanClass's getters,
+     * in the order listed in the getters argument.
+     *
+     * @param beanClass
+     * @param getters
+     * @return
+     */
+    public TypeConverter<?>[] getBeanConverters(Class<?> beanClass,
+                                                List<String> getters) {
+        return binderFor(beanClass, getters).getConverters();
+    }
+
+    private BeanArgumentBinder binderFor(Class<?> beanClass,
+                                         List<String> getters) {
+        ConcurrentMap<List<?>, BeanArgumentBinder> binders = argumentBinders.get(beanClass);
+        BeanArgumentBinder binder = binders.get(getters);
+        if (binder == null) {
+            binder = BeanArgumentBinder.forGetters(beanClass, getters, typeConverters);
+            binders.putIfAbsent(Collections.unmodifiableList(new ArrayList<>(getters)), binder);
         }
+        return binder;
     }
 
     /**
@@ -226,41 +282,89 @@ public class TypeConverterStore {
      * @param args
      * @throws SQLException
      */
-    @SuppressWarnings("unchecked")
     public <P> void setSQLArguments(CallableStatement cstmt,
                                     P p,
                                     List<InOutArg> args) throws SQLException {
-        int i = 0;
-        Class<?> tclass = p.getClass();
+        ConcurrentMap<List<?>, BeanArgumentBinder> binders = argumentBinders.get(p.getClass());
+        BeanArgumentBinder binder = binders.get(args);
+        if (binder == null) {
+            binder = BeanArgumentBinder.forInOutArgs(p.getClass(), args, typeConverters);
+            binders.putIfAbsent(Collections.unmodifiableList(new ArrayList<>(args)), binder);
+        }
+        binder.bind(cstmt, p);
+    }
+
+    /**
+     * Sets the question mark arguments of pstmt, starting at startCol, from
+     * args, using the class names in parsedSql's args to determine which
+     * TypeConverter to use for each argument. The class names are resolved
+     * once, and the result is kept with parsedSql, so that subsequent calls
+     * with the same parsedSql do no class loading or converter lookups.
+     *
+     * @param pstmt
+     * @param parsedSql
+     * @param args
+     * @param startCol
+     * @throws SQLException
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void setSQLArguments(PreparedStatement pstmt,
+                                ParsedSql parsedSql,
+                                Object[] args,
+                                int startCol) throws SQLException {
+        List<String> classNames = parsedSql.getArgs();
+        if (classNames == null || classNames.isEmpty()) {
+            return;
+        }
+        ResolvedArgTypes resolved = parsedSql.resolveArgTypes(this);
+        Class<?>[] classes = resolved.getClasses();
+        TypeConverter[] converters = resolved.getConverters();
+        for (int i = 0; i < classes.length; i++) {
+            converters[i].setItem(pstmt, startCol + i, classes[i].cast(args[i]));
+        }
+    }
+
+    /**
+     * Resolves the class names from a template's variadic arguments into
+     * classes and this store's TypeConverters. Called by ParsedSql, which
+     * remembers the result.
+     *
+     * @param classNames
+     * @return
+     */
+    public ResolvedArgTypes resolveArgTypes(List<String> classNames) {
+        int numArgs = classNames.size();
+        Class<?>[] classes = new Class<?>[numArgs];
+        TypeConverter<?>[] converters = new TypeConverter<?>[numArgs];
         try {
-            for (InOutArg arg : args) {
-                i++;
-                String getter = arg.getGetter();
-                if (getter != null && !getter.isEmpty()) {
-                    Method m = tclass.getMethod(getter);
-                    Object o = m.invoke(p);
-                    Class<?> returnClass = m.getReturnType();
-                    TypeConverter<P> converter = (TypeConverter<P>) typeConverters.get(returnClass);
-                    converter.setItem(cstmt, i, (P) o);
-                }
-                String setter = arg.getSetter();
-                if (setter != null && !setter.isEmpty()) {
-                    Method setMethod = null;
-                    for (Method m : tclass.getMethods()) {
-                        if (m.getName().equals(setter)) {
-                            setMethod = m;
-                        }
-                    }
-                    Class<?>[] paramTypes = setMethod.getParameterTypes();
-                    Class<?> setterClass = paramTypes[0];
-                    TypeConverter<P> converter = (TypeConverter<P>) typeConverters.get(setterClass);
-                    log.debug("setter converter {} for offset {}", converter, i);
-                    converter.registerOutParameter(cstmt, i);
-                }
+            for (int i = 0; i < numArgs; i++) {
+                classes[i] = Class.forName(classNames.get(i));
+                converters[i] = typeConverters.get(classes[i]);
             }
-        } catch (NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+        } catch (ClassNotFoundException e) {
             throw new Cl4pgReflectionException(e);
         }
+        return new ResolvedArgTypes(this, classes, converters);
+    }
+
+    /**
+     * Sets the parameter (param) on prepared statement (pstmt) at offset i,
+     * using parameterType to determine which TypeConverter should be used to
+     * actually set the parameter.
+     *
+     * @param pstmt
+     * @param i
+     * @param param
+     * @param parameterType
+     * @throws SQLException
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void setSQLArgument(PreparedStatement pstmt,
+                                   int i,
+                                   T param,
+                                   Class<T> parameterType) throws SQLException {
+        TypeConverter<T> typeConverter = (TypeConverter<T>) typeConverters.get(parameterType);
+        typeConverter.setItem(pstmt, i, param);
     }
 
     /**
@@ -307,9 +411,21 @@ public class TypeConverterStore {
      */
     public <T> List<SetterAndTypeConverter> guessSetters(ResultSet rs,
                                                      Class<T> returnType) throws SQLException {
+        ResultSetMetaData md = rs.getMetaData();
+        RowMappingPlanCache.Key key = rowMappingPlanCache.keyFor(RowMappingPlanCache.PlanKind.GUESS_SETTERS, returnType, md);
+        @SuppressWarnings("unchecked")
+        List<SetterAndTypeConverter> settersAndConverters = (List<SetterAndTypeConverter>) rowMappingPlanCache.get(key);
+        if (settersAndConverters == null) {
+            settersAndConverters = Collections.unmodifiableList(resolveGuessedSetters(md, returnType));
+            rowMappingPlanCache.put(key, settersAndConverters);
+        }
+        return settersAndConverters;
+    }
+
+    private <T> List<SetterAndTypeConverter> resolveGuessedSetters(ResultSetMetaData md,
+                                                               Class<T> returnType) throws SQLException {
         List<SetterAndTypeConverter> settersAndConverters = new ArrayList<>();
         try {
-            ResultSetMetaData md = rs.getMetaData();
             int numCols = md.getColumnCount();
             for (int i = 1 /* JDBC cols start at 1 */; i <= numCols; i++) {
                 String className = md.getColumnClassName(i);
@@ -343,9 +459,21 @@ public class TypeConverterStore {
      */
     public <T> List<SetterAndTypeConverter> specifySetters(ResultSet rs,
                                                        Class<T> returnType) throws SQLException {
+        ResultSetMetaData md = rs.getMetaData();
+        RowMappingPlanCache.Key key = rowMappingPlanCache.keyFor(RowMappingPlanCache.PlanKind.SPECIFY_SETTERS, returnType, md);
+        @SuppressWarnings("unchecked")
+        List<SetterAndTypeConverter> settersAndConverters = (List<SetterAndTypeConverter>) rowMappingPlanCache.get(key);
+        if (settersAndConverters == null) {
+            settersAndConverters = Collections.unmodifiableList(resolveSpecifiedSetters(md, returnType));
+            rowMappingPlanCache.put(key, settersAndConverters);
+        }
+        return settersAndConverters;
+    }
+
+    private <T> List<SetterAndTypeConverter> resolveSpecifiedSetters(ResultSetMetaData md,
+                                                                 Class<T> returnType) throws SQLException {
         List<SetterAndTypeConverter> settersAndConverters = new ArrayList<>();
         try {
-            ResultSetMetaData md = rs.getMetaData();
             int numCols = md.getColumnCount();
             for (int i = 1 /* JDBC cols start at 1 */; i <= numCols; i++) {
                 String className = md.getColumnClassName(i);
@@ -550,10 +678,21 @@ public class TypeConverterStore {
      */
     public <T> ConstructorAndTypeConverters guessConstructor(ResultSet rs,
                                                          Class<T> returnType) throws SQLException {
+        ResultSetMetaData md = rs.getMetaData();
+        RowMappingPlanCache.Key key = rowMappingPlanCache.keyFor(RowMappingPlanCache.PlanKind.GUESS_CONSTRUCTOR, returnType, md);
+        ConstructorAndTypeConverters cac = (ConstructorAndTypeConverters) rowMappingPlanCache.get(key);
+        if (cac == null) {
+            cac = resolveGuessedConstructor(md, returnType);
+            rowMappingPlanCache.put(key, cac);
+        }
+        return cac;
+    }
+
+    private <T> ConstructorAndTypeConverters resolveGuessedConstructor(ResultSetMetaData md,
+                                                                   Class<T> returnType) throws SQLException {
         Constructor<?> constructor = null;
         List<TypeConverter<?>> convs = new ArrayList<>();
         try {
-            ResultSetMetaData md = rs.getMetaData();
             int numCols = md.getColumnCount();
             Class<?>[] parameterTypes = new Class[numCols];
             for (int i = 1 /* JDBC cols start at 1 */; i <= numCols; i++) {
@@ -567,7 +706,7 @@ public class TypeConverterStore {
         } catch (ClassNotFoundException | NoSuchMethodException | SecurityException | IllegalArgumentException e) {
             throw new Cl4pgReflectionException(e);
         }
-        return new ConstructorAndTypeConverters(constructor, convs);
+        return new ConstructorAndTypeConverters(constructor, Collections.unmodifiableList(convs));
     }
 
     /**
@@ -591,10 +730,21 @@ public class TypeConverterStore {
      */
     public <T> ConstructorAndTypeConverters specifyConstructorArgs(ResultSet rs,
                                                                Class<T> returnType) throws SQLException {
+        ResultSetMetaData md = rs.getMetaData();
+        RowMappingPlanCache.Key key = rowMappingPlanCache.keyFor(RowMappingPlanCache.PlanKind.SPECIFY_CONSTRUCTOR, returnType, md);
+        ConstructorAndTypeConverters cac = (ConstructorAndTypeConverters) rowMappingPlanCache.get(key);
+        if (cac == null) {
+            cac = resolveSpecifiedConstructor(md, returnType);
+            rowMappingPlanCache.put(key, cac);
+        }
+        return cac;
+    }
+
+    private <T> ConstructorAndTypeConverters resolveSpecifiedConstructor(ResultSetMetaData md,
+                                                                     Class<T> returnType) throws SQLException {
         Constructor<?> constructor = null;
         List<TypeConverter<?>> convs = new ArrayList<>();
         try {
-            ResultSetMetaData md = rs.getMetaData();
             int numCols = md.getColumnCount();
             Class<?>[] parameterTypes = new Class[numCols];
             for (int i = 1 /* JDBC cols start at 1 */; i <= numCols; i++) {
@@ -608,7 +758,7 @@ public class TypeConverterStore {
         } catch (ClassNotFoundException | NoSuchMethodException | SecurityException | IllegalArgumentException e) {
             throw new Cl4pgReflectionException(e);
         }
-        return new ConstructorAndTypeConverters(constructor, convs);
+        return new ConstructorAndTypeConverters(constructor, Collections.unmodifiableList(convs));
     }
 
     /**
@@ -643,6 +793,218 @@ public class TypeConverterStore {
         return t;
     }
 
+    /**
+     * Does the same job as guessSetters(), but returns the setters as
+     * MethodHandles ready for buildBeanUsingSetterHandles().
+     *
+     * @param rs
+     * @param returnType
+     * @return
+     * @throws SQLException
+     */
+    public <T> SetterHandlesAndTypeConverters guessSetterHandles(ResultSet rs,
+                                                                 Class<T> returnType) throws SQLException {
+        ResultSetMetaData md = rs.getMetaData();
+        RowMappingPlanCache.Key key = rowMappingPlanCache.keyFor(RowMappingPlanCache.PlanKind.GUESS_SETTER_HANDLES, returnType, md);
+        SetterHandlesAndTypeConverters shac = (SetterHandlesAndTypeConverters) rowMappingPlanCache.get(key);
+        if (shac == null) {
+            shac = toSetterHandles(returnType, resolveGuessedSetters(md, returnType));
+            rowMappingPlanCache.put(key, shac);
+        }
+        return shac;
+    }
+
+    /**
+     * Does the same job as guessConstructor(), but returns the constructor as
+     * a MethodHandle ready for buildBeanUsingConstructorHandle().
+     *
+     * @param rs
+     * @param returnType
+     * @return
+     * @throws SQLException
+     */
+    public <T> ConstructorHandleAndTypeConverters guessConstructorHandle(ResultSet rs,
+                                                                         Class<T> returnType) throws SQLException {
+        ResultSetMetaData md = rs.getMetaData();
+        RowMappingPlanCache.Key key = rowMappingPlanCache.keyFor(RowMappingPlanCache.PlanKind.GUESS_CONSTRUCTOR_HANDLE, returnType, md);
+        ConstructorHandleAndTypeConverters chac = (ConstructorHandleAndTypeConverters) rowMappingPlanCache.get(key);
+        if (chac == null) {
+            chac = toConstructorHandle(resolveGuessedConstructor(md, returnType));
+            rowMappingPlanCache.put(key, chac);
+        }
+        return chac;
+    }
+
+    /**
+     * Turns the reflective Methods in settersAndConverters into MethodHandles
+     * that buildBeanUsingSetterHandles() can call for every row without the
+     * per-call access checks, argument array allocation, and exception
+     * wrapping of Method.invoke().
+     *
+     * @param returnType
+     * @param settersAndConverters
+     * @return
+     */
+    public <T> SetterHandlesAndTypeConverters toSetterHandles(Class<T> returnType,
+                                                              List<SetterAndTypeConverter> settersAndConverters) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodType setterType = MethodType.methodType(void.class, Object.class, Object.class);
+        int numCols = settersAndConverters.size();
+        MethodHandle[] setters = new MethodHandle[numCols];
+        TypeConverter<?>[] converters = new TypeConverter<?>[numCols];
+        MethodHandle constructor;
+        try {
+            constructor = lookup.findConstructor(returnType, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+            for (int i = 0; i < numCols; i++) {
+                SetterAndTypeConverter sac = settersAndConverters.get(i);
+                setters[i] = lookup.unreflect(sac.getSetter()).asType(setterType);
+                converters[i] = sac.getConverter();
+            }
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new Cl4pgReflectionException(e);
+        }
+        return new SetterHandlesAndTypeConverters(constructor, setters, converters);
+    }
+
+    /**
+     * Uses the next row in ResultSet rs to build a bean using the constructor
+     * handle, setter handles, and TypeConverters in shac. Does the same job as
+     * buildBeanUsingSetters(), but using MethodHandles.
+     *
+     * @param rs
+     * @param shac
+     * @return
+     * @throws SQLException
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T buildBeanUsingSetterHandles(ResultSet rs,
+                                             SetterHandlesAndTypeConverters shac) throws SQLException {
+        MethodHandle[] setters = shac.getSetters();
+        TypeConverter<?>[] converters = shac.getConverters();
+        try {
+            Object t = (Object) shac.getConstructor().invokeExact();
+            for (int i = 0; i < setters.length; i++) {
+                // JDBC cols start at 1, not zero
+                setters[i].invokeExact(t, (Object) converters[i].getItem(rs, i + 1));
+            }
+            return (T) t;
+        } catch (SQLException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new Cl4pgReflectionException(e);
+        }
+    }
+
+    /**
+     * Looks up, by name, the setters of a bean of type returnType, for use
+     * where there is no ResultSetMetaData to guess them from, such as binary
+     * copy data. Each setter must take one argument, whose type determines
+     * the TypeConverter used for it.
+     *
+     * @param returnType
+     * @param setterNames
+     * @return
+     */
+    public <T> SetterHandlesAndTypeConverters namedSetterHandles(Class<T> returnType,
+                                                                 List<String> setterNames) {
+        List<SetterAndTypeConverter> settersAndConverters = new ArrayList<>();
+        Method[] methods = returnType.getMethods();
+        for (String setterName : setterNames) {
+            Method setter = null;
+            for (Method m : methods) {
+                if (m.getName().equals(setterName) && m.getParameterTypes().length == 1) {
+                    setter = m;
+                    break;
+                }
+            }
+            if (setter == null) {
+                throw new Cl4pgReflectionException(new NoSuchMethodException(returnType.getName() + "." + setterName));
+            }
+            TypeConverter<?> converter = typeConverters.get(setter.getParameterTypes()[0]);
+            settersAndConverters.add(new SetterAndTypeConverter(converter, setter));
+        }
+        return toSetterHandles(returnType, settersAndConverters);
+    }
+
+    /**
+     * Uses the current row of binary copy data in reader to build a bean
+     * using the constructor handle, setter handles, and TypeConverters in
+     * shac. Every TypeConverter in shac must also be a BinaryTypeConverter.
+     *
+     * @param reader
+     * @param shac
+     * @return
+     * @throws SQLException
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T buildBeanUsingSetterHandles(BinaryCopyReader reader,
+                                             SetterHandlesAndTypeConverters shac) throws SQLException {
+        MethodHandle[] setters = shac.getSetters();
+        TypeConverter<?>[] converters = shac.getConverters();
+        try {
+            Object t = (Object) shac.getConstructor().invokeExact();
+            for (int i = 0; i < setters.length; i++) {
+                setters[i].invokeExact(t, (Object) reader.readField((BinaryTypeConverter<?>) converters[i]));
+            }
+            return (T) t;
+        } catch (SQLException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new Cl4pgReflectionException(e);
+        }
+    }
+
+    /**
+     * Turns the reflective Constructor in cac into a MethodHandle that
+     * buildBeanUsingConstructorHandle() can call for every row without the
+     * per-call access checks and exception wrapping of
+     * Constructor.newInstance().
+     *
+     * @param cac
+     * @return
+     */
+    public ConstructorHandleAndTypeConverters toConstructorHandle(ConstructorAndTypeConverters cac) {
+        TypeConverter<?>[] converters = cac.getConverters().toArray(new TypeConverter<?>[cac.getConverters().size()]);
+        MethodHandle constructor;
+        try {
+            constructor = MethodHandles.lookup().unreflectConstructor(cac.getConstructor());
+        } catch (IllegalAccessException e) {
+            throw new Cl4pgReflectionException(e);
+        }
+        constructor = constructor.asType(constructor.type().generic())
+                .asSpreader(Object[].class, converters.length);
+        return new ConstructorHandleAndTypeConverters(constructor, converters);
+    }
+
+    /**
+     * Uses the next row in ResultSet rs to build a bean using the constructor
+     * handle and TypeConverters in chac. Does the same job as
+     * buildBeanUsingConstructor(), but using a MethodHandle.
+     *
+     * @param rs
+     * @param chac
+     * @return
+     * @throws SQLException
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T buildBeanUsingConstructorHandle(ResultSet rs,
+                                                 ConstructorHandleAndTypeConverters chac) throws SQLException {
+        TypeConverter<?>[] converters = chac.getConverters();
+        Object[] params = new Object[converters.length];
+        for (int i = 0; i < converters.length; i++) {
+            // JDBC cols start at 1, not zero
+            params[i] = converters[i].getItem(rs, i + 1);
+        }
+        try {
+            return (T) (Object) chac.getConstructor().invokeExact(params);
+        } catch (SQLException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new Cl4pgReflectionException(e);
+        }
+    }
+
     /**
      * Converts the string name of a class into a class object.
      *
@@ -729,6 +1091,16 @@ public class TypeConverterStore {
         return m;
     }
 
+    /**
+     * Returns the cache of row-mapping plans, mostly so that its size and hit
+     * rate can be monitored.
+     *
+     * @return
+     */
+    public RowMappingPlanCache getRowMappingPlanCache() {
+        return rowMappingPlanCache;
+    }
+
     public Map<Class<?>, TypeConverter<?>> getConverters() {
         return typeConverters;
     }
@@ -24,13 +24,22 @@
 package com.manniwood.cl4pg.v1.typeconverters.types;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.sql.CallableStatement;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
 
-public class BigDecimalConverter implements TypeConverter<BigDecimal> {
+public class BigDecimalConverter implements TypeConverter<BigDecimal>, BinaryTypeConverter<BigDecimal> {
+
+    private static final BigInteger NBASE = BigInteger.valueOf(10000);
+    private static final short NUMERIC_POS = 0x0000;
+    private static final short NUMERIC_NEG = 0x4000;
+    private static final short NUMERIC_NAN = (short) 0xC000;
 
     @Override
     public void setItem(PreparedStatement pstmt,
@@ -60,4 +69,67 @@ public class BigDecimalConverter implements TypeConverter<BigDecimal> {
                               int i) throws SQLException {
         return cstmt.getBigDecimal(i);
     }
+
+    /**
+     * PostgreSQL's numeric: a count of base 10000 digits, the weight of the
+     * first digit, a sign, the display scale, then the digits themselves.
+     */
+    @Override
+    public void writeBinary(ByteBuffer buf,
+                            BigDecimal t) {
+        int dscale = Math.max(t.scale(), 0);
+        BigInteger unscaled = t.unscaledValue().abs();
+        int scale = t.scale();
+        if (scale < 0) {
+            unscaled = unscaled.multiply(BigInteger.TEN.pow(-scale));
+            scale = 0;
+        }
+        // Pad the scale out to a whole number of base 10000 digits
+        int pad = (4 - scale % 4) % 4;
+        unscaled = unscaled.multiply(BigInteger.TEN.pow(pad));
+        int fractionalDigits = (scale + pad) / 4;
+
+        List<Short> digits = new ArrayList<>();
+        while (unscaled.signum() != 0) {
+            BigInteger[] qr = unscaled.divideAndRemainder(NBASE);
+            digits.add(qr[1].shortValue());
+            unscaled = qr[0];
+        }
+        int weight = digits.size() - 1 - fractionalDigits;
+        // trailing zero digits need not be sent
+        int firstNonZero = 0;
+        while (firstNonZero < digits.size() && digits.get(firstNonZero) == 0) {
+            firstNonZero++;
+        }
+        int ndigits = digits.size() - firstNonZero;
+
+        buf.putShort((short) ndigits);
+        buf.putShort((short) (ndigits == 0 ? 0 : weight));
+        buf.putShort(t.signum() < 0 ? NUMERIC_NEG : NUMERIC_POS);
+        buf.putShort((short) dscale);
+        for (int i = digits.size() - 1; i >= firstNonZero; i--) {
+            buf.putShort(digits.get(i));
+        }
+    }
+
+    @Override
+    public BigDecimal readBinary(ByteBuffer buf,
+                                 int length) {
+        int ndigits = buf.getShort();
+        int weight = buf.getShort();
+        short sign = buf.getShort();
+        int dscale = buf.getShort();
+        if (sign == NUMERIC_NAN) {
+            throw new NumberFormatException("NaN cannot be represented as a BigDecimal");
+        }
+        BigInteger unscaled = BigInteger.ZERO;
+        for (int i = 0; i < ndigits; i++) {
+            unscaled = unscaled.multiply(NBASE).add(BigInteger.valueOf(buf.getShort()));
+        }
+        BigDecimal value = new BigDecimal(unscaled).scaleByPowerOfTen(4 * (weight - ndigits + 1));
+        if (sign == NUMERIC_NEG) {
+            value = value.negate();
+        }
+        return value.setScale(dscale);
+    }
 }
@@ -0,0 +1,60 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.typeconverters.types;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes and decodes a Java type to and from PostgreSQL's binary wire
+ * format, for use by binary COPY. Kept apart from TypeConverter so that
+ * TypeConverters configured by users need not implement it; every
+ * TypeConverter that ships with cl4pg does.
+ *
+ * @author mwood
+ *
+ * @param <T>
+ */
+public interface BinaryTypeConverter<T> {
+
+    /**
+     * Puts the binary form of non-null t into buf, without any length word.
+     * May throw a BufferOverflowException, in which case the caller makes
+     * room and calls again.
+     *
+     * @param buf
+     * @param t
+     */
+    void writeBinary(ByteBuffer buf,
+                     T t);
+
+    /**
+     * Reads a value of exactly length bytes from buf.
+     *
+     * @param buf
+     * @param length
+     * @return
+     */
+    T readBinary(ByteBuffer buf,
+                 int length);
+}
@@ -23,13 +23,14 @@
  */
 package com.manniwood.cl4pg.v1.typeconverters.types;
 
+import java.nio.ByteBuffer;
 import java.sql.CallableStatement;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 
-public class BooleanConverter implements TypeConverter<Boolean> {
+public class BooleanConverter implements TypeConverter<Boolean>, BinaryTypeConverter<Boolean> {
 
     @Override
     public void setItem(PreparedStatement pstmt,
@@ -68,4 +69,17 @@ public class BooleanConverter implements TypeConverter<Boolean> {
         }
         return var;
     }
+
+    @Override
+    public void writeBinary(ByteBuffer buf,
+                            Boolean t) {
+        buf.put(t ? (byte) 1 : (byte) 0);
+    }
+
+    @Override
+    public Boolean readBinary(ByteBuffer buf,
+                              int length) {
+        PgBinary.requireLength(length, 1, Boolean.class);
+        return buf.get() != 0;
+    }
 }
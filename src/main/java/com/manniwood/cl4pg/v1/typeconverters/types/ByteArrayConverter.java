@@ -23,13 +23,14 @@
  */
 package com.manniwood.cl4pg.v1.typeconverters.types;
 
+import java.nio.ByteBuffer;
 import java.sql.CallableStatement;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 
-public class ByteArrayConverter implements TypeConverter<byte[]> {
+public class ByteArrayConverter implements TypeConverter<byte[]>, BinaryTypeConverter<byte[]> {
 
     @Override
     public void setItem(PreparedStatement pstmt,
@@ -59,4 +60,18 @@ public class ByteArrayConverter implements TypeConverter<byte[]> {
                           int i) throws SQLException {
         return cstmt.getBytes(i);
     }
+
+    @Override
+    public void writeBinary(ByteBuffer buf,
+                            byte[] t) {
+        buf.put(t);
+    }
+
+    @Override
+    public byte[] readBinary(ByteBuffer buf,
+                             int length) {
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return bytes;
+    }
 }
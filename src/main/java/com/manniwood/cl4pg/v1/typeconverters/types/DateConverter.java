@@ -23,6 +23,7 @@
  */
 package com.manniwood.cl4pg.v1.typeconverters.types;
 
+import java.nio.ByteBuffer;
 import java.sql.CallableStatement;
 import java.sql.Date;
 import java.sql.PreparedStatement;
@@ -30,7 +31,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 
-public class DateConverter implements TypeConverter<Date> {
+public class DateConverter implements TypeConverter<Date>, BinaryTypeConverter<Date> {
 
     @Override
     public void setItem(PreparedStatement pstmt,
@@ -60,4 +61,22 @@ public class DateConverter implements TypeConverter<Date> {
                         int i) throws SQLException {
         return cstmt.getDate(i);
     }
+
+    /**
+     * Days since 2000-01-01.
+     */
+    @Override
+    public void writeBinary(ByteBuffer buf,
+                            Date t) {
+        long days = PgBinary.floorDiv(PgBinary.toLocalMillis(t.getTime()), PgBinary.MILLIS_PER_DAY);
+        buf.putInt((int) (days - PgBinary.PG_EPOCH_DAYS));
+    }
+
+    @Override
+    public Date readBinary(ByteBuffer buf,
+                           int length) {
+        PgBinary.requireLength(length, 4, Date.class);
+        long localMillis = (buf.getInt() + PgBinary.PG_EPOCH_DAYS) * PgBinary.MILLIS_PER_DAY;
+        return new Date(PgBinary.toUtcMillis(localMillis));
+    }
 }
@@ -23,6 +23,7 @@
  */
 package com.manniwood.cl4pg.v1.typeconverters.types;
 
+import java.nio.ByteBuffer;
 import java.sql.CallableStatement;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -35,7 +36,7 @@ import java.sql.Types;
  * @author mwood
  *
  */
-public class DoubleConverter implements TypeConverter<Double> {
+public class DoubleConverter implements TypeConverter<Double>, BinaryTypeConverter<Double> {
 
     @Override
     public void setItem(PreparedStatement pstmt,
@@ -74,4 +75,17 @@ public class DoubleConverter implements TypeConverter<Double> {
         }
         return var;
     }
+
+    @Override
+    public void writeBinary(ByteBuffer buf,
+                            Double t) {
+        buf.putDouble(t);
+    }
+
+    @Override
+    public Double readBinary(ByteBuffer buf,
+                             int length) {
+        PgBinary.requireLength(length, 8, Double.class);
+        return buf.getDouble();
+    }
 }
@@ -23,13 +23,14 @@
  */
 package com.manniwood.cl4pg.v1.typeconverters.types;
 
+import java.nio.ByteBuffer;
 import java.sql.CallableStatement;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 
-public class FloatConverter implements TypeConverter<Float> {
+public class FloatConverter implements TypeConverter<Float>, BinaryTypeConverter<Float> {
 
     @Override
     public void setItem(PreparedStatement pstmt,
@@ -68,4 +69,17 @@ public class FloatConverter implements TypeConverter<Float> {
         }
         return var;
     }
+
+    @Override
+    public void writeBinary(ByteBuffer buf,
+                            Float t) {
+        buf.putFloat(t);
+    }
+
+    @Override
+    public Float readBinary(ByteBuffer buf,
+                            int length) {
+        PgBinary.requireLength(length, 4, Float.class);
+        return buf.getFloat();
+    }
 }
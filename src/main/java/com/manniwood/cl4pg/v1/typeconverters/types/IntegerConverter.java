@@ -23,13 +23,14 @@ THE SOFTWARE.
  */
 package com.manniwood.cl4pg.v1.typeconverters.types;
 
+import java.nio.ByteBuffer;
 import java.sql.CallableStatement;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 
-public class IntegerConverter implements TypeConverter<Integer> {
+public class IntegerConverter implements TypeConverter<Integer>, BinaryTypeConverter<Integer> {
 
     @Override
     public void setItem(PreparedStatement pstmt,
@@ -68,4 +69,17 @@ public class IntegerConverter implements TypeConverter<Integer> {
         }
         return var;
     }
+
+    @Override
+    public void writeBinary(ByteBuffer buf,
+                            Integer t) {
+        buf.putInt(t);
+    }
+
+    @Override
+    public Integer readBinary(ByteBuffer buf,
+                              int length) {
+        PgBinary.requireLength(length, 4, Integer.class);
+        return buf.getInt();
+    }
 }
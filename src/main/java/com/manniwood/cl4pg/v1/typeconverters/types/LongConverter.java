@@ -23,13 +23,14 @@ THE SOFTWARE.
  */
 package com.manniwood.cl4pg.v1.typeconverters.types;
 
+import java.nio.ByteBuffer;
 import java.sql.CallableStatement;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 
-public class LongConverter implements TypeConverter<Long> {
+public class LongConverter implements TypeConverter<Long>, BinaryTypeConverter<Long> {
 
     @Override
     public void setItem(PreparedStatement pstmt,
@@ -69,4 +70,16 @@ public class LongConverter implements TypeConverter<Long> {
         return var;
     }
 
+    @Override
+    public void writeBinary(ByteBuffer buf,
+                            Long t) {
+        buf.putLong(t);
+    }
+
+    @Override
+    public Long readBinary(ByteBuffer buf,
+                           int length) {
+        PgBinary.requireLength(length, 8, Long.class);
+        return buf.getLong();
+    }
 }
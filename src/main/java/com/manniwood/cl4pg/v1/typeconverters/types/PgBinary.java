@@ -0,0 +1,110 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.typeconverters.types;
+
+import java.nio.charset.Charset;
+import java.util.TimeZone;
+
+import com.manniwood.cl4pg.v1.exceptions.Cl4pgException;
+
+/**
+ * Constants and arithmetic shared by the BinaryTypeConverters. PostgreSQL's
+ * binary dates and times count from 2000-01-01, and, like JDBC's setDate(),
+ * setTime() and setTimestamp(), are taken to be in the JVM's time zone.
+ *
+ * @author mwood
+ *
+ */
+final class PgBinary {
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    static final long MILLIS_PER_DAY = 24L * 60L * 60L * 1000L;
+
+    /**
+     * Seconds and days from 1970-01-01 to 2000-01-01.
+     */
+    static final long PG_EPOCH_SECONDS = 946684800L;
+    static final long PG_EPOCH_DAYS = 10957L;
+
+    private PgBinary() {
+        // utility class
+    }
+
+    /**
+     * Throws a Cl4pgException unless a field of a fixed-width type is the
+     * width expected of it; a field of any other width is of some other
+     * PostgreSQL type, and would be decoded as garbage.
+     *
+     * @param length
+     * @param expected
+     * @param type
+     */
+    static void requireLength(int length,
+                              int expected,
+                              Class<?> type) {
+        if (length != expected) {
+            throw new Cl4pgException("A binary " + type.getSimpleName() + " is " + expected + " bytes long, but the field is "
+                                     + length + " bytes long; does the column's type match?");
+        }
+    }
+
+    static long floorDiv(long x,
+                         long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x < 0) != (y < 0))) {
+            q--;
+        }
+        return q;
+    }
+
+    static long floorMod(long x,
+                         long y) {
+        return x - floorDiv(x, y) * y;
+    }
+
+    /**
+     * Converts UTC millis to wall-clock millis in the JVM's time zone.
+     *
+     * @param utcMillis
+     * @return
+     */
+    static long toLocalMillis(long utcMillis) {
+        return utcMillis + TimeZone.getDefault().getOffset(utcMillis);
+    }
+
+    /**
+     * Converts wall-clock millis in the JVM's time zone to UTC millis.
+     *
+     * @param localMillis
+     * @return
+     */
+    static long toUtcMillis(long localMillis) {
+        TimeZone tz = TimeZone.getDefault();
+        // The offset is that of the UTC instant, which is what we are trying
+        // to find, so guess it from the local millis and correct once.
+        long guess = localMillis - tz.getOffset(localMillis);
+        return localMillis - tz.getOffset(guess);
+    }
+}
@@ -23,13 +23,14 @@ THE SOFTWARE.
 */
 package com.manniwood.cl4pg.v1.typeconverters.types;
 
+import java.nio.ByteBuffer;
 import java.sql.CallableStatement;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 
-public class StringConverter implements TypeConverter<String>{
+public class StringConverter implements TypeConverter<String>, BinaryTypeConverter<String> {
 
     @Override
     public void setItem(PreparedStatement pstmt, int i, String t) throws SQLException {
@@ -50,4 +51,18 @@ public class StringConverter implements TypeConverter<String>{
     public String getItem(CallableStatement cstmt, int i) throws SQLException {
         return cstmt.getString(i);
     }
+
+    @Override
+    public void writeBinary(ByteBuffer buf,
+                            String t) {
+        buf.put(t.getBytes(PgBinary.UTF8));
+    }
+
+    @Override
+    public String readBinary(ByteBuffer buf,
+                             int length) {
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, PgBinary.UTF8);
+    }
 }
@@ -23,6 +23,7 @@
  */
 package com.manniwood.cl4pg.v1.typeconverters.types;
 
+import java.nio.ByteBuffer;
 import java.sql.CallableStatement;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -30,7 +31,7 @@ import java.sql.SQLException;
 import java.sql.Time;
 import java.sql.Types;
 
-public class TimeConverter implements TypeConverter<Time> {
+public class TimeConverter implements TypeConverter<Time>, BinaryTypeConverter<Time> {
 
     @Override
     public void setItem(PreparedStatement pstmt,
@@ -60,4 +61,22 @@ public class TimeConverter implements TypeConverter<Time> {
                         int i) throws SQLException {
         return cstmt.getTime(i);
     }
+
+    /**
+     * Microseconds since midnight.
+     */
+    @Override
+    public void writeBinary(ByteBuffer buf,
+                            Time t) {
+        long millisOfDay = PgBinary.floorMod(PgBinary.toLocalMillis(t.getTime()), PgBinary.MILLIS_PER_DAY);
+        buf.putLong(millisOfDay * 1000L);
+    }
+
+    @Override
+    public Time readBinary(ByteBuffer buf,
+                           int length) {
+        PgBinary.requireLength(length, 8, Time.class);
+        long localMillis = buf.getLong() / 1000L;
+        return new Time(PgBinary.toUtcMillis(localMillis));
+    }
 }
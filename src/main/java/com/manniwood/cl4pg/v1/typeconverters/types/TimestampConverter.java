@@ -23,6 +23,7 @@
  */
 package com.manniwood.cl4pg.v1.typeconverters.types;
 
+import java.nio.ByteBuffer;
 import java.sql.CallableStatement;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -30,7 +31,7 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
 
-public class TimestampConverter implements TypeConverter<Timestamp> {
+public class TimestampConverter implements TypeConverter<Timestamp>, BinaryTypeConverter<Timestamp> {
 
     @Override
     public void setItem(PreparedStatement pstmt,
@@ -60,4 +61,26 @@ public class TimestampConverter implements TypeConverter<Timestamp> {
                              int i) throws SQLException {
         return cstmt.getTimestamp(i);
     }
+
+    /**
+     * Microseconds since 2000-01-01 00:00:00, which is the binary form of a
+     * timestamp without time zone.
+     */
+    @Override
+    public void writeBinary(ByteBuffer buf,
+                            Timestamp t) {
+        long seconds = PgBinary.floorDiv(PgBinary.toLocalMillis(t.getTime()), 1000L);
+        buf.putLong((seconds - PgBinary.PG_EPOCH_SECONDS) * 1000000L + t.getNanos() / 1000);
+    }
+
+    @Override
+    public Timestamp readBinary(ByteBuffer buf,
+                                int length) {
+        PgBinary.requireLength(length, 8, Timestamp.class);
+        long micros = buf.getLong();
+        long seconds = PgBinary.floorDiv(micros, 1000000L) + PgBinary.PG_EPOCH_SECONDS;
+        Timestamp ts = new Timestamp(PgBinary.toUtcMillis(seconds * 1000L));
+        ts.setNanos((int) PgBinary.floorMod(micros, 1000000L) * 1000);
+        return ts;
+    }
 }
@@ -23,6 +23,7 @@ THE SOFTWARE.
 */
 package com.manniwood.cl4pg.v1.typeconverters.types;
 
+import java.nio.ByteBuffer;
 import java.sql.CallableStatement;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -30,7 +31,7 @@ import java.sql.SQLException;
 import java.sql.Types;
 import java.util.UUID;
 
-public class UUIDConverter implements TypeConverter<UUID>{
+public class UUIDConverter implements TypeConverter<UUID>, BinaryTypeConverter<UUID> {
 
     @Override
     public void setItem(PreparedStatement pstmt, int i, UUID t) throws SQLException {
@@ -51,4 +52,18 @@ public class UUIDConverter implements TypeConverter<UUID>{
     public UUID getItem(CallableStatement cstmt, int i)  throws SQLException {
         return (UUID) cstmt.getObject(i);
     }
+
+    @Override
+    public void writeBinary(ByteBuffer buf,
+                            UUID t) {
+        buf.putLong(t.getMostSignificantBits());
+        buf.putLong(t.getLeastSignificantBits());
+    }
+
+    @Override
+    public UUID readBinary(ByteBuffer buf,
+                           int length) {
+        PgBinary.requireLength(length, 16, UUID.class);
+        return new UUID(buf.getLong(), buf.getLong());
+    }
 }
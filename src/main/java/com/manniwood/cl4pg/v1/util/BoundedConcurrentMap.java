@@ -0,0 +1,180 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A ConcurrentHashMap that holds at most maxSize entries: once it is full,
+ * an arbitrary entry is evicted to make room for each new one. This keeps it
+ * lock-free, and for the typical cache, whose working set fits, nothing ever
+ * gets evicted anyway. The caches in Cl4pg all use one of these, and keep
+ * their own hit and miss counts. A maxSize of 0 makes a map that never holds
+ * anything.
+ *
+ * @author mwood
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class BoundedConcurrentMap<K, V> {
+
+    private final int maxSize;
+    private final ConcurrentMap<K, V> map = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public BoundedConcurrentMap(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must not be negative, not " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    public V get(K key) {
+        return map.get(key);
+    }
+
+    /**
+     * Adds value under key unless key is already present, evicting an
+     * arbitrary entry first if the map is full.
+     *
+     * @param key
+     * @param value
+     * @return the value already present, or null if value was added (or
+     *         dropped, because maxSize is 0)
+     */
+    public V putIfAbsent(K key,
+                         V value) {
+        if (maxSize == 0) {
+            return null;
+        }
+        makeRoom();
+        V existing = map.putIfAbsent(key, value);
+        if (existing == null) {
+            size.incrementAndGet();
+        }
+        return existing;
+    }
+
+    /**
+     * Puts value under key, evicting an arbitrary entry first if the map is
+     * full.
+     *
+     * @param key
+     * @param value
+     * @return the value previously under key, or null
+     */
+    public V put(K key,
+                 V value) {
+        if (maxSize == 0) {
+            return null;
+        }
+        makeRoom();
+        V previous = map.put(key, value);
+        if (previous == null) {
+            size.incrementAndGet();
+        }
+        return previous;
+    }
+
+    private void makeRoom() {
+        if (size.get() < maxSize) {
+            return;
+        }
+        Iterator<K> it = map.keySet().iterator();
+        while (it.hasNext()) {
+            if (map.remove(it.next()) != null) {
+                size.decrementAndGet();
+                evictions.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes key only if it is still mapped to value.
+     *
+     * @param key
+     * @param value
+     * @return
+     */
+    public boolean remove(K key,
+                          V value) {
+        if (map.remove(key, value)) {
+            size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * The entries, for sweeping through; remove them with remove(key, value)
+     * so that the size stays right.
+     *
+     * @return
+     */
+    public Set<Map.Entry<K, V>> entrySet() {
+        return map.entrySet();
+    }
+
+    /**
+     * Removes every entry.
+     *
+     * @return the number of entries removed
+     */
+    public int clear() {
+        int removed = 0;
+        for (K key : map.keySet()) {
+            if (map.remove(key) != null) {
+                size.decrementAndGet();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Number of entries evicted to keep the map within maxSize.
+     *
+     * @return
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies, with power-of-two buckets measured in
+ * microseconds: bucket 0 counts latencies under 2 microseconds, bucket 1
+ * counts latencies from 2 up to 4 microseconds, bucket 2 from 4 up to 8, and
+ * so on, with the last bucket catching everything larger. Cheap enough to
+ * record into on every call; precise enough to tell a 50 microsecond wait
+ * from a 50 millisecond one. Thread-safe.
+ *
+ * @author mwood
+ *
+ */
+public class LatencyHistogram {
+
+    public static final int BUCKETS = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records one latency, in nanoseconds (as measured using
+     * System.nanoTime()).
+     *
+     * @param nanos
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(bucketFor(TimeUnit.NANOSECONDS.toMicros(nanos)));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    private static int bucketFor(long micros) {
+        if (micros < 2) {
+            return 0;
+        }
+        // index of highest set bit: 2-3 -> 1, 4-7 -> 2, etc.
+        int bucket = 63 - Long.numberOfLeadingZeros(micros);
+        return bucket < BUCKETS ? bucket : BUCKETS - 1;
+    }
+
+    /**
+     * Number of latencies recorded.
+     *
+     * @return
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Number of latencies recorded in bucket i.
+     *
+     * @param i
+     * @return
+     */
+    public long getBucketCount(int i) {
+        return buckets.get(i);
+    }
+
+    /**
+     * The exclusive upper bound, in microseconds, of bucket i.
+     *
+     * @param i
+     * @return
+     */
+    public static long getBucketUpperBoundMicros(int i) {
+        return i >= BUCKETS - 1 ? Long.MAX_VALUE : 2L << i;
+    }
+
+    public long getMeanMicros() {
+        long n = count.get();
+        return n == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.get() / n);
+    }
+
+    public long getMaxMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxNanos.get());
+    }
+
+    /**
+     * Returns the upper bound, in microseconds, of the bucket holding the
+     * given percentile (0.0 to 100.0) of recorded latencies; so the true
+     * percentile is at most this value, and at least half of it.
+     *
+     * @param percentile
+     * @return
+     */
+    public long getPercentileMicros(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(n * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                return getBucketUpperBoundMicros(i);
+            }
+        }
+        return getBucketUpperBoundMicros(BUCKETS - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram [count=" + count + ", meanMicros=" + getMeanMicros() + ", p50Micros<" + getPercentileMicros(50)
+               + ", p99Micros<" + getPercentileMicros(99) + ", maxMicros=" + getMaxMicros() + "]";
+    }
+}
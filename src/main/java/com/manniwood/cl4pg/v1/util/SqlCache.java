@@ -26,18 +26,24 @@ package com.manniwood.cl4pg.v1.util;
 import com.manniwood.cl4pg.v1.datasourceadapters.PgSimpleDataSourceAdapter;
 import com.manniwood.cl4pg.v1.exceptions.Cl4pgFileNotFoundException;
 import com.manniwood.cl4pg.v1.exceptions.Cl4pgIOException;
+import com.manniwood.cl4pg.v1.exceptions.Cl4pgSyntaxException;
+import com.manniwood.cl4pg.v1.sqlparsers.ParsedSql;
+import com.manniwood.cl4pg.v1.sqlparsers.ParserListenerKind;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 /**
  * Caches SQL files in RAM so that subsequent requests for
  * a SQL file from the classpath will check RAM first. Thread-safe.
+ * <p>
+ * Each cached file is also parsed up front with every ParserListenerKind,
+ * so that Commands run from cached files never need to parse SQL at request
+ * time, and so that a malformed template makes the DataSourceAdapter fail
+ * at construction instead of at first use.
  * @author mwood
  *
  */
@@ -48,6 +54,12 @@ public class SqlCache {
 
     private final Map<String, String> cache;
 
+    /**
+     * The parsed forms of each cached file, indexed by ParserListenerKind
+     * ordinal.
+     */
+    private final Map<String, ParsedSql[]> plans;
+
     public SqlCache() {
         String cacheFileContents = null;
         try {
@@ -57,15 +69,19 @@ public class SqlCache {
         }
         if (Str.isNullOrEmpty(cacheFileContents)) {
             cache = null;
+            plans = null;
             return;
         }
 
-        // Multiple threads will be fetching from this map, so let's make
-        // it unmodifiable just to make this clear.
-        cache = cacheStringToUnmodifiableMap(cacheFileContents);
+        // Multiple threads will be fetching from these maps, so let's make
+        // them unmodifiable just to make this clear.
+        Map<String, ParsedSql[]> rwPlans = new HashMap<>();
+        cache = cacheStringToUnmodifiableMap(cacheFileContents, rwPlans);
+        plans = Collections.unmodifiableMap(rwPlans);
     }
 
-    private Map<String, String> cacheStringToUnmodifiableMap(String cacheFileContents) {
+    private Map<String, String> cacheStringToUnmodifiableMap(String cacheFileContents,
+                                                             Map<String, ParsedSql[]> rwPlans) {
         String[] lines = cacheFileContents.split(System.lineSeparator());
         Map<String, String> rwCache = new HashMap<>();
         int lineNumber = 0;  // Keep track of what line we are on so we have nice error reporting.
@@ -97,16 +113,47 @@ public class SqlCache {
                 }
                 log.info("Loading \"{}\" from line {} of {}", cleanLine, lineNumber, SQL_CACHE_FILE);
                 rwCache.put(cleanLine, fileContents);
+                try {
+                    rwPlans.put(cleanLine, parseAllKinds(fileContents));
+                } catch (Cl4pgSyntaxException e) {
+                    throw new Cl4pgSyntaxException("Problem at line " + lineNumber + " of " + SQL_CACHE_FILE + ": Problem parsing \"" + cleanLine + "\"", e);
+                }
             }
         }
         return Collections.unmodifiableMap(rwCache);
     }
 
+    private static ParsedSql[] parseAllKinds(String sql) {
+        ParserListenerKind[] kinds = ParserListenerKind.values();
+        ParsedSql[] parsedSqls = new ParsedSql[kinds.length];
+        for (ParserListenerKind kind : kinds) {
+            parsedSqls[kind.ordinal()] = ParsedSql.parse(sql, kind);
+        }
+        return parsedSqls;
+    }
+
     public String get(String path) {
-        String sql = cache.get(path);
+        String sql = cache == null ? null : cache.get(path);
         if (sql == null) {
             throw new Cl4pgFileNotFoundException("File \"" + path + "\" not found in classpath. Did you add it to cl4pg/SqlCache.txt?");
         }
         return sql;
     }
+
+    /**
+     * Returns the file at path, already parsed using the ParserListener
+     * corresponding to kind.
+     *
+     * @param path
+     * @param kind
+     * @return
+     */
+    public ParsedSql getParsedSql(String path,
+                                  ParserListenerKind kind) {
+        ParsedSql[] parsedSqls = plans == null ? null : plans.get(path);
+        if (parsedSqls == null) {
+            throw new Cl4pgFileNotFoundException("File \"" + path + "\" not found in classpath. Did you add it to cl4pg/SqlCache.txt?");
+        }
+        return parsedSqls[kind.ordinal()];
+    }
 }
@@ -25,12 +25,25 @@ package com.manniwood.cl4pg.v1.test.base;
 
 import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
 import com.manniwood.cl4pg.v1.PgSession;
+import com.manniwood.cl4pg.v1.commands.CopyFileIn;
+import com.manniwood.cl4pg.v1.commands.CopyFileOut;
+import com.manniwood.cl4pg.v1.commands.CopyFormat;
+import com.manniwood.cl4pg.v1.exceptions.Cl4pgConfigException;
+import com.manniwood.cl4pg.v1.exceptions.Cl4pgException;
+import com.manniwood.cl4pg.v1.parallel.ParallelCopyIn;
+import com.manniwood.cl4pg.v1.parallel.ParallelCopyOut;
+import com.manniwood.cl4pg.v1.parallel.PartitionResult;
+import com.manniwood.cl4pg.v1.resultsethandlers.RowCallback;
 import com.manniwood.cl4pg.v1.test.etc.ImmutableUser;
+import com.manniwood.cl4pg.v1.test.etc.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.testng.Assert;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -49,6 +62,8 @@ import java.util.UUID;
  */
 public abstract class AbstractCopyTest {
 
+    private final static Logger log = LoggerFactory.getLogger(AbstractCopyTest.class);
+
     private PgSession pgSession;
     private DataSourceAdapter adapter;
 
@@ -111,4 +126,237 @@ public abstract class AbstractCopyTest {
 
     }
 
+    @Test(priority = 1)
+    public void testCopyBeansInText() {
+        copyBeansIn(CopyFormat.TEXT, "copy dup_users (id, name, password, employee_id) from stdin");
+    }
+
+    @Test(priority = 2)
+    public void testCopyBeansInCsv() {
+        copyBeansIn(CopyFormat.CSV, "copy dup_users (id, name, password, employee_id) from stdin csv");
+    }
+
+    @Test(priority = 3)
+    public void testCopyBeansInBinary() {
+        copyBeansIn(CopyFormat.BINARY, "copy dup_users (id, name, password, employee_id) from stdin binary");
+    }
+
+    @Test(priority = 5)
+    public void testCopyBeansOut() {
+        String sql = "copy (select id, name, password, employee_id from users order by employee_id) to stdout binary";
+        String row = "#{setId}, #{setName}, #{setPassword}, #{setEmployeeId}";
+        List<User> users = pgSession.qCopyOut(sql, row, User.class);
+        pgSession.rollback();
+
+        Assert.assertEquals(users.size(), 3, "Three users must be copied out");
+        User user = users.get(0);
+        Assert.assertEquals(user.getId(), UUID.fromString(AbstractSetApplicationNameTest.ID_1));
+        Assert.assertEquals(user.getName(), AbstractSetApplicationNameTest.USERNAME_1);
+        Assert.assertEquals(user.getPassword(), AbstractSetApplicationNameTest.PASSWORD_1);
+        Assert.assertEquals(user.getEmployeeId(), AbstractSetApplicationNameTest.EMPLOYEE_ID_1);
+
+        final List<User> streamed = new ArrayList<>();
+        long rowCount = pgSession.qCopyOutEach(sql, row, User.class, new RowCallback<User>() {
+            @Override
+            public void onRow(User u) {
+                streamed.add(u);
+            }
+        });
+        pgSession.rollback();
+
+        Assert.assertEquals(rowCount, 3L, "Three users must be copied out");
+        Assert.assertEquals(streamed.get(2).getName(), AbstractSetApplicationNameTest.USERNAME_3);
+
+        // setEmployeeId takes an Integer, which must not be read out of an
+        // int8 column
+        boolean correctlyCaughtException = false;
+        try {
+            pgSession.qCopyOut("copy (select id, name, password, employee_id::int8 from users) to stdout binary", row, User.class);
+        } catch (Cl4pgException e) {
+            log.info("Exception: " + e.toString(), e);
+            Assert.assertTrue(e.getCause().getMessage().contains("column 4"), "exception must name the mismatched column");
+            correctlyCaughtException = true;
+        }
+        Assert.assertTrue(correctlyCaughtException, "an Integer setter must not read an int8 column");
+    }
+
+    @Test(priority = 6)
+    public void testCopyGzippedFile() throws IOException {
+        String gzFile = AbstractSetApplicationNameTest.TEST_COPY_FILE + ".gz";
+        Files.deleteIfExists(Paths.get(gzFile));
+
+        pgSession.run(CopyFileOut.config()
+                .copyFile(gzFile)
+                .sql("copy users to stdout")
+                .gzip(true)
+                .bufferSize(1024)
+                .done());
+        pgSession.rollback();
+
+        pgSession.qDdl("truncate dup_users");
+        CopyFileIn copyIn = CopyFileIn.config()
+                .copyFile(gzFile)
+                .sql("copy dup_users from stdin")
+                .gzip(true)
+                .bufferSize(1024)
+                .done();
+        pgSession.run(copyIn);
+        pgSession.commit();
+
+        Assert.assertEquals(copyIn.getRowCount(), 3L, "Three rows must be copied");
+        Long count = pgSession.qSelectOneScalar("select count(*) from (select * from users except select * from dup_users) as q");
+        Assert.assertEquals(count.longValue(),
+                            0L,
+                            "User tables must be the same after copy");
+    }
+
+    @Test(priority = 7)
+    public void testParallelCopyOut() throws IOException {
+        // Other connections cannot see temporary tables
+        pgSession.qDdl("drop table if exists parallel_copy_users");
+        pgSession.qDdl("create table parallel_copy_users as select * from users");
+        pgSession.commit();
+        try {
+            List<PartitionResult> results = ParallelCopyOut.config()
+                    .dataSourceAdapter(adapter)
+                    .table("parallel_copy_users")
+                    .keyRange("employee_id")
+                    .partitions(2)
+                    .outFilePattern("/tmp/parallel_users.%d.copy")
+                    .done()
+                    .run();
+
+            Assert.assertEquals(results.size(), 2, "Table must be copied in two partitions");
+            pgSession.qDdl("truncate dup_users");
+            long rowCount = 0;
+            for (PartitionResult result : results) {
+                rowCount += result.getRowCount();
+                pgSession.qCopyIn("copy dup_users from stdin", "/tmp/parallel_users." + result.getPartition() + ".copy");
+            }
+            pgSession.commit();
+            Assert.assertEquals(rowCount, 3L, "Every row must be copied exactly once");
+            Long count = pgSession.qSelectOneScalar("select count(*) from (select * from users except select * from dup_users) as q");
+            Assert.assertEquals(count.longValue(), 0L, "User tables must be the same after copy");
+
+            ByteArrayOutputStream merged = new ByteArrayOutputStream();
+            ParallelCopyOut.config()
+                    .dataSourceAdapter(adapter)
+                    .table("parallel_copy_users")
+                    .ctidRange()
+                    .partitions(2)
+                    .mergedOutput(merged)
+                    .done()
+                    .run();
+            String[] lines = new String(merged.toByteArray(), "UTF-8").split("\n");
+            Assert.assertEquals(lines.length, 3, "Every row must be copied exactly once");
+
+            try {
+                ParallelCopyOut.config()
+                        .dataSourceAdapter(adapter)
+                        .table("parallel_copy_users")
+                        .ctidRange()
+                        .options("csv header")
+                        .mergedOutput(merged)
+                        .done();
+                Assert.fail("Merged output must not have one header per partition");
+            } catch (Cl4pgConfigException e) {
+                // expected
+            }
+        } finally {
+            pgSession.qDdl("drop table parallel_copy_users");
+            pgSession.commit();
+        }
+    }
+
+    @Test(priority = 8)
+    public void testParallelCopyIn() {
+        // Other connections cannot see temporary tables
+        pgSession.qDdl("drop table if exists parallel_copy_in_users");
+        pgSession.qDdl("create table parallel_copy_in_users (id uuid, name text not null, password text, employee_id int)");
+        pgSession.commit();
+        try {
+            List<PartitionResult> results = ParallelCopyIn.config()
+                    .dataSourceAdapter(adapter)
+                    .sql("copy parallel_copy_in_users from stdin")
+                    .inFile("/tmp/the_users_file.copy")
+                    .chunkRows(1)
+                    .parallelism(2)
+                    .done()
+                    .run();
+            Assert.assertEquals(results.size(), 3, "Each line must be its own chunk");
+            for (PartitionResult result : results) {
+                Assert.assertTrue(result.isSuccess(), "Every chunk must be copied");
+            }
+            Long count = pgSession.qSelectOneScalar("select count(*) from (select * from users except select * from parallel_copy_in_users) as q");
+            Assert.assertEquals(count.longValue(), 0L, "User tables must be the same after copy");
+            pgSession.qDdl("truncate parallel_copy_in_users");
+            pgSession.commit();
+
+            try {
+                ParallelCopyIn.config()
+                        .dataSourceAdapter(adapter)
+                        .sql("copy parallel_copy_in_users from stdin csv header")
+                        .inFile("/tmp/the_users_file.copy")
+                        .done();
+                Assert.fail("Every chunk but the first would lose a row to the header");
+            } catch (Cl4pgConfigException e) {
+                // expected
+            }
+
+            // The second chunk has a user with a null name, so must be rolled
+            // back, leaving the first chunk in place.
+            List<ImmutableUser> users = new ArrayList<>();
+            users.add(new ImmutableUser(UUID.randomUUID(), "one", "pw", 1));
+            users.add(new ImmutableUser(UUID.randomUUID(), "two", "pw", 2));
+            users.add(new ImmutableUser(UUID.randomUUID(), "three", "pw", 3));
+            users.add(new ImmutableUser(UUID.randomUUID(), null, "pw", 4));
+            results = ParallelCopyIn.<ImmutableUser> config()
+                    .dataSourceAdapter(adapter)
+                    .sql("copy parallel_copy_in_users (id, name, password, employee_id) from stdin")
+                    .args(users)
+                    .row("#{getId}, #{getName}, #{getPassword}, #{getEmployeeId}")
+                    .chunkRows(2)
+                    .parallelism(2)
+                    .done()
+                    .run();
+            Assert.assertEquals(results.size(), 2, "Beans must be copied in two chunks");
+            Assert.assertTrue(results.get(0).isSuccess(), "First chunk must be copied");
+            Assert.assertFalse(results.get(1).isSuccess(), "Second chunk must be rolled back");
+            Assert.assertEquals(results.get(1).getDescription(), "beans 3-4");
+            count = pgSession.qSelectOneScalar("select count(*) from parallel_copy_in_users");
+            Assert.assertEquals(count.longValue(), 2L, "Only the first chunk must be copied");
+            pgSession.rollback();
+        } finally {
+            pgSession.qDdl("drop table parallel_copy_in_users");
+            pgSession.commit();
+        }
+    }
+
+    private void copyBeansIn(CopyFormat format,
+                             String sql) {
+        pgSession.qDdl("truncate dup_users");
+        pgSession.commit();
+
+        // Values that need escaping or quoting in one copy format or the other
+        List<ImmutableUser> users = new ArrayList<>();
+        users.add(new ImmutableUser(UUID.randomUUID(), "tab\there", "back\\slash", 1));
+        users.add(new ImmutableUser(UUID.randomUUID(), "comma, \"quoted\"", "new\nline", 2));
+        users.add(new ImmutableUser(UUID.randomUUID(), "", null, null));
+
+        long rowCount = pgSession.qCopyIn(users,
+                                          sql,
+                                          "#{getId}, #{getName}, #{getPassword}, #{getEmployeeId}",
+                                          format);
+        pgSession.commit();
+
+        Assert.assertEquals(rowCount, 3L, "Three rows must be copied");
+        for (ImmutableUser expected : users) {
+            ImmutableUser actual = pgSession.qSelectOne("select id, name, password, employee_id from dup_users where id = #{java.util.UUID}",
+                                                        ImmutableUser.class,
+                                                        expected.getId());
+            Assert.assertEquals(actual, expected, "Copied user must match original user");
+        }
+        pgSession.rollback();
+    }
+
 }
@@ -25,7 +25,9 @@ package com.manniwood.cl4pg.v1.test.base;
 
 import com.manniwood.cl4pg.v1.ConfigDefaults;
 import com.manniwood.cl4pg.v1.PgSession;
+import com.manniwood.cl4pg.v1.commands.BatchResult;
 import com.manniwood.cl4pg.v1.commands.DDL;
+import com.manniwood.cl4pg.v1.commands.Pipeline;
 import com.manniwood.cl4pg.v1.commands.Select;
 import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
 import com.manniwood.cl4pg.v1.exceptions.Cl4pgException;
@@ -119,6 +121,18 @@ public abstract class AbstractInsertTest {
         return expected;
     }
 
+    private User createUser(String id,
+                            String name,
+                            String password,
+                            Integer employeeId) {
+        User user = new User();
+        user.setId(UUID.fromString(id));
+        user.setName(name);
+        user.setPassword(password);
+        user.setEmployeeId(employeeId);
+        return user;
+    }
+
     /**
      * Truncate the users table before each test.
      */
@@ -147,4 +161,95 @@ public abstract class AbstractInsertTest {
         Assert.assertEquals(actual, expected, "users must match");
     }
 
+    @Test(priority = 2)
+    public void testInsertAllUsingBeans() {
+        List<User> users = new ArrayList<>();
+        users.add(createUser(ID_1, USERNAME_1, PASSWORD_1, EMPLOYEE_ID_1));
+        users.add(createUser(ID_2, USERNAME_2, PASSWORD_2, EMPLOYEE_ID_2));
+        users.add(createUser(ID_3, USERNAME_3, PASSWORD_3, EMPLOYEE_ID_3));
+
+        // A batch size of 2 means one full batch, plus one partial batch.
+        BatchResult result = pgSession.insertAll(users, "sql/insert_user.sql", 2);
+        pgSession.commit();
+
+        Assert.assertEquals(result.getBatchCount(), 2, "three users in batches of two must take two batches");
+        Assert.assertEquals(result.getRowCount(), 3L);
+        Assert.assertEquals(result.getRowsAffected(), 3L);
+
+        Long count = pgSession.qSelectOneScalar("select count(*) from users");
+        pgSession.rollback();
+        Assert.assertEquals(count, Long.valueOf(3), "all users must have been inserted");
+    }
+
+    @Test(priority = 3)
+    public void testPipeline() {
+        GuessSettersListHandler<User> handler = new GuessSettersListHandler<User>(User.class);
+        Pipeline pipeline = Pipeline.config()
+                .file("sql/insert_user_variadic.sql", UUID.fromString(ID_1), USERNAME_1, PASSWORD_1, EMPLOYEE_ID_1)
+                .beanFile("sql/insert_user.sql", createUser(ID_2, USERNAME_2, PASSWORD_2, EMPLOYEE_ID_2))
+                .sql("update users set name = #{java.lang.String} where employee_id <= #{java.lang.Integer}", USERNAME_3, EMPLOYEE_ID_2)
+                .selectFile(handler, "sql/select_user_guess_setters.sql", UUID.fromString(ID_2))
+                .done();
+        pgSession.run(pipeline);
+        pgSession.commit();
+
+        Assert.assertEquals(pipeline.getUpdateCount(0), 1);
+        Assert.assertEquals(pipeline.getUpdateCount(1), 1);
+        Assert.assertEquals(pipeline.getUpdateCount(2), 2, "update must see both inserts");
+        Assert.assertEquals(pipeline.getUpdateCount(3), -1, "select returns rows, not an update count");
+
+        List<User> users = handler.getList();
+        Assert.assertEquals(users.size(), 1);
+        Assert.assertEquals(users.get(0), createUser(ID_2, USERNAME_3, PASSWORD_2, EMPLOYEE_ID_2), "select must see the update");
+    }
+
+    @Test(priority = 4)
+    public void testPipelineFailureRollsBackEverything() {
+        Pipeline pipeline = Pipeline.config()
+                .file("sql/insert_user_variadic.sql", UUID.fromString(ID_1), USERNAME_1, PASSWORD_1, EMPLOYEE_ID_1)
+                .sql("select 1 / #{java.lang.Integer}", 0)
+                .file("sql/insert_user_variadic.sql", UUID.fromString(ID_2), USERNAME_2, PASSWORD_2, EMPLOYEE_ID_2)
+                .done();
+        boolean correctlyCaughtException = false;
+        try {
+            pgSession.run(pipeline);
+        } catch (Cl4pgException e) {
+            log.info("Exception: " + e.toString(), e);
+            Assert.assertTrue(e.getMessage().contains("statements failed, but the driver does not say which"),
+                              "exception must not claim to know which statement the server rejected");
+            Assert.assertTrue(e.getMessage().contains("-- statement 2 of 3\nselect 1 / #{java.lang.Integer}"),
+                              "exception must list the pipeline's statements");
+            correctlyCaughtException = true;
+        }
+        Assert.assertTrue(correctlyCaughtException, "division by zero must fail the pipeline");
+
+        Long count = pgSession.qSelectOneScalar("select count(*) from users");
+        pgSession.rollback();
+        Assert.assertEquals(count, Long.valueOf(0), "no statement in a failed pipeline may take effect");
+    }
+
+    @Test(priority = 5)
+    public void testPipelineNamesFailingStatement() {
+        Pipeline pipeline = Pipeline.config()
+                .file("sql/insert_user_variadic.sql", UUID.fromString(ID_1), USERNAME_1, PASSWORD_1, EMPLOYEE_ID_1)
+                .sql("select #{java.lang.Integer}", "not an integer")
+                .file("sql/insert_user_variadic.sql", UUID.fromString(ID_2), USERNAME_2, PASSWORD_2, EMPLOYEE_ID_2)
+                .done();
+        boolean correctlyCaughtException = false;
+        try {
+            pgSession.run(pipeline);
+        } catch (Cl4pgException e) {
+            log.info("Exception: " + e.toString(), e);
+            Assert.assertTrue(e.getMessage().contains("-- statement 2 of 3 failed:\nselect #{java.lang.Integer}"),
+                              "exception must name the failing statement");
+            Assert.assertFalse(e.getMessage().contains("insert_user_variadic"), "exception must not list the other statements");
+            correctlyCaughtException = true;
+        }
+        Assert.assertTrue(correctlyCaughtException, "a String arg for an Integer must fail the pipeline");
+
+        Long count = pgSession.qSelectOneScalar("select count(*) from users");
+        pgSession.rollback();
+        Assert.assertEquals(count, Long.valueOf(0), "no statement in a failed pipeline may take effect");
+    }
+
 }
@@ -29,6 +29,10 @@ import com.manniwood.cl4pg.v1.commands.DDL;
 import com.manniwood.cl4pg.v1.commands.Select;
 import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
 import com.manniwood.cl4pg.v1.exceptions.Cl4pgException;
+import com.manniwood.cl4pg.v1.notifications.NotificationDispatcher;
+import com.manniwood.cl4pg.v1.notifications.NotificationListener;
+import com.manniwood.cl4pg.v1.notifications.NotificationPublisher;
+import com.manniwood.cl4pg.v1.resultcache.ResultCache;
 import com.manniwood.cl4pg.v1.resultsethandlers.GuessSettersListHandler;
 import com.manniwood.cl4pg.v1.test.etc.User;
 import com.manniwood.cl4pg.v1.test.exceptions.UserAlreadyExistsException;
@@ -44,6 +48,10 @@ import org.testng.annotations.Test;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Please note that these tests must be run serially, and not all at once.
@@ -137,4 +145,264 @@ public abstract class AbstractListenNotifyTest {
         adapter2.close();
     }
 
+    @Test(priority = 3)
+    public void testNotificationDispatcher() throws InterruptedException {
+        List<String> expected = new ArrayList<>();
+        expected.add("one");
+        expected.add("two");
+        expected.add("three");
+
+        final List<String> actual = new CopyOnWriteArrayList<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch latch = new CountDownLatch(expected.size());
+        NotificationListener listener = new NotificationListener() {
+            @Override
+            public void onNotification(PGNotification notification) {
+                if ("ping".equals(notification.getParameter())) {
+                    started.countDown();
+                    return;
+                }
+                actual.add(notification.getParameter());
+                latch.countDown();
+            }
+        };
+
+        DataSourceAdapter adapter2 = configureSecondDataSourceAdapter();
+        adapter2.getNotificationDispatcher().addListener("dispatched", listener);
+
+        // The dispatcher listens asynchronously, so keep notifying until the
+        // first notification gets through, then send the rest.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        do {
+            pgSession.pgNotify("dispatched", "ping");
+            pgSession.commit();
+        } while (!started.await(50, TimeUnit.MILLISECONDS) && System.nanoTime() < deadline);
+        Assert.assertEquals(started.getCount(), 0L, "Dispatcher must start listening");
+
+        for (String s : expected) {
+            pgSession.pgNotify("dispatched", s);
+        }
+        pgSession.commit();
+
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS), "Notifications must be pushed to the listener");
+        Assert.assertEquals(actual, expected, "Notifications must all be recieved, in the same order");
+
+        adapter2.getNotificationDispatcher().removeListener("dispatched", listener);
+        adapter2.close();
+    }
+
+    @Test(priority = 4)
+    public void testNotifyAll() {
+        List<String> channels = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            channels.add("batched");
+            expected.add("payload " + i);
+        }
+
+        DataSourceAdapter adapter2 = configureSecondDataSourceAdapter();
+        PgSession pgSession2 = adapter2.getSession();
+        pgSession2.pgListen("batched");
+        pgSession2.commit();
+
+        pgSession.pgNotifyAll(channels, expected);
+        pgSession.commit();
+
+        PGNotification[] notifications = pgSession2.getNotifications();
+        pgSession2.commit();
+
+        List<String> actual = new ArrayList<>();
+        for (PGNotification notification : notifications) {
+            actual.add(notification.getParameter());
+        }
+        Assert.assertEquals(actual, expected, "Notifications must all be recieved, in the same order");
+        pgSession2.close();
+        adapter2.close();
+    }
+
+    @Test(priority = 5)
+    public void testNotificationPublisher() throws InterruptedException {
+        DataSourceAdapter adapter2 = configureSecondDataSourceAdapter();
+        PgSession pgSession2 = adapter2.getSession();
+        pgSession2.pgListen("published");
+        pgSession2.commit();
+
+        // Nothing gets sent until flush() is called
+        NotificationPublisher publisher = NotificationPublisher.config()
+                .dataSourceAdapter(adapter)
+                .maxBatchSize(10000)
+                .maxDelayMillis(60000)
+                .deduplicateWindowMillis(60000)
+                .done();
+        publisher.publish("published", "users:1");
+        publisher.publish("published", "users:2");
+        publisher.publish("published", "users:1");
+        publisher.publish("published", "users:3");
+        publisher.flush();
+
+        PGNotification[] notifications = pgSession2.getNotifications();
+        pgSession2.commit();
+
+        List<String> actual = new ArrayList<>();
+        for (PGNotification notification : notifications) {
+            actual.add(notification.getParameter());
+        }
+        List<String> expected = new ArrayList<>();
+        expected.add("users:1");
+        expected.add("users:2");
+        expected.add("users:3");
+        Assert.assertEquals(actual, expected, "Duplicate notifications must be dropped");
+        Assert.assertEquals(publisher.getPublishedCount(), 4L);
+        Assert.assertEquals(publisher.getDeduplicatedCount(), 1L);
+        Assert.assertEquals(publisher.getSentCount(), 3L);
+        Assert.assertEquals(publisher.getBatchCount(), 1L, "All notifications must be sent in one batch");
+
+        // The window spans batches: users:1 was sent already, but is still
+        // too recent to send again
+        publisher.publish("published", "users:1");
+        publisher.flush();
+        Assert.assertNull(pgSession2.getNotifications(), "Repeat within the window must not be sent");
+        pgSession2.commit();
+        Assert.assertEquals(publisher.getDeduplicatedCount(), 2L);
+        publisher.close();
+
+        NotificationPublisher shortWindow = NotificationPublisher.config()
+                .dataSourceAdapter(adapter)
+                .maxDelayMillis(60000)
+                .deduplicateWindowMillis(100)
+                .done();
+        shortWindow.publish("published", "users:4");
+        shortWindow.flush();
+        Thread.sleep(200);
+        shortWindow.publish("published", "users:4");
+        shortWindow.flush();
+        notifications = pgSession2.getNotifications();
+        pgSession2.commit();
+        Assert.assertEquals(notifications.length, 2, "Repeat after the window must be sent");
+        shortWindow.close();
+
+        pgSession2.close();
+        adapter2.close();
+    }
+
+    @Test(priority = 6)
+    public void testResultCache() throws InterruptedException {
+        // The second adapter's conf file turns on the result cache, and has it
+        // listen for invalidations on result_cache_invalidation
+        DataSourceAdapter adapter2 = configureSecondDataSourceAdapter();
+        PgSession pgSession2 = adapter2.getSession();
+        ResultCache resultCache = adapter2.getResultCache();
+        Assert.assertNotNull(resultCache, "Result cache must be configured");
+
+        pgSession2.qDdl("create temporary table cached_things (val int)");
+        pgSession2.qInsert("insert into cached_things (val) values (#{java.lang.Integer})", 1);
+        pgSession2.commit();
+
+        String sql = "select val from cached_things where val > #{java.lang.Integer}";
+        List<Integer> vals = pgSession2.qSelectScalarCached("cached_things", sql, 0);
+        Assert.assertEquals(vals.get(0), Integer.valueOf(1));
+
+        pgSession2.qDdl("update cached_things set val = 2");
+        pgSession2.commit();
+
+        vals = pgSession2.qSelectScalarCached("cached_things", sql, 0);
+        Assert.assertEquals(vals.get(0), Integer.valueOf(1), "Stale result must come from the cache");
+        Assert.assertEquals(resultCache.getHits(), 1L);
+        Assert.assertEquals(resultCache.getMisses(), 1L);
+
+        // Different args are a different cache entry
+        vals = pgSession2.qSelectScalarCached("cached_things", sql, 1);
+        Assert.assertEquals(vals.get(0), Integer.valueOf(2));
+
+        // The dispatcher starts listening asynchronously, so keep notifying
+        // until the invalidation gets through.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (resultCache.getInvalidations() == 0 && System.nanoTime() < deadline) {
+            pgSession.pgNotify("result_cache_invalidation", "cached_things");
+            pgSession.commit();
+            Thread.sleep(50);
+        }
+        Assert.assertEquals(resultCache.getInvalidations(), 2L, "Both cached_things results must be invalidated");
+
+        vals = pgSession2.qSelectScalarCached("cached_things", sql, 0);
+        Assert.assertEquals(vals.get(0), Integer.valueOf(2), "Result must be re-read after invalidation");
+        Assert.assertEquals(resultCache.getMisses(), 3L);
+
+        // What this session has written but not committed must not be cached
+        // for everybody else
+        int size = resultCache.getSize();
+        pgSession2.qDdl("update cached_things set val = 3");
+        vals = pgSession2.qSelectScalarCached("cached_things", sql, 2);
+        Assert.assertEquals(vals.get(0), Integer.valueOf(3), "Session must see its own uncommitted write");
+        Assert.assertEquals(resultCache.getUncacheable(), 1L);
+        Assert.assertEquals(resultCache.getSize(), size, "Uncommitted write must not be cached");
+        pgSession2.rollback();
+        vals = pgSession2.qSelectScalarCached("cached_things", sql, 2);
+        Assert.assertTrue(vals.isEmpty(), "Rolled-back write must not come from the cache");
+        Assert.assertEquals(resultCache.getMisses(), 5L);
+
+        // A miss before the write must not blind the check for a later miss,
+        // with a different key, in the same transaction
+        vals = pgSession2.qSelectScalarCached("cached_things", sql, 10);
+        Assert.assertTrue(vals.isEmpty());
+        size = resultCache.getSize();
+        pgSession2.qDdl("update cached_things set val = 20");
+        vals = pgSession2.qSelectScalarCached("cached_things", sql, 11);
+        Assert.assertEquals(vals.get(0), Integer.valueOf(20), "Session must see its own uncommitted write");
+        Assert.assertEquals(resultCache.getUncacheable(), 2L, "Write after an earlier miss must still be noticed");
+        Assert.assertEquals(resultCache.getSize(), size, "Uncommitted write must not be cached");
+        pgSession2.rollback();
+        vals = pgSession2.qSelectScalarCached("cached_things", sql, 11);
+        Assert.assertTrue(vals.isEmpty(), "Rolled-back write must not come from the cache");
+        Assert.assertEquals(resultCache.getMisses(), 8L);
+
+        pgSession2.qDdl("drop table cached_things");
+        pgSession2.commit();
+        pgSession2.close();
+        adapter2.close();
+    }
+
+    @Test(priority = 7)
+    public void testNotificationDispatcherNoticesDeadConnection() throws InterruptedException {
+        final AtomicInteger pings = new AtomicInteger();
+        NotificationListener listener = new NotificationListener() {
+            @Override
+            public void onNotification(PGNotification notification) {
+                pings.incrementAndGet();
+            }
+        };
+
+        DataSourceAdapter adapter2 = configureSecondDataSourceAdapter();
+        NotificationDispatcher dispatcher = new NotificationDispatcher(adapter2, 10, 500);
+        dispatcher.addListener("liveness_check", listener);
+        Assert.assertTrue(pingUntilHeard(pings), "Dispatcher must start listening");
+
+        // Kill the dispatcher's backend behind its back; reading notifications
+        // off the socket cannot tell, but the idle check must.
+        Long killed = pgSession.qSelectOneScalar("select count(pg_terminate_backend(pid)) from pg_stat_activity "
+                                                 + "where pid <> pg_backend_pid() and query like 'listen %liveness_check%'");
+        pgSession.commit();
+        Assert.assertEquals(killed, Long.valueOf(1L), "The dispatcher's backend must be found");
+
+        pings.set(0);
+        Assert.assertTrue(pingUntilHeard(pings), "Dispatcher must reconnect and listen again");
+
+        dispatcher.close();
+        adapter2.close();
+    }
+
+    /**
+     * Keeps notifying liveness_check until pings goes up, for up to ten
+     * seconds.
+     */
+    private boolean pingUntilHeard(AtomicInteger pings) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (pings.get() == 0 && System.nanoTime() < deadline) {
+            pgSession.pgNotify("liveness_check", "ping");
+            pgSession.commit();
+            Thread.sleep(50);
+        }
+        return pings.get() > 0;
+    }
+
 }
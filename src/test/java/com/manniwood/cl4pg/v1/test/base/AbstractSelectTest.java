@@ -23,22 +23,45 @@ THE SOFTWARE.
  */
 package com.manniwood.cl4pg.v1.test.base;
 
+import com.manniwood.cl4pg.v1.AsyncPgSession;
+import com.manniwood.cl4pg.v1.AsyncThreadMode;
 import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
+import com.manniwood.cl4pg.v1.datasourceadapters.StatementCache;
 import com.manniwood.cl4pg.v1.PgSession;
+import com.manniwood.cl4pg.v1.RowIterator;
+import com.manniwood.cl4pg.v1.RowPublisher;
+import com.manniwood.cl4pg.v1.SessionWork;
 import com.manniwood.cl4pg.v1.commands.Select;
+import com.manniwood.cl4pg.v1.exceptions.Cl4pgException;
+import com.manniwood.cl4pg.v1.flow.Subscriber;
+import com.manniwood.cl4pg.v1.flow.Subscription;
 import com.manniwood.cl4pg.v1.resultsethandlers.ExplicitConstructorListHandler;
 import com.manniwood.cl4pg.v1.resultsethandlers.ExplicitSettersListHandler;
+import com.manniwood.cl4pg.v1.resultsethandlers.GuessConstructorMethodHandleListHandler;
+import com.manniwood.cl4pg.v1.resultsethandlers.GuessScalarListHandler;
 import com.manniwood.cl4pg.v1.resultsethandlers.GuessSettersListHandler;
+import com.manniwood.cl4pg.v1.resultsethandlers.GuessSettersMethodHandleListHandler;
+import com.manniwood.cl4pg.v1.resultsethandlers.RowCallback;
+import com.manniwood.cl4pg.v1.resultsethandlers.RowCallbackResultSetHandler;
+import com.manniwood.cl4pg.v1.sqlparsers.ParsedSqlCache;
 import com.manniwood.cl4pg.v1.test.etc.ImmutableUser;
 import com.manniwood.cl4pg.v1.test.etc.User;
 import com.manniwood.cl4pg.v1.test.etc.Users;
+import com.manniwood.cl4pg.v1.typeconverters.RowMappingPlanCache;
 import org.testng.Assert;
+import org.testng.SkipException;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Please note that these tests must be run serially, and not all at once.
@@ -90,6 +113,16 @@ public abstract class AbstractSelectTest {
 
     protected abstract DataSourceAdapter configureDataSourceAdapter();
 
+    /**
+     * An adapter with a pool of VIRTUAL_THREAD_CONNECTIONS connections whose
+     * AsyncPgSession uses the given thread mode, with AsyncThreads set to
+     * VIRTUAL_THREAD_CONNECTIONS and AsyncQueueSize set to VIRTUAL_THREAD_WORK.
+     */
+    protected abstract DataSourceAdapter configureAsyncDataSourceAdapter(AsyncThreadMode asyncThreadMode);
+
+    protected static final int VIRTUAL_THREAD_CONNECTIONS = 10;
+    protected static final int VIRTUAL_THREAD_WORK = 10000;
+
     @AfterClass
     public void tearDown() {
         pgSession.close();
@@ -241,6 +274,388 @@ public abstract class AbstractSelectTest {
         Assert.assertEquals(actual, userWithNulls, "users must match");
     }
 
+    @Test(priority = 21)
+    public void testParsedSqlCache() {
+        String sql = "select id, name, password, employee_id from users where id = #{java.util.UUID}";
+        ParsedSqlCache parsedSqlCache = adapter.getParsedSqlCache();
+
+        pgSession.qSelect(sql, ImmutableUser.class, UUID.fromString(AbstractSetApplicationNameTest.TEST_ID));
+        pgSession.rollback();
+        long hits = parsedSqlCache.getHits();
+        long misses = parsedSqlCache.getMisses();
+
+        List<ImmutableUser> users = pgSession.qSelect(sql, ImmutableUser.class, UUID.fromString(AbstractSetApplicationNameTest.TEST_ID));
+        pgSession.rollback();
+
+        Assert.assertTrue(Users.equals(users.get(0), expected), "users must match");
+        Assert.assertEquals(parsedSqlCache.getHits(), hits + 1, "second run of the same template must be a cache hit");
+        Assert.assertEquals(parsedSqlCache.getMisses(), misses, "second run of the same template must not be a cache miss");
+    }
+
+    @Test(priority = 22)
+    public void testSqlCachePlans() {
+        ParsedSqlCache parsedSqlCache = adapter.getParsedSqlCache();
+        long hits = parsedSqlCache.getHits();
+        long misses = parsedSqlCache.getMisses();
+
+        List<ImmutableUser> users = pgSession.select("sql/select_user_guess_setters.sql",
+                ImmutableUser.class,
+                UUID.fromString(AbstractSetApplicationNameTest.TEST_ID));
+        pgSession.rollback();
+
+        Assert.assertTrue(Users.equals(users.get(0), expected), "users must match");
+        Assert.assertEquals(parsedSqlCache.getHits(), hits, "cached files must use their precompiled plans");
+        Assert.assertEquals(parsedSqlCache.getMisses(), misses, "cached files must use their precompiled plans");
+    }
+
+    @Test(priority = 23)
+    public void testStatementCache() {
+        StatementCache statementCache = adapter.getStatementCache();
+        long hits = statementCache.getHits();
+
+        // PgJDBC's default prepareThreshold is 5, so by the fifth run the
+        // re-used statement must have been prepared on the server.
+        for (int i = 0; i < 5; i++) {
+            List<ImmutableUser> users = pgSession.select("sql/select_user_guess_setters.sql",
+                    ImmutableUser.class,
+                    UUID.fromString(AbstractSetApplicationNameTest.TEST_ID));
+            pgSession.rollback();
+            Assert.assertTrue(Users.equals(users.get(0), expected), "users must match");
+        }
+
+        Assert.assertTrue(statementCache.getHits() >= hits + 4, "repeated runs of the same SQL must re-use the cached statement");
+        Assert.assertTrue(statementCache.getServerPrepares() > 0, "repeated runs of the same SQL must reach a server-side prepare");
+    }
+
+    @Test(priority = 24)
+    public void testGuessSettersMethodHandleListHandler() {
+        GuessSettersMethodHandleListHandler<User> handler = new GuessSettersMethodHandleListHandler<User>(User.class);
+        pgSession.run(Select.<User> usingVariadicArgs()
+                .file("sql/select_user_guess_setters.sql")
+                .args(UUID.fromString(AbstractSetApplicationNameTest.TEST_ID))
+                .resultSetHandler(handler)
+                .done());
+        pgSession.rollback();
+        User actual = handler.getList().get(0);
+
+        Assert.assertEquals(actual, expected, "users must match");
+    }
+
+    @Test(priority = 25)
+    public void testGuessConstructorMethodHandleListHandler() {
+        GuessConstructorMethodHandleListHandler<ImmutableUser> handler = new GuessConstructorMethodHandleListHandler<ImmutableUser>(ImmutableUser.class);
+        pgSession.run(Select.<ImmutableUser> usingVariadicArgs()
+                .file("sql/select_user_guess_setters.sql")
+                .args(UUID.fromString(AbstractSetApplicationNameTest.TEST_ID))
+                .resultSetHandler(handler)
+                .done());
+        pgSession.rollback();
+        ImmutableUser actualImmutable = handler.getList().get(0);
+
+        Assert.assertTrue(Users.equals(actualImmutable, expected), "users must match");
+    }
+
+    @Test(priority = 26)
+    public void testRowMappingPlanCache() {
+        RowMappingPlanCache planCache = adapter.getTypeConverterStore().getRowMappingPlanCache();
+        long hits = planCache.getHits();
+
+        for (int i = 0; i < 2; i++) {
+            List<ImmutableUser> users = pgSession.select("sql/select_user_guess_setters.sql",
+                    ImmutableUser.class,
+                    UUID.fromString(AbstractSetApplicationNameTest.TEST_ID));
+            pgSession.rollback();
+            Assert.assertTrue(Users.equals(users.get(0), expected), "users must match");
+        }
+
+        Assert.assertTrue(planCache.getHits() > hits, "the second run of the same query must re-use the cached mapping plan");
+        Assert.assertTrue(planCache.getSize() > 0, "the mapping plan must be cached");
+    }
+
+    @Test(priority = 27)
+    public void testSelectEach() {
+        final List<ImmutableUser> users = new ArrayList<>();
+        long count = pgSession.selectEach("sql/select_user_guess_setters.sql",
+                ImmutableUser.class,
+                new RowCallback<ImmutableUser>() {
+                    @Override
+                    public void onRow(ImmutableUser row) {
+                        users.add(row);
+                    }
+                },
+                UUID.fromString(AbstractSetApplicationNameTest.TEST_ID));
+        pgSession.rollback();
+
+        Assert.assertEquals(count, 1L, "one row must have been handed to the callback");
+        Assert.assertEquals(users.size(), 1, "one row must have been handed to the callback");
+        Assert.assertTrue(Users.equals(users.get(0), expected), "users must match");
+    }
+
+    @Test(priority = 28)
+    public void testSelectWithFetchSize() {
+        final List<Integer> numbers = new ArrayList<>();
+        RowCallbackResultSetHandler<Integer> handler = new RowCallbackResultSetHandler<Integer>(new GuessScalarListHandler<Integer>(),
+                new RowCallback<Integer>() {
+                    @Override
+                    public void onRow(Integer row) {
+                        numbers.add(row);
+                    }
+                });
+        pgSession.run(Select.<Integer> usingVariadicArgs()
+                .sql("select generate_series(1, #{java.lang.Integer}) as num")
+                .args(100)
+                .fetchSize(7)
+                .resultSetHandler(handler)
+                .done());
+        pgSession.rollback();
+
+        Assert.assertEquals(handler.getRowCount(), 100L, "every row must have been handed to the callback");
+        Assert.assertEquals(numbers.get(0), Integer.valueOf(1));
+        Assert.assertEquals(numbers.get(99), Integer.valueOf(100));
+    }
+
+    @Test(priority = 29)
+    public void testSelectIterator() {
+        try (RowIterator<ImmutableUser> users = pgSession.selectIterator("sql/select_user_guess_setters.sql",
+                ImmutableUser.class,
+                UUID.fromString(AbstractSetApplicationNameTest.TEST_ID))) {
+            Assert.assertTrue(users.hasNext(), "there must be a row");
+            Assert.assertTrue(Users.equals(users.next(), expected), "users must match");
+            Assert.assertFalse(users.hasNext(), "there must be only one row");
+        }
+        pgSession.rollback();
+    }
+
+    @Test(priority = 30)
+    public void testRowIteratorStopsEarly() {
+        List<Integer> numbers = new ArrayList<>();
+        try (RowIterator<Integer> iterator = pgSession.rowIterator(new GuessScalarListHandler<Integer>())) {
+            pgSession.run(Select.<Integer> usingVariadicArgs()
+                    .sql("select generate_series(1, #{java.lang.Integer}) as num")
+                    .args(1000000)
+                    .fetchSize(10)
+                    .resultSetHandler(iterator)
+                    .done());
+            while (iterator.hasNext() && numbers.size() < 3) {
+                numbers.add(iterator.next());
+            }
+        }
+        pgSession.rollback();
+
+        Assert.assertEquals(numbers, Arrays.asList(1, 2, 3));
+
+        // The session must still be usable after closing the iterator early.
+        Integer one = pgSession.qSelectOneScalar("select 1");
+        pgSession.rollback();
+        Assert.assertEquals(one, Integer.valueOf(1));
+    }
+
+    @Test(priority = 31)
+    public void testAsyncSession() throws InterruptedException, ExecutionException {
+        AsyncPgSession asyncSession = adapter.getAsyncSession();
+
+        // Fan out more queries than there are threads, then collect them all
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(asyncSession.<Integer> qSelectOneScalar("select #{java.lang.Integer} * 2", i));
+            Assert.assertTrue(asyncSession.getOutstanding() <= asyncSession.getThreads() + asyncSession.getQueueSize(),
+                              "outstanding work must be bounded");
+        }
+        for (int i = 0; i < 50; i++) {
+            Assert.assertEquals(futures.get(i).get(), Integer.valueOf(i * 2));
+        }
+
+        Future<Integer> failed = asyncSession.qSelectOneScalar("select 1 / #{java.lang.Integer}", 0);
+        boolean correctlyCaughtException = false;
+        try {
+            failed.get();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof Cl4pgException, "cause must be the converted exception");
+            correctlyCaughtException = true;
+        }
+        Assert.assertTrue(correctlyCaughtException, "division by zero must fail the future");
+
+        // Async sessions cannot see this session's temporary tables
+        pgSession.qDdl("create table async_updates (val int)");
+        pgSession.qDdl("insert into async_updates (val) values (1), (2), (3)");
+        pgSession.commit();
+        try {
+            Future<Integer> updated = asyncSession.qUpdate("update async_updates set val = val + 10 where val > #{java.lang.Integer}", 1);
+            Assert.assertEquals(updated.get(), Integer.valueOf(2), "update must report the rows it updated");
+            Long sum = pgSession.qSelectOneScalar("select sum(val) from async_updates");
+            pgSession.rollback();
+            Assert.assertEquals(sum, Long.valueOf(26L), "async update must be committed");
+        } finally {
+            pgSession.qDdl("drop table async_updates");
+            pgSession.commit();
+        }
+    }
+
+    @Test(priority = 32)
+    public void testVirtualThreadAsyncSession() throws InterruptedException, ExecutionException {
+        if (!AsyncThreadMode.virtualThreadsAvailable()) {
+            throw new SkipException("Virtual threads need Java 21 or later");
+        }
+        // Both modes are bound by the same VIRTUAL_THREAD_CONNECTIONS
+        // connections, so this checks what virtual mode changes (what the
+        // work runs on, and that the permits still bound it), not that it is
+        // any faster.
+        Assert.assertEquals(runAsyncWork(AsyncThreadMode.PLATFORM), 0, "platform mode must not use virtual threads");
+        Assert.assertEquals(runAsyncWork(AsyncThreadMode.VIRTUAL), VIRTUAL_THREAD_WORK, "every unit of work must get a virtual thread");
+    }
+
+    @Test(priority = 33)
+    public void testRowPublisher() {
+        String sql = "select md5(n::text)::uuid as id, 'user ' || n as name, 'password' as password, n as employee_id "
+                     + "from generate_series(1, #{java.lang.Integer}) as n";
+
+        // Ask for rows ten at a time, and lose interest after 25
+        BatchingSubscriber partial = new BatchingSubscriber(10, 25);
+        RowPublisher<ImmutableUser> publisher = pgSession.qSelectPublisher(sql, ImmutableUser.class, 1000000);
+        publisher.subscribe(partial);
+        Assert.assertEquals(partial.users.size(), 25, "no more rows than were wanted must be sent");
+        Assert.assertEquals(partial.users.get(24).getEmployeeId(), Integer.valueOf(25));
+        Assert.assertFalse(partial.completed, "a cancelled subscription must not complete");
+        Assert.assertNull(partial.error);
+        pgSession.rollback();
+
+        // Ask for everything at once
+        BatchingSubscriber all = new BatchingSubscriber(Long.MAX_VALUE, Integer.MAX_VALUE);
+        pgSession.qSelectPublisher(sql, ImmutableUser.class, 100).maxFetchSize(30).subscribe(all);
+        Assert.assertEquals(all.users.size(), 100);
+        Assert.assertTrue(all.completed, "subscription must complete once the rows run out");
+        Assert.assertNull(all.error);
+        pgSession.rollback();
+
+        // A publisher only takes one subscriber
+        BatchingSubscriber second = new BatchingSubscriber(10, 10);
+        publisher.subscribe(second);
+        Assert.assertTrue(second.error instanceof IllegalStateException, "a second subscriber must be refused");
+
+        // The session must still be usable after cancelling early.
+        Integer one = pgSession.qSelectOneScalar("select 1");
+        pgSession.rollback();
+        Assert.assertEquals(one, Integer.valueOf(1));
+    }
+
+    /**
+     * Requests batchSize rows at a time, requesting the next batch from
+     * onNext(), and cancels once it has wanted rows.
+     */
+    private static class BatchingSubscriber implements Subscriber<ImmutableUser> {
+        private final long batchSize;
+        private final int wanted;
+        private final List<ImmutableUser> users = new ArrayList<>();
+        private Subscription subscription;
+        private long remainingInBatch;
+        private boolean completed;
+        private Throwable error;
+
+        private BatchingSubscriber(long batchSize,
+                                   int wanted) {
+            this.batchSize = batchSize;
+            this.wanted = wanted;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            remainingInBatch = batchSize;
+            subscription.request(batchSize);
+        }
+
+        @Override
+        public void onNext(ImmutableUser user) {
+            users.add(user);
+            if (users.size() >= wanted) {
+                subscription.cancel();
+                return;
+            }
+            if (--remainingInBatch == 0) {
+                remainingInBatch = batchSize;
+                subscription.request(batchSize);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    /**
+     * Submits VIRTUAL_THREAD_WORK units of work at once, far more than there
+     * are connections (or than there could sensibly be platform threads), and
+     * checks that they all finish without more than VIRTUAL_THREAD_CONNECTIONS
+     * of them ever holding a connection at the same time. Returns how many of
+     * them ran on virtual threads.
+     */
+    private int runAsyncWork(AsyncThreadMode mode) throws InterruptedException, ExecutionException {
+        final Method isVirtual = findIsVirtual();
+        DataSourceAdapter asyncAdapter = configureAsyncDataSourceAdapter(mode);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final AtomicInteger onVirtualThreads = new AtomicInteger();
+        try {
+            AsyncPgSession asyncSession = asyncAdapter.getAsyncSession();
+            Assert.assertEquals(asyncSession.getThreadMode(), mode);
+            List<Future<Integer>> futures = new ArrayList<>(VIRTUAL_THREAD_WORK);
+            for (int i = 0; i < VIRTUAL_THREAD_WORK; i++) {
+                final int n = i;
+                futures.add(asyncSession.submit(new SessionWork<Integer>() {
+                    @Override
+                    public Integer doWork(PgSession pgSession) {
+                        if (isVirtual(isVirtual)) {
+                            onVirtualThreads.incrementAndGet();
+                        }
+                        int now = running.incrementAndGet();
+                        int max;
+                        while (now > (max = maxRunning.get()) && !maxRunning.compareAndSet(max, now)) {
+                            // retry
+                        }
+                        try {
+                            return pgSession.qSelectOneScalar("select #{java.lang.Integer} + 1", n);
+                        } finally {
+                            running.decrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (int i = 0; i < VIRTUAL_THREAD_WORK; i++) {
+                Assert.assertEquals(futures.get(i).get(), Integer.valueOf(i + 1));
+            }
+            Assert.assertTrue(maxRunning.get() <= VIRTUAL_THREAD_CONNECTIONS,
+                              "at most " + VIRTUAL_THREAD_CONNECTIONS + " units of work may hold a connection at once, not " + maxRunning.get());
+            return onVirtualThreads.get();
+        } finally {
+            asyncAdapter.close();
+        }
+    }
+
+    private static Method findIsVirtual() {
+        try {
+            return Thread.class.getMethod("isVirtual");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static boolean isVirtual(Method isVirtual) {
+        if (isVirtual == null) {
+            return false;
+        }
+        try {
+            return (Boolean) isVirtual.invoke(Thread.currentThread());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     // TODO: test GuessScalarListHandler
     // TODO: test ExplicitScalarListHandler
 }
@@ -25,6 +25,7 @@ package com.manniwood.cl4pg.v1.test.ds.hikaricp;
 
 import org.testng.annotations.Test;
 
+import com.manniwood.cl4pg.v1.AsyncThreadMode;
 import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
 import com.manniwood.cl4pg.v1.datasourceadapters.HikariCpDataSourceAdapter;
 import com.manniwood.cl4pg.v1.test.base.AbstractSelectTest;
@@ -37,4 +38,14 @@ public class HikariSelectTest extends AbstractSelectTest {
         return HikariCpDataSourceAdapter.buildFromDefaultConfFile();
     }
 
+    @Override
+    protected DataSourceAdapter configureAsyncDataSourceAdapter(AsyncThreadMode asyncThreadMode) {
+        return HikariCpDataSourceAdapter.configure()
+                .maxConnections(VIRTUAL_THREAD_CONNECTIONS)
+                .asyncThreads(VIRTUAL_THREAD_CONNECTIONS)
+                .asyncQueueSize(VIRTUAL_THREAD_WORK)
+                .asyncThreadMode(asyncThreadMode)
+                .done();
+    }
+
 }
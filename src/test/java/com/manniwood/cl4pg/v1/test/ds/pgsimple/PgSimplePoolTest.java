@@ -0,0 +1,140 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2015 Manni Wood
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+package com.manniwood.cl4pg.v1.test.ds.pgsimple;
+
+import com.manniwood.cl4pg.v1.PgSession;
+import com.manniwood.cl4pg.v1.datasourceadapters.PgSimpleDataSourceAdapter;
+import com.manniwood.cl4pg.v1.datasourceadapters.SimpleConnectionPool;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Tests PgSimpleDataSourceAdapter's built-in connection pool.
+ *
+ * @author mwood
+ *
+ */
+public class PgSimplePoolTest {
+
+    private PgSimpleDataSourceAdapter adapter;
+    private SimpleConnectionPool pool;
+
+    @BeforeClass
+    public void init() {
+        adapter = PgSimpleDataSourceAdapter.configure()
+                .pooled(true)
+                .initialConnections(0)
+                .maxConnections(2)
+                .connectionTimeout(1000)
+                .done();
+        pool = adapter.getConnectionPool();
+    }
+
+    @AfterClass
+    public void tearDown() {
+        adapter.close();
+    }
+
+    @Test(priority = 0)
+    public void testSessionReturnsConnectionToPool() {
+        PgSession pgSession = adapter.getSession();
+        Integer pid = pgSession.qSelectOneScalar("select pg_backend_pid()");
+        pgSession.rollback();
+        Assert.assertEquals(pool.getActiveConnections(), 1, "one connection must be lent out");
+        pgSession.close();
+
+        Assert.assertEquals(pool.getActiveConnections(), 0, "closing the session must return its connection");
+        Assert.assertEquals(pool.getIdleConnections(), 1, "the returned connection must be idle in the pool");
+
+        pgSession = adapter.getSession();
+        Integer pid2 = pgSession.qSelectOneScalar("select pg_backend_pid()");
+        pgSession.rollback();
+        pgSession.close();
+
+        Assert.assertEquals(pid2, pid, "the pooled connection must be re-used");
+        Assert.assertEquals(pool.getTotalConnections(), 1, "only one physical connection should have been opened");
+        Assert.assertTrue(pool.getBorrowLatency().getCount() >= 2, "borrows must be recorded");
+    }
+
+    @Test(priority = 1)
+    public void testOpenTransactionRolledBackOnReturn() {
+        PgSession pgSession = adapter.getSession();
+        pgSession.qDdl("create temporary table pool_test (col int)");
+        // deliberately neither committed nor rolled back
+        pgSession.close();
+
+        pgSession = adapter.getSession();
+        Integer count = pgSession.qSelectOneScalar("select count(*)::int from pg_class where relname = 'pool_test'");
+        pgSession.rollback();
+        pgSession.close();
+
+        Assert.assertEquals(count, Integer.valueOf(0), "uncommitted work must be rolled back when a connection is returned");
+    }
+
+    @Test(priority = 2)
+    public void testBorrowTimesOutWhenPoolExhausted() {
+        PgSession pgSession1 = adapter.getSession();
+        PgSession pgSession2 = adapter.getSession();
+        try {
+            adapter.getSession();
+            Assert.fail("borrowing more than maximumPoolSize connections must time out");
+        } catch (RuntimeException e) {
+            // expected
+        } finally {
+            pgSession1.close();
+            pgSession2.close();
+        }
+        Assert.assertEquals(pool.getActiveConnections(), 0, "all connections must have been returned");
+    }
+
+    @Test(priority = 3)
+    public void testBrokenConnectionIsNotReused() {
+        PgSession victim = adapter.getSession();
+        Integer pid = victim.qSelectOneScalar("select pg_backend_pid()");
+        victim.rollback();
+
+        PgSession killer = adapter.getSession();
+        killer.qSelectOneScalar("select pg_terminate_backend(#{java.lang.Integer})", pid);
+        killer.rollback();
+        killer.close();
+
+        try {
+            victim.qSelectOneScalar("select 1");
+            Assert.fail("a query on a terminated backend must fail");
+        } catch (RuntimeException e) {
+            // expected
+        } finally {
+            victim.close();
+        }
+
+        PgSession pgSession = adapter.getSession();
+        Integer pid2 = pgSession.qSelectOneScalar("select pg_backend_pid()");
+        pgSession.rollback();
+        pgSession.close();
+        Assert.assertNotEquals(pid2, pid, "the broken connection must not be lent out again");
+        Assert.assertEquals(pool.getActiveConnections(), 0, "all connections must have been returned");
+    }
+}
@@ -25,6 +25,7 @@ package com.manniwood.cl4pg.v1.test.ds.pgsimple;
 
 import org.testng.annotations.Test;
 
+import com.manniwood.cl4pg.v1.AsyncThreadMode;
 import com.manniwood.cl4pg.v1.datasourceadapters.DataSourceAdapter;
 import com.manniwood.cl4pg.v1.datasourceadapters.PgSimpleDataSourceAdapter;
 import com.manniwood.cl4pg.v1.test.base.AbstractSelectTest;
@@ -37,4 +38,15 @@ public class PgSimpleSelectTest extends AbstractSelectTest {
         return PgSimpleDataSourceAdapter.buildFromDefaultConfFile();
     }
 
+    @Override
+    protected DataSourceAdapter configureAsyncDataSourceAdapter(AsyncThreadMode asyncThreadMode) {
+        return PgSimpleDataSourceAdapter.configure()
+                .pooled(true)
+                .maxConnections(VIRTUAL_THREAD_CONNECTIONS)
+                .asyncThreads(VIRTUAL_THREAD_CONNECTIONS)
+                .asyncQueueSize(VIRTUAL_THREAD_WORK)
+                .asyncThreadMode(asyncThreadMode)
+                .done();
+    }
+
 }